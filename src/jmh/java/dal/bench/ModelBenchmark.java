@@ -0,0 +1,61 @@
+package dal.bench;
+
+import dal.api.DataBase;
+import dal.models.Address;
+import dal.models.Person;
+import dal.models.Workplace;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Measures the basic operations on single models,
+ *  which are creating a model, selecting it by its id and reading and writing its properties.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ModelBenchmark
+{
+    private static final int PEOPLE = 1_000;
+
+    private TempDataBase _tempDataBase;
+    private DataBase _db;
+    private Person _person;
+    private int _counter = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        _tempDataBase = new TempDataBase(Person.class, Address.class, Workplace.class);
+        _db = _tempDataBase.db();
+        for ( int i = 0; i < PEOPLE; i++ )
+            _db.create(Person.class).firstName().set("Person " + i);
+        _person = _db.select(Person.class, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() { _tempDataBase.close(); }
+
+    @Benchmark
+    public Person create() { return _db.create(Person.class); }
+
+    @Benchmark
+    public Person selectById() { return _db.select(Person.class, 1 + _counter++ % PEOPLE); }
+
+    @Benchmark
+    public String getProperty() { return _person.firstName().get(); }
+
+    @Benchmark
+    public void setProperty() {
+        _person.firstName().set("Name " + _counter++); // A different value every time, so that it is actually written.
+    }
+
+    @Benchmark
+    public void setPropertiesInCommit() {
+        int counter = _counter++;
+        _person.commit( p -> {
+            p.firstName().set("First name " + counter);
+            p.lastName().set("Last name " + counter);
+        });
+    }
+}
@@ -0,0 +1,53 @@
+package dal.bench;
+
+import dal.api.BulkImport;
+import dal.api.DataBase;
+import dal.models.Address;
+import dal.models.Person;
+import dal.models.Workplace;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Measures queries for models by their properties in tables of different sizes,
+ *  where one query finds a single person and the other finds a hundredth of all people.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryBenchmark
+{
+    private static final int LAST_NAMES = 100;
+
+    @Param({ "1000", "100000" })
+    public int rows;
+
+    private TempDataBase _tempDataBase;
+    private DataBase _db;
+    private int _counter = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        _tempDataBase = new TempDataBase(Person.class, Address.class, Workplace.class);
+        _db = _tempDataBase.db();
+        BulkImport<Person> people = _db.bulkImport(Person.class, Person::firstName);
+        for ( int i = 0; i < rows; i++ )
+            people.entry("Person " + i).set(Person::lastName, "Name " + i % LAST_NAMES);
+        people.execute();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() { _tempDataBase.close(); }
+
+    @Benchmark
+    public List<Person> whereIsOne() {
+        return _db.select(Person.class).where(Person::firstName).is("Person " + _counter++ % rows).asList();
+    }
+
+    @Benchmark
+    public List<Person> whereIsMany() {
+        return _db.select(Person.class).where(Person::lastName).is("Name " + _counter++ % LAST_NAMES).asList();
+    }
+}
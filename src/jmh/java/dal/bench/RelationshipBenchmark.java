@@ -0,0 +1,71 @@
+package dal.bench;
+
+import dal.api.DataBase;
+import dal.models.Address;
+import dal.models.Person;
+import dal.models.Workplace;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Measures lists of models, which are stored in intermediate tables,
+ *  by iterating over the employees of a workplace and deleting employees of a workplace.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RelationshipBenchmark
+{
+    @Param({ "10", "1000" })
+    public int employees;
+
+    private TempDataBase _tempDataBase;
+    private DataBase _db;
+    private Workplace _workplace;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        _tempDataBase = new TempDataBase(Person.class, Address.class, Workplace.class);
+        _db = _tempDataBase.db();
+        _workplace = _db.create(Workplace.class);
+        for ( int i = 0; i < employees; i++ ) {
+            Person employee = _db.create(Person.class);
+            employee.firstName().set("Employee " + i);
+            _workplace.employees().add(employee);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() { _tempDataBase.close(); }
+
+    @Benchmark
+    public void iterateEmployees( Blackhole blackhole ) {
+        for ( Person employee : _workplace.employees() )
+            blackhole.consume(employee.firstName().get());
+    }
+
+    /**
+     *  An employee of the workplace which is created before every invocation of {@link #deleteEmployee(ToDelete)},
+     *  so that only the deletion itself is measured.
+     */
+    @State(Scope.Thread)
+    public static class ToDelete
+    {
+        Person employee;
+
+        @Setup(Level.Invocation)
+        public void setup( RelationshipBenchmark benchmark ) {
+            employee = benchmark._db.create(Person.class);
+            benchmark._workplace.employees().add(employee);
+        }
+    }
+
+    /**
+     *  Deleting a model which is referenced by a list of another model
+     *  also removes it from the intermediate table of the list.
+     */
+    @Benchmark
+    public void deleteEmployee( ToDelete toDelete ) { _db.delete(toDelete.employee); }
+}
@@ -0,0 +1,46 @@
+package dal.bench;
+
+import dal.api.DataBase;
+import dal.api.Model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ *  A database in a temporary file with the tables for the given models,
+ *  which is deleted when it is closed.
+ *  The benchmarks use a file instead of an in-memory database,
+ *  because writing to the disk is a large part of the cost of most operations.
+ */
+final class TempDataBase implements AutoCloseable
+{
+    private final Path _file;
+    private final DataBase _db;
+
+    @SafeVarargs
+    TempDataBase( Class<? extends Model<?>>... models ) {
+        try {
+            _file = Files.createTempFile("dal-benchmark-", ".db");
+        } catch ( IOException e ) {
+            throw new UncheckedIOException(e);
+        }
+        // Paths which are not URLs are resolved against the working directory:
+        _db = DataBase.at("jdbc:sqlite:" + _file.toAbsolutePath().toString().replace("\\", "/"));
+        _db.createTablesFor(models);
+    }
+
+    DataBase db() { return _db; }
+
+    @Override
+    public void close() {
+        _db.close();
+        try {
+            for ( String suffix : new String[]{ "", "-journal", "-wal", "-shm" } )
+                Files.deleteIfExists(Path.of(_file + suffix));
+        } catch ( IOException e ) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package net.load;
+
+import app.AppContext;
+import app.ContentViewModel;
+import net.SocketSession;
+import net.WebUserContext;
+import net.WebUserSession;
+import org.json.JSONObject;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ *  Drives the {@link WebUserSession}s directly through a fake {@link SocketSession},
+ *  so that the load test measures the application without the network in between.
+ *  <p>
+ *      The messages are handled by a pool of worker threads like the one of Jetty,
+ *      where the messages of a single connection are handled one after the other
+ *      and in the order they were sent, just like on a real websocket.
+ */
+final class InProcessTarget implements LoadTarget
+{
+    private final AppContext _context;
+    private final ExecutorService _workers;
+    private final AtomicInteger _queued = new AtomicInteger(0);
+
+
+    InProcessTarget( AppContext context, int workers ) {
+        _context = context;
+        _workers = Executors.newFixedThreadPool(workers, task -> {
+                        Thread thread = new Thread(task, "In-Process-Server-Worker");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+    }
+
+    @Override
+    public Transport connect( Consumer<String> receiver ) {
+        // This is what the ConnectionServlet does for a new browser session:
+        WebUserContext userContext = new WebUserContext();
+        userContext.put(new ContentViewModel(_context));
+        _context.registerWebUserContext(userContext);
+
+        long creationTime = System.currentTimeMillis();
+        WebUserSession session = new WebUserSession(userContext, new SocketSession() {
+            @Override public void send( JSONObject json ) { receiver.accept(json.toString()); }
+            @Override public boolean isOpen() { return true; }
+            @Override public long creationTime() { return creationTime; }
+        });
+
+        return new Transport() {
+            private CompletableFuture<Void> _handled = CompletableFuture.completedFuture(null);
+
+            @Override
+            public synchronized void send( String message ) {
+                _queued.incrementAndGet();
+                _handled = _handled.thenRunAsync( () -> {
+                                try {
+                                    session.receive(new JSONObject(message));
+                                } finally {
+                                    _queued.decrementAndGet();
+                                }
+                            }, _workers);
+            }
+
+            @Override public void close() {}
+        };
+    }
+
+    @Override
+    public int queueDepth() { return _queued.get(); }
+
+    @Override
+    public void close() { _workers.shutdownNow(); }
+}
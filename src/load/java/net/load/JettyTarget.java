@@ -0,0 +1,79 @@
+package net.load;
+
+import app.AppContext;
+import net.ConnectionServlet;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+/**
+ *  Starts a Jetty server with the {@link ConnectionServlet} on a free loopback port
+ *  (set up like the server of the server dev view)
+ *  and connects the virtual clients through real websockets,
+ *  so that the load test includes the network stack and the Jetty thread pool.
+ */
+final class JettyTarget implements LoadTarget
+{
+    private final Server _server;
+    private final URI _uri;
+    private final HttpClient _client = HttpClient.newHttpClient();
+
+
+    JettyTarget( AppContext context ) throws Exception {
+        _server = new Server();
+        ServerConnector connector = new ServerConnector(_server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0); // Any free port.
+        _server.addConnector(connector);
+
+        ServletContextHandler handler = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        handler.setContextPath("/");
+        handler.addServlet(new ServletHolder(new ConnectionServlet(context)), "/websocket/*");
+        _server.setHandler(handler);
+        _server.start();
+        _uri = URI.create("ws://127.0.0.1:" + connector.getLocalPort() + "/websocket/");
+    }
+
+    @Override
+    public Transport connect( Consumer<String> receiver ) throws Exception {
+        WebSocket socket = _client.newWebSocketBuilder().buildAsync(_uri, new WebSocket.Listener() {
+                                private final StringBuilder _message = new StringBuilder();
+
+                                @Override
+                                public CompletionStage<?> onText( WebSocket webSocket, CharSequence data, boolean last ) {
+                                    _message.append(data);
+                                    if ( last ) {
+                                        receiver.accept(_message.toString());
+                                        _message.setLength(0);
+                                    }
+                                    webSocket.request(1);
+                                    return null;
+                                }
+                            })
+                            .get();
+
+        return new Transport() {
+            @Override public void send( String message ) { socket.sendText(message, true).join(); }
+            @Override public void close() { socket.sendClose(WebSocket.NORMAL_CLOSURE, "").join(); }
+        };
+    }
+
+    /**
+     * @return The number of jobs waiting for a thread of the Jetty thread pool.
+     */
+    @Override
+    public int queueDepth() {
+        return _server.getThreadPool() instanceof QueuedThreadPool pool ? pool.getQueueSize() : 0;
+    }
+
+    @Override
+    public void close() throws Exception { _server.stop(); }
+}
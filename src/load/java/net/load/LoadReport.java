@@ -0,0 +1,120 @@
+package net.load;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  Collects what happens during a load test, which is the number of messages,
+ *  the round-trip latencies of the requests of the virtual clients,
+ *  the depth of the queue of the server and the lag of the application thread.
+ *  Only what happens after {@link #startMeasuring()} is recorded,
+ *  so that the ramp-up of the clients does not distort the results.
+ *  This is thread-safe.
+ */
+final class LoadReport
+{
+    /**
+     *  A growing list of samples in nanoseconds (or any other unit).
+     */
+    private static final class Samples
+    {
+        private long[] _values = new long[1024];
+        private int _size = 0;
+
+        synchronized void add( long value ) {
+            if ( _size == _values.length ) _values = Arrays.copyOf(_values, _size * 2);
+            _values[_size++] = value;
+        }
+
+        synchronized long[] sorted() {
+            long[] sorted = Arrays.copyOf(_values, _size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    private final Map<String, Samples> _roundTrips = new TreeMap<>();
+    private final Samples _queueDepths = new Samples();
+    private final Samples _appLags = new Samples();
+    private final AtomicLong _sent = new AtomicLong(0);
+    private final AtomicLong _received = new AtomicLong(0);
+    private final AtomicLong _errors = new AtomicLong(0);
+    private volatile boolean _measuring = false;
+    private volatile long _startNanos = 0;
+    private volatile long _endNanos = 0;
+
+
+    void startMeasuring() {
+        _startNanos = System.nanoTime();
+        _measuring = true;
+    }
+
+    void stopMeasuring() {
+        _endNanos = System.nanoTime();
+        _measuring = false;
+    }
+
+    void sent() { if ( _measuring ) _sent.incrementAndGet(); }
+
+    void received() { if ( _measuring ) _received.incrementAndGet(); }
+
+    void error() { if ( _measuring ) _errors.incrementAndGet(); }
+
+    /**
+     * @param kind The kind of request, like "getVM" or "call".
+     * @param nanos The time between sending the request and receiving the answer.
+     */
+    void roundTrip( String kind, long nanos ) {
+        if ( !_measuring ) return;
+        Samples samples;
+        synchronized ( _roundTrips ) {
+            samples = _roundTrips.computeIfAbsent(kind, k -> new Samples());
+        }
+        samples.add(nanos);
+    }
+
+    void queueDepth( int depth ) { if ( _measuring ) _queueDepths.add(depth); }
+
+    /**
+     * @param nanos The time a probe event waited for the application thread.
+     */
+    void appLag( long nanos ) { if ( _measuring ) _appLags.add(nanos); }
+
+    void print( PrintStream out, int clients ) {
+        double seconds = (_endNanos - _startNanos) / 1e9;
+        out.println();
+        out.printf("Load test with %d clients over %.1f s%n", clients, seconds);
+        out.printf("  Messages sent:     %d (%.0f/s)%n", _sent.get(), _sent.get() / seconds);
+        out.printf("  Messages received: %d (%.0f/s)%n", _received.get(), _received.get() / seconds);
+        out.printf("  Errors:            %d%n", _errors.get());
+        out.println("  Round trips (ms):");
+        synchronized ( _roundTrips ) {
+            _roundTrips.forEach( (kind, samples) -> _printLatencies(out, "    " + kind, samples.sorted()) );
+        }
+        long[] depths = _queueDepths.sorted();
+        out.printf(
+            "  Server queue depth: avg %.1f, p99 %d, max %d%n",
+            Arrays.stream(depths).average().orElse(0), _percentile(depths, 0.99), depths.length == 0 ? 0 : depths[depths.length - 1]
+        );
+        _printLatencies(out, "  App thread lag (ms)", _appLags.sorted());
+    }
+
+    private static void _printLatencies( PrintStream out, String label, long[] sortedNanos ) {
+        out.printf(
+            "%-32s n=%-8d p50 %8.2f   p99 %8.2f   max %8.2f%n",
+            label + ":", sortedNanos.length,
+            _percentile(sortedNanos, 0.50) / 1e6,
+            _percentile(sortedNanos, 0.99) / 1e6,
+            (sortedNanos.length == 0 ? 0 : sortedNanos[sortedNanos.length - 1]) / 1e6
+        );
+    }
+
+    private static long _percentile( long[] sorted, double fraction ) {
+        if ( sorted.length == 0 ) return 0;
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,33 @@
+package net.load;
+
+import java.util.function.Consumer;
+
+/**
+ *  The server side of a load test, which accepts the connections of the {@link VirtualClient}s
+ *  and knows how many of their messages are waiting to be handled.
+ */
+interface LoadTarget extends AutoCloseable
+{
+    /**
+     *  The client end of a connection, through which messages are sent to the server.
+     */
+    interface Transport
+    {
+        void send( String message );
+
+        void close();
+    }
+
+    /**
+     *  Opens a new connection, which the server treats like a new browser tab.
+     *
+     * @param receiver Receives the messages sent by the server, on a thread of the server.
+     * @return The client end of the connection.
+     */
+    Transport connect( Consumer<String> receiver ) throws Exception;
+
+    /**
+     * @return The number of received messages which the server has not handled yet.
+     */
+    int queueDepth();
+}
@@ -0,0 +1,175 @@
+package net.load;
+
+import app.App;
+import app.AppContext;
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import swingtree.EventProcessor;
+import swingtree.UI;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  A load generator for the web portal, which simulates many players at once
+ *  by running a {@link VirtualClient} per player, each on its own thread.
+ *  Every client registers and logs in, and then edits its profile until the test is over.
+ *  At the end the message throughput, the round-trip latencies, the depth of the queue of
+ *  the server and the lag of the application thread are printed.
+ *  <p>
+ *  An example of running this through Gradle would be: <br>
+ *  <code>./gradlew loadTest --args="--mode jetty --clients 300 --duration 120"</code>
+ */
+public final class LoadTest
+{
+    @Parameter(
+        names={"--mode", "-m"},
+        description="'in-process' drives the web-user sessions through fake sockets, 'jetty' through a local Jetty server.",
+        arity = 1
+    )
+    private String mode = "in-process";
+
+    @Parameter(
+        names={"--clients", "-c"},
+        description="The number of simulated players.",
+        arity = 1
+    )
+    private int clients = 100;
+
+    @Parameter(
+        names={"--ramp-up"},
+        description="The seconds over which the clients are started, which are not measured.",
+        arity = 1
+    )
+    private int rampUpSeconds = 10;
+
+    @Parameter(
+        names={"--duration", "-d"},
+        description="The seconds for which the load is measured after the ramp-up.",
+        arity = 1
+    )
+    private int durationSeconds = 60;
+
+    @Parameter(
+        names={"--think-time"},
+        description="The average milliseconds a client waits before sending a message, like a player typing or reading.",
+        arity = 1
+    )
+    private int thinkTimeMs = 100;
+
+    @Parameter(
+        names={"--workers"},
+        description="The number of threads handling messages in the 'in-process' mode, like the Jetty thread pool.",
+        arity = 1
+    )
+    private int workers = 8;
+
+    @Parameter(
+        names={"--at"},
+        description="The database file, which is deleted before the test, because every client registers a new user.",
+        arity = 1
+    )
+    private String databaseFile = "build/load-test/load-test.db";
+
+
+    public static void main( String... args ) {
+        LoadTest test = new LoadTest();
+        JCommander.newBuilder()
+                .addObject(test)
+                .build()
+                .parse(args);
+
+        test.run();
+    }
+
+    private void run() {
+        for ( String suffix : new String[]{ "", "-journal", "-wal", "-shm" } )
+            new File(databaseFile + suffix).delete();
+        App app = new App();
+        JCommander.newBuilder().addObject(app).build().parse("--at", databaseFile, "--headless", "true");
+        // The thread creating the context is the application thread, which has to process the app events:
+        AppContext context = new AppContext(app);
+        LoadTarget target;
+        try {
+            target = mode.equals("jetty") ? new JettyTarget(context) : new InProcessTarget(context, workers);
+        } catch ( Exception e ) {
+            throw new IllegalStateException("Failed to start the load target in mode '" + mode + "'!", e);
+        }
+        Thread driver = new Thread(() -> {
+                            int exitCode = 0;
+                            try {
+                                _drive(target).print(System.out, clients);
+                            } catch ( Exception e ) {
+                                e.printStackTrace();
+                                exitCode = 1;
+                            } finally {
+                                try {
+                                    target.close();
+                                } catch ( Exception e ) {
+                                    e.printStackTrace();
+                                }
+                            }
+                            System.exit(exitCode);
+                        }, "Load-Test-Driver");
+        driver.start();
+        UI.joinDecoupledEventProcessor(); // Like in the App, this blocks and processes the app events.
+    }
+
+    private LoadReport _drive( LoadTarget target ) throws InterruptedException {
+        LoadReport report = new LoadReport();
+        long rampUpEnd = System.currentTimeMillis() + rampUpSeconds * 1000L;
+        long end = rampUpEnd + durationSeconds * 1000L;
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate( () -> {
+            report.queueDepth(target.queueDepth());
+            long probed = System.nanoTime();
+            EventProcessor.DECOUPLED.registerAppEvent(() -> report.appLag(System.nanoTime() - probed));
+        }, 100, 100, TimeUnit.MILLISECONDS);
+
+        ExecutorService players = Executors.newFixedThreadPool(clients);
+        List<VirtualClient> started = new ArrayList<>();
+        for ( int i = 0; i < clients; i++ ) {
+            VirtualClient client = new VirtualClient("player-" + i, report, thinkTimeMs);
+            started.add(client);
+            players.execute(() -> _play(client, target, report, end));
+            Thread.sleep(rampUpSeconds * 1000L / clients);
+        }
+        Thread.sleep(Math.max(0, rampUpEnd - System.currentTimeMillis()));
+        report.startMeasuring();
+        Thread.sleep(Math.max(0, end - System.currentTimeMillis()));
+        report.stopMeasuring();
+
+        sampler.shutdownNow();
+        players.shutdownNow();
+        players.awaitTermination(10, TimeUnit.SECONDS);
+        started.forEach(VirtualClient::close);
+        return report;
+    }
+
+    private static void _play( VirtualClient client, LoadTarget target, LoadReport report, long end ) {
+        String user;
+        try {
+            client.connect(target);
+            user = Scripts.registerAndLogin(client);
+        } catch ( Exception e ) {
+            report.error();
+            System.err.println("Client '" + client.name() + "' failed to log in: " + e.getMessage());
+            return;
+        }
+        while ( System.currentTimeMillis() < end && !Thread.currentThread().isInterrupted() ) {
+            try {
+                Scripts.editProfile(client, user);
+            } catch ( Exception e ) {
+                if ( Thread.currentThread().isInterrupted() ) return;
+                report.error();
+                System.err.println("Client '" + client.name() + "' failed to edit its profile: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package net.load;
+
+/**
+ *  The flows which the {@link VirtualClient}s replay, modelled after what players do in the web portal.
+ *  The ids of the view models are not hard coded (except for the one of the content view model,
+ *  which is where the React client starts as well), but taken from what the server shows,
+ *  so the flows follow the navigation of the application.
+ */
+final class Scripts
+{
+    /**
+     *  The view model every web-user context starts with, see {@link net.ConnectionServlet}.
+     */
+    static final String CONTENT_VM = "app.ContentViewModel-0";
+
+    private static final String PASSWORD = "Secret1"; // Valid for both the register and the login view model.
+
+    private Scripts() {}
+
+    /**
+     *  Opens the portal, switches to the registration, types in a new username and password,
+     *  registers, switches back to the login and logs in.
+     *
+     * @param client The client, whose name is used as the username.
+     * @return The id of the view model of the logged-in user.
+     */
+    static String registerAndLogin( VirtualClient client ) {
+        client.getVM(CONTENT_VM);
+        Object login = client.shown(CONTENT_VM, "content");
+        client.call(login.toString(), "switchToRegister");
+
+        String register = client.awaitChange(CONTENT_VM, "content", login).toString();
+        client.getVM(register);
+        client.type(register, "username", client.name());
+        client.type(register, "password", PASSWORD);
+        client.call(register, "register");
+        client.call(register, "switchToLogin");
+
+        login = client.awaitChange(CONTENT_VM, "content", register);
+        client.getVM(login.toString());
+        // The login view model only shows what changes, so we cannot wait for answers here:
+        client.set(login.toString(), "username", client.name());
+        client.set(login.toString(), "password", PASSWORD);
+        client.call(login.toString(), "login");
+
+        String user = client.awaitChange(CONTENT_VM, "content", login).toString();
+        client.getVM(user);
+        return user;
+    }
+
+    /**
+     *  Edits the profile of the logged-in user and saves it, which writes to the database,
+     *  and reloads the characters of the user, which waits for the application thread.
+     *  <p>
+     *      The characters themselves cannot be edited through the web portal yet,
+     *      so this is the closest thing to editing a character.
+     *
+     * @param client The client which is logged in.
+     * @param user The id of the view model of the logged-in user.
+     */
+    static void editProfile( VirtualClient client, String user ) {
+        client.set(user, "username", client.name() + " (editing)");
+        client.set(user, "username", client.name());
+        client.call(user, "safeModifications");
+        client.call(user, "characters");
+    }
+}
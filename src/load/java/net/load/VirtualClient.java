@@ -0,0 +1,202 @@
+package net.load;
+
+import net.Constants;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ *  A simulated web-frontend, which speaks the MVVM network protocol of the {@link net.WebUserSession}
+ *  like the React client does, but is driven by the flows of {@link Scripts} instead of a user.
+ *  The client waits for the answer to every request before it sends the next one
+ *  (after a short randomized think time), and remembers the last value
+ *  the server has shown for every property of every view model.
+ *  <p>
+ *      A client is used by a single thread.
+ */
+final class VirtualClient
+{
+    private static final long TIMEOUT_MS = 10_000;
+
+    private final String _name;
+    private final LoadReport _report;
+    private final long _thinkTimeMs;
+    private final BlockingQueue<JSONObject> _inbox = new LinkedBlockingQueue<>();
+    private final Map<String, Map<String, Object>> _shown = new HashMap<>(); // vm id -> property id -> value
+
+    private LoadTarget.Transport _transport;
+
+
+    VirtualClient( String name, LoadReport report, long thinkTimeMs ) {
+        _name        = name;
+        _report      = report;
+        _thinkTimeMs = thinkTimeMs;
+    }
+
+    String name() { return _name; }
+
+    void connect( LoadTarget target ) throws Exception {
+        _transport = target.connect( message -> {
+                        _report.received();
+                        _inbox.add(new JSONObject(message));
+                    });
+    }
+
+    void close() { if ( _transport != null ) _transport.close(); }
+
+    /**
+     *  Requests a view model like a view does when it is shown,
+     *  which also makes the server send updates of the properties of the view model from now on.
+     */
+    void getVM( String vmId ) {
+        long start = _send(new JSONObject().put(Constants.EVENT_TYPE, Constants.GET_VM).put(Constants.VM_ID, vmId));
+        _await( m -> m.getString(Constants.EVENT_TYPE).equals(Constants.RETURN_GET_VM) &&
+                     m.getJSONObject(Constants.EVENT_PAYLOAD).getString(Constants.VM_ID).equals(vmId) );
+        _report.roundTrip("getVM", System.nanoTime() - start);
+    }
+
+    /**
+     *  Calls a method without arguments on a view model, like a button does.
+     */
+    void call( String vmId, String method ) {
+        long start = _send(
+                        new JSONObject()
+                            .put(Constants.EVENT_TYPE, Constants.CALL)
+                            .put(Constants.VM_ID, vmId)
+                            .put(Constants.EVENT_PAYLOAD,
+                                new JSONObject()
+                                    .put(Constants.METHOD_NAME, method)
+                                    .put(Constants.METHOD_ARGS, new JSONArray())
+                            )
+                    );
+        _await( m -> m.getString(Constants.EVENT_TYPE).equals(Constants.CALL_RETURN) &&
+                     m.getJSONObject(Constants.EVENT_PAYLOAD).getString(Constants.VM_ID).equals(vmId) &&
+                     m.getJSONObject(Constants.EVENT_PAYLOAD).getString(Constants.METHOD_NAME).equals(method) );
+        _report.roundTrip("call " + method, System.nanoTime() - start);
+    }
+
+    /**
+     *  Changes a property of a view model and waits for the server to show
+     *  any property of the view model in return, which is what view models with validation do.
+     */
+    void act( String vmId, String property, Object value ) {
+        long start = _send(_act(vmId, property, value));
+        _await( m -> m.getString(Constants.EVENT_TYPE).equals(Constants.RETURN_PROP) &&
+                     m.getJSONObject(Constants.EVENT_PAYLOAD).getString(Constants.VM_ID).equals(vmId) );
+        _report.roundTrip("act", System.nanoTime() - start);
+    }
+
+    /**
+     *  Changes a property of a view model without waiting for an answer,
+     *  for view models which do not answer every change.
+     */
+    void set( String vmId, String property, Object value ) { _send(_act(vmId, property, value)); }
+
+    /**
+     *  Types the text into a property character by character, like a user does in a text field.
+     */
+    void type( String vmId, String property, String text ) {
+        for ( int i = 1; i <= text.length(); i++ )
+            act(vmId, property, text.substring(0, i));
+    }
+
+    /**
+     *  Waits until the server shows a value other than the given one for a property of a view model.
+     *
+     * @return The new value of the property.
+     */
+    Object awaitChange( String vmId, String property, Object oldValue ) {
+        Predicate<Object> changed = value -> value != null && !value.equals(oldValue);
+        if ( !changed.test(shown(vmId, property)) )
+            _await( m -> changed.test(shown(vmId, property)) );
+        return shown(vmId, property);
+    }
+
+    /**
+     * @return The last value the server has shown for a property of a view model, or null.
+     */
+    Object shown( String vmId, String property ) {
+        return _shown.getOrDefault(vmId, Map.of()).get(property);
+    }
+
+    private static JSONObject _act( String vmId, String property, Object value ) {
+        return new JSONObject()
+                .put(Constants.EVENT_TYPE, Constants.SET_PROP)
+                .put(Constants.VM_ID, vmId)
+                .put(Constants.PROP_NAME, property)
+                .put(Constants.PROP_VALUE, value);
+    }
+
+    private long _send( JSONObject message ) {
+        _think();
+        long start = System.nanoTime();
+        _transport.send(message.toString());
+        _report.sent();
+        return start;
+    }
+
+    private void _think() {
+        if ( _thinkTimeMs <= 0 ) return;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(_thinkTimeMs / 2, _thinkTimeMs * 3 / 2 + 1));
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Client '" + _name + "' was interrupted!", e);
+        }
+    }
+
+    /**
+     *  Reads the received messages until one matches the condition.
+     */
+    private void _await( Predicate<JSONObject> condition ) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS);
+        while ( true ) {
+            JSONObject message;
+            try {
+                message = _inbox.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Client '" + _name + "' was interrupted!", e);
+            }
+            if ( message == null )
+                throw new IllegalStateException("Client '" + _name + "' did not receive an answer within " + TIMEOUT_MS + " ms!");
+            _remember(message);
+            if ( condition.test(message) )
+                return;
+        }
+    }
+
+    private void _remember( JSONObject message ) {
+        String type = message.getString(Constants.EVENT_TYPE);
+        if ( type.equals(Constants.RETURN_PROP) ) {
+            JSONObject property = message.getJSONObject(Constants.EVENT_PAYLOAD);
+            _show(property.getString(Constants.VM_ID), property);
+        }
+        else if ( type.equals(Constants.RETURN_GET_VM) ) {
+            JSONObject vm = message.getJSONObject(Constants.EVENT_PAYLOAD);
+            JSONObject properties = vm.getJSONObject(Constants.PROPS);
+            for ( String key : properties.keySet() )
+                _show(vm.getString(Constants.VM_ID), properties.getJSONObject(key));
+        }
+        else if ( type.equals(Constants.ERROR) ) {
+            _report.error();
+            throw new IllegalStateException(
+                        "Client '" + _name + "' received an error: " +
+                        message.getJSONObject(Constants.EVENT_PAYLOAD).optString(Constants.ERROR_MESSAGE)
+                    );
+        }
+    }
+
+    private void _show( String vmId, JSONObject property ) {
+        Object value = property.get(Constants.PROP_VALUE);
+        _shown.computeIfAbsent(vmId, id -> new HashMap<>())
+              .put(property.getString(Constants.PROP_NAME), value == JSONObject.NULL ? null : value);
+    }
+}
@@ -95,6 +95,59 @@ public final class App implements Runnable
     )
     private boolean devViews = true;
 
+    /**
+     * A game master may want to run a session entirely in memory, which is faster than
+     * writing every change to the save file. In that case the save file is loaded into memory
+     * when the application starts, and the session is saved back to it periodically.
+     * <p>
+     * An example of using this parameter would be: <br>
+     * <code>java -jar tribalism.jar --in-memory true --autosave-minutes 10</code>
+     */
+    @Parameter(
+        names={"--in-memory"},
+        description="Keep the database in memory and save it to the save file periodically.",
+        arity = 1
+    )
+    private boolean inMemory = false;
+
+    /**
+     * The number of minutes between two saves of a database which is kept in memory,
+     * see the "--in-memory" parameter.
+     */
+    @Parameter(
+        names={"--autosave-minutes"},
+        description="The minutes between saving an in-memory database to the save file. Default is 5.",
+        arity = 1
+    )
+    private int autosaveMinutes = 5;
+
+    /**
+     * When several game masters run sessions in different worlds, they should not have to
+     * share a single save file. With this parameter, the characters and players of every world
+     * are stored in a file of their own in the "worlds" directory next to the save file,
+     * while the save file keeps everything shared by all worlds (users, types, roles, the worlds themselves).
+     * <p>
+     * An example of using this parameter would be: <br>
+     * <code>java -jar tribalism.jar --shard-worlds true --open-world-shards 4</code>
+     */
+    @Parameter(
+        names={"--shard-worlds"},
+        description="Store the characters and players of every world in a file of their own.",
+        arity = 1
+    )
+    private boolean shardWorlds = false;
+
+    /**
+     * The maximum number of world files which are kept open at the same time,
+     * see the "--shard-worlds" parameter.
+     */
+    @Parameter(
+        names={"--open-world-shards"},
+        description="The maximum number of world files which are kept open at the same time. Default is 8.",
+        arity = 1
+    )
+    private int openWorldShards = 8;
+
     /**
      * @return True if the server should be started immediately after application launch or not.
      */
@@ -124,6 +177,26 @@ public final class App implements Runnable
         return SAVE_FILE_NAME;
     }
 
+    /**
+     * @return True if the database should be kept in memory and saved to the save file periodically.
+     */
+    public boolean isInMemory() { return inMemory; }
+
+    /**
+     * @return The minutes between two saves of an in-memory database.
+     */
+    public int getAutosaveMinutes() { return autosaveMinutes; }
+
+    /**
+     * @return True if the characters and players of every world should be stored in a file of their own.
+     */
+    public boolean isShardWorlds() { return shardWorlds; }
+
+    /**
+     * @return The maximum number of world files which are kept open at the same time.
+     */
+    public int getOpenWorldShards() { return openWorldShards; }
+
     /**
      * @return True if the application should be launched without desktop UI.
      */
@@ -1,15 +1,25 @@
 package app;
 
 import app.models.*;
+import app.models.Character;
 import app.models.ini.ModelTypes;
 import dal.api.DataBase;
 import dal.api.DataBaseProcessor;
+import dal.api.Model;
 import net.WebUserContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import sprouts.Vars;
 import swingtree.EventProcessor;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  *  Instances of this class are shared between all users as well as most view models in general.
@@ -22,22 +32,142 @@ import java.util.Optional;
  */
 public final class AppContext
 {
+    private static final Logger log = LoggerFactory.getLogger(AppContext.class);
+
     private final App app; // The application configuration
     private final DataBase db;
     private final ModelTypes modelTypes;
+    private final WorldShards worldShards; // Null unless every world is stored in a file of its own.
 
     private final Vars<UserContext> users = Vars.of(UserContext.class);
 
+    private CompletableFuture<Path> lastSave = CompletableFuture.completedFuture(null); // Guarded by this.
+
 
 
     public AppContext(App app) {
         this.app = app;
-        this.db = DataBase.at(app.getDatabaseLocation()+"/"+app.getSaveFileName(), createQueryProcessor());
+        this.db = app.isInMemory() ? openInMemory() : DataBase.at(app.getDatabaseLocation()+"/"+app.getSaveFileName(), createQueryProcessor());
+        this.db.enableQueryCache(256); // The catalogs are looked up over and over again, but rarely change.
+        this.db.enableRowCache(10_000); // The properties of models are read one by one, but rows are read at once.
+        this.db.logSlowStatements(Duration.ofMillis(50)); // Shown in the database dev view.
+        this.db.enableMaintenance(); // The save file is used for as long as the application runs.
         this.modelTypes = new ModelTypes(db, app.getDatabaseLocation());
+        this.worldShards = app.isShardWorlds() && !app.isInMemory()
+                            ? new WorldShards(db, saveFile(), Path.of(app.getDatabaseLocation(), "worlds"), app.getOpenWorldShards(), this::createQueryProcessor)
+                            : null;
     }
 
     public ModelTypes modelTypes() { return modelTypes; }
 
+    private Path saveFile() { return Path.of(app.getDatabaseLocation(), app.getSaveFileName()); }
+
+    /**
+     *  Loads the save file into an in-memory database (if it exists)
+     *  and saves the database back to it periodically and when the application exits.
+     */
+    private DataBase openInMemory() {
+        DataBase db = DataBase.inMemory(createQueryProcessor());
+        if ( Files.exists(saveFile()) )
+            db.loadFrom(saveFile());
+
+        var autosave = Executors.newSingleThreadScheduledExecutor( task -> {
+                            Thread thread = new Thread(task, "Autosave");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        int minutes = Math.max(1, app.getAutosaveMinutes());
+        autosave.scheduleAtFixedRate(this::save, minutes, minutes, TimeUnit.MINUTES);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                save().get(1, TimeUnit.MINUTES);
+            } catch ( Exception e ) {
+                log.error("Failed to save the database to '{}' on exit!", saveFile(), e);
+            }
+        }, "Save-On-Exit"));
+        return db;
+    }
+
+    /**
+     *  Saves an in-memory database to the save file,
+     *  which is not necessary for a database which is stored in the save file anyway.
+     *  The copy is made by the application thread in between its other work, so it never conflicts with a write,
+     *  while the caller (like the autosave thread) only waits for the returned future.
+     *  The database is backed up into a partial file first, which only replaces the save file once it is complete,
+     *  so a crash while saving never breaks the last save.
+     *  Saves never overlap, a save requested while another one is running starts once the other one is done.
+     *
+     * @return A future which completes with the path of the save file once the database is saved.
+     */
+    public synchronized CompletableFuture<Path> save() {
+        if ( !db.isInMemory() ) return CompletableFuture.completedFuture(saveFile());
+        lastSave = lastSave.handle( (saved, error) -> saved ) // A failed save was logged already and must not stop the next one.
+                           .thenCompose( previous -> db.backupTo(saveFile(), (copied, total) -> {}) );
+        return lastSave;
+    }
+
+    /**
+     *  Saves the database to another file in the background, while the application keeps on running,
+     *  which also works for a database which is stored in the save file.
+     *
+     * @param file The file to save the database to.
+     * @return A future which completes with the path of the file once the database is saved.
+     */
+    public CompletableFuture<Path> saveAs( Path file ) {
+        return db.backupTo(file, (copied, total) -> {}); // A failed backup is logged by the database.
+    }
+
+    /**
+     *  Returns the database in which the characters and players of the provided world are stored,
+     *  which is the database of the world's own file if the worlds are sharded (see {@link App#isShardWorlds()}),
+     *  and the main database otherwise.
+     *  So code working with a world should always use this instead of {@link #db()}.
+     *
+     * @param world The world whose database should be returned.
+     * @return The database of the world.
+     */
+    public DataBase db( World world ) {
+        return worldShards == null ? db : worldShards.of(world);
+    }
+
+    /**
+     *  Returns the characters of the provided world, which are the list {@link World#characters()}
+     *  of the world as it is stored in its database (see {@link #db(World)}),
+     *  because the lists of a sharded world are stored in its shard, next to its characters.
+     *
+     * @param world The world whose characters should be returned.
+     * @return The live list of the characters of the world.
+     */
+    public Vars<Character> charactersOf( World world ) { return _home(world).characters(); }
+
+    /**
+     *  Returns the non-player characters of the provided world, see {@link #charactersOf(World)}.
+     *
+     * @param world The world whose non-player characters should be returned.
+     * @return The live list of the non-player characters of the world.
+     */
+    public Vars<Character> npcsOf( World world ) { return _home(world).npcs(); }
+
+    private World _home( World world ) {
+        return worldShards == null ? world : worldShards.worldIn(world);
+    }
+
+    /**
+     *  Counts the models of the provided type stored for all worlds, like characters or players,
+     *  which are spread over the databases of the worlds if the worlds are sharded (see {@link #db(World)}).
+     *  Note that this opens the shards of all worlds, one after the other.
+     *
+     * @param type The type of the models to count.
+     * @return The number of models of the type in all worlds.
+     */
+    public int countInAllWorlds( Class<? extends Model<?>> type ) {
+        if ( worldShards == null ) return db.select((Class) type).count();
+        int count = 0;
+        for ( World world : db.selectAll(World.class) )
+            count += db(world).select((Class) type).count();
+        return count;
+    }
+
     private DataBaseProcessor createQueryProcessor() {
         var mainThread = Thread.currentThread();
         return new DataBaseProcessor() {
@@ -84,7 +214,7 @@ public final class AppContext
     public Optional<User> loginUser( String username ) {
         User user = db.select(User.class).where(User::username).is(username).first().orElse(null);
         if ( user != null ) {
-            users.add(new UserContext(user));
+            users.add(new UserContext(this, user));
             return Optional.of(user);
         }
         return Optional.empty();
@@ -19,7 +19,7 @@ public class RootViewModel
         this.context = Objects.requireNonNull(context);
         this.serverViewModel    = new ServerViewModel(context);
         this.mainViewModel      = new ContentViewModel(context);
-        this.dataBaseViewModel  = new DataBaseViewModel(context.db());
+        this.dataBaseViewModel  = new DataBaseViewModel(context.db(), context::countInAllWorlds);
         this.bootstrapViewModel = new BootstrapViewModel(context);
     }
 
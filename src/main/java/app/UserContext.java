@@ -10,14 +10,18 @@ import app.user.UserViewModel;
  */
 public final class UserContext
 {
+    private final AppContext app;
     private final User user;
 
     // TODO: Add more state here, like a list of characters, worlds, etc.
 
-    public UserContext(User user) {
+    public UserContext(AppContext app, User user) {
+        this.app = app;
         this.user = user;
     }
 
+    public AppContext app() { return app; }
+
     public User user() { return user; }
 
     /**
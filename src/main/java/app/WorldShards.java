@@ -0,0 +1,197 @@
+package app;
+
+import app.models.*;
+import app.models.Character;
+import dal.api.DataBase;
+import dal.api.DataBaseProcessor;
+import dal.api.Model;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ *  Stores the characters and players of every {@link World} in a database file of their own (a shard),
+ *  so that a busy world neither grows the working set of the queries of other worlds
+ *  nor makes them wait for its writes.
+ *  The save file is the catalog of the shards, which keeps everything shared by all worlds,
+ *  like the users, the skill, ability and role types as well as the worlds themselves.
+ *  It is attached to every shard, so the characters and players of a shard
+ *  reference the models of the catalog like any other model.
+ *  <p>
+ *      Shards are opened when they are needed, and only the most recently used ones are kept open.
+ *      A model of a shard which was closed in the meantime still works, because it reopens its connection when used.
+ *  <p>
+ *      The lists of a world ({@link World#characters()} and {@link World#npcs()}) are stored in its shard,
+ *      next to the characters they hold, so they have to be read from the world as it is selected from its shard.
+ *      Characters and players which were stored in the catalog before the worlds were sharded
+ *      are moved into the shard of their world when it is opened.
+ *  <p>
+ *      Like all database access, this has to be used on the application thread.
+ */
+public final class WorldShards
+{
+    private static final Logger log = LoggerFactory.getLogger(WorldShards.class);
+
+    private static final String CATALOG_SCHEMA = "catalog";
+
+    private final DataBase _catalog;
+    private final Path _catalogFile;
+    private final Path _directory;
+    private final Supplier<DataBaseProcessor> _processors;
+    private final Map<Integer, DataBase> _open; // The open shards by the ids of their worlds, the least recently used first.
+
+
+    /**
+     * @param catalog The database of the save file, which is the catalog of the shards.
+     * @param catalogFile The save file with the models shared by all worlds.
+     * @param directory The directory in which the files of the shards are stored.
+     * @param maxOpen The maximum number of shards which are kept open at the same time.
+     * @param processors Creates the processors of the shards.
+     */
+    public WorldShards( DataBase catalog, Path catalogFile, Path directory, int maxOpen, Supplier<DataBaseProcessor> processors ) {
+        if ( maxOpen < 1 )
+            throw new IllegalArgumentException("At least one world shard has to be kept open!");
+        _catalog     = catalog;
+        _catalogFile = catalogFile;
+        _directory   = directory;
+        _processors  = processors;
+        _open = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Integer, DataBase> eldest ) {
+                if ( size() <= maxOpen ) return false;
+                log.debug("Closing the shard of world {} because it is the least recently used one.", eldest.getKey());
+                eldest.getValue().close();
+                return true;
+            }
+        };
+    }
+
+    /**
+     *  Returns the database in which the characters and players of the provided world are stored,
+     *  which is opened (and created if it does not exist yet) if it is not open.
+     *
+     * @param world The world whose shard should be returned.
+     * @return The database of the world.
+     */
+    public DataBase of( World world ) {
+        int id = world.id().get();
+        DataBase shard = _open.get(id);
+        if ( shard == null ) {
+            shard = _open(id);
+            _open.put(id, shard);
+            _moveIntoShard(id, shard);
+        }
+        return shard;
+    }
+
+    /**
+     *  Returns the provided world as it is selected from its shard,
+     *  whose lists ({@link World#characters()} and {@link World#npcs()}) hold the characters of the shard.
+     *
+     * @param world The world, no matter from which database it was selected.
+     * @return The world selected from its shard.
+     */
+    public World worldIn( World world ) { return of(world).select(World.class, world.id().get()); }
+
+    private DataBase _open( int worldId ) {
+        log.info("Opening the shard of world {}.", worldId);
+        DataBase shard = DataBase.at("jdbc:sqlite:" + _directory.resolve("world-" + worldId + ".db").toAbsolutePath(), _processors.get());
+        // Everything which is not specific to a single world is owned by the catalog:
+        shard.attach(
+            CATALOG_SCHEMA, _catalogFile,
+            User.class, GameMaster.class, World.class,
+            Ability.class, AbilityType.class, Skill.class, SkillType.class, Role.class
+        );
+        shard.createTablesFor(
+            Character.class, Player.class, CharacterModel.class,
+            User.class, GameMaster.class, World.class,
+            Ability.class, AbilityType.class, Skill.class, SkillType.class, Role.class
+        );
+        return shard;
+    }
+
+    /**
+     *  Moves the characters and players of a world which are still stored in the catalog
+     *  (because they were created before the worlds were sharded) into the shard of the world,
+     *  together with the character models of the players and the lists of the world.
+     *  The copies are created first and the originals are only deleted afterwards,
+     *  so an interruption never loses a character, at worst it is moved again the next time.
+     */
+    private void _moveIntoShard( int worldId, DataBase shard ) {
+        World world = _catalog.select(World.class, worldId);
+        List<Character> characters = _catalog.select(Character.class).where(Character::world).is(world).asList();
+        List<Player> players = _catalog.select(Player.class).where(Player::world).is(world).asList();
+        if ( characters.isEmpty() && players.isEmpty() ) return;
+        log.info("Moving {} characters and {} players of world {} into its shard.", characters.size(), players.size(), worldId);
+        World home = shard.select(World.class, worldId);
+        Map<Integer, CharacterModel> models = new HashMap<>(); // The copies in the shard by the ids in the catalog.
+        Map<Integer, Player> movedPlayers = new HashMap<>();
+        for ( Player player : players ) {
+            Player copy = shard.create(Player.class);
+            copy.identity().set(_inShard(shard, User.class, player.identity().get()));
+            copy.world().set(home);
+            for ( CharacterModel model : player.characters() )
+                copy.characters().add(_copyOf(model, shard, models));
+            movedPlayers.put(player.id().get(), copy);
+        }
+        Set<Integer> npcs = world.npcs().stream().map( npc -> npc.id().get() ).collect(Collectors.toSet());
+        for ( Character character : characters ) {
+            Character copy = shard.create(Character.class);
+            _copyTraits(character, copy);
+            copy.world().set(home);
+            CharacterModel model = character.model().get();
+            if ( model != null ) copy.model().set(_copyOf(model, shard, models));
+            Player player = character.player().get();
+            if ( player != null ) copy.player().set(movedPlayers.get(player.id().get()));
+            ( npcs.contains(character.id().get()) ? home.npcs() : home.characters() ).add(copy);
+        }
+        characters.forEach(_catalog::delete);
+        players.forEach(_catalog::delete);
+        for ( int modelId : models.keySet() )
+            _catalog.delete(_catalog.select(CharacterModel.class, modelId));
+    }
+
+    private static <M extends Model<M>> M _inShard( DataBase shard, Class<M> type, M model ) {
+        return model == null ? null : shard.select(type, model.id().get());
+    }
+
+    private static CharacterModel _copyOf( CharacterModel model, DataBase shard, Map<Integer, CharacterModel> copies ) {
+        return copies.computeIfAbsent(model.id().get(), id -> {
+            CharacterModel copy = shard.create(CharacterModel.class);
+            _copyTraits(model, copy);
+            return copy;
+        });
+    }
+
+    private static void _copyTraits( AbstractCharacter<?> from, AbstractCharacter<?> to ) {
+        to.forename().set(from.forename().get());
+        to.surname().set(from.surname().get());
+        to.role().set(from.role().get());
+        to.age().set(from.age().get());
+        to.height().set(from.height().get());
+        to.weight().set(from.weight().get());
+        to.description().set(from.description().get());
+        to.image().set(from.image().get());
+    }
+
+    /**
+     * @return The number of shards which are currently open.
+     */
+    public int openShards() { return _open.size(); }
+
+    /**
+     *  Closes all open shards.
+     */
+    public void close() {
+        _open.values().forEach(DataBase::close);
+        _open.clear();
+    }
+}
@@ -25,28 +25,23 @@ public class AbilityTypesViewModel
     private final Vars<AbilityTypeViewModel> abilityTypes = Vars.of(AbilityTypeViewModel.class);
     private final Var<String> searchKey = Var.of("");
     private final Var<String> newAbilityTypeName = Var.of("");
+    private final CatalogSearch<AbilityType, AbilityTypeViewModel> search;
 
 
     public AbilityTypesViewModel(AppContext appContext) {
         this.appContext = appContext;
-        var asModels  = appContext.db().selectAll(AbilityType.class)
-                                        .stream()
-                                        .map(st -> new AbilityTypeViewModel(this, st))
-                                        .toList();
-        abilityTypes.addAll(asModels);
-        searchKey.onAct( it -> {
-            abilityTypes.clear();
-            abilityTypes.addAll(
-                        appContext.db()
-                            .select(AbilityType.class)
-                            .where(AbilityType::name)
-                            .like("%" + it.get() + "%")
-                            .asList()
-                            .stream()
-                            .map(st -> new AbilityTypeViewModel(this, st))
-                            .toList()
-                    );
-        });
+        this.search = new CatalogSearch<>(
+                            abilityTypes,
+                            text -> appContext.db()
+                                        .select(AbilityType.class)
+                                        .where(AbilityType::name)
+                                        .matches(text)
+                                        .or(AbilityType::description)
+                                        .matches(text)
+                                        .asList(),
+                            at -> new AbilityTypeViewModel(this, at)
+                        );
+        searchKey.onAct( it -> search.search(it.get()) );
     }
 
     public Vars<AbilityTypeViewModel> skillTypes() {
@@ -54,7 +49,7 @@ public class AbilityTypesViewModel
     }
 
     public Vals<String> abilityTypes() {
-        List<String> found = appContext.db().selectAll(AbilityType.class).stream().map(at->at.name().get()).toList();
+        List<String> found = appContext.db().select(AbilityType.class).project(AbilityType::name).asList();
         return Vars.of(String.class).addAll(found);
     }
 
@@ -65,12 +60,11 @@ public class AbilityTypesViewModel
     public void addNewAbilityType() {
         var newAbilityType = appContext.db().create(AbilityType.class);
         newAbilityType.name().set(newAbilityTypeName.get());
-        var vm = new AbilityTypeViewModel(this, newAbilityType);
-        abilityTypes.add(vm);
+        search.refresh();
     }
 
     public void deleteAbilityType(AbilityType abilityType) {
-        abilityTypes.removeIfItem(vm -> vm.abilityType() == abilityType );
+        search.forget(abilityType);
         appContext.db().delete(abilityType);
     }
 
@@ -0,0 +1,152 @@
+package app.dev;
+
+import dal.api.Model;
+import sprouts.Vars;
+import swingtree.EventProcessor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ *  The search pipeline of the catalog editors, which shows the models matching a search text
+ *  as a list of entry view models.
+ *  <p>
+ *      Searching is debounced, which means that the query only runs once the search text
+ *      has not changed for a short time, and a search which is superseded by a newer one
+ *      before it completes is dropped.
+ *      The entry view models (and therefore their views) of models which stay in the result
+ *      are reused, and only the difference between the current and the new search result
+ *      is applied to the entries, while the entries of models which are no longer shown are dropped.
+ *      So typing into a search field does not rebuild every entry for every keystroke,
+ *      and the search only ever holds on to the entries it currently shows.
+ *      The result of a search is a plain list, so an editor which creates models
+ *      calls {@link #refresh()} to show them.
+ *  <p>
+ *      All methods are expected to be called on the application thread,
+ *      which is also the thread on which the queries are run.
+ *
+ * @param <M> The type of the models which are searched.
+ * @param <E> The type of the entry view models which represent the models.
+ */
+final class CatalogSearch<M extends Model<M>, E>
+{
+    private static final long DEBOUNCE_DELAY_MS = 250;
+
+    private static final ScheduledExecutorService DEBOUNCER = Executors.newSingleThreadScheduledExecutor( task -> {
+                                                                    Thread thread = new Thread(task, "Catalog-Search-Debouncer");
+                                                                    thread.setDaemon(true);
+                                                                    return thread;
+                                                                });
+
+    private final Vars<E> _entries;
+    private final Function<String, List<M>> _query;
+    private final Function<M, E> _entryFactory;
+    private final Map<Integer, E> _entriesById = new HashMap<>();
+
+    private int _generation = 0;
+    private ScheduledFuture<?> _pending = null;
+    private String _searchText = "";
+
+
+    /**
+     * @param entries The list of entries which is updated with the result of every search.
+     * @param query The query which finds the models matching a search text.
+     * @param entryFactory Creates the entry view model for a model which is not shown yet.
+     */
+    CatalogSearch( Vars<E> entries, Function<String, List<M>> query, Function<M, E> entryFactory ) {
+        _entries      = entries;
+        _query        = query;
+        _entryFactory = entryFactory;
+        _run(_generation, "");
+    }
+
+    /**
+     *  Schedules a search for the given text, which replaces any search which has not completed yet.
+     *
+     * @param searchText The text to search for.
+     */
+    void search( String searchText ) {
+        _searchText = searchText;
+        int generation = ++_generation;
+        if ( _pending != null ) _pending.cancel(false);
+        _pending = DEBOUNCER.schedule(
+                        () -> EventProcessor.DECOUPLED.registerAppEvent(() -> _run(generation, searchText)),
+                        DEBOUNCE_DELAY_MS, TimeUnit.MILLISECONDS
+                    );
+    }
+
+    /**
+     *  Runs the latest search again right away, instead of waiting for the debounce delay,
+     *  so that models which were just created show up if they match.
+     */
+    void refresh() {
+        if ( _pending != null ) _pending.cancel(false);
+        _run(++_generation, _searchText);
+    }
+
+    private void _run( int generation, String searchText ) {
+        if ( generation != _generation ) return; // A newer search has been scheduled in the meantime.
+        List<M> found = _query.apply(searchText);
+        if ( generation != _generation ) return;
+        show(found);
+    }
+
+    /**
+     *  Shows the given models immediately, by removing the entries of all models not in the list
+     *  and inserting (or moving) the entries of the others, so that they have the order of the list.
+     *  The entries of the models which are no longer shown are forgotten.
+     *
+     * @param models The models to show.
+     */
+    void show( List<M> models ) {
+        List<E> target = models.stream().map(this::entryOf).toList();
+        Set<E> wanted = Collections.newSetFromMap(new IdentityHashMap<>());
+        wanted.addAll(target);
+        for ( int i = _entries.size() - 1; i >= 0; i-- )
+            if ( !wanted.contains(_entries.at(i).get()) )
+                _entries.removeAt(i);
+
+        for ( int i = 0; i < target.size(); i++ ) {
+            E entry = target.get(i);
+            if ( i < _entries.size() && _entries.at(i).get() == entry )
+                continue;
+            for ( int j = i + 1; j < _entries.size(); j++ )
+                if ( _entries.at(j).get() == entry ) {
+                    _entries.removeAt(j);
+                    break;
+                }
+            _entries.addAt(i, entry);
+        }
+        _entriesById.values().removeIf( it -> !wanted.contains(it) );
+    }
+
+    /**
+     *  Returns the entry of the given model, which is created if the model is not shown yet.
+     *
+     * @param model The model to get the entry for.
+     * @return The entry view model of the model.
+     */
+    E entryOf( M model ) {
+        return _entriesById.computeIfAbsent(model.id().get(), id -> _entryFactory.apply(model));
+    }
+
+    /**
+     *  Removes the entry of the given model, which is expected to be deleted.
+     *
+     * @param model The model whose entry should be removed.
+     */
+    void forget( M model ) {
+        E entry = _entriesById.remove(model.id().get());
+        if ( entry != null )
+            _entries.removeIfItem( it -> it == entry );
+    }
+}
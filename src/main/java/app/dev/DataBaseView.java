@@ -1,5 +1,6 @@
 package app.dev;
 
+import swingtree.EventProcessor;
 import swingtree.UI;
 
 import javax.swing.*;
@@ -12,6 +13,8 @@ import static swingtree.UI.*;
  */
 public class DataBaseView extends JPanel
 {
+    private final Timer _metricsTimer;
+
     public DataBaseView(DataBaseViewModel vm) {
         of(this).withLayout(FILL)
         .add(GROW,
@@ -54,6 +57,32 @@ public class DataBaseView extends JPanel
                 UI.list(vm.listOfTables())
             )
         )
+        .add(SPAN.and(GROW),
+            panel(FILL.and(WRAP(2)))
+            .add(GROW, label(vm.metricsSummary()))
+            .add(SHRINK, button("Reset").onClick( it -> vm.resetMetrics() ))
+            .add(SPAN.and(GROW).and(PUSH_Y),
+                scrollPane().withPrefHeight(220).add(
+                    table(MapData.READ_ONLY, ()->vm.metricsData())
+                    .updateTableOn(vm.metricsUpdated())
+                )
+            )
+            .add(SPAN, label("Slow statements:"))
+            .add(SPAN.and(GROW).and(PUSH_Y),
+                scrollPane().withPrefHeight(120).add(
+                    table(MapData.READ_ONLY, ()->vm.slowStatementsData())
+                    .updateTableOn(vm.metricsUpdated())
+                )
+            )
+            .add(GROW, label("Storage maintenance:"))
+            .add(SHRINK, button("Run now").onClick( it -> vm.runMaintenance() ))
+            .add(SPAN.and(GROW).and(PUSH_Y),
+                scrollPane().withPrefHeight(100).add(
+                    table(MapData.READ_ONLY, ()->vm.maintenanceData())
+                    .updateTableOn(vm.metricsUpdated())
+                )
+            )
+        )
         .add(SPAN.and(ALIGN_RIGHT), button("Drop All Tables").onClick(it -> {
             // We warn the user before dropping all tables.
             // Swing confirm dialog:
@@ -66,6 +95,24 @@ public class DataBaseView extends JPanel
             if (result == JOptionPane.YES_OPTION)
                 vm.dropAllTables();
         }));
+
+        // The metrics table is live, so that we can see which screens cause query storms.
+        // The timer ticks on the GUI thread, but the view model is only ever changed on the app thread:
+        _metricsTimer = new Timer(1000, it -> {
+            if ( isShowing() ) EventProcessor.DECOUPLED.registerAppEvent(vm::refreshMetrics);
+        });
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        _metricsTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        _metricsTimer.stop(); // Otherwise the timer would keep the view alive after it was removed.
+        super.removeNotify();
     }
 
 }
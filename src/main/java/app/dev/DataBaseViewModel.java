@@ -5,15 +5,28 @@ import app.models.GameMaster;
 import app.models.User;
 import app.models.World;
 import dal.api.DataBase;
+import dal.api.DataBaseMetrics;
+import dal.api.MaintenanceActivity;
+import dal.api.Model;
+import dal.api.SlowStatement;
+import dal.api.StatementStats;
 import dal.impl.SQLiteDataBase;
 import sprouts.Event;
 import sprouts.Var;
 import sprouts.Vars;
 
 import javax.swing.*;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ToIntFunction;
 
 /**
  *  This is the view model for the {@link DataBaseView} which is mostly intended for debugging purposes
@@ -23,6 +36,7 @@ import java.util.Map;
 public class DataBaseViewModel {
 
     private final DataBase db;
+    private final ToIntFunction<Class<? extends Model<?>>> countInAllWorlds; // Characters are stored in the databases of their worlds.
     private final Var<Integer> numberOfTables    = Var.of(0);
     private final Var<Integer> numberUsers       = Var.of(0);
     private final Var<Integer> numberCharacters  = Var.of(0);
@@ -33,11 +47,18 @@ public class DataBaseViewModel {
     private final Vars<String> listOfTables      = Vars.of(String.class);
     private final Map<String, List<String>> resultData = new HashMap<>();
     private final Event onExecuteSql = Event.create();
+    private final Var<String> metricsSummary     = Var.of("");
+    private final Map<String, List<String>> metricsData = new LinkedHashMap<>();
+    private final Map<String, List<String>> slowStatementsData = new LinkedHashMap<>();
+    private final Map<String, List<String>> maintenanceData = new LinkedHashMap<>();
+    private final Event onMetricsUpdated = Event.create();
 
 
-    public DataBaseViewModel(DataBase db) {
+    public DataBaseViewModel(DataBase db, ToIntFunction<Class<? extends Model<?>>> countInAllWorlds) {
         this.db = db;
+        this.countInAllWorlds = countInAllWorlds;
         loadFromDataBase();
+        refreshMetrics();
     }
 
     public void loadFromDataBase() {
@@ -45,7 +66,7 @@ public class DataBaseViewModel {
         listOfTables.clear();
         numberOfTables.set(tables.size());
         numberUsers.set(db.select(User.class).count());
-        numberCharacters.set(db.select(Character.class).count());
+        numberCharacters.set(countInAllWorlds.applyAsInt(Character.class));
         numberWorlds.set(db.select(World.class).count());
         numberGameMasters.set(db.select(GameMaster.class).count());
         listOfTables.addAll(tables);
@@ -83,6 +104,99 @@ public class DataBaseViewModel {
         loadFromDataBase();
     }
 
+    public Var<String> metricsSummary() { return metricsSummary; }
+    public Map<String, List<String>> metricsData() { return metricsData; }
+    public Map<String, List<String>> slowStatementsData() { return slowStatementsData; }
+    public Map<String, List<String>> maintenanceData() { return maintenanceData; }
+    public Event metricsUpdated() { return onMetricsUpdated; }
+
+    /**
+     *  Reads the current performance counters of the database into the metrics table,
+     *  where every row is a kind of SQL statement, the most time consuming first,
+     *  the recently logged slow statements into the slow statements table
+     *  and what the background maintenance of the save file did recently into the maintenance table.
+     *  This does not query the database, so it can be called frequently.
+     */
+    public void refreshMetrics() {
+        DataBaseMetrics metrics = db.metrics();
+        List<String> templates = new ArrayList<>(), calls = new ArrayList<>(), rows = new ArrayList<>(),
+                     total = new ArrayList<>(), average = new ArrayList<>(), max = new ArrayList<>(),
+                     histogram = new ArrayList<>();
+        for ( StatementStats stats : metrics.statements() ) {
+            templates.add(stats.template());
+            calls.add(String.valueOf(stats.calls()));
+            rows.add(String.valueOf(stats.rows()));
+            total.add(_millis(stats.totalTime()));
+            average.add(_millis(stats.averageTime()));
+            max.add(_millis(stats.maxTime()));
+            histogram.add(stats.latencyHistogram().toString());
+        }
+        metricsData.clear();
+        metricsData.put("Statement", templates);
+        metricsData.put("Calls", calls);
+        metricsData.put("Rows", rows);
+        metricsData.put("Total ms", total);
+        metricsData.put("Avg ms", average);
+        metricsData.put("Max ms", max);
+        metricsData.put("Latencies (<0.1ms, <1ms, <10ms, <100ms, <1s, more)", histogram);
+        List<String> times = new ArrayList<>(), durations = new ArrayList<>(), statements = new ArrayList<>(),
+                     values = new ArrayList<>(), plans = new ArrayList<>(), callers = new ArrayList<>();
+        for ( SlowStatement slow : db.slowStatements() ) {
+            times.add(LocalTime.ofInstant(slow.time(), ZoneId.systemDefault()).truncatedTo(ChronoUnit.SECONDS).toString());
+            durations.add(_millis(slow.duration()));
+            statements.add(slow.sql());
+            values.add(slow.values().toString());
+            plans.add(String.join(" | ", slow.queryPlan()));
+            callers.add(slow.calledFrom().isEmpty() ? "" : slow.calledFrom().get(0));
+        }
+        slowStatementsData.clear();
+        slowStatementsData.put("Time", times);
+        slowStatementsData.put("ms", durations);
+        slowStatementsData.put("Statement", statements);
+        slowStatementsData.put("Values", values);
+        slowStatementsData.put("Query plan", plans);
+        slowStatementsData.put("Called from", callers);
+        List<String> maintenanceTimes = new ArrayList<>(), tasks = new ArrayList<>(),
+                     taskDurations = new ArrayList<>(), outcomes = new ArrayList<>();
+        for ( MaintenanceActivity activity : db.maintenanceActivity() ) {
+            maintenanceTimes.add(LocalTime.ofInstant(activity.time(), ZoneId.systemDefault()).truncatedTo(ChronoUnit.SECONDS).toString());
+            tasks.add(activity.task());
+            taskDurations.add(_millis(activity.duration()));
+            outcomes.add(activity.outcome());
+        }
+        maintenanceData.clear();
+        maintenanceData.put("Time", maintenanceTimes);
+        maintenanceData.put("Task", tasks);
+        maintenanceData.put("ms", taskDurations);
+        maintenanceData.put("Outcome", outcomes);
+        metricsSummary.set(
+            metrics.calls() + " statements, " +
+            "query cache hit rate " + Math.round(metrics.queryCache().hitRate() * 100) + "% " +
+            "(" + metrics.queryCache().size() + " cached), " +
+            metrics.openConnections() + " open connection(s), " +
+            times.size() + " slow statement(s)"
+        );
+        onMetricsUpdated.fire();
+    }
+
+    /**
+     *  Runs the maintenance of the save file right away, in the background,
+     *  whose activity shows up in the maintenance table once it is done.
+     */
+    public void runMaintenance() {
+        CompletableFuture.runAsync(db::runMaintenance);
+    }
+
+    public void resetMetrics() {
+        db.resetMetrics();
+        db.clearSlowStatements();
+        refreshMetrics();
+    }
+
+    private static String _millis( Duration duration ) {
+        return String.format("%.2f", duration.toNanos() / 1_000_000.0);
+    }
+
     public JComponent createView() { return new DataBaseView(this); }
 
 }
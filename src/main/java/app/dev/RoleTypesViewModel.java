@@ -27,28 +27,23 @@ public class RoleTypesViewModel
     private final Vars<RoleTypeViewModel> Roles = Vars.of(RoleTypeViewModel.class);
     private final Var<String> searchKey = Var.of("");
     private final Var<String> newRoleName = Var.of("");
+    private final CatalogSearch<Role, RoleTypeViewModel> search;
 
 
     public RoleTypesViewModel(AppContext appContext) {
         this.appContext = appContext;
-        var asModels  = appContext.db().selectAll(Role.class)
-                                        .stream()
-                                        .map(st -> new RoleTypeViewModel(this, st))
-                                        .toList();
-        Roles.addAll(asModels);
-        searchKey.onAct( it -> {
-            Roles.clear();
-            Roles.addAll(
-                    appContext.db()
-                        .select(Role.class)
-                        .where(Role::name)
-                        .like("%" + it.get() + "%")
-                        .asList()
-                        .stream()
-                        .map(st -> new RoleTypeViewModel(this, st))
-                        .toList()
-                );
-        });
+        this.search = new CatalogSearch<>(
+                            Roles,
+                            text -> appContext.db()
+                                        .select(Role.class)
+                                        .where(Role::name)
+                                        .matches(text)
+                                        .or(Role::description)
+                                        .matches(text)
+                                        .asList(),
+                            role -> new RoleTypeViewModel(this, role)
+                        );
+        searchKey.onAct( it -> search.search(it.get()) );
     }
 
     public Vars<RoleTypeViewModel> roleTypes() {
@@ -62,12 +57,11 @@ public class RoleTypesViewModel
     public void addNewRole() {
         var newRole = appContext.db().create(Role.class);
         newRole.name().set(newRoleName.get());
-        var vm = new RoleTypeViewModel(this, newRole);
-        Roles.add(vm);
+        search.refresh();
     }
 
     public void deleteRole(Role Role) {
-        Roles.removeIfItem( vm -> vm.Role() == Role );
+        search.forget(Role);
         appContext.db().delete(Role);
     }
 
@@ -87,12 +81,6 @@ public class RoleTypesViewModel
         public RoleTypeViewModel(RoleTypesViewModel parent, Role role) {
             this.parent = parent;
             this.role = role;
-            var skillVMList  = role.skills()
-                                .stream()
-                                .map(SkillViewModel::new)
-                                .toList();
-
-            skillViewModels.addAll(skillVMList);
         }
 
         public Role Role() { return role; }
@@ -107,6 +95,9 @@ public class RoleTypesViewModel
         public <V> V createView(Class<V> viewType) {
             if ( this.view != null ) return viewType.cast(view);
 
+            // The skills are only read once the role is actually shown:
+            skillViewModels.addAll(role.skills().stream().map(SkillViewModel::new).toList());
+
             view = UI.panel(UI.FILL.and(UI.INS(12)))
                     .add(UI.WIDTH(90,120,220), UI.textField(role.name()))
                     .add(UI.SHRINK, UI.label("Description:"))
@@ -26,28 +26,23 @@ public class SkillTypesViewModel
     private final Vars<SkillTypeViewModel> skillTypes = Vars.of(SkillTypeViewModel.class);
     private final Var<String> searchKey = Var.of("");
     private final Var<String> newSkillTypeName = Var.of("");
+    private final CatalogSearch<SkillType, SkillTypeViewModel> search;
 
 
     public SkillTypesViewModel(AppContext appContext) {
         this.appContext = appContext;
-        var asModels  = appContext.db().selectAll(app.models.SkillType.class)
-                                        .stream()
-                                        .map(st -> new SkillTypeViewModel(this, st))
-                                        .toList();
-        skillTypes.addAll(asModels);
-        searchKey.onAct( it -> {
-            skillTypes.clear();
-            skillTypes.addAll(
-                        appContext.db()
-                            .select(app.models.SkillType.class)
-                            .where(SkillType::name)
-                            .like("%" + it.get() + "%")
-                            .asList()
-                            .stream()
-                            .map(st -> new SkillTypeViewModel(this, st))
-                            .toList()
-                    );
-        });
+        this.search = new CatalogSearch<>(
+                            skillTypes,
+                            text -> appContext.db()
+                                        .select(SkillType.class)
+                                        .where(SkillType::name)
+                                        .matches(text)
+                                        .or(SkillType::description)
+                                        .matches(text)
+                                        .asList(),
+                            st -> new SkillTypeViewModel(this, st)
+                        );
+        searchKey.onAct( it -> search.search(it.get()) );
     }
 
     public Vars<SkillTypeViewModel> skillTypes() {
@@ -55,7 +50,7 @@ public class SkillTypesViewModel
     }
 
     public Vals<String> abilityTypes() {
-        List<String> found = appContext.db().selectAll(AbilityType.class).stream().map(at->at.name().get()).toList();
+        List<String> found = appContext.db().select(AbilityType.class).project(AbilityType::name).asList();
         return Vars.of(String.class).addAll(found);
     }
 
@@ -66,12 +61,11 @@ public class SkillTypesViewModel
     public void addNewSkillType() {
         var newSkillType = appContext.db().create(app.models.SkillType.class);
         newSkillType.name().set(newSkillTypeName.get());
-        var vm = new SkillTypeViewModel(this, newSkillType);
-        skillTypes.add(vm);
+        search.refresh();
     }
 
     public void deleteSkillType(app.models.SkillType skillType) {
-        skillTypes.removeIfItem( vm -> vm.skillType() == skillType );
+        search.forget(skillType);
         appContext.db().delete(skillType);
     }
 
@@ -1,10 +1,11 @@
 package app.models;
 
 import dal.api.Model;
+import dal.api.Searchable;
 import sprouts.Var;
 
 public interface AbilityType extends Model<AbilityType>
 {
-    Var<String> name();
-    Var<String> description();
+    @Searchable Var<String> name();
+    @Searchable Var<String> description();
 }
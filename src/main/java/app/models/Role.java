@@ -1,13 +1,14 @@
 package app.models;
 
 import dal.api.Model;
+import dal.api.Searchable;
 import sprouts.Var;
 import sprouts.Vars;
 
 public interface Role extends Model<Role>
 {
-    Var<String> name();
-    Var<String> description();
+    @Searchable Var<String> name();
+    @Searchable Var<String> description();
 
     /**
      * @return The skill modifiers of this role.
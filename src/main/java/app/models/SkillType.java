@@ -1,12 +1,13 @@
 package app.models;
 
 import dal.api.Model;
+import dal.api.Searchable;
 import sprouts.Var;
 
 public interface SkillType extends Model<SkillType>
 {
-    Var<String> name();
-    Var<String> description();
+    @Searchable Var<String> name();
+    @Searchable Var<String> description();
 
     Var<String> primaryAbility();
     Var<String> secondaryAbility();
@@ -44,42 +44,33 @@ public class AbilityTypes extends AbstractTypes
 
     @Override
     protected void loadFromLocation( String location, DataBase db ) {
-        String jsonText = Util.readTextFile(location);
-        // We load the ability types from the json file into a json object.
-        var json = new org.json.JSONArray(jsonText);
-        // We iterate over the ability types in the json object.
-        for ( int i = 0; i < json.length(); i++ ) {
-            var newType = json.getJSONObject(i);
+        // We read the ability types from the json file one by one and collect them in a bulk import,
+        // which creates the missing ones in one go:
+        List<String> namesInOrder = new ArrayList<>();
+        var importer = db.bulkImport(AbilityType.class, AbilityType::name);
+        Util.forEachJsonObjectIn(location, newType -> {
             var name        = newType.getString("name");
             var description = newType.getString("description");
-            // First we check if the ability type already exists in the database:
-            var existingAbilityType = db.select(AbilityType.class)
-                                            .where(AbilityType::name).is(name)
-                                            .first();
-
-            if ( existingAbilityType.isPresent() ) {
-                abilityTypes.add(existingAbilityType.get());
-                abilityTypesByName.put(name, existingAbilityType.get());
-                continue;
-            }
-            AbilityType abilityType = db.create(AbilityType.class);
-            abilityType.name().set(name);
-            abilityType.description().set(description);
+            // Existing ability types keep their description, the consistency check will warn us about differences.
+            namesInOrder.add(name);
+            importer.entry(name).setOnInsert(AbilityType::description, description);
+        });
+        // The imported models are returned in the order of their entries, so we already know their names:
+        Iterator<String> names = new LinkedHashSet<>(namesInOrder).iterator();
+        for ( AbilityType abilityType : importer.execute() ) {
             abilityTypes.add(abilityType);
-            abilityTypesByName.put(name, abilityType);
+            abilityTypesByName.put(names.next(), abilityType);
         }
     }
 
     public void saveAsJSONToWorkingDirectory( String location, DataBase db ) {
-        var json = new org.json.JSONArray();
-        for ( var abilityType : abilityTypes ) {
-            var jsonAbilityType = new org.json.JSONObject();
-            jsonAbilityType.put("name", abilityType.name().get());
-            jsonAbilityType.put("description", abilityType.description().get());
-            json.put(jsonAbilityType);
-        }
-        try ( var out = new java.io.FileWriter(location) ) {
-            out.write(json.toString(4));
+        try ( var out = new JsonArrayWriter(new java.io.FileWriter(location)) ) {
+            for ( var abilityType : abilityTypes ) {
+                var jsonAbilityType = new org.json.JSONObject();
+                jsonAbilityType.put("name", abilityType.name().get());
+                jsonAbilityType.put("description", abilityType.description().get());
+                out.write(jsonAbilityType);
+            }
         } catch (Exception e) {
             throw new RuntimeException("Could not save " + FILE_NAME + " to working directory");
         }
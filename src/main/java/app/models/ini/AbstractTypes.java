@@ -39,6 +39,34 @@ public abstract class AbstractTypes
         saveAsJSONToWorkingDirectory(path, db);
     }
 
+    /**
+     *  The verification of the types against the database is expensive, which is why
+     *  we remember the digest of the file in the working directory after a successful verification.
+     *  If the file still has the same digest, then there is no need to verify it again.
+     *
+     * @param db The database in which the digest of the last verified file is stored.
+     * @return True if the file in the working directory was already verified against the database.
+     */
+    public final boolean isUnchangedSinceLastVerification(DataBase db) {
+        if ( !localTypesExist() ) return false;
+        return db.readMetadata(_digestKey()).map(_workingDirDigest()::equals).orElse(false);
+    }
+
+    /**
+     *  Remembers the digest of the file in the working directory as verified.
+     *
+     * @param db The database in which the digest should be stored.
+     */
+    public final void rememberVerification(DataBase db) {
+        db.writeMetadata(_digestKey(), _workingDirDigest());
+    }
+
+    private String _digestKey() { return "types-digest:" + fileName; }
+
+    private String _workingDirDigest() {
+        return DataBase.fingerprintOf(Util.readTextFileFromWorkingDirectory(workingDirectory + "/" + fileName));
+    }
+
     protected abstract void loadFromLocation(String location, DataBase db);
 
     protected abstract void saveAsJSONToWorkingDirectory(String location, DataBase db);
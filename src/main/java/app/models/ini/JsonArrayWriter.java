@@ -0,0 +1,61 @@
+package app.models.ini;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ *  Writes a JSON array element by element, so that the array never has to exist in memory as a whole.
+ *  The output is formatted exactly like {@code JSONArray.toString(4)}, which means that the type files
+ *  written by this look the same as they did before they were written as a stream.
+ *  Note that only the first element is held back, because a single element is formatted differently.
+ */
+public final class JsonArrayWriter implements AutoCloseable
+{
+    private static final int INDENT = 4;
+
+    private final Writer out;
+    private JSONObject first = null;
+    private int count = 0;
+
+    public JsonArrayWriter( Writer out ) { this.out = out; }
+
+    public void write( JSONObject element ) {
+        try {
+            if ( count == 0 )
+                first = element;
+            else {
+                if ( count == 1 ) {
+                    out.write("[\n" + " ".repeat(INDENT));
+                    first.write(out, INDENT, INDENT);
+                    first = null;
+                }
+                out.write(",\n" + " ".repeat(INDENT));
+                element.write(out, INDENT, INDENT);
+            }
+            count++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if ( count == 0 )
+                out.write("[]");
+            else if ( count == 1 ) {
+                out.write("[");
+                first.write(out, INDENT, 0);
+                out.write("]");
+            }
+            else
+                out.write("\n]");
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
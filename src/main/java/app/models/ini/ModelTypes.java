@@ -3,10 +3,14 @@ package app.models.ini;
 import app.models.*;
 import app.models.Character;
 import dal.api.DataBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import sprouts.Result;
 
 public class ModelTypes
 {
+    private static final Logger log = LoggerFactory.getLogger(ModelTypes.class);
+
     private final AbilityTypes abilityTypes;
     private final RoleTypes roleTypes;
     private final SkillTypes skillTypes;
@@ -32,9 +36,9 @@ public class ModelTypes
     }
 
     private void _verifyLocalWorkingDirConsistency(DataBase db) {
-        Result<Boolean> abilitiesMatch = abilityTypes.isDataBaseStateMatchingWorkingDirectory(db);
-        Result<Boolean> skillsMatch    = skillTypes.isDataBaseStateMatchingWorkingDirectory(db);
-        Result<Boolean> rolesMatch     = roleTypes.isDataBaseStateMatchingWorkingDirectory(db);
+        Result<Boolean> abilitiesMatch = _verify(abilityTypes, db);
+        Result<Boolean> skillsMatch    = _verify(skillTypes, db);
+        Result<Boolean> rolesMatch     = _verify(roleTypes, db);
 
         if ( abilitiesMatch.is(false) || skillsMatch.is(false) || rolesMatch.is(false) ) {
             StringBuilder errorMessages = new StringBuilder();
@@ -46,6 +50,18 @@ public class ModelTypes
                 errorMessages + "\n"
             );
         }
+        abilityTypes.rememberVerification(db);
+        skillTypes.rememberVerification(db);
+        roleTypes.rememberVerification(db);
+    }
+
+    private Result<Boolean> _verify(AbstractTypes types, DataBase db) {
+        // If the file has not changed since the last successful verification, we can skip the expensive checks:
+        if ( types.isUnchangedSinceLastVerification(db) ) {
+            log.debug("Skipping verification of '{}', it is unchanged since the last verification.", types.fileName);
+            return Result.of(true);
+        }
+        return types.isDataBaseStateMatchingWorkingDirectory(db);
     }
 
     public AbilityTypes abilityTypes() {
@@ -3,17 +3,16 @@ package app.models.ini;
 import app.models.Ability;
 import app.models.Role;
 import app.models.Skill;
+import dal.api.BulkImport;
 import dal.api.DataBase;
 import org.json.JSONArray;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sprouts.Problem;
 import sprouts.Result;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  *  To let the application know about all the role types that exist in the game,
@@ -65,7 +64,6 @@ public class RoleTypes extends AbstractTypes
             AbilityTypes abilityTypes,
             SkillTypes skillTypes
     ) {
-        String jsonText = Util.readTextFile(location);
         /*
            The json content might look something like this:
            [
@@ -88,91 +86,59 @@ public class RoleTypes extends AbstractTypes
             ]
 
          */
-        // We load the roles from the json file into a json object.
-        JSONArray json;
+        /*
+            We read the roles from the json file one by one and collect them in a bulk import,
+            where the abilities and skills of a role are children identified by their type
+            (which is unique within a role).
+            Existing roles, abilities and skills are updated, missing ones are created
+            and added to their role, all of it inside a single transaction.
+        */
+        List<String> namesInOrder = new ArrayList<>();
+        var importer = db.bulkImport(Role.class, Role::name);
         try {
-            json = new org.json.JSONArray(jsonText);
+            Util.forEachJsonObjectIn(location, newRole -> _collect(importer, newRole, namesInOrder, abilityTypes, skillTypes));
         } catch (Exception e) {
             log.error("Failed to parse 'role-types.json'!", e);
             throw e;
         }
-        // We iterate over the roles in the json object.
-        for ( int i = 0; i < json.length(); i++ ) {
-            var newRole = json.getJSONObject(i);
-            var name        = newRole.getString("name");
-            var description = newRole.getString("description");
-            // First we check if the role already exists in the database:
-            var existingRole = db.select(Role.class)
-                                    .where(Role::name).is(name)
-                                    .first();
-
-            Role role;
-
-            if ( existingRole.isPresent() ) {
-                rolesByName.put(name, existingRole.get());
-                role = existingRole.get();
-            }
-            else {
-                role = db.create(Role.class);
-                role.name().set(name);
-            }
-            role.description().set(description);
+        // The imported models are returned in the order of their entries, so we already know their names:
+        Iterator<String> names = new LinkedHashSet<>(namesInOrder).iterator();
+        for ( Role role : importer.execute() ) {
             roles.add(role);
-            rolesByName.put(name, role);
-
-            // We load the abilities for the role:
-            var abilities = newRole.getJSONArray("abilities");
-            for (int j = 0; j < abilities.length(); j++) {
-                var ability = abilities.getJSONObject(j);
-                var abilityName = ability.getString("name");
-                var abilityLevel = ability.getInt("level");
-                Ability newAbility;
-                // We check if the ability already exists in the role:
-                var existingAbility = role.abilities()
-                                            .stream()
-                                            .filter(a -> a.type().get().name().get().equals(abilityName))
-                                            .findFirst();
-
-                if ( existingAbility.isPresent() )
-                    newAbility = existingAbility.get();
-                else {
-                    var abilityType = abilityTypes.findByName(abilityName).orElseThrow();
-                    newAbility = db.create(Ability.class);
-                    newAbility.type().set(abilityType);
-                    role.abilities().add(newAbility);
-                }
-                newAbility.level().set(abilityLevel);
-            }
-
-            // We load the skills for the role:
-            var skills = newRole.getJSONArray("skills");
-            for (int j = 0; j < skills.length(); j++) {
-                var skill = skills.getJSONObject(j);
-                var skillName  = skill.getString("name");
-                var skillLevel = skill.getInt("level");
-                var isProficient = skill.getBoolean("proficient");
-                var learnability = skill.getDouble("learnability");
-                Skill newSkill;
-
-                // We check if the skill already exists in the role:
-                var existingSkill = role.skills()
-                                            .stream()
-                                            .filter(s -> s.type().get().name().get().equals(skillName))
-                                            .findFirst();
+            rolesByName.put(names.next(), role);
+        }
+    }
 
-                if ( existingSkill.isPresent() )
-                    newSkill = existingSkill.get();
-                else {
-                    var skillType  = skillTypes.findByName(skillName).orElseThrow();
-                    newSkill = db.create(Skill.class);
-                    newSkill.type().set(skillType);
-                    role.skills().add(newSkill);
-                }
+    private void _collect(
+            BulkImport<Role> importer,
+            JSONObject newRole,
+            List<String> namesInOrder,
+            AbilityTypes abilityTypes,
+            SkillTypes skillTypes
+    ) {
+        var name        = newRole.getString("name");
+        var description = newRole.getString("description");
+        namesInOrder.add(name);
+        var role = importer.entry(name).set(Role::description, description);
+
+        // We load the abilities for the role:
+        var abilities = newRole.getJSONArray("abilities");
+        for ( int j = 0; j < abilities.length(); j++ ) {
+            var ability = abilities.getJSONObject(j);
+            var abilityType = abilityTypes.findByName(ability.getString("name")).orElseThrow();
+            role.child(Role::abilities, Ability.class, Ability::type, abilityType)
+                .set(Ability::level, ability.getInt("level"));
+        }
 
-                newSkill.level().set(skillLevel);
-                newSkill.isProficient().set(isProficient);
-                newSkill.learnability().set(learnability);
-            }
+        // We load the skills for the role:
+        var skills = newRole.getJSONArray("skills");
+        for ( int j = 0; j < skills.length(); j++ ) {
+            var skill = skills.getJSONObject(j);
+            var skillType = skillTypes.findByName(skill.getString("name")).orElseThrow();
+            role.child(Role::skills, Skill.class, Skill::type, skillType)
+                .set(Skill::level,        skill.getInt("level"))
+                .set(Skill::isProficient, skill.getBoolean("proficient"))
+                .set(Skill::learnability, skill.getDouble("learnability"));
         }
     }
 
@@ -183,33 +149,32 @@ public class RoleTypes extends AbstractTypes
 
     @Override
     protected void saveAsJSONToWorkingDirectory(String location, DataBase db) {
-        var json = new JSONArray();
-        for (var role : roles) {
-            var jsonRole = new org.json.JSONObject();
-            jsonRole.put("name", role.name().get());
-            jsonRole.put("description", role.description().get());
-            var jsonAbilities = new JSONArray();
-            for (var ability : role.abilities()) {
-                var jsonAbility = new org.json.JSONObject();
-                jsonAbility.put("name", ability.type().get().name().get());
-                jsonAbility.put("level", ability.level().get());
-                jsonAbilities.put(jsonAbility);
-            }
-            jsonRole.put("abilities", jsonAbilities);
-            var jsonSkills = new JSONArray();
-            for (var skill : role.skills()) {
-                var jsonSkill = new org.json.JSONObject();
-                jsonSkill.put("name", skill.type().get().name().get());
-                jsonSkill.put("level", skill.level().get());
-                jsonSkill.put("proficient", skill.isProficient().get());
-                jsonSkill.put("learnability", skill.learnability().get());
-                jsonSkills.put(jsonSkill);
+        try ( var out = new JsonArrayWriter(new java.io.FileWriter(location)) ) {
+            for ( var role : roles ) {
+                var jsonRole = new org.json.JSONObject();
+                jsonRole.put("name", role.name().get());
+                jsonRole.put("description", role.description().get());
+                var jsonAbilities = new JSONArray();
+                for ( var ability : role.abilities() ) {
+                    var jsonAbility = new org.json.JSONObject();
+                    jsonAbility.put("name", ability.type().get().name().get());
+                    jsonAbility.put("level", ability.level().get());
+                    jsonAbilities.put(jsonAbility);
+                }
+                jsonRole.put("abilities", jsonAbilities);
+                var jsonSkills = new JSONArray();
+                for ( var skill : role.skills() ) {
+                    var jsonSkill = new org.json.JSONObject();
+                    jsonSkill.put("name", skill.type().get().name().get());
+                    jsonSkill.put("level", skill.level().get());
+                    jsonSkill.put("proficient", skill.isProficient().get());
+                    jsonSkill.put("learnability", skill.learnability().get());
+                    jsonSkills.put(jsonSkill);
+                }
+                jsonRole.put("skills", jsonSkills);
+                // Only a single role is held in memory at a time:
+                out.write(jsonRole);
             }
-            jsonRole.put("skills", jsonSkills);
-            json.put(jsonRole);
-        }
-        try (var out = new java.io.FileWriter(location)) {
-            out.write(json.toString(4));
         } catch (Exception e) {
             log.error("Failed to save 'role-types.json'!", e);
         }
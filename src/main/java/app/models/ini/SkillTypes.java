@@ -69,62 +69,45 @@ public class SkillTypes extends AbstractTypes
     @Override
     protected void loadFromLocation(String location, DataBase db)
     {
-        String jsonText = Util.readTextFile(location);
-        // We load the skill types from the json file into a json object.
-        var json = new org.json.JSONArray(jsonText);
-        // Let's check if the ability types we find are valid:
-        for (int i = 0; i < json.length(); i++)
-            checkJson(json.getJSONObject(i));
-
-        // We iterate over the skill types in the json object again and add them to the database.
-        for ( int i = 0; i < json.length(); i++ ) {
-            var newType = json.getJSONObject(i);
-            var name        = newType.getString("name");
-            var description = newType.getString("description");
-            var primAbility = newType.getString("primary ability");
-            var secAbility  = newType.getString("secondary ability");
-            var terAbility  = newType.getString("tertiary ability");
-
-            // First we check if the skill type already exists in the database:
-            var existingSkillType = db.select(SkillType.class)
-                                            .where(SkillType::name).is(name)
-                                            .first();
-
-            SkillType skillType;
-
-            if ( existingSkillType.isPresent() ) {
-                skillType = existingSkillType.get();
-                skillTypes.add(existingSkillType.get());
-                skillTypesByName.put(name, existingSkillType.get());
-            }
-            else
-                skillType = db.create(SkillType.class);
-
-            skillType.name().set(name);
-            skillType.description().set(description);
-            skillType.primaryAbility().set(primAbility);
-            skillType.secondaryAbility().set(secAbility);
-            skillType.tertiaryAbility().set(terAbility);
+        // We read the skill types from the json file one by one and collect them in a bulk import.
+        List<String> namesInOrder = new ArrayList<>();
+        var importer = db.bulkImport(SkillType.class, SkillType::name);
+        Util.forEachJsonObjectIn(location, newType -> {
+            // Let's check if the skill type we found is valid:
+            checkJson(newType);
+            var name = newType.getString("name");
+            namesInOrder.add(name);
+            importer.entry(name)
+                    .set(SkillType::description,      newType.getString("description"))
+                    .set(SkillType::primaryAbility,   newType.getString("primary ability"))
+                    .set(SkillType::secondaryAbility, newType.getString("secondary ability"))
+                    .set(SkillType::tertiaryAbility,  newType.getString("tertiary ability"));
+        });
+        // Only now that all skill types are valid, everything is written to the database in a single transaction.
+        // The imported models are returned in the order of their entries, so we already know their names:
+        Iterator<String> names = new LinkedHashSet<>(namesInOrder).iterator();
+        for ( SkillType skillType : importer.execute() ) {
             skillTypes.add(skillType);
-            skillTypesByName.put(name, skillType);
+            skillTypesByName.put(names.next(), skillType);
         }
     }
 
     @Override
     protected void saveAsJSONToWorkingDirectory(String location, DataBase db) {
-        var skillTypes = db.selectAll(SkillType.class);
-        var json = new org.json.JSONArray();
-        for ( var skillType : skillTypes ) {
-            var jsonSkillType = new org.json.JSONObject();
-            jsonSkillType.put("name",              skillType.name().get());
-            jsonSkillType.put("description",       skillType.description().get());
-            jsonSkillType.put("primary ability",   skillType.primaryAbility().get());
-            jsonSkillType.put("secondary ability", skillType.secondaryAbility().get());
-            jsonSkillType.put("tertiary ability",  skillType.tertiaryAbility().get());
-            json.put(jsonSkillType);
-        }
-        try ( var out = new java.io.PrintWriter(location) ) {
-            out.println(json.toString(4));
+        // The skill types are read through a database cursor and written one by one:
+        try (
+            var skillTypes = db.select(SkillType.class).stream();
+            var out = new JsonArrayWriter(new java.io.PrintWriter(location))
+        ) {
+            skillTypes.forEach( skillType -> {
+                var jsonSkillType = new org.json.JSONObject();
+                jsonSkillType.put("name",              skillType.name().get());
+                jsonSkillType.put("description",       skillType.description().get());
+                jsonSkillType.put("primary ability",   skillType.primaryAbility().get());
+                jsonSkillType.put("secondary ability", skillType.secondaryAbility().get());
+                jsonSkillType.put("tertiary ability",  skillType.tertiaryAbility().get());
+                out.write(jsonSkillType);
+            });
         } catch (Exception e) {
             throw new RuntimeException("Could not save " + location, e);
         }
@@ -1,7 +1,12 @@
 package app.models.ini;
 
-import java.io.File;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.function.Consumer;
 
 public class Util {
 
@@ -54,4 +59,53 @@ public class Util {
         }
     }
 
+    /**
+     * Reads the JSON array in the file at the given path element by element and passes every element
+     * to the given consumer, without ever reading the whole file or the whole array into memory.
+     * Just like {@link #readTextFile(String)} this method does not care if the file is in the resource
+     * folder or in the working directory.
+     *
+     * @param path The path to the file containing a JSON array of JSON objects.
+     * @param action The consumer receiving the elements of the array in the order of the file.
+     */
+    public static void forEachJsonObjectIn(String path, Consumer<JSONObject> action) {
+        try (Reader reader = openTextFile(path)) {
+            JSONTokener tokener = new JSONTokener(reader);
+            if (tokener.nextClean() != '[')
+                throw tokener.syntaxError("A JSON array text must start with '['");
+            if (tokener.nextClean() == ']')
+                return;
+            tokener.back();
+            while (true) {
+                Object element = tokener.nextValue();
+                if (!(element instanceof JSONObject))
+                    throw tokener.syntaxError("Expected a JSON object but found '" + element + "'");
+                action.accept((JSONObject) element);
+                char next = tokener.nextClean();
+                if (next == ']')
+                    return;
+                if (next != ',')
+                    throw tokener.syntaxError("Expected a ',' or ']'");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read file at path: " + path, e);
+        }
+    }
+
+    /**
+     * Opens a reader for the text file at the given path, which is either
+     * in the working directory or in the resource folder.
+     *
+     * @param path The path to the file.
+     * @return A buffered reader for the file, which has to be closed by the caller.
+     */
+    public static Reader openTextFile(String path) throws IOException {
+        if (new File(path).exists())
+            return Files.newBufferedReader(new File(path).toPath(), StandardCharsets.UTF_8);
+        var in = Util.class.getResourceAsStream(path);
+        if (in == null)
+            throw new FileNotFoundException("Could not find " + path);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
 }
@@ -2,6 +2,7 @@ package app.user;
 
 import app.AppContext;
 import app.models.Character;
+import app.models.World;
 import sprouts.Var;
 
 import java.util.Optional;
@@ -9,6 +10,7 @@ import java.util.Optional;
 public final class CharacterViewModel
 {
     private final AppContext context;
+    private final World world; // The world in which the character lives.
     private final Var<String> forename;
     private final Var<String> surname;
     private final Var<String> role;
@@ -19,8 +21,9 @@ public final class CharacterViewModel
     private final Var<String> image;
 
 
-    public CharacterViewModel(AppContext context) {
+    public CharacterViewModel(AppContext context, World world) {
         this.context = context;
+        this.world = world;
         this.forename     = Var.of("").withId("forename");
         this.surname      = Var.of("").withId("surname");
         this.role         = Var.of("").withId("role");
@@ -35,7 +38,10 @@ public final class CharacterViewModel
         if ( forename.get().isEmpty() || surname.get().isEmpty() ) {
             return Optional.empty();
         }
-        var character = this.context.db().create(Character.class);
+        // The character is stored in the database of its world, which is a file of its own if the worlds are sharded:
+        var db = this.context.db(world);
+        var character = db.create(Character.class);
+        character.world().set(db.select(World.class, world.id().get()));
         character.forename().set(forename.get());
         character.surname().set(surname.get());
         character.role().set(role.get());
@@ -44,6 +50,7 @@ public final class CharacterViewModel
         character.weight().set(weight.get());
         character.description().set(description.get());
         character.image().set(image.get());
+        this.context.charactersOf(world).add(character);
         return Optional.of(character);
     }
 
@@ -97,7 +97,7 @@ public class LoginViewModel implements Viewable
         if ( context.userExists(username.get()) ) {
             context.loginUser(username.get()).ifPresent(user -> {
                 if ( user.password().is(this.password) ) {
-                    contentViewModel.login(new UserContext(user));
+                    contentViewModel.login(new UserContext(context, user));
                     feedback.set("Login successful!");
                     feedbackColor.set(new Color(0,100,0));
                     textFieldsEnabled.set(false); // disable all text inputs after successful login
@@ -2,6 +2,7 @@ package app.user;
 
 import app.UserContext;
 import app.models.Character;
+import app.models.World;
 import sprouts.Vals;
 import sprouts.Var;
 import sprouts.Vars;
@@ -33,11 +34,36 @@ public class UserViewModel implements Viewable
     }
 
 
+    /**
+     *  Starts a new character in the provided world, which is created by {@link #characters()}
+     *  once its names are filled in.
+     *
+     * @param world The world in which the character lives.
+     * @return The view model of the new character.
+     */
+    public CharacterViewModel newCharacterIn( World world ) {
+        var character = new CharacterViewModel(user.app(), world);
+        characters.add(character);
+        return character;
+    }
+
+    /**
+     *  Creates the characters started through {@link #newCharacterIn(World)} whose names are filled in,
+     *  each in the database of its world, while the others stay pending.
+     *
+     * @return The characters which were created.
+     */
     public List<Character> characters() {
-        return characters.stream()
-                        .map(CharacterViewModel::createCharacter)
-                        .filter(Optional::isPresent).map(Optional::get)
-                        .toList();
+        List<Character> created = new ArrayList<>();
+        for ( var pending = characters.iterator(); pending.hasNext(); ) {
+            Optional<Character> character = pending.next().createCharacter();
+            if ( character.isPresent() ) {
+                pending.remove();
+                created.add(character.get());
+                characterNames.add(character.get().forename().get() + " " + character.get().surname().get());
+            }
+        }
+        return created;
     }
 
     public Vals<String> characterNames() { return characterNames; }
@@ -0,0 +1,22 @@
+package dal.api;
+
+import java.nio.file.Path;
+
+/**
+ *  Is told about the progress of a backup started through {@link DataBase#backupTo(Path, BackupProgress)}.
+ *  Note that this is called on the thread making the copy, which is only a thread of the database
+ *  if the database lives in memory.
+ */
+@FunctionalInterface
+public interface BackupProgress
+{
+    /**
+     *  Is called whenever the backup reports its progress, and once more when it is complete.
+     *  The SQLite driver copies the database in a single step, so in practice
+     *  this is only called once, with all pages copied.
+     *
+     * @param copiedPages The number of pages copied so far.
+     * @param totalPages The number of pages of the database.
+     */
+    void update( int copiedPages, int totalPages );
+}
@@ -0,0 +1,105 @@
+package dal.api;
+
+import sprouts.Val;
+import sprouts.Vals;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ *  A bulk import is used to write many models into the database at once,
+ *  which is a lot faster than creating models one by one and setting their properties,
+ *  because every property update of a regular model is an SQL statement of its own.
+ *  <p>
+ *  Every entry of a bulk import is identified by a key, which is the value of a property
+ *  that is unique among all rows of the table (like a name).
+ *  When the import is executed, the existing rows are resolved by their keys
+ *  using a single query per table. Missing rows are inserted, existing rows are updated,
+ *  and all statements are executed in batches inside a single transaction.
+ *  <p>
+ *  <b>Example:</b>
+ *  <pre>{@code
+ *      var foods = db.bulkImport(Food.class, Food::name);
+ *      foods.entry("Tofu").set(Food::calories, 76);
+ *      foods.entry("Rice").set(Food::calories, 130);
+ *      List<Food> imported = foods.execute();
+ *  }</pre>
+ *  <p>
+ *  <b>Important:</b> Just like in the query API, do not use lambda expressions for selecting properties,
+ *  use method references instead.
+ *
+ * @param <M> The type of the model to import.
+ */
+public interface BulkImport<M extends Model<M>>
+{
+    /**
+     *  Returns the entry for the provided key, which is created if it does not exist yet.
+     *  Calling this multiple times with the same key returns the same entry.
+     *
+     * @param key The value of the key property identifying the row in the table.
+     * @return The entry whose properties should be imported.
+     */
+    Entry<M> entry( Object key );
+
+    /**
+     *  Writes all entries (and their children) to the database in a single transaction.
+     *  If anything fails, nothing is written and an exception is thrown.
+     *
+     * @return The imported models in the order in which their entries were added.
+     */
+    List<M> execute();
+
+    /**
+     *  A single row of a bulk import, which collects the property values to be written.
+     *
+     * @param <M> The type of the model of the row.
+     */
+    interface Entry<M extends Model<M>>
+    {
+        /**
+         *  Sets the value of a property, which is written no matter
+         *  if the row already exists or has to be inserted.
+         *
+         * @param selector A method reference selecting the property.
+         * @param value The value to write, which may also be another model.
+         * @return This entry, for method chaining.
+         * @param <T> The type of the property value.
+         */
+        <T> Entry<M> set( Function<M, Val<T>> selector, T value );
+
+        /**
+         *  Sets the value of a property only if the row does not exist yet,
+         *  so that existing rows keep their current value.
+         *
+         * @param selector A method reference selecting the property.
+         * @param value The value to write when the row is inserted.
+         * @return This entry, for method chaining.
+         * @param <T> The type of the property value.
+         */
+        <T> Entry<M> setOnInsert( Function<M, Val<T>> selector, T value );
+
+        /**
+         *  Returns the entry of a model inside a list property of this entry.
+         *  The child is identified by the value of one of its properties, which only has to be unique
+         *  within the list of this entry. If no such child exists in the list, then it is
+         *  created and added to the list when the import is executed.
+         *  <pre>{@code
+         *      role.child(Role::skills, Skill.class, Skill::type, swimming).set(Skill::level, 3);
+         *  }</pre>
+         *
+         * @param list A method reference selecting the list property of this entry.
+         * @param childType The model type of the list elements.
+         * @param key A method reference selecting the property identifying the child within the list.
+         * @param keyValue The value of the key property of the child.
+         * @return The entry of the child.
+         * @param <C> The model type of the child.
+         * @param <K> The type of the key property of the child.
+         */
+        <C extends Model<C>, K> Entry<C> child(
+                Function<M, Vals<C>> list,
+                Class<C> childType,
+                Function<C, Val<K>> key,
+                K keyValue
+        );
+    }
+}
@@ -0,0 +1,22 @@
+package dal.api;
+
+/**
+ *  A snapshot of the counters of a cache of the {@link DataBase},
+ *  which tells you how well the cache works for the queries of your application.
+ *
+ * @param hits The number of lookups which were answered by the cache.
+ * @param misses The number of lookups which had to be answered by the database.
+ * @param invalidations The number of entries which were dropped because the data they were read from changed.
+ * @param evictions The number of entries which were dropped to make room for new ones.
+ * @param size The number of entries currently in the cache.
+ */
+public record CacheStats( long hits, long misses, long invalidations, long evictions, int size )
+{
+    /**
+     * @return The fraction of lookups which were answered by the cache, or 0 if there were no lookups.
+     */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -3,6 +3,7 @@ package dal.api;
 import sprouts.Val;
 
 import java.util.List;
+import java.util.function.Function;
 
 /**
  *   A step in the fluent query builder API of the {@link DataBase}
@@ -13,6 +14,25 @@ import java.util.List;
  */
 public interface Compare<M extends Model<M>, T>
 {
+    /**
+     *  If the selected field is a reference to another model, this selects a property
+     *  of the referenced model instead, so that the models can be filtered
+     *  by the properties of the models they reference:
+     *  <pre>{@code
+     *    db.select(Character.class)
+     *      .where(Character::world).then(World::name).is("Eldor")
+     *      .asList();
+     *  }</pre>
+     *  The database joins the referenced table on the foreign key,
+     *  so this is a single query no matter how long the path is.
+     *
+     * @param selector A method reference selecting a property of the referenced model.
+     * @return The comparison step for the property of the referenced model.
+     * @param <U> The type of the property of the referenced model.
+     * @throws IllegalArgumentException If the selected field does not reference another model.
+     */
+    <U> Compare<M, U> then( Function<T, Val<U>> selector );
+
     /**
      *  Checks if the selected field is equal to the given value.
      *
@@ -81,6 +101,20 @@ public interface Compare<M extends Model<M>, T>
      */
     default Junction<M> notLike( Val<T> value ) { return notLike(value.get()); }
 
+    /**
+     *  Checks if the selected text field contains words starting with all the words of the given search text,
+     *  using the full-text index of the field, which requires the property to be annotated
+     *  with {@link Searchable}. So the search text "fire ba" matches "Fireball Basics", but not "Backfire".
+     *  Unlike {@link #like(Object)}, this does not scan the entire table.
+     *  If the result of the query is not explicitly ordered, the best matches come first.
+     *  A blank search text matches every model.
+     *
+     * @param searchText The words to search for, where every word is treated as the start of a word.
+     * @return A {@link Junction} object which allows to define a chain of boolean operations
+     * @throws IllegalArgumentException If the selected field is not {@link Searchable}.
+     */
+    Junction<M> matches( String searchText );
+
     /**
      *  Checks if the selected field is within the provided array of arguments.
      *
@@ -1,9 +1,18 @@
 package dal.api;
 
+import dal.impl.ColumnarDataBase;
 import dal.impl.SQLiteDataBase;
+import sprouts.Val;
 
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  *  This is the most important interface of the Topsoil ORM API which defines
@@ -63,14 +72,7 @@ public interface DataBase
      * @param path The path to the database file.
      * @return A new {@link DataBase} instance.
      */
-    static DataBase at( String path ) {
-        var mainThread = Thread.currentThread();
-        return at(path, new DataBaseProcessor() {
-            @Override public void process(Runnable task) { task.run(); }
-            @Override public void processNow(Runnable task) { task.run(); }
-            @Override public List<Thread> getThreads() { return List.of(mainThread); }
-        });
-    }
+    static DataBase at( String path ) { return at(path, _processorForCurrentThread()); }
 
 
     static DataBase at( String path, DataBaseProcessor processor ) {
@@ -78,6 +80,46 @@ public interface DataBase
         return new SQLiteDataBase(path, processor);
     }
 
+    /**
+     * Creates a new {@link DataBase} instance representing an empty database
+     * which only lives in memory, until it is closed.
+     * This is much faster than a database in a file, so it is useful for tests
+     * and for sessions whose data is saved to a file only from time to time,
+     * see {@link #saveTo(Path)} and {@link #loadFrom(Path)}.
+     *
+     * @return A new {@link DataBase} instance.
+     */
+    static DataBase inMemory() { return inMemory(_processorForCurrentThread()); }
+
+    static DataBase inMemory( DataBaseProcessor processor ) {
+        Objects.requireNonNull(processor);
+        return SQLiteDataBase.inMemory(processor);
+    }
+
+    /**
+     * Creates a new {@link DataBase} instance which keeps its tables in memory
+     * as columns of primitive arrays instead of using SQLite.
+     * Reading and querying models does not involve any SQL or JDBC at all,
+     * which makes it the fastest choice for game state that only lives in memory,
+     * but everything based on SQL (like {@link #execute(String)}) is not supported.
+     * The database is not synchronized, so it must only be used by a single thread.
+     *
+     * @return A new, empty columnar {@link DataBase} instance.
+     */
+    static DataBase columnar() { return new ColumnarDataBase(); }
+
+    /**
+     *  The processor of databases which are only accessed by the thread creating them.
+     */
+    private static DataBaseProcessor _processorForCurrentThread() {
+        var mainThread = Thread.currentThread();
+        return new DataBaseProcessor() {
+            @Override public void process(Runnable task) { task.run(); }
+            @Override public void processNow(Runnable task) { task.run(); }
+            @Override public List<Thread> getThreads() { return List.of(mainThread); }
+        };
+    }
+
 
     /**
      *  Creates tables for the specified model types.
@@ -87,6 +129,37 @@ public interface DataBase
      */
     void createTablesFor( Class<? extends Model<?>>... models );
 
+    /**
+     *  Attaches the database in the provided file to this database under the provided schema name,
+     *  so that the tables of the provided model types are read from and written to the attached database,
+     *  which owns them (this database neither creates nor migrates them).
+     *  The other models of this database can reference them like any other model,
+     *  which lets you split your models across several files, like a catalog shared by many
+     *  databases holding the data of a single world, project or customer each:
+     *  <pre>{@code
+     *    DataBase world = DataBase.at("saves/worlds/world-1.db");
+     *    world.attach("catalog", Path.of("saves/tribalism.db"), User.class);
+     *    world.createTablesFor(Player.class, User.class); // Only the table of the players is created here.
+     *  }</pre>
+     *  The lists of the attached model types are stored in the attached database as well,
+     *  unless they hold models which are not attached, which are stored in this database next to the models they hold.
+     *  So a model of the attached database may have lists which differ from database to database.
+     *  The attachment applies to all current and future connections of this database.
+     *  Note that a model type has to be attached before its tables are created.
+     *
+     * @param schema The name under which the database is attached, which must be a valid SQL identifier.
+     * @param file The file of the database to attach.
+     * @param models The model types whose tables are in the attached database.
+     */
+    void attach( String schema, Path file, Class<? extends Model<?>>... models );
+
+    /**
+     *  Detaches a database attached through {@link #attach(String, Path, Class[])}.
+     *
+     * @param schema The name under which the database was attached.
+     */
+    void detach( String schema );
+
     /**
      *  Drops all tables corresponding to the provided model types.
      *
@@ -118,6 +191,131 @@ public interface DataBase
 
     String sqlCodeOfTable( Class<? extends Model<?>> model );
 
+    /**
+     *  Reads a value from the metadata of the database, which is a simple
+     *  key-value store living alongside the model tables.
+     *  It is useful for remembering things about the database itself,
+     *  like fingerprints of files which were already verified against the database.
+     *
+     * @param key The key of the metadata entry.
+     * @return The value stored for the key, or an empty optional if there is none.
+     */
+    Optional<String> readMetadata( String key );
+
+    /**
+     *  Writes a value to the metadata of the database, replacing any existing value for the key.
+     *  Note that the metadata is dropped together with all tables by {@link #dropAllTables()}.
+     *
+     * @param key The key of the metadata entry.
+     * @param value The value to store for the key.
+     */
+    void writeMetadata( String key, String value );
+
+    /**
+     *  Computes the fingerprint of a text, which is the hex encoded SHA-256 digest of its UTF-8 bytes.
+     *  The database fingerprints the SQL code of its tables this way, and the fingerprints of files
+     *  can be stored through {@link #writeMetadata(String, String)} to find out if they changed.
+     *
+     * @param text The text to create a fingerprint for.
+     * @return The hex encoded SHA-256 digest of the text.
+     */
+    static String fingerprintOf( String text ) {
+        try {
+            byte[] hash = java.security.MessageDigest.getInstance("SHA-256")
+                                    .digest(text.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for ( byte b : hash ) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch ( java.security.NoSuchAlgorithmException e ) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     *  Enables (or resizes) a cache for the results of the queries built through {@link #select(Class)}
+     *  and of {@link #selectAll(Class)}, which is useful for read-mostly lookups that
+     *  are repeated over and over again with the same parameters:
+     *  <pre>{@code
+     *    db.enableQueryCache(256);
+     *  }</pre>
+     *  A cached result is only used as long as none of the tables it was read from has been
+     *  written to, so the results of queries never change because of the cache.
+     *  The cache is disabled by default.
+     *
+     * @param capacity The maximum number of cached results, where 0 disables the cache.
+     * @throws IllegalArgumentException If the capacity is negative.
+     */
+    void enableQueryCache( int capacity );
+
+    /**
+     * @return The hits, misses and other counters of the query cache enabled through {@link #enableQueryCache(int)}.
+     */
+    CacheStats queryCacheStats();
+
+    /**
+     *  Enables (or resizes) a cache for the rows behind the properties of models,
+     *  which is shared by all models of the database, so that reading the properties
+     *  of frequently used models does not hit the database over and over again:
+     *  <pre>{@code
+     *    db.enableRowCache(10_000);
+     *  }</pre>
+     *  A row is cached entirely the first time one of its properties is read.
+     *  Once the cache is full, it keeps the rows which are read most frequently,
+     *  so a single pass over many rows does not push out the rows which are used all the time.
+     *  Every write through this database (including {@link #execute(String)}) drops the rows
+     *  it may have changed from the cache, so that they are read again the next time.
+     *  Writes from other processes sharing the same database file are not noticed by the cache.
+     *  The cache is disabled by default.
+     *
+     * @param capacity The maximum number of cached rows, where 0 disables the cache.
+     * @throws IllegalArgumentException If the capacity is negative.
+     */
+    void enableRowCache( int capacity );
+
+    /**
+     * @return The hits, misses and other counters of the row cache enabled through {@link #enableRowCache(int)}.
+     */
+    CacheStats rowCacheStats();
+
+    /**
+     *  Returns what the database did since it was opened (or since {@link #resetMetrics()} was called),
+     *  which is the number of executions, rows and latencies of every kind of SQL statement
+     *  (where statements differing only in their values are of the same kind),
+     *  as well as the counters of the query cache and of the connections.
+     *  Use this to find out which parts of your application cause many or slow queries.
+     *
+     * @return A snapshot of the performance counters of the database.
+     */
+    DataBaseMetrics metrics();
+
+    /**
+     *  Resets the statement counters of the {@link #metrics()}.
+     */
+    void resetMetrics();
+
+    /**
+     *  Starts logging every statement whose execution takes longer than the given threshold,
+     *  together with its values, its query plan and the code which executed it,
+     *  so that you can find out why it is slow.
+     *  Only the most recent slow statements are kept, see {@link #slowStatements()}.
+     *  Slow statements are not logged by default.
+     *
+     * @param threshold The duration above which a statement is logged, or null to stop logging.
+     * @throws IllegalArgumentException If the threshold is negative.
+     */
+    void logSlowStatements( Duration threshold );
+
+    /**
+     * @return The most recent statements which took longer than the threshold set
+     *         through {@link #logSlowStatements(Duration)}, the most recent first.
+     */
+    List<SlowStatement> slowStatements();
+
+    /**
+     *  Forgets the statements logged as {@link #slowStatements()} so far.
+     */
+    void clearSlowStatements();
+
     <M extends Model<M>> M create( Class<M> model );
 
     <T extends Model<T>> T select( Class<T> model, int id );
@@ -150,6 +348,132 @@ public interface DataBase
      */
     <M extends Model<M>> Where<M> select( Class<M> model );
 
+    /**
+     *  Opens a {@link BulkImport} for writing many models of the same type at once,
+     *  which is much faster than creating them one by one, because all rows are resolved,
+     *  inserted and updated in batches inside a single transaction.
+     *  Here is an example:
+     *  <pre>{@code
+     *    var users = db.bulkImport(User.class, User::name);
+     *    users.entry("John").set(User::age, 42);
+     *    users.entry("Jane").set(User::age, 24);
+     *    List<User> imported = users.execute();
+     * }</pre>
+     * @param model The model type class used to find the table in the database.
+     * @param key A method reference selecting the property which uniquely identifies a row (like a name).
+     * @return A {@link BulkImport} which collects the entries to be written.
+     * @param <M> The type of the model to import.
+     * @param <K> The type of the key property.
+     */
+    <M extends Model<M>, K> BulkImport<M> bulkImport( Class<M> model, Function<M, Val<K>> key );
+
+    /**
+     *  Writes the rows of all registered model tables (including the tables of list properties)
+     *  to the provided writer in the NDJSON format, which means one JSON object per line.
+     *  The rows are read through a database cursor and written one by one,
+     *  so this works in constant memory no matter how large the database is.
+     *
+     * @param out The writer to which the rows are written, it is flushed but not closed.
+     */
+    void dumpTo( Writer out );
+
+    /**
+     *  Replaces the rows of all registered model tables with the rows read from the provided reader,
+     *  which is expected to provide the NDJSON format written by {@link #dumpTo(Writer)}.
+     *  The lines are read one by one and inserted in batches inside a single transaction,
+     *  so if anything goes wrong, the database remains unchanged.
+     *
+     * @param in The reader from which the rows are read, it is not closed.
+     */
+    void restoreFrom( Reader in );
+
+    /**
+     *  Copies the entire database into the provided file in the background, while the database is in use.
+     *  The copy is made on a connection of its own through the backup API of SQLite, in a single step,
+     *  so it is consistent, but it holds a read lock on the database until it is complete.
+     *  Writes which have to wait for that lock are retried by SQLite for a while,
+     *  so for a large database a backup may delay (or fail) the writes made while it runs.
+     *  Likewise, a backup which is started while a write is in progress waits for it to complete.
+     *  An in-memory database is copied by its own thread through its own connection instead (like {@link #saveTo(Path)}),
+     *  which is quick, because the pages are copied from memory, and never conflicts with the writes of the database.
+     *  The file is only replaced once the copy is complete, so a failed backup never destroys an older one.
+     *  <p>
+     *  This is the safe way of copying a database file which is in use:
+     *  <pre>{@code
+     *    db.backupTo(Path.of("backups/save.db"), (copied, total) -> System.out.println(copied + "/" + total))
+     *      .thenAccept( file -> System.out.println("Backed up to " + file) );
+     *  }</pre>
+     *
+     * @param file The file to which the database is copied.
+     * @param progress Is told about the progress of the backup, on the thread making the copy.
+     * @return A future which completes with the absolute path of the backup once it is complete,
+     *         or exceptionally if the backup failed.
+     */
+    CompletableFuture<Path> backupTo( Path file, BackupProgress progress );
+
+    default CompletableFuture<Path> backupTo( Path file ) { return backupTo(file, (copied, total) -> {}); }
+
+    /**
+     *  Keeps the file of this database in shape while it is in use, which is worth it
+     *  for a database which is used for a long time, like the save file of a running game:
+     *  <pre>{@code
+     *    db.enableMaintenance();
+     *  }</pre>
+     *  The database is switched to write-ahead logging mode, in which readers and the writer do not block each other,
+     *  and is maintained in the background from then on:
+     *  the write-ahead log is checkpointed regularly, and while nothing is written to the database,
+     *  the statistics of the query planner are updated and free pages are given back to the file system in small steps.
+     *  Free pages can only be given back in steps if the database had no tables when its maintenance was first enabled.
+     *  The maintenance is disabled by default, and does nothing for in-memory databases.
+     */
+    void enableMaintenance();
+
+    /**
+     *  This tells you what the maintenance enabled through {@link #enableMaintenance()} did recently,
+     *  which is empty if it is not enabled or the database lives in memory.
+     *
+     * @return The recent activity of the background maintenance, the most recent first.
+     */
+    List<MaintenanceActivity> maintenanceActivity();
+
+    /**
+     *  Runs all maintenance tasks (see {@link #maintenanceActivity()}) right away on the calling thread,
+     *  as if the database was idle, which is useful before closing or backing up a database.
+     *  This does nothing unless the maintenance is enabled, see {@link #enableMaintenance()}.
+     *
+     * @return What the maintenance did, which is also added to the {@link #maintenanceActivity()}.
+     */
+    List<MaintenanceActivity> runMaintenance();
+
+    /**
+     * @return True if this database only lives in memory, see {@link #inMemory()}.
+     */
+    boolean isInMemory();
+
+    /**
+     *  Copies the entire database into the provided file while it is in use,
+     *  which replaces the file if it already exists.
+     *  The copy is a consistent snapshot, which can be opened through {@link #at(String)}
+     *  or loaded through {@link #loadFrom(Path)}.
+     *  This is how an in-memory database is persisted.
+     *
+     * @param file The file to which the database is copied.
+     * @throws IllegalStateException If the database could not be copied.
+     */
+    void saveTo( Path file );
+
+    /**
+     *  Replaces the entire content of this database with the content of the provided database file,
+     *  which was for example written by {@link #saveTo(Path)}.
+     *  If the file was written by an older version of your models,
+     *  call {@link #createTablesFor(Class[])} afterwards to migrate the tables.
+     *
+     * @param file The database file to load.
+     * @throws IllegalArgumentException If the file does not exist.
+     * @throws IllegalStateException If the database could not be loaded.
+     */
+    void loadFrom( Path file );
+
     /**
      *  Closes the database connection.
      */
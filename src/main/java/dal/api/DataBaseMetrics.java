@@ -0,0 +1,26 @@
+package dal.api;
+
+import java.util.List;
+
+/**
+ *  A snapshot of what the {@link DataBase} did since it was opened (or since its metrics were reset),
+ *  which is useful to find out which parts of an application cause many or slow database operations.
+ *
+ * @param statements The counters of every kind of executed statement, the most time consuming first.
+ * @param queryCache The counters of the query cache, see {@link DataBase#enableQueryCache(int)}.
+ * @param openConnections The number of currently open connections to the database.
+ * @param openedConnections The number of connections which were opened in total.
+ */
+public record DataBaseMetrics(
+    List<StatementStats> statements,
+    CacheStats queryCache,
+    int openConnections,
+    long openedConnections
+) {
+    /**
+     * @return The number of executed statements in total.
+     */
+    public long calls() {
+        return statements.stream().mapToLong(StatementStats::calls).sum();
+    }
+}
@@ -0,0 +1,69 @@
+package dal.api;
+
+import sprouts.Val;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ *  The last step of an aggregate query, which groups the models matching the query
+ *  by the value of a property and computes a single value for each group.
+ *  A grouped query is created through {@link Query#groupBy(Function)}:
+ *  <pre>{@code
+ *      Map<Role, Double> averageHeights = db.select(Character.class)
+ *                                           .groupBy(Character::role)
+ *                                           .avg(Character::height);
+ *  }</pre>
+ *  The aggregate is computed by the database in a single statement, so no model is loaded.
+ *  The returned maps are ordered by their keys, and they contain no entries for empty groups.
+ *  If the grouping property is a reference to another model, the keys are the referenced models.
+ *
+ * @param <M> The type of the model to query.
+ * @param <K> The type of the property by which the models are grouped.
+ */
+public interface Grouped<M extends Model<M>, K>
+{
+    /**
+     *  Counts the models of every group.
+     *
+     * @return A map from the group keys to the number of models in the group.
+     */
+    Map<K, Integer> count();
+
+    /**
+     *  Computes the sum of a numeric property for every group.
+     *
+     * @param selector A method reference selecting the property to sum up.
+     * @return A map from the group keys to the sum of the property values in the group.
+     * @param <N> The type of the property value.
+     */
+    <N extends Number> Map<K, Double> sum( Function<M, Val<N>> selector );
+
+    /**
+     *  Computes the average of a numeric property for every group.
+     *  Null values are ignored, so if all values of a group are null, its average is null as well.
+     *
+     * @param selector A method reference selecting the property to average.
+     * @return A map from the group keys to the average of the property values in the group.
+     * @param <N> The type of the property value.
+     */
+    <N extends Number> Map<K, Double> avg( Function<M, Val<N>> selector );
+
+    /**
+     *  Finds the smallest value of a property for every group.
+     *
+     * @param selector A method reference selecting the property.
+     * @return A map from the group keys to the smallest property value in the group.
+     * @param <T> The type of the property value.
+     */
+    <T> Map<K, T> min( Function<M, Val<T>> selector );
+
+    /**
+     *  Finds the largest value of a property for every group.
+     *
+     * @param selector A method reference selecting the property.
+     * @return A map from the group keys to the largest property value in the group.
+     * @param <T> The type of the property value.
+     */
+    <T> Map<K, T> max( Function<M, Val<T>> selector );
+}
@@ -69,37 +69,51 @@ public interface Junction<M extends Model<M>> extends Query<M>
     /**
      *  Finished the where clause and defines that the query result should be
      *  sorted in ascending order by the specified field.
+     *  The property may be of any comparable type, like numbers, strings, booleans
+     *  or other models (which are sorted by their id).
      *
      * @param selector The selector defining by which property the result should be sorted in ascending order.
-     * @return The final fluent builder API which defines how the result should be returned.
+     * @return The next step in the fluent builder API, which allows for more sort keys and pagination.
+     * @param <T> The type of the property.
      */
-    <N extends Number> Query<M> orderAscendingBy( Function<M, Val<N>> selector );
+    <T> Ordered<M> orderBy( Function<M, Val<T>> selector );
+
+    /**
+     *  Finished the where clause and defines that the query result should be
+     *  sorted in ascending order by the specified field.
+     *
+     * @param selector The selector defining by which property the result should be sorted in ascending order.
+     * @return The next step in the fluent builder API, which allows for more sort keys and pagination.
+     * @param <T> The type of the property.
+     */
+    <T> Ordered<M> orderAscendingBy( Function<M, Val<T>> selector );
 
     /**
      *  Finished the where clause and defines that the query result should be
      *  sorted in descending order by the specified field.
      *
      * @param selector The selector defining by which property the result should be sorted in descending order.
-     * @return The final fluent builder API which defines how the result should be returned.
+     * @return The next step in the fluent builder API, which allows for more sort keys and pagination.
+     * @param <T> The type of the property.
      */
-    <N extends Number> Query<M> orderDescendingBy( Function<M, Val<N>> selector );
+    <T> Ordered<M> orderDescendingBy( Function<M, Val<T>> selector );
 
     /**
      *  Finished the where clause and defines that the query result should be
      *  sorted in ascending order by the specified field.
      *
      * @param field The field by which the result should be sorted in ascending order.
-     * @return The final fluent builder API which defines how the result should be returned.
+     * @return The next step in the fluent builder API, which allows for more sort keys and pagination.
      */
-    Query<M> orderAscendingBy( Class<? extends Val<?>> field );
+    Ordered<M> orderAscendingBy( Class<? extends Val<?>> field );
 
     /**
      *  Finished the where clause and defines that the query result should be
      *  sorted in descending order by the specified field.
      *
      * @param field The field by which the result should be sorted in descending order.
-     * @return The final fluent builder API which defines how the result should be returned.
+     * @return The next step in the fluent builder API, which allows for more sort keys and pagination.
      */
-    Query<M> orderDescendingBy( Class<? extends Val<?>> field );
+    Ordered<M> orderDescendingBy( Class<? extends Val<?>> field );
 
 }
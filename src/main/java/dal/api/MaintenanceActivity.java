@@ -0,0 +1,22 @@
+package dal.api;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ *  Something the background maintenance of the {@link DataBase} did to its storage,
+ *  like checkpointing the write-ahead log, updating the statistics of the query planner
+ *  or giving free pages back to the file system.
+ *  See {@link DataBase#maintenanceActivity()}.
+ *
+ * @param time The time at which the task finished.
+ * @param task The name of the task, like "checkpoint", "analyze" or "incremental vacuum".
+ * @param duration The time the task took.
+ * @param outcome A short description of what the task did, or why it failed.
+ */
+public record MaintenanceActivity(
+    Instant time,
+    String task,
+    Duration duration,
+    String outcome
+) {}
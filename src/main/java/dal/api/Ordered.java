@@ -0,0 +1,68 @@
+package dal.api;
+
+import sprouts.Val;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ *  A step in the fluent query builder API of the {@link DataBase}
+ *  which defines the order of the query result and allows for
+ *  fast keyset pagination through the {@link #after(Model)} and {@link #page(int)} methods.
+ *  <p>
+ *  <b>Example:</b>
+ *  <pre>{@code
+ *      List<Character> page = db.select(Character.class)
+ *                               .orderBy(Character::surname)
+ *                               .thenBy(Character::forename)
+ *                               .after(lastSeen)
+ *                               .page(50);
+ *  }</pre>
+ *  The id of the models is always used as the last sort key, so that the order is unique
+ *  and no model is skipped or returned twice when paging through the result.
+ *  Unlike an offset, which requires the database to step over all skipped rows,
+ *  the keyset condition lets the database jump straight to the next page,
+ *  so page 1000 is as fast to load as page 1.
+ *
+ * @param <M> The type of the model to query.
+ */
+public interface Ordered<M extends Model<M>> extends Query<M>
+{
+    /**
+     *  Adds another property by which the result should be sorted in ascending order,
+     *  if the models are equal with respect to all previous sort keys.
+     *
+     * @param selector A method reference selecting the property to sort by.
+     * @return This query with the additional sort key.
+     * @param <T> The type of the property.
+     */
+    <T> Ordered<M> thenBy( Function<M, Val<T>> selector );
+
+    /**
+     *  Adds another property by which the result should be sorted in descending order,
+     *  if the models are equal with respect to all previous sort keys.
+     *
+     * @param selector A method reference selecting the property to sort by.
+     * @return This query with the additional sort key.
+     * @param <T> The type of the property.
+     */
+    <T> Ordered<M> thenDescendingBy( Function<M, Val<T>> selector );
+
+    /**
+     *  Restricts the result to the models which come after the provided model
+     *  with respect to the order of this query, which is typically the last model of the previous page.
+     *
+     * @param lastSeen The model after which the result should start.
+     * @return This query, restricted to the models after the provided one.
+     */
+    Ordered<M> after( M lastSeen );
+
+    /**
+     *  Returns at most the provided number of models from the start of the ordered result.
+     *  In combination with {@link #after(Model)} this is used to load the next page of a large table.
+     *
+     * @param size The maximum number of models to return.
+     * @return The models of the page.
+     */
+    List<M> page( int size );
+}
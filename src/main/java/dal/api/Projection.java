@@ -0,0 +1,57 @@
+package dal.api;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ *  The last step of a projection query, which selects only some of the columns
+ *  of a model table instead of entire models.
+ *  A projection is created through one of the {@code project(..)} methods of a {@link Query}:
+ *  <pre>{@code
+ *      List<String> names = db.select(AbilityType.class).project(AbilityType::name).asList();
+ *  }</pre>
+ *  The items of a projection are plain detached values, like strings, numbers or records,
+ *  which are read in a single query.
+ *  So unlike models they do not reflect later changes to the database,
+ *  and reading them does not cause any further queries.
+ *
+ * @param <T> The type of the items of the projection.
+ */
+public interface Projection<T>
+{
+    /**
+     *  Returns the result of the projection as a list.
+     *
+     * @return The projected values of all models matching the query.
+     */
+    List<T> asList();
+
+    /**
+     *  Returns the result of the projection as a set, which removes duplicates
+     *  but keeps the order of the query.
+     *  Note that the set may contain null, for example if the projected property is an unset foreign key.
+     *
+     * @return The distinct projected values of all models matching the query.
+     */
+    default Set<T> asSet() { return Collections.unmodifiableSet(new LinkedHashSet<>(asList())); }
+
+    /**
+     *  Returns the result of the projection as a lazy stream, which is read from
+     *  a database cursor while it is consumed, see {@link Query#stream()}.
+     *
+     * @return The projected values as a lazy stream.
+     */
+    default Stream<T> stream() { return asList().stream(); }
+
+    /**
+     *  Returns the first item of the projection or an empty {@link Optional}
+     *  if no model matches the query.
+     *
+     * @return The first projected value wrapped in an {@link Optional}.
+     */
+    default Optional<T> first() { return asList().stream().findFirst(); }
+}
@@ -1,8 +1,15 @@
 package dal.api;
 
+import sprouts.Val;
+import sprouts.Vars;
+
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  *  The last step in the fluent query builder API of the {@link DataBase}
@@ -35,6 +42,139 @@ public interface Query<M extends Model<M>>
      */
     default Set<M> asSet() { return Set.copyOf(asList()); }
 
+    /**
+     *  Returns the result of the query as a lazy stream of models, which are read from
+     *  a database cursor one by one while the stream is consumed.
+     *  Use this instead of {@link #asList()} to process very large results in constant memory.
+     *  The stream has to be consumed on the database thread, and it should be closed
+     *  if it is not consumed entirely, so that the cursor is released:
+     *  <pre>{@code
+     *    try ( Stream<Food> foods = db.select(Food.class).stream() ) {
+     *        foods.forEach( food -> ... );
+     *    }
+     *  }</pre>
+     *
+     * @return The result of the query as a lazy stream of models.
+     */
+    default Stream<M> stream() { return asList().stream(); }
+
+    /**
+     *  Returns the result of the query as a live list of models, which is kept up-to-date
+     *  by the database while models are created, changed and deleted,
+     *  so that it can be observed instead of querying the database over and over again:
+     *  <pre>{@code
+     *    Vars<Food> cheapFoods = db.select(Food.class).where(Food::price).lessThan(5).asLiveVars();
+     *    cheapFoods.onChange( it -> ... );
+     *  }</pre>
+     *  After a change, only the affected models are checked against the query and added to
+     *  or removed from the list, unless the query is explicitly ordered or reads from the tables
+     *  of referenced models, in which case the query is executed again and only the difference is applied.
+     *  The list is updated on the database thread, and the database stops updating it
+     *  once it is no longer referenced anywhere else.
+     *
+     * @return A list of the models matching the query, which is kept up-to-date.
+     */
+    Vars<M> asLiveVars();
+
+    /**
+     *  Instead of returning models, this returns only the values of a single property
+     *  of the models matching the query, which are read with a single query:
+     *  <pre>{@code
+     *    List<String> names = db.select(Food.class).project(Food::name).asList();
+     *  }</pre>
+     *
+     * @param selector A method reference selecting the property to project.
+     * @return A projection of the property values.
+     * @param <T> The type of the property value.
+     */
+    <T> Projection<T> project( Function<M, Val<T>> selector );
+
+    /**
+     *  Returns only the values of two properties of the models matching the query,
+     *  which are combined into a single item by the provided function.
+     *  This is useful to read pairs of values, like a name and a description:
+     *  <pre>{@code
+     *    List<Entry> entries = db.select(Food.class)
+     *                            .project(Food::name, Food::calories, Entry::new)
+     *                            .asList();
+     *  }</pre>
+     *
+     * @param first A method reference selecting the first property.
+     * @param second A method reference selecting the second property.
+     * @param combiner A function combining the values of the properties into a single item.
+     * @return A projection of the combined property values.
+     * @param <A> The type of the first property value.
+     * @param <B> The type of the second property value.
+     * @param <R> The type of the combined item.
+     */
+    <A, B, R> Projection<R> project( Function<M, Val<A>> first, Function<M, Val<B>> second, BiFunction<A, B, R> combiner );
+
+    /**
+     *  Returns the values of several properties of the models matching the query as records,
+     *  where every component of the record is filled with the value of the property
+     *  of the same name:
+     *  <pre>{@code
+     *    record FoodInfo(String name, double calories) {}
+     *    List<FoodInfo> infos = db.select(Food.class).project(FoodInfo.class).asList();
+     *  }</pre>
+     *
+     * @param recordType The type of the record whose components define the properties to project.
+     * @return A projection of the property values as records.
+     * @param <R> The type of the record.
+     */
+    <R extends Record> Projection<R> project( Class<R> recordType );
+
+    /**
+     *  Groups the models matching the query by the value of the provided property,
+     *  so that an aggregate can be computed for every group in a single statement:
+     *  <pre>{@code
+     *    Map<String, Integer> foodsPerName = db.select(Food.class).groupBy(Food::name).count();
+     *  }</pre>
+     *
+     * @param selector A method reference selecting the property to group by.
+     * @return The next step of the aggregate query, which defines the aggregate to compute.
+     * @param <K> The type of the property value to group by.
+     */
+    <K> Grouped<M, K> groupBy( Function<M, Val<K>> selector );
+
+    /**
+     *  Computes the sum of a numeric property of all models matching the query,
+     *  without loading any of them.
+     *
+     * @param selector A method reference selecting the property to sum up.
+     * @return The sum of the property values, which is 0 if no model matches the query.
+     * @param <N> The type of the property value.
+     */
+    <N extends Number> double sum( Function<M, Val<N>> selector );
+
+    /**
+     *  Computes the average of a numeric property of all models matching the query,
+     *  without loading any of them. Null values are ignored.
+     *
+     * @param selector A method reference selecting the property to average.
+     * @return The average of the property values, or an empty optional if there are no values.
+     * @param <N> The type of the property value.
+     */
+    <N extends Number> OptionalDouble avg( Function<M, Val<N>> selector );
+
+    /**
+     *  Finds the smallest value of a property of all models matching the query.
+     *
+     * @param selector A method reference selecting the property.
+     * @return The smallest property value, or an empty optional if there are no values.
+     * @param <T> The type of the property value.
+     */
+    <T> Optional<T> min( Function<M, Val<T>> selector );
+
+    /**
+     *  Finds the largest value of a property of all models matching the query.
+     *
+     * @param selector A method reference selecting the property.
+     * @return The largest property value, or an empty optional if there are no values.
+     * @param <T> The type of the property value.
+     */
+    <T> Optional<T> max( Function<M, Val<T>> selector );
+
     /**
      *  Returns the result of the query as a single model or throws an exception
      *  if the query result is empty or contains more than one item.
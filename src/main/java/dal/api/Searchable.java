@@ -0,0 +1,27 @@
+package dal.api;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ *  Marks a text property of a model as searchable, which means that the database
+ *  maintains a full-text index for it, so that it can be searched through
+ *  {@link Compare#matches(String)} without scanning the entire table:
+ *  <pre>{@code
+ *      public interface Book extends Model<Book> {
+ *          @Searchable Var<String> title();
+ *          @Searchable Var<String> summary();
+ *          Var<Integer> pages();
+ *      }
+ *  }</pre>
+ *  The index of all searchable properties of a model is stored in a separate (FTS5) table,
+ *  which is kept in sync with the table of the model by triggers.
+ *  Only properties of type {@link String} can be searchable.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Searchable
+{
+}
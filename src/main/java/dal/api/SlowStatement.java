@@ -0,0 +1,28 @@
+package dal.api;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ *  A statement whose execution took longer than the threshold configured through
+ *  {@link DataBase#logSlowStatements(Duration)}, together with everything needed
+ *  to find out why, like the query plan chosen by the database (which tells you
+ *  about full table scans and missing indexes) and the code which executed it.
+ *
+ * @param time The time at which the execution finished.
+ * @param sql The executed SQL code.
+ * @param values The values bound to the placeholders of the SQL code.
+ * @param duration The time the execution took.
+ * @param queryPlan The lines of the output of "EXPLAIN QUERY PLAN" for the statement,
+ *                  which is empty for statements that cannot be explained (like schema changes).
+ * @param calledFrom The top frames of the stack of the code which executed the statement.
+ */
+public record SlowStatement(
+    Instant time,
+    String sql,
+    List<Object> values,
+    Duration duration,
+    List<String> queryPlan,
+    List<String> calledFrom
+) {}
@@ -0,0 +1,44 @@
+package dal.api;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ *  The performance counters of all executions of a particular kind of SQL statement,
+ *  where statements which only differ in their values (like the id in "WHERE id = 42")
+ *  are considered to be of the same kind, which is described by their template.
+ *
+ * @param template The SQL code of the statements, where all values are replaced by '?'.
+ * @param calls The number of executions.
+ * @param rows The number of rows returned (by queries) or changed (by updates) in total.
+ * @param totalTime The time spent executing the statements in total.
+ * @param maxTime The time of the slowest execution.
+ * @param latencyHistogram The number of executions per latency bucket, see {@link #LATENCY_BUCKETS}.
+ */
+public record StatementStats(
+    String template,
+    long calls,
+    long rows,
+    Duration totalTime,
+    Duration maxTime,
+    List<Long> latencyHistogram
+) {
+    /**
+     *  The upper bounds of the buckets of the {@link #latencyHistogram()},
+     *  which has one more bucket for all executions slower than the last bound.
+     */
+    public static final List<Duration> LATENCY_BUCKETS = List.of(
+                                                            Duration.ofNanos(100_000),
+                                                            Duration.ofMillis(1),
+                                                            Duration.ofMillis(10),
+                                                            Duration.ofMillis(100),
+                                                            Duration.ofSeconds(1)
+                                                        );
+
+    /**
+     * @return The average time of an execution, or zero if there were none.
+     */
+    public Duration averageTime() {
+        return calls == 0 ? Duration.ZERO : totalTime.dividedBy(calls);
+    }
+}
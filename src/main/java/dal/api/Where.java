@@ -58,4 +58,29 @@ public interface Where<M extends Model<M>> extends Query<M>
      */
     <T> Compare<M, T> where( Class<? extends Val<T>> field );
 
+    /**
+     *  Skips the where clause and defines that all models should be returned
+     *  sorted in ascending order by the specified property:
+     *  <pre>{@code
+     *    db.select(MyModel.class)
+     *      .orderBy(MyModel::name)
+     *      .page(50);
+     *  }</pre>
+     *
+     * @param selector The selector defining by which property the result should be sorted in ascending order.
+     * @return The next step in the fluent builder API, which allows for more sort keys and pagination.
+     * @param <T> The type of the property.
+     */
+    <T> Ordered<M> orderBy( Function<M, Val<T>> selector );
+
+    /**
+     *  Skips the where clause and defines that all models should be returned
+     *  sorted in descending order by the specified property.
+     *
+     * @param selector The selector defining by which property the result should be sorted in descending order.
+     * @return The next step in the fluent builder API, which allows for more sort keys and pagination.
+     * @param <T> The type of the property.
+     */
+    <T> Ordered<M> orderDescendingBy( Function<M, Val<T>> selector );
+
 }
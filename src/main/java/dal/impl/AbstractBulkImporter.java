@@ -0,0 +1,209 @@
+package dal.impl;
+
+import dal.api.BulkImport;
+import dal.api.Model;
+import sprouts.Val;
+import sprouts.Vals;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ *  The tree of entries of a {@link BulkImport} (models and the models in their list properties),
+ *  which is shared by the database implementations, so that they only differ in how they write it.
+ *  Both the {@link BulkImporter} of the SQLite database and the {@link ColumnarBulkImporter}
+ *  resolve existing rows by their keys, insert the missing ones, update the existing ones
+ *  and then link new children to their parents, table by table.
+ *
+ * @param <M> The type of the root model of the import.
+ */
+abstract class AbstractBulkImporter<M extends Model<M>> implements BulkImport<M>
+{
+    protected final Group<M> _root;
+
+    AbstractBulkImporter( Class<M> model, ModelTable table, TableField keyField ) {
+        _root = new Group<>(model, table, keyField, null);
+    }
+
+    @Override
+    public Entry<M> entry( Object key ) { return _root.entry(null, key); }
+
+    protected abstract ModelTable _tableFor( Class<? extends Model<?>> model );
+
+    protected abstract <T extends Model<T>> TableField _fieldOf( Function<T, ?> selector, Class<T> model );
+
+    /**
+     *  Sorts the entries of a group into the ones whose rows are missing and the ones whose rows exist,
+     *  where the existing ones receive their ids and are grouped by the columns they update.
+     *
+     * @param existing The ids of the existing rows by their parent id (null for root entries) and key.
+     */
+    protected void _sortEntries(
+            Group<?> group,
+            Map<List<Object>, Integer> existing,
+            List<EntryImpl<?>> toInsert,
+            Map<List<TableField>, List<EntryImpl<?>>> toUpdate
+    ) {
+        for ( EntryImpl<?> entry : group.entries.values() ) {
+            Integer id = existing.get(Arrays.asList(entry.parent == null ? null : entry.parent.id, entry.key));
+            if ( id == null )
+                toInsert.add(entry);
+            else {
+                entry.id = id;
+                if ( !entry.values.isEmpty() )
+                    toUpdate.computeIfAbsent(new ArrayList<>(entry.values.keySet()), k -> new ArrayList<>()).add(entry);
+            }
+        }
+    }
+
+    /**
+     * @return The columns a new row of the group receives values for, which excludes the id and the lists.
+     */
+    protected List<TableField> _insertedColumns( Group<?> group ) {
+        return group.table.getFields()
+                            .stream()
+                            .filter( f -> f.getKind() == FieldKind.VALUE || f.getKind() == FieldKind.FOREIGN_KEY )
+                            .toList();
+    }
+
+    /**
+     * @return The values of the columns of a new row, where all columns not set by the entry receive their default values.
+     */
+    protected List<Object> _insertedValues( EntryImpl<?> entry, List<TableField> columns ) {
+        List<TableField> allFields = entry.group.table.getFields();
+        List<Object> allDefaults = entry.group.table.getDefaultValues();
+        List<Object> row = new ArrayList<>(columns.size());
+        for ( TableField column : columns ) {
+            if ( column == entry.group.keyField )
+                row.add(entry.key);
+            else if ( entry.values.containsKey(column) )
+                row.add(entry.values.get(column));
+            else if ( entry.insertValues.containsKey(column) )
+                row.add(entry.insertValues.get(column));
+            else
+                row.add(allDefaults.get(allFields.indexOf(column)));
+        }
+        return row;
+    }
+
+    /**
+     *  Models are stored as foreign keys, so they are compared and written by their ids.
+     */
+    protected static Object _normalized( Object value ) {
+        if ( value instanceof Model<?> model )
+            return model.id().get();
+        return value;
+    }
+
+    /**
+     *  All entries of a single table which share the same kind of parent
+     *  (either no parent at all, or the same list property of the parent model).
+     */
+    protected final class Group<E extends Model<E>>
+    {
+        final Class<E> model;
+        final ModelTable table;
+        final TableField keyField;
+        final TableField listField; // The list property of the parents, null for root entries.
+        final Map<List<Object>, EntryImpl<E>> entries = new LinkedHashMap<>();
+        final Map<String, Group<?>> children = new LinkedHashMap<>();
+
+        Group( Class<E> model, ModelTable table, TableField keyField, TableField listField ) {
+            this.model     = model;
+            this.table     = table;
+            this.keyField  = keyField;
+            this.listField = listField;
+        }
+
+        EntryImpl<E> entry( EntryImpl<?> parent, Object key ) {
+            Objects.requireNonNull(key, "The key of a bulk import entry may not be null!");
+            Object normalized = _normalized(key);
+            // The identity of the parent entry is enough, because parents are unique within their own group:
+            return entries.computeIfAbsent(
+                        Arrays.asList(parent, normalized),
+                        k -> new EntryImpl<>(this, parent, normalized)
+                    );
+        }
+
+        ModelTable _intermediate() { return listField.getIntermediateTable().orElseThrow(); }
+
+        String intermediateTable() { return _intermediate().getTableName(); }
+
+        String leftColumn() {
+            Class<?> left = _intermediate().getReferencedModels().get(0);
+            return ModelTable.INTER_LEFT_FK_PREFIX + AbstractDataBase._tableNameFromClass(left) + ModelTable.INTER_FK_POSTFIX;
+        }
+
+        String rightColumn() {
+            Class<?> right = _intermediate().getReferencedModels().get(1);
+            return ModelTable.INTER_RIGHT_FK_PREFIX + AbstractDataBase._tableNameFromClass(right) + ModelTable.INTER_FK_POSTFIX;
+        }
+    }
+
+    protected final class EntryImpl<E extends Model<E>> implements Entry<E>
+    {
+        final Group<E> group;
+        final EntryImpl<?> parent;
+        final Object key;
+        final Map<TableField, Object> values = new LinkedHashMap<>();
+        final Map<TableField, Object> insertValues = new LinkedHashMap<>();
+        int id = -1;
+
+        EntryImpl( Group<E> group, EntryImpl<?> parent, Object key ) {
+            this.group  = group;
+            this.parent = parent;
+            this.key    = key;
+        }
+
+        @Override
+        public <T> Entry<E> set( Function<E, Val<T>> selector, T value ) {
+            values.put(_valueField(selector), _normalized(value));
+            return this;
+        }
+
+        @Override
+        public <T> Entry<E> setOnInsert( Function<E, Val<T>> selector, T value ) {
+            insertValues.put(_valueField(selector), _normalized(value));
+            return this;
+        }
+
+        @Override
+        public <C extends Model<C>, K> Entry<C> child(
+                Function<E, Vals<C>> list,
+                Class<C> childType,
+                Function<C, Val<K>> key,
+                K keyValue
+        ) {
+            TableField listField = _fieldOf(list, group.model);
+            if ( !listField.requiresIntermediateTable() )
+                throw new IllegalArgumentException(
+                        "The property '" + listField.getMethodName() + "' of model '" + group.model.getName() + "' " +
+                        "is not a list of models!"
+                    );
+            Group<C> children = (Group<C>) group.children.computeIfAbsent(
+                                    listField.getMethodName(),
+                                    k -> new Group<>(
+                                            childType,
+                                            _tableFor(childType),
+                                            _fieldOf(key, childType),
+                                            listField
+                                        )
+                                );
+            return children.entry(this, keyValue);
+        }
+
+        private TableField _valueField( Function<E, ?> selector ) {
+            TableField field = _fieldOf(selector, group.model);
+            if ( field.getKind() != FieldKind.VALUE && field.getKind() != FieldKind.FOREIGN_KEY )
+                throw new IllegalArgumentException(
+                        "The property '" + field.getMethodName() + "' of model '" + group.model.getName() + "' " +
+                        "cannot be set through a bulk import!"
+                    );
+            if ( field == group.keyField )
+                throw new IllegalArgumentException(
+                        "The key property '" + field.getMethodName() + "' is already set through the key of the entry!"
+                    );
+            return field;
+        }
+    }
+}
@@ -1,29 +1,54 @@
 package dal.impl;
 
 import dal.api.DataBase;
+import dal.api.DataBaseMetrics;
 import dal.api.DataBaseProcessor;
+import dal.api.SlowStatement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.sql.Date;
 import java.sql.*;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 abstract class AbstractDataBase implements DataBase {
 
     private final static Logger _LOG = LoggerFactory.getLogger(AbstractDataBase.class);
 
+    private static final Pattern EXPLAINABLE = Pattern.compile("\\s*(SELECT|WITH|INSERT|REPLACE|UPDATE|DELETE)\\b", Pattern.CASE_INSENSITIVE);
+    private static final int CALLER_FRAMES = 8;
+
+    /**
+     *  The name of the key-value table in which the ORM stores information about the database itself,
+     *  like fingerprints of the table schemas. It is not a model table and therefore not listed.
+     */
+    protected static final String METADATA_TABLE = "topsoil_metadata";
+    protected static final List<String> SEARCH_TABLE_SUFFIXES = List.of("", "_data", "_idx", "_docsize", "_config", "_content");
+
     /**
      * Connection settings: URL, User, Password!
      */
     protected boolean _AUTOCOMMIT = true;
     private final String _url, _user, _pwd;
 
-    private final Map<Thread, Connection> _connections = new HashMap<>();
+    private final Map<Thread, Connection> _connections = new ConcurrentHashMap<>(); // Threads open their connections lazily, so they write to it concurrently.
+    private final Map<String, String> _attached = new LinkedHashMap<>(); // The files attached to every connection by their schema name.
     private final DataBaseProcessor _processor;
 
+    private final StatementRecorder _recorder = new StatementRecorder();
+    private final SlowStatementLog _slowStatements = new SlowStatementLog();
+    private final AtomicInteger _openConnections = new AtomicInteger();
+    private final AtomicLong _openedConnections = new AtomicLong();
+
     AbstractDataBase(
             String url,
             String name,
@@ -39,16 +64,16 @@ abstract class AbstractDataBase implements DataBase {
             String path = new File("").getAbsolutePath().replace("\\","/");
             url = "jdbc:sqlite:"+path+"/"+url;
         }
-        if ( !url.endsWith(".db") ) {
+        if ( !_isInMemory(url) && !url.endsWith(".db") ) {
             url += "/sqlite.db";
         }
         _user = name;
         _pwd = password;
         _url = url;
-        // We make sure that the path exists, if not we create it
-        File file = new File(url.replace("jdbc:sqlite:",""));
-        if( !file.exists() ) {
-            file.mkdirs();
+        // We make sure that the directory of the database file exists, if not we create it
+        File directory = new File(url.replace("jdbc:sqlite:","")).getParentFile();
+        if ( !_isInMemory(url) && directory != null && !directory.exists() ) {
+            directory.mkdirs();
         }
         try {
             _createAndOrConnectToDatabase();
@@ -59,6 +84,13 @@ abstract class AbstractDataBase implements DataBase {
 
     public String getURL(){ return _url; }
 
+    @Override
+    public boolean isInMemory() { return _isInMemory(_url); }
+
+    private static boolean _isInMemory( String url ) {
+        return url.contains(":memory:") || url.contains("mode=memory");
+    }
+
     /**
      * Connect to a simple database
      */
@@ -71,17 +103,107 @@ abstract class AbstractDataBase implements DataBase {
             _LOG.error("Failed to load 'org.sqlite.JDBC' class!");
             throw new SQLException("Missing SQLite driver! Failed to load 'org.sqlite.JDBC' class!");
         }
-        Connection connection = null;
         _LOG.info("Connecting to database at '{}' now!", _url);
+        Connection connection = _connect();
+        _createMetadataTableOn(connection);
+        _attachAllTo(connection);
+        _onConnect(connection);
+        _connections.put(Thread.currentThread(), connection);
+        _openConnections.incrementAndGet();
+        _openedConnections.incrementAndGet();
+    }
+
+    private Connection _connect() throws SQLException {
+        Connection connection;
         if (_user.equals("") || _pwd.equals(""))
             connection = DriverManager.getConnection(_url);
         else
             connection = DriverManager.getConnection(_url, _user, _pwd);
         connection.setAutoCommit(_AUTOCOMMIT);
-        _connections.put(Thread.currentThread(), connection);
+        return connection;
+    }
+
+    protected interface ConnectionTask { void runOn( Connection connection ) throws SQLException; }
+
+    /**
+     *  Runs the provided task on a new connection of its own, which is closed afterwards.
+     *  Unlike the connections of the processor threads, this may be used on any thread,
+     *  so that long-running work (like a backup) does not block the processor.
+     *
+     * @param task The task to run on the connection.
+     * @throws SQLException If the connection could not be opened or the task failed.
+     */
+    protected void _onBackgroundConnection( ConnectionTask task ) throws SQLException {
+        try ( Connection connection = _connect() ) {
+            _openConnections.incrementAndGet();
+            _openedConnections.incrementAndGet();
+            try {
+                task.runOn(connection);
+            } finally {
+                _openConnections.decrementAndGet();
+            }
+        }
     }
 
-    private Connection _getConnection() {
+    /**
+     *  Attaches the database in the provided file to all current and future connections
+     *  of this database, under the provided schema name.
+     *  Tables of the attached database which do not exist in this database can then be used
+     *  as if they were part of it, because SQLite looks up unqualified table names in the attached databases as well.
+     *
+     * @param schema The name under which the database is attached.
+     * @param file The file of the database to attach.
+     */
+    protected void _attach( String schema, java.nio.file.Path file ) {
+        if ( !schema.matches("[A-Za-z_]\\w*") || schema.equalsIgnoreCase("main") || schema.equalsIgnoreCase("temp") )
+            throw new IllegalArgumentException("'" + schema + "' is not a valid schema name for an attached database!");
+        if ( _attached.containsKey(schema) )
+            throw new IllegalStateException("There already is a database attached as '" + schema + "'!");
+        _attached.put(schema, file.toAbsolutePath().toString());
+        try {
+            for ( Connection connection : _connections.values() )
+                if ( connection != null ) _attachTo(connection, schema);
+        } catch ( SQLException e ) {
+            _attached.remove(schema);
+            throw new IllegalStateException("Failed to attach the database at '" + file + "' as '" + schema + "'!", e);
+        }
+    }
+
+    protected void _detach( String schema ) {
+        if ( _attached.remove(schema) == null )
+            throw new IllegalArgumentException("There is no database attached as '" + schema + "'!");
+        for ( Connection connection : _connections.values() )
+            if ( connection != null )
+                try ( var statement = connection.createStatement() ) {
+                    statement.execute("DETACH DATABASE " + schema);
+                } catch ( SQLException e ) {
+                    _LOG.warn("Failed to detach the database attached as '{}'.", schema, e);
+                }
+    }
+
+    /**
+     * @return The schema names of the attached databases, in the order in which they were attached.
+     */
+    protected List<String> _attachedSchemas() { return List.copyOf(_attached.keySet()); }
+
+    /**
+     * @return The absolute path of the file attached as the provided schema, or null if there is none.
+     */
+    protected String _attachedFile( String schema ) { return _attached.get(schema); }
+
+    private void _attachAllTo( Connection connection ) throws SQLException {
+        for ( String schema : _attached.keySet() )
+            _attachTo(connection, schema);
+    }
+
+    private void _attachTo( Connection connection, String schema ) throws SQLException {
+        try ( var statement = connection.prepareStatement("ATTACH DATABASE ? AS " + schema) ) {
+            statement.setString(1, _attached.get(schema));
+            statement.execute();
+        }
+    }
+
+    protected Connection _getConnection() {
         Connection con = _connections.get(Thread.currentThread());
         if ( con == null && _processor.getThreads().contains(Thread.currentThread()) ) {
             try {
@@ -111,7 +233,8 @@ abstract class AbstractDataBase implements DataBase {
     protected void _close(){
         try {
             _getConnection().close();
-            _connections.put(Thread.currentThread(), null);
+            _connections.remove(Thread.currentThread());
+            _openConnections.decrementAndGet();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -120,12 +243,114 @@ abstract class AbstractDataBase implements DataBase {
     @Override
     public void close(){ _close(); }
 
+    @Override
+    public DataBaseMetrics metrics() {
+        return new DataBaseMetrics(_recorder.stats(), queryCacheStats(), _openConnections.get(), _openedConnections.get());
+    }
+
+    @Override
+    public void resetMetrics() { _recorder.reset(); }
+
+    @Override
+    public void logSlowStatements( Duration threshold ) { _slowStatements.setThreshold(threshold); }
+
+    @Override
+    public List<SlowStatement> slowStatements() { return _slowStatements.entries(); }
+
+    @Override
+    public void clearSlowStatements() { _slowStatements.clear(); }
+
+    /**
+     *  Records the execution of a statement for the {@link #metrics()}.
+     *
+     * @param sql The executed SQL code.
+     * @param startNanos The {@link System#nanoTime()} at which the execution started.
+     * @param rows The number of rows returned or changed, or a negative number if unknown.
+     */
+    protected void _record( String sql, long startNanos, long rows ) {
+        _recorder.record(sql, System.nanoTime() - startNanos, rows);
+    }
+
+    /**
+     *  Records the execution of a statement for the {@link #metrics()}
+     *  and logs it as a {@link SlowStatement} if it took longer than the threshold
+     *  set through {@link #logSlowStatements(Duration)}.
+     *  This has to be called on the connection which executed the statement,
+     *  because the query plan of the statement is read from it.
+     *
+     * @param sql The executed SQL code.
+     * @param values The values bound to the placeholders of the SQL code, or null if there are none.
+     * @param startNanos The {@link System#nanoTime()} at which the execution started.
+     * @param rows The number of rows returned or changed, or a negative number if unknown.
+     */
+    private void _record( String sql, List<? extends Object> values, long startNanos, long rows ) {
+        long nanos = System.nanoTime() - startNanos;
+        _recorder.record(sql, nanos, rows);
+        if ( !_slowStatements.isSlow(nanos) ) return;
+        List<Object> boundValues = values == null ? List.of() : Collections.unmodifiableList(new ArrayList<>(values));
+        SlowStatement slow = new SlowStatement(
+                                    Instant.now(), sql, boundValues, Duration.ofNanos(nanos),
+                                    _queryPlanOf(sql, values), _callerFrames()
+                                );
+        _slowStatements.add(slow);
+        _LOG.warn(
+            "Slow statement took {} ms: '{}' with values {}, query plan {}, called from {}",
+            nanos / 1_000_000, sql, boundValues, slow.queryPlan(), slow.calledFrom()
+        );
+    }
+
+    /**
+     *  Asks the database how it executes the given statement,
+     *  where every line of the plan is indented according to its depth in the plan.
+     */
+    private List<String> _queryPlanOf( String sql, List<? extends Object> values ) {
+        if ( !EXPLAINABLE.matcher(sql).lookingAt() ) return List.of();
+        List<String> plan = new ArrayList<>();
+        Map<Integer, Integer> depths = new HashMap<>();
+        try ( PreparedStatement pstmt = _newPreparedStatement("EXPLAIN QUERY PLAN " + sql, values) ) {
+            try ( ResultSet rs = pstmt.executeQuery() ) {
+                while ( rs.next() ) {
+                    int depth = depths.getOrDefault(rs.getInt("parent"), -1) + 1;
+                    depths.put(rs.getInt("id"), depth);
+                    plan.add("  ".repeat(depth) + rs.getString("detail"));
+                }
+            }
+        } catch ( SQLException e ) {
+            _LOG.debug("Failed to explain the query plan of SQL code '{}'.", sql, e);
+        }
+        return Collections.unmodifiableList(plan);
+    }
+
+    /**
+     * @return The top frames of the stack of the current thread which are not part of the database implementation.
+     */
+    private static List<String> _callerFrames() {
+        return StackWalker.getInstance().walk( frames ->
+                    frames.filter( frame -> !_isInternal(frame.getClassName()) )
+                          .limit(CALLER_FRAMES)
+                          .map( frame -> frame.toStackTraceElement().toString() )
+                          .toList()
+                );
+    }
+
+    private static boolean _isInternal( String className ) {
+        return className.startsWith("dal.impl.") ||
+               className.startsWith(DataBaseProcessor.class.getName()) ||
+               className.startsWith(DataBase.class.getName() + "$") || // The default processor.
+               className.startsWith("java.") ||
+               className.startsWith("jdk.") ||
+               className.startsWith("sun.");
+    }
+
     /**
      * Returns a list of all table names of a connection!
      */
     @Override
     public List<String> listOfAllTableNames(){
-        String sql = "SELECT name FROM sqlite_master WHERE type ='table' AND name NOT LIKE 'sqlite_%';";
+        String sql = "SELECT name FROM sqlite_master WHERE type ='table' AND name NOT LIKE 'sqlite_%' AND name != '" + METADATA_TABLE + "'";
+        // The full-text indexes of searchable fields (and their internal tables) are not model tables:
+        for ( String suffix : SEARCH_TABLE_SUFFIXES )
+            sql += " AND name NOT GLOB '*" + ModelTable.SEARCH_POSTFIX + suffix + "'";
         List<String> names = new ArrayList<>();
         _for(sql, null, rs -> {
             try {
@@ -191,7 +416,13 @@ abstract class AbstractDataBase implements DataBase {
 
     protected void _for(String sql, Consumer<ResultSet> start, Consumer<ResultSet> each)
     {
-        _for(sql, null, start, each);
+        long startNanos = System.nanoTime();
+        long[] rows = {0};
+        _for(sql, null, start, rs -> {
+            rows[0]++;
+            each.accept(rs);
+        });
+        _record(sql, startNanos, start == null ? rows[0] : -1);
     }
 
     protected void _for(
@@ -254,6 +485,7 @@ abstract class AbstractDataBase implements DataBase {
     protected Map<String, List<Object>> _query(String sql, List<Object> values){
         Map<String, List<Object>> result = new LinkedHashMap<>();
         _processor.processNow(()->{
+            long startNanos = System.nanoTime();
             _for(
                 sql, values, // <=- Are used to build prepared statement when 'values' is not null!
                 rs -> {
@@ -268,64 +500,127 @@ abstract class AbstractDataBase implements DataBase {
                 rs -> {
                     try {// loop through the result set
                         while (rs.next()) {
-                            for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
-                                String columnValue = rs.getString(i);
-                                ResultSetMetaData rsmd = rs.getMetaData();
-                                String column_name = rsmd.getColumnName(i);
-                                if(rsmd.getColumnType(i)==java.sql.Types.ARRAY) {
-                                    result.get(column_name).add(rs.getArray(column_name));
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.BIGINT) {
-                                    result.get(column_name).add(rs.getInt(column_name));
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.BOOLEAN) {
-                                    result.get(column_name).add(rs.getBoolean(column_name));
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.BLOB) {
-                                    result.get(column_name).add(rs.getBlob(column_name));
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.DOUBLE) {
-                                    result.get(column_name).add(rs.getDouble(column_name));
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.FLOAT) {
-                                    result.get(column_name).add(rs.getFloat(column_name));
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.INTEGER) {
-                                    result.get(column_name).add(rs.getInt(column_name));
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.NVARCHAR) {
-                                    result.get(column_name).add(rs.getNString(column_name));
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.VARCHAR) {
-                                    result.get(column_name).add(rs.getString(column_name));
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.TINYINT) {
-                                    result.get(column_name).add(rs.getInt(column_name));
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.SMALLINT) {
-                                    result.get(column_name).add(rs.getInt(column_name));
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.DATE) {
-                                    String date = rs.getString(column_name);
-                                    result.get(column_name).add((date==null)?null:Date.valueOf(date));
-                                    //result.get(column_name).add(rs.getDate(column_name));
-                                    //rs.getTimestamp(column_name);
-                                }
-                                else if(rsmd.getColumnType(i)==java.sql.Types.TIMESTAMP){
-                                    result.get(column_name).add(rs.getTimestamp(column_name));
-                                } else {
-                                    result.get(column_name).add(rs.getObject(column_name));
-                                }
-                            }
+                            ResultSetMetaData rsmd = rs.getMetaData();
+                            for (int i = 1; i <= rsmd.getColumnCount(); i++)
+                                result.get(rsmd.getColumnName(i)).add(_readColumn(rs, rsmd, i));
                         }
                     } catch (SQLException e) {
                         e.printStackTrace();
                     }
                 });
+            _record(sql, values, startNanos, result.isEmpty() ? 0 : result.values().iterator().next().size());
         });
         return result;
     }
 
+    /**
+     *  Reads the value of a column of the current row of a result set as the Java type
+     *  corresponding to the SQL type of the column.
+     */
+    private static Object _readColumn( ResultSet rs, ResultSetMetaData rsmd, int i ) throws SQLException {
+        String column_name = rsmd.getColumnName(i);
+        int type = rsmd.getColumnType(i);
+        if ( type == java.sql.Types.ARRAY )
+            return rs.getArray(column_name);
+        else if ( type == java.sql.Types.BIGINT )
+            return rs.getInt(column_name);
+        else if ( type == java.sql.Types.BOOLEAN )
+            return rs.getBoolean(column_name);
+        else if ( type == java.sql.Types.BLOB )
+            return rs.getBlob(column_name);
+        else if ( type == java.sql.Types.DOUBLE )
+            return rs.getDouble(column_name);
+        else if ( type == java.sql.Types.FLOAT ) {
+            // Computed values (like averages) have no declared type and are reported as FLOAT,
+            // so we only narrow values of actual FLOAT columns:
+            boolean isComputed = rsmd.getTableName(i) == null || rsmd.getTableName(i).isEmpty();
+            return isComputed ? rs.getDouble(column_name) : rs.getFloat(column_name);
+        }
+        else if ( type == java.sql.Types.INTEGER )
+            return rs.getInt(column_name);
+        else if ( type == java.sql.Types.NVARCHAR )
+            return rs.getNString(column_name);
+        else if ( type == java.sql.Types.VARCHAR )
+            return rs.getString(column_name);
+        else if ( type == java.sql.Types.TINYINT )
+            return rs.getInt(column_name);
+        else if ( type == java.sql.Types.SMALLINT )
+            return rs.getInt(column_name);
+        else if ( type == java.sql.Types.DATE ) {
+            String date = rs.getString(column_name);
+            return (date==null)?null:Date.valueOf(date);
+        }
+        else if ( type == java.sql.Types.TIMESTAMP )
+            return rs.getTimestamp(column_name);
+        else
+            return rs.getObject(column_name);
+    }
+
+    /**
+     *  Opens a cursor on the database which reads the rows of the result one by one
+     *  while the returned stream is consumed, instead of loading the entire result into memory.
+     *  The stream must be consumed on the database thread and it should be closed
+     *  (for example through a try-with-resources block) if it is not consumed entirely.
+     *
+     * @param sql The SQL query to execute.
+     * @param values The values for the placeholders of the query, may be null.
+     * @return A lazy stream of rows, where each row maps column names to values.
+     */
+    protected java.util.stream.Stream<Map<String, Object>> _cursor( String sql, List<?> values ) {
+        PreparedStatement pstmt;
+        ResultSet rs;
+        long openNanos = System.nanoTime();
+        try {
+            pstmt = _newPreparedStatement(sql, values);
+            rs = pstmt.executeQuery();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to open cursor for SQL code '" + sql + "'!", e);
+        }
+        /*
+            The time between reading two rows is spent by the consumer of the stream,
+            so for the metrics we only sum up the time spent inside the database:
+        */
+        long[] readNanos = { System.nanoTime() - openNanos };
+        long[] readRows = { 0 };
+        boolean[] isClosed = { false };
+        Runnable close = () -> {
+            if ( isClosed[0] ) return;
+            isClosed[0] = true;
+            try {
+                rs.close();
+                pstmt.close();
+            } catch (SQLException e) {
+                _LOG.error("Failed to close cursor for SQL code '{}'!", sql, e);
+            }
+            _recorder.record(sql, readNanos[0], readRows[0]);
+        };
+        var rows = new Spliterators.AbstractSpliterator<Map<String, Object>>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance( Consumer<? super Map<String, Object>> action ) {
+                try {
+                    long startNanos = System.nanoTime();
+                    if ( rs.isClosed() || !rs.next() ) {
+                        readNanos[0] += System.nanoTime() - startNanos;
+                        close.run(); // We reached the end, so we can free the statement right away.
+                        return false;
+                    }
+                    ResultSetMetaData rsmd = rs.getMetaData();
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for ( int i = 1; i <= rsmd.getColumnCount(); i++ )
+                        row.put(rsmd.getColumnName(i), _readColumn(rs, rsmd, i));
+                    readNanos[0] += System.nanoTime() - startNanos;
+                    readRows[0]++;
+                    action.accept(row);
+                    return true;
+                } catch (SQLException e) {
+                    close.run();
+                    throw new IllegalStateException("Failed to read next row for SQL code '" + sql + "'!", e);
+                }
+            }
+        };
+        return java.util.stream.StreamSupport.stream(rows, false).onClose(close);
+    }
+
     /**
      * SQL execution on connection!
      * @param sql
@@ -334,11 +629,14 @@ abstract class AbstractDataBase implements DataBase {
         if(sql.isBlank()) return;
         _processor.process(()->{
             Connection conn = _getConnection();
+            long startNanos = System.nanoTime();
             try {
                 Statement stmt = conn.createStatement();
                 try {
                     stmt.execute(sql);
+                    long rows = stmt.getUpdateCount();
                     stmt.close();
+                    _record(sql, null, startNanos, rows);
                 } catch (SQLException e) {
                     stmt.close();
                     e.printStackTrace();
@@ -346,51 +644,227 @@ abstract class AbstractDataBase implements DataBase {
             } catch (SQLException e) {
                 e.printStackTrace();
             }
+            _onWrite(sql);
         });
     }
 
+    /**
+     *  Runs the provided work on the database thread and waits for its result,
+     *  which makes several database operations atomic with respect to all other database operations.
+     */
+    protected <T> T _processNowAndGet( Supplier<T> work ) {
+        return _processor.processNowAndGet(work);
+    }
+
+    /**
+     *  Runs the provided work on the database thread, without waiting for it
+     *  (unless the current thread is the database thread).
+     */
+    protected void _processLater( Runnable work ) { _processor.process(work); }
+
+    /**
+     *  Is called on the database thread after the provided SQL code was executed
+     *  by one of the methods which may change the database (even if the execution failed),
+     *  so that subclasses can forget what they remember about the affected tables.
+     *
+     * @param sql The executed SQL code, or null if it is not known what changed,
+     *            which is the case after a rolled back transaction.
+     */
+    protected void _onWrite( String sql ) {}
+
+    /**
+     *  Called after a transaction was committed, so that the changes of its writes can be published.
+     */
+    protected void _onCommit() {}
+
+    /**
+     *  Is called on the thread owning a new connection before it is used,
+     *  so that subclasses can set up every connection the same way.
+     *  Note that this is also called while the constructor of this class runs,
+     *  before the fields of subclasses are initialized.
+     *
+     * @param connection The new connection of the current thread.
+     * @throws SQLException If the connection could not be set up.
+     */
+    protected void _onConnect( Connection connection ) throws SQLException {}
+
     /**
      * SQL execution on connection!
      * @param sql - SQL statement to execute
      */
     protected boolean _update( String sql, List<? extends Object> values ){
         return _processor.processNowAndGet(()->{
-            Connection conn = _getConnection();
-            if ( values!=null ){
+            boolean success = _updateNow(sql, values);
+            _onWrite(sql);
+            return success;
+        });
+    }
+
+    private boolean _updateNow( String sql, List<? extends Object> values ){
+        Connection conn = _getConnection();
+        if ( values!=null ){
+            try {
+                long startNanos = System.nanoTime();
+                PreparedStatement pstmt = _newPreparedStatement(sql, values);
                 try {
-                    PreparedStatement pstmt = _newPreparedStatement(sql, values);
-                    try {
-                        boolean state = pstmt.execute();
-                        pstmt.close();
-                    } catch (SQLException e) {
-                        pstmt.close();
-                        return false;
-                    }
+                    boolean state = pstmt.execute();
+                    long rows = pstmt.getUpdateCount();
+                    pstmt.close();
+                    _record(sql, values, startNanos, rows);
                 } catch (SQLException e) {
+                    pstmt.close();
                     return false;
                 }
+            } catch (SQLException e) {
+                return false;
+            }
+            return true;
+        }
+        try {
+            long startNanos = System.nanoTime();
+            Statement stmt = conn.createStatement();
+            try {
+                stmt.execute(sql);
+                long rows = stmt.getUpdateCount();
+                stmt.close();
+                _record(sql, null, startNanos, rows);
                 return true;
+            } catch (SQLException e) {
+                stmt.close();
+                return false;
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     *  Executes the same statement for every provided row of values as a single JDBC batch.
+     *
+     * @param sql The SQL statement with placeholders for the values of a row.
+     * @param rows The values for every execution of the statement.
+     * @throws IllegalStateException If the batch could not be executed.
+     */
+    protected void _batch( String sql, List<? extends List<?>> rows ) {
+        if ( rows.isEmpty() ) return;
+        _processor.processNow(()->{
+            long startNanos = System.nanoTime();
+            try ( PreparedStatement pstmt = _getConnection().prepareStatement(sql) ) {
+                for ( List<?> row : rows ) {
+                    for ( int i = 0; i < row.size(); i++ ) pstmt.setObject(i + 1, row.get(i));
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                _record(sql, startNanos, rows.size());
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to execute batch of SQL code '" + sql + "'!", e);
+            } finally {
+                _onWrite(sql);
             }
+        });
+    }
+
+    /**
+     *  Executes the same insert statement for every provided row of values,
+     *  reusing a single prepared statement, and collects the generated ids.
+     *
+     * @param sql The SQL insert statement with placeholders for the values of a row.
+     * @param rows The values for every inserted row.
+     * @return The ids of the inserted rows, in the order of the provided rows.
+     * @throws IllegalStateException If one of the rows could not be inserted.
+     */
+    protected List<Integer> _insertAll( String sql, List<? extends List<?>> rows ) {
+        List<Integer> ids = new ArrayList<>(rows.size());
+        if ( rows.isEmpty() ) return ids;
+        _processor.processNow(()->{
+            long startNanos = System.nanoTime();
+            try ( PreparedStatement pstmt = _getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) ) {
+                for ( List<?> row : rows ) {
+                    for ( int i = 0; i < row.size(); i++ ) pstmt.setObject(i + 1, row.get(i));
+                    pstmt.executeUpdate();
+                    try ( ResultSet keys = pstmt.getGeneratedKeys() ) {
+                        if ( !keys.next() )
+                            throw new IllegalStateException("No id was generated by SQL code '" + sql + "'!");
+                        ids.add(keys.getInt(1));
+                    }
+                }
+                _record(sql, startNanos, rows.size());
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to insert rows using SQL code '" + sql + "'!", e);
+            } finally {
+                _onWrite(sql);
+            }
+        });
+        return ids;
+    }
+
+    /**
+     *  Executes the provided work inside a single database transaction on the database thread.
+     *  If the work throws an exception, the transaction is rolled back and the exception is rethrown.
+     *  If there already is an ongoing transaction, the work simply becomes a part of it.
+     *
+     * @param work The database operations which should be executed atomically.
+     */
+    protected void _transaction( Runnable work ) {
+        _processor.processNow(()->{
+            Connection conn = _getConnection();
             try {
-                Statement stmt = conn.createStatement();
+                if ( !conn.getAutoCommit() ) {
+                    work.run(); // We are already inside a transaction!
+                    return;
+                }
+                conn.setAutoCommit(false);
                 try {
-                    stmt.execute(sql);
-                    stmt.close();
-                    return true;
-                } catch (SQLException e) {
-                    stmt.close();
-                    return false;
+                    work.run();
+                    conn.commit();
+                    _onCommit();
+                } catch (RuntimeException e) {
+                    conn.rollback();
+                    _onWrite(null);
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(_AUTOCOMMIT);
                 }
             } catch (SQLException e) {
-                return false;
+                throw new RuntimeException(e);
             }
         });
     }
 
+    /**
+     *  Creates the metadata table if it does not exist yet, directly on the connection,
+     *  so that it is not mistaken for a write to the model tables (by caches, live queries or the maintenance).
+     *  This happens once for every connection, so that reading and writing the metadata does not have to.
+     */
+    protected static void _createMetadataTableOn( Connection connection ) throws SQLException {
+        try ( var statement = connection.createStatement() ) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + METADATA_TABLE + " (key TEXT PRIMARY KEY, value TEXT NOT NULL)");
+        }
+    }
+
+    protected Optional<String> _readMetadata( String key ) {
+        var result = _query("SELECT value FROM " + METADATA_TABLE + " WHERE key = ?", List.of(key));
+        List<Object> values = result.getOrDefault("value", Collections.emptyList());
+        return values.isEmpty() ? Optional.empty() : Optional.ofNullable((String) values.get(0));
+    }
+
+    protected void _writeMetadata( String key, String value ) {
+        _update("INSERT OR REPLACE INTO " + METADATA_TABLE + " (key, value) VALUES (?, ?)", List.of(key, value));
+    }
+
+    protected void _deleteMetadata( String keyPattern ) {
+        _update("DELETE FROM " + METADATA_TABLE + " WHERE key LIKE ?", List.of(keyPattern));
+    }
+
     protected boolean doesTableExist(String tableName) {
         String command = "SELECT name FROM sqlite_master WHERE type='table' AND name=?";
         Map<String, List<Object>> result = _query(command, List.of(tableName));
-        return !result.isEmpty();
+        if ( !result.isEmpty() ) return true;
+        // Tables of attached databases are used as if they were part of this one:
+        for ( String schema : _attachedSchemas() )
+            if ( !_query(command.replace("sqlite_master", schema + ".sqlite_master"), List.of(tableName)).isEmpty() )
+                return true;
+        return false;
     }
 
     protected static String _fromJavaTypeToDBType(Class<?> type) {
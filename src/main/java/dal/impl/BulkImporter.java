@@ -0,0 +1,132 @@
+package dal.impl;
+
+import dal.api.BulkImport;
+import dal.api.Model;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ *  The implementation of the {@link BulkImport} API for the SQLite database,
+ *  which writes a tree of entries (models and the models in their list properties) to the database table by table.
+ *  <p>
+ *  For every table the following steps are performed:
+ *  <ol>
+ *      <li>The ids of the existing rows are resolved by their keys using a single query.</li>
+ *      <li>Missing rows are inserted using a single reused prepared statement.</li>
+ *      <li>Existing rows are updated in batches (one batch per set of updated columns).</li>
+ *      <li>Newly inserted children are linked to their parents through a batch on the intermediate table.</li>
+ *  </ol>
+ *  All of this happens inside a single transaction, so the import either succeeds as a whole or not at all.
+ *
+ * @param <M> The type of the root model of the import.
+ */
+final class BulkImporter<M extends Model<M>> extends AbstractBulkImporter<M>
+{
+    private final SQLiteDataBase _dataBase;
+
+    BulkImporter( SQLiteDataBase dataBase, Class<M> model, TableField keyField ) {
+        super(model, dataBase._getTableFor(model), keyField);
+        _dataBase = dataBase;
+    }
+
+    @Override
+    protected ModelTable _tableFor( Class<? extends Model<?>> model ) { return _dataBase._getTableFor(model); }
+
+    @Override
+    protected <T extends Model<T>> TableField _fieldOf( Function<T, ?> selector, Class<T> model ) {
+        return _dataBase._selectTableField(selector, model);
+    }
+
+    @Override
+    public List<M> execute() {
+        _dataBase._transaction(() -> _write(_root));
+        return _root.entries.values()
+                            .stream()
+                            .map( e -> _dataBase._proxyFor(_root.model, _root.table, e.id) )
+                            .toList();
+    }
+
+    private void _write( Group<?> group ) {
+        if ( group.entries.isEmpty() ) return;
+        String tableName = group.table.getTableName();
+        String keyColumn = group.keyField.getName();
+        /*
+            First we find out which of the entries already exist in the database.
+            For root entries the key is unique within the entire table,
+            for children it only has to be unique within the list of their parent,
+            which is why we read the existing children through the intermediate table.
+        */
+        Map<List<Object>, Integer> existing = new HashMap<>();
+        if ( group.listField == null ) {
+            var result = _dataBase._query("SELECT id, " + keyColumn + " FROM " + tableName);
+            List<Object> ids  = result.getOrDefault("id", Collections.emptyList());
+            List<Object> keys = result.getOrDefault(keyColumn, Collections.emptyList());
+            for ( int i = 0; i < ids.size(); i++ )
+                existing.put(Arrays.asList(null, _normalized(keys.get(i))), (Integer) ids.get(i));
+        } else {
+            var result = _dataBase._query(
+                            "SELECT i." + group.leftColumn() + " AS parent, c.id AS id, c." + keyColumn + " AS key " +
+                            "FROM " + group.intermediateTable() + " i " +
+                            "JOIN " + tableName + " c ON c.id = i." + group.rightColumn()
+                        );
+            List<Object> parents = result.getOrDefault("parent", Collections.emptyList());
+            List<Object> ids     = result.getOrDefault("id", Collections.emptyList());
+            List<Object> keys    = result.getOrDefault("key", Collections.emptyList());
+            for ( int i = 0; i < ids.size(); i++ )
+                existing.put(Arrays.asList(parents.get(i), _normalized(keys.get(i))), (Integer) ids.get(i));
+        }
+
+        List<EntryImpl<?>> toInsert = new ArrayList<>();
+        Map<List<TableField>, List<EntryImpl<?>>> toUpdate = new LinkedHashMap<>();
+        _sortEntries(group, existing, toInsert, toUpdate);
+
+        // Now we insert the missing rows, where all unspecified columns receive their default values:
+        if ( !toInsert.isEmpty() ) {
+            List<TableField> columns = _insertedColumns(group);
+            String sql = "INSERT INTO " + tableName + " (" +
+                            columns.stream().map(TableField::getName).collect(Collectors.joining(", ")) +
+                         ") VALUES (" +
+                            columns.stream().map( c -> "?" ).collect(Collectors.joining(", ")) +
+                         ")";
+            List<List<Object>> rows = new ArrayList<>();
+            for ( EntryImpl<?> entry : toInsert )
+                rows.add(_insertedValues(entry, columns));
+            List<Integer> ids = _dataBase._insertAll(sql, rows);
+            for ( int i = 0; i < toInsert.size(); i++ )
+                toInsert.get(i).id = ids.get(i);
+
+            // New children have to be added to the lists of their parents:
+            if ( group.listField != null ) {
+                _dataBase._batch(
+                    "INSERT INTO " + group.intermediateTable() + " (" + group.leftColumn() + ", " + group.rightColumn() + ") VALUES (?, ?)",
+                    toInsert.stream().map( e -> List.of(e.parent.id, e.id) ).toList()
+                );
+                // Living parent models might have cached the old content of their lists:
+                toInsert.stream()
+                        .map( e -> e.parent )
+                        .distinct()
+                        .forEach( p -> _dataBase._forgetCachedProperty(p.group.table.getTableName(), p.id, group.listField.getMethodName()) );
+            }
+        }
+
+        // Then we update the existing rows, one batch for every combination of updated columns:
+        toUpdate.forEach( (columns, entries) -> {
+            String sql = "UPDATE " + tableName + " SET " +
+                            columns.stream().map( c -> c.getName() + " = ?" ).collect(Collectors.joining(", ")) +
+                         " WHERE id = ?";
+            List<List<Object>> rows = new ArrayList<>();
+            for ( EntryImpl<?> entry : entries ) {
+                List<Object> row = new ArrayList<>(entry.values.values());
+                row.add(entry.id);
+                rows.add(row);
+            }
+            _dataBase._batch(sql, rows);
+        });
+
+        // Finally we do the same thing for the children, now that all parents have an id:
+        for ( Group<?> children : group.children.values() )
+            _write(children);
+    }
+}
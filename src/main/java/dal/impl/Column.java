@@ -0,0 +1,368 @@
+package dal.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  A column of a {@link ColumnTable}, which stores the values of a single property
+ *  of all rows in a primitive array instead of as objects.
+ *  Integers, booleans and foreign keys are stored as ints, longs as longs,
+ *  floating point numbers as doubles and strings are dictionary encoded,
+ *  which means that every distinct string is stored once and the rows only store its code.
+ *  Whether a value is null is tracked in a separate bit set.
+ *  <p>
+ *      Values which are compared with the values of a column are expected
+ *      to be normalized by {@link #normalized(Object)} first,
+ *      which turns models into their ids and booleans into ints.
+ */
+abstract class Column
+{
+    private final String _name;
+    private final Class<?> _type;
+    protected final BitSet _nulls = new BitSet();
+
+    protected Column( String name, Class<?> type ) {
+        _name = name;
+        _type = type;
+    }
+
+    /**
+     *  Creates the column storing the values of the provided type,
+     *  where model types are stored as foreign keys.
+     */
+    static Column of( String name, Class<?> type ) {
+        if ( type == String.class )
+            return new StringColumn(name);
+        if ( type == Long.class || type == long.class )
+            return new LongColumn(name, Long.class);
+        if ( type == Double.class || type == double.class || type == Float.class || type == float.class )
+            return new DoubleColumn(name, type == Float.class || type == float.class ? Float.class : Double.class);
+        if ( type == Boolean.class || type == boolean.class )
+            return new IntColumn(name, Boolean.class);
+        if ( type == Short.class || type == short.class )
+            return new IntColumn(name, Short.class);
+        if ( type == Byte.class || type == byte.class )
+            return new IntColumn(name, Byte.class);
+        if ( type == Integer.class || type == int.class || dal.api.Model.class.isAssignableFrom(type) )
+            return new IntColumn(name, Integer.class);
+        throw new IllegalArgumentException("The type " + type.getName() + " is not supported");
+    }
+
+    String name() { return _name; }
+
+    /**
+     * @return The type of the values returned by {@link #get(int)}, where foreign keys are Integers.
+     */
+    Class<?> type() { return _type; }
+
+    boolean isNull( int row ) { return _nulls.get(row); }
+
+    /**
+     * @return The value of the row, boxed as the type of the column, or null.
+     */
+    abstract Object get( int row );
+
+    /**
+     *  Stores a value in a row, which grows the column if the row is not part of it yet.
+     */
+    abstract void set( int row, Object value );
+
+    /**
+     *  Compares the value of a row with a normalized value which is not null.
+     *  The row is expected to not be null either.
+     */
+    abstract int compare( int row, Object value );
+
+    /**
+     *  Compares the values of two rows, which are both expected to not be null.
+     */
+    abstract int compareRows( int row, int otherRow );
+
+    boolean equalTo( int row, Object value ) { return compare(row, value) == 0; }
+
+    /**
+     * @return The int by which the value of the row is hashed in an index,
+     *         which is the value itself for int columns and the code of the string for string columns.
+     */
+    int key( int row ) { throw new UnsupportedOperationException("The column '" + _name + "' cannot be indexed!"); }
+
+    /**
+     * @return The key of a normalized value, or null if no row can have this value.
+     */
+    Integer keyOf( Object value ) { throw new UnsupportedOperationException("The column '" + _name + "' cannot be indexed!"); }
+
+    /**
+     *  Moves the value of a row to another row, which is how tables close the gaps of deleted rows.
+     */
+    abstract void move( int from, int to );
+
+    /**
+     *  Drops all rows starting at the provided one.
+     */
+    void truncate( int size ) { _nulls.clear(size, Math.max(size, _nulls.length())); }
+
+    /**
+     *  Turns the value of a query or of a property into the representation used by the columns.
+     */
+    static Object normalized( Object value ) {
+        if ( value instanceof dal.api.Model<?> model )
+            return model.id().orElseNull();
+        if ( value instanceof Boolean bool )
+            return bool ? 1 : 0;
+        if ( value instanceof Character character )
+            return String.valueOf(character);
+        return value;
+    }
+
+    /**
+     *  Compares a number stored in a column with the value of a query,
+     *  where numbers are compared by their numeric value and everything else by its text,
+     *  which is close enough to how SQLite compares values of different types.
+     */
+    protected static int _compareNumber( double number, Object value ) {
+        if ( value instanceof Number other ) return Double.compare(number, other.doubleValue());
+        return _text(number).compareTo(String.valueOf(value));
+    }
+
+    protected static String _text( double number ) {
+        return number == Math.rint(number) && !Double.isInfinite(number) ? String.valueOf((long) number) : String.valueOf(number);
+    }
+
+    protected static int _capacityFor( int row, int length ) {
+        return Math.max(row + 1, Math.max(length * 2, 16));
+    }
+
+
+    static final class IntColumn extends Column
+    {
+        private int[] _values = new int[16];
+
+        IntColumn( String name, Class<?> type ) { super(name, type); }
+
+        int getInt( int row ) { return _values[row]; }
+
+        @Override
+        Object get( int row ) {
+            if ( row >= _values.length || _nulls.get(row) ) return null;
+            int value = _values[row];
+            if ( type() == Boolean.class ) return value != 0;
+            if ( type() == Short.class ) return (short) value;
+            if ( type() == Byte.class ) return (byte) value;
+            return value;
+        }
+
+        @Override
+        void set( int row, Object value ) {
+            if ( row >= _values.length ) _values = Arrays.copyOf(_values, _capacityFor(row, _values.length));
+            Object normalized = normalized(value);
+            if ( normalized == null ) {
+                _nulls.set(row);
+                _values[row] = 0;
+            } else {
+                _values[row] = ((Number) normalized).intValue(); // Fails before the null flag changes, if the value is not a number.
+                _nulls.clear(row);
+            }
+        }
+
+        @Override
+        int compare( int row, Object value ) {
+            if ( value instanceof Integer other ) return Integer.compare(_values[row], other);
+            return _compareNumber(_values[row], value);
+        }
+
+        @Override
+        int compareRows( int row, int otherRow ) { return Integer.compare(_values[row], _values[otherRow]); }
+
+        @Override
+        boolean equalTo( int row, Object value ) {
+            if ( value instanceof Integer other ) return _values[row] == other;
+            return compare(row, value) == 0;
+        }
+
+        @Override int key( int row ) { return _values[row]; }
+
+        @Override
+        Integer keyOf( Object value ) {
+            if ( value instanceof Number number && number.doubleValue() == number.intValue() )
+                return number.intValue();
+            return null;
+        }
+
+        @Override
+        void move( int from, int to ) {
+            _values[to] = _values[from];
+            _nulls.set(to, _nulls.get(from));
+        }
+    }
+
+    static final class LongColumn extends Column
+    {
+        private long[] _values = new long[16];
+
+        LongColumn( String name, Class<?> type ) { super(name, type); }
+
+        @Override
+        Object get( int row ) {
+            if ( row >= _values.length || _nulls.get(row) ) return null;
+            return _values[row];
+        }
+
+        @Override
+        void set( int row, Object value ) {
+            if ( row >= _values.length ) _values = Arrays.copyOf(_values, _capacityFor(row, _values.length));
+            Object normalized = normalized(value);
+            if ( normalized == null ) {
+                _nulls.set(row);
+                _values[row] = 0;
+            } else {
+                _values[row] = ((Number) normalized).longValue(); // Fails before the null flag changes, if the value is not a number.
+                _nulls.clear(row);
+            }
+        }
+
+        @Override
+        int compare( int row, Object value ) {
+            if ( value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte )
+                return Long.compare(_values[row], ((Number) value).longValue());
+            return _compareNumber(_values[row], value);
+        }
+
+        @Override
+        int compareRows( int row, int otherRow ) { return Long.compare(_values[row], _values[otherRow]); }
+
+        @Override
+        void move( int from, int to ) {
+            _values[to] = _values[from];
+            _nulls.set(to, _nulls.get(from));
+        }
+    }
+
+    static final class DoubleColumn extends Column
+    {
+        private double[] _values = new double[16];
+
+        DoubleColumn( String name, Class<?> type ) { super(name, type); }
+
+        double getDouble( int row ) { return _values[row]; }
+
+        @Override
+        Object get( int row ) {
+            if ( row >= _values.length || _nulls.get(row) ) return null;
+            return type() == Float.class ? (Object) (float) _values[row] : (Object) _values[row];
+        }
+
+        @Override
+        void set( int row, Object value ) {
+            if ( row >= _values.length ) _values = Arrays.copyOf(_values, _capacityFor(row, _values.length));
+            Object normalized = normalized(value);
+            if ( normalized == null ) {
+                _nulls.set(row);
+                _values[row] = 0;
+            } else {
+                _values[row] = ((Number) normalized).doubleValue(); // Fails before the null flag changes, if the value is not a number.
+                _nulls.clear(row);
+            }
+        }
+
+        @Override
+        int compare( int row, Object value ) { return _compareNumber(_values[row], value); }
+
+        @Override
+        int compareRows( int row, int otherRow ) { return Double.compare(_values[row], _values[otherRow]); }
+
+        @Override
+        void move( int from, int to ) {
+            _values[to] = _values[from];
+            _nulls.set(to, _nulls.get(from));
+        }
+    }
+
+    /**
+     *  Stores the codes of strings, where the code of a string is its position in the dictionary.
+     *  Rows with the same text share the same string instance, and comparing a row
+     *  with a text for equality only compares two ints.
+     *  The dictionary only grows, until the table is compacted, see {@link #compactDictionary()}.
+     */
+    static final class StringColumn extends Column
+    {
+        private int[] _codes = new int[16];
+        private final List<String> _dictionary = new ArrayList<>();
+        private final Map<String, Integer> _codesByText = new HashMap<>();
+
+        StringColumn( String name ) { super(name, String.class); }
+
+        @Override
+        Object get( int row ) {
+            if ( row >= _codes.length || _nulls.get(row) ) return null;
+            return _dictionary.get(_codes[row]);
+        }
+
+        @Override
+        void set( int row, Object value ) {
+            if ( row >= _codes.length ) _codes = Arrays.copyOf(_codes, _capacityFor(row, _codes.length));
+            if ( value == null ) {
+                _nulls.set(row);
+                _codes[row] = 0;
+            } else {
+                _nulls.clear(row);
+                _codes[row] = _codeOf(String.valueOf(normalized(value)));
+            }
+        }
+
+        private int _codeOf( String text ) {
+            Integer code = _codesByText.get(text);
+            if ( code == null ) {
+                code = _dictionary.size();
+                _dictionary.add(text);
+                _codesByText.put(text, code);
+            }
+            return code;
+        }
+
+        @Override
+        int compare( int row, Object value ) { return _dictionary.get(_codes[row]).compareTo(String.valueOf(value)); }
+
+        @Override
+        int compareRows( int row, int otherRow ) {
+            if ( _codes[row] == _codes[otherRow] ) return 0;
+            return _dictionary.get(_codes[row]).compareTo(_dictionary.get(_codes[otherRow]));
+        }
+
+        @Override
+        boolean equalTo( int row, Object value ) {
+            Integer code = keyOf(value);
+            return code != null && _codes[row] == code;
+        }
+
+        @Override int key( int row ) { return _codes[row]; }
+
+        @Override
+        Integer keyOf( Object value ) { return _codesByText.get(String.valueOf(value)); }
+
+        @Override
+        void move( int from, int to ) {
+            _codes[to] = _codes[from];
+            _nulls.set(to, _nulls.get(from));
+        }
+
+        /**
+         *  Rebuilds the dictionary from the texts still used by the first rows,
+         *  so that texts which are no longer used do not occupy memory forever.
+         *
+         * @param size The number of rows of the table.
+         */
+        void compactDictionary( int size ) {
+            List<String> texts = new ArrayList<>(size);
+            for ( int row = 0; row < size; row++ )
+                texts.add((String) get(row));
+            _dictionary.clear();
+            _codesByText.clear();
+            for ( int row = 0; row < size; row++ )
+                set(row, texts.get(row));
+        }
+    }
+}
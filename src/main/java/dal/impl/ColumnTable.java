@@ -0,0 +1,260 @@
+package dal.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  The rows of a single table of the {@link ColumnarDataBase}, stored column by column.
+ *  The first column is always the id, which is found through a hash index
+ *  mapping every id to the row storing it.
+ *  Additional hash indexes map the values of some int columns (like foreign keys)
+ *  to the rows having them, where the rows of every value are kept in table order.
+ *  <p>
+ *      Rows are appended in the order of their ids, which is why scanning the table
+ *      returns them ordered by id, like SQLite does for a table without an explicit order.
+ *      Deleted rows leave a gap behind, which is closed once gaps make up half of the table.
+ */
+final class ColumnTable
+{
+    static final String ID = "id";
+
+    private static final int MIN_GAPS_FOR_COMPACTION = 64;
+
+    private final String _name;
+    private final Column[] _columns;
+    private final Map<String, Integer> _positions = new LinkedHashMap<>();
+    private final IntObjectMap<IntArrayList>[] _indexes; // An index for every column, or null if it is not indexed.
+    private final IntIntMap _rowsById = new IntIntMap();
+    private final BitSet _gaps = new BitSet();
+    private int _rows = 0; // The number of used rows, including the gaps.
+    private int _nextId = 1;
+
+    /**
+     * @param name The name of the table.
+     * @param columns The columns of the table, the first of which has to be the "id" column.
+     * @param indexedColumns The names of the columns which are indexed.
+     */
+    ColumnTable( String name, List<Column> columns, List<String> indexedColumns ) {
+        if ( columns.isEmpty() || !columns.get(0).name().equals(ID) || !(columns.get(0) instanceof Column.IntColumn) )
+            throw new IllegalArgumentException("The first column of table '" + name + "' has to be the integer id!");
+        _name = name;
+        _columns = columns.toArray(new Column[0]);
+        _indexes = new IntObjectMap[_columns.length];
+        for ( int i = 0; i < _columns.length; i++ )
+            _positions.put(_columns[i].name(), i);
+        for ( String indexed : indexedColumns ) {
+            int position = positionOf(indexed);
+            if ( position > 0 ) _indexes[position] = new IntObjectMap<>();
+        }
+    }
+
+    String name() { return _name; }
+
+    List<String> columnNames() { return new ArrayList<>(_positions.keySet()); }
+
+    /**
+     * @return The position of the column, or -1 if there is no column with this name.
+     */
+    int positionOf( String column ) { return _positions.getOrDefault(column, -1); }
+
+    Column column( int position ) { return _columns[position]; }
+
+    boolean isIndexed( int position ) { return position == 0 || _indexes[position] != null; }
+
+    /**
+     * @return The number of rows, without the gaps of deleted rows.
+     */
+    int size() { return _rows - _gaps.cardinality(); }
+
+    /**
+     * @return The number of rows including the gaps, which is the upper bound for scanning the table.
+     */
+    int rowCount() { return _rows; }
+
+    boolean isRow( int row ) { return row >= 0 && row < _rows && !_gaps.get(row); }
+
+    int idOf( int row ) { return ((Column.IntColumn) _columns[0]).getInt(row); }
+
+    /**
+     * @return The row storing the id, or -1 if there is no row with this id.
+     */
+    int rowOf( int id ) { return _rowsById.get(id, -1); }
+
+    Object get( int row, int position ) { return _columns[position].get(row); }
+
+    /**
+     *  Inserts a new row with the next free id, where ids are never reused.
+     *
+     * @param values The values of all columns except the id, in the order of the columns.
+     * @return The id of the new row.
+     */
+    int insert( List<Object> values ) {
+        int id = _nextId;
+        List<Object> row = new ArrayList<>(values.size() + 1);
+        row.add(id);
+        row.addAll(values);
+        insertWithId(row);
+        return id;
+    }
+
+    /**
+     *  Inserts a row whose id is already known, like a row of a dump.
+     *
+     * @param values The values of all columns, starting with the id.
+     */
+    void insertWithId( List<Object> values ) {
+        if ( values.size() != _columns.length )
+            throw new IllegalArgumentException(
+                    "Table '" + _name + "' has " + _columns.length + " columns, but " + values.size() + " values were provided!"
+                );
+        Object idValue = values.get(0);
+        if ( !(idValue instanceof Number) )
+            throw new IllegalArgumentException("The id of a row of table '" + _name + "' has to be a number, but it is '" + idValue + "'!");
+        int id = ((Number) idValue).intValue();
+        if ( _rowsById.containsKey(id) )
+            throw new IllegalArgumentException("Table '" + _name + "' already has a row with id " + id + "!");
+        if ( _rows > 0 && id < idOf(_rows - 1) )
+            throw new IllegalArgumentException("The rows of table '" + _name + "' have to be inserted in the order of their ids!");
+        int row = _rows;
+        try {
+            for ( int i = 0; i < _columns.length; i++ )
+                _columns[i].set(row, values.get(i));
+        } catch ( RuntimeException e ) {
+            // A value which does not fit its column must not leave a half written row behind:
+            for ( Column column : _columns )
+                column.truncate(row);
+            throw e;
+        }
+        _rows++;
+        _rowsById.put(id, row);
+        for ( int i = 1; i < _columns.length; i++ )
+            if ( _indexes[i] != null && !_columns[i].isNull(row) )
+                _indexes[i].computeIfAbsent(_columns[i].key(row), k -> new IntArrayList()).add(row);
+        _nextId = Math.max(_nextId, id + 1);
+    }
+
+    /**
+     *  Stores a value in a column of a row and updates the index of the column.
+     */
+    void set( int row, int position, Object value ) {
+        if ( position == 0 )
+            throw new IllegalArgumentException("The id of a row of table '" + _name + "' cannot be changed!");
+        IntObjectMap<IntArrayList> index = _indexes[position];
+        Column column = _columns[position];
+        boolean wasIndexed = index != null && !column.isNull(row);
+        int previousKey = wasIndexed ? column.key(row) : 0;
+        column.set(row, value); // Changes nothing if the value does not fit the column.
+        if ( wasIndexed )
+            _removeFromIndex(index, previousKey, row);
+        if ( index != null && !column.isNull(row) ) {
+            IntArrayList rows = index.computeIfAbsent(column.key(row), k -> new IntArrayList());
+            rows.add(_insertionPointOf(rows, row), row);
+        }
+    }
+
+    /**
+     * @return True if there was a row with this id.
+     */
+    boolean delete( int id ) {
+        int row = rowOf(id);
+        if ( row < 0 ) return false;
+        for ( int i = 1; i < _columns.length; i++ )
+            if ( _indexes[i] != null && !_columns[i].isNull(row) )
+                _removeFromIndex(_indexes[i], _columns[i].key(row), row);
+        _rowsById.remove(id);
+        _gaps.set(row);
+        int gaps = _gaps.cardinality();
+        if ( gaps >= MIN_GAPS_FOR_COMPACTION && gaps * 2 >= _rows )
+            _compact();
+        return true;
+    }
+
+    /**
+     *  Finds the rows having a value in an indexed column (or the id column) without scanning the table.
+     *
+     * @param position The position of the indexed column.
+     * @param value A normalized value which is not null.
+     * @return The rows in table order, which must not be modified.
+     */
+    IntArrayList rowsWith( int position, Object value ) {
+        Column column = _columns[position];
+        Integer key = column.keyOf(value);
+        if ( position == 0 ) {
+            IntArrayList rows = new IntArrayList(1);
+            int row = key == null ? -1 : rowOf(key);
+            if ( row >= 0 ) rows.add(row);
+            return rows;
+        }
+        IntArrayList rows = key == null ? null : _indexes[position].get(key);
+        return rows == null ? new IntArrayList(0) : rows;
+    }
+
+    /**
+     *  Removes all rows, but the ids of new rows still continue after the ids of the removed ones.
+     */
+    void clear() {
+        for ( Column column : _columns )
+            column.truncate(0);
+        for ( IntObjectMap<IntArrayList> index : _indexes )
+            if ( index != null ) index.clear();
+        _rowsById.clear();
+        _gaps.clear();
+        _rows = 0;
+    }
+
+    private static void _removeFromIndex( IntObjectMap<IntArrayList> index, int key, int row ) {
+        IntArrayList rows = index.get(key);
+        if ( rows == null ) return;
+        int position = _insertionPointOf(rows, row);
+        if ( position < rows.size() && rows.get(position) == row )
+            rows.removeAt(position);
+        if ( rows.isEmpty() ) index.remove(key);
+    }
+
+    /**
+     * @return The position of the row in the sorted rows, or where it would have to be inserted.
+     */
+    private static int _insertionPointOf( IntArrayList rows, int row ) {
+        int low = 0, high = rows.size();
+        while ( low < high ) {
+            int middle = (low + high) >>> 1;
+            if ( rows.get(middle) < row ) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     *  Closes the gaps of the deleted rows by moving the following rows up,
+     *  which keeps the rows in the order of their ids, and rebuilds the indexes.
+     */
+    private void _compact() {
+        int size = 0;
+        for ( int row = 0; row < _rows; row++ ) {
+            if ( _gaps.get(row) ) continue;
+            if ( row != size )
+                for ( Column column : _columns )
+                    column.move(row, size);
+            size++;
+        }
+        for ( Column column : _columns ) {
+            column.truncate(size);
+            if ( column instanceof Column.StringColumn strings )
+                strings.compactDictionary(size);
+        }
+        _rows = size;
+        _gaps.clear();
+        _rowsById.clear();
+        for ( IntObjectMap<IntArrayList> index : _indexes )
+            if ( index != null ) index.clear();
+        for ( int row = 0; row < _rows; row++ ) {
+            _rowsById.put(idOf(row), row);
+            for ( int i = 1; i < _columns.length; i++ )
+                if ( _indexes[i] != null && !_columns[i].isNull(row) )
+                    _indexes[i].computeIfAbsent(_columns[i].key(row), k -> new IntArrayList()).add(row);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package dal.impl;
+
+import dal.api.BulkImport;
+import dal.api.Model;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ *  The implementation of the {@link BulkImport} API for the {@link ColumnarDataBase},
+ *  which upserts the entries directly into the {@link ColumnTable}s, table by table:
+ *  <ol>
+ *      <li>The ids of the existing root rows are resolved by their keys in a single scan of the table,
+ *          the existing children are found through the index of the list entries of their parents.</li>
+ *      <li>Missing rows are appended with the default values for all columns which are not set.</li>
+ *      <li>Existing rows are updated in place.</li>
+ *      <li>Newly inserted children are added to the lists of their parents.</li>
+ *  </ol>
+ *  Every write is recorded in an undo log, which is replayed backwards if the import fails,
+ *  so that the import either succeeds as a whole or not at all.
+ *  The live lists are only refreshed once after the entire import was written.
+ *
+ * @param <M> The type of the root model of the import.
+ */
+final class ColumnarBulkImporter<M extends Model<M>> extends AbstractBulkImporter<M>
+{
+    private final ColumnarDataBase _dataBase;
+    private final Deque<Runnable> _undoLog = new ArrayDeque<>();
+    private final Set<String> _changedTables = new LinkedHashSet<>();
+
+    ColumnarBulkImporter( ColumnarDataBase dataBase, Class<M> model, TableField keyField ) {
+        super(model, dataBase._getTableFor(model), keyField);
+        _dataBase = dataBase;
+    }
+
+    @Override
+    protected ModelTable _tableFor( Class<? extends Model<?>> model ) { return _dataBase._getTableFor(model); }
+
+    @Override
+    protected <T extends Model<T>> TableField _fieldOf( Function<T, ?> selector, Class<T> model ) {
+        return _dataBase._selectTableField(selector, model);
+    }
+
+    @Override
+    public List<M> execute() {
+        try {
+            _write(_root);
+        } catch ( RuntimeException e ) {
+            while ( !_undoLog.isEmpty() )
+                _undoLog.pop().run();
+            throw e;
+        } finally {
+            _undoLog.clear();
+        }
+        _changedTables.forEach(_dataBase::_refreshLiveLists);
+        _changedTables.clear();
+        return _root.entries.values()
+                            .stream()
+                            .map( e -> _dataBase._proxyFor(_root.model, _root.table, e.id) )
+                            .toList();
+    }
+
+    private void _write( Group<?> group ) {
+        if ( group.entries.isEmpty() ) return;
+        ColumnTable table = _dataBase._columnTableOf(group.table.getTableName());
+        int keyPosition = table.positionOf(group.keyField.getName());
+        /*
+            Root keys are unique within the entire table, so we scan the key column once.
+            The keys of children only have to be unique within the list of their parent,
+            so we look up the entries of the lists of the imported parents through the index of the intermediate table.
+        */
+        Map<List<Object>, Integer> existing = new HashMap<>();
+        ColumnTable lists = group.listField == null ? null : _dataBase._columnTableOf(group.intermediateTable());
+        if ( lists == null ) {
+            for ( int row = 0; row < table.rowCount(); row++ )
+                if ( table.isRow(row) )
+                    existing.put(Arrays.asList(null, table.get(row, keyPosition)), table.idOf(row));
+        } else {
+            Set<Integer> parents = new LinkedHashSet<>();
+            for ( EntryImpl<?> entry : group.entries.values() )
+                parents.add(entry.parent.id);
+            for ( int parent : parents ) {
+                IntArrayList entries = lists.rowsWith(ColumnarProperties.LEFT, parent);
+                for ( int i = 0; i < entries.size(); i++ ) {
+                    Object child = lists.get(entries.get(i), ColumnarProperties.RIGHT);
+                    int row = child == null ? -1 : table.rowOf((Integer) child);
+                    if ( row >= 0 )
+                        existing.put(Arrays.asList(parent, table.get(row, keyPosition)), table.idOf(row));
+                }
+            }
+        }
+
+        List<EntryImpl<?>> toInsert = new ArrayList<>();
+        Map<List<TableField>, List<EntryImpl<?>>> toUpdate = new LinkedHashMap<>();
+        _sortEntries(group, existing, toInsert, toUpdate);
+
+        // Now we append the missing rows, where all unspecified columns receive their default values:
+        if ( !toInsert.isEmpty() ) {
+            List<TableField> columns = _insertedColumns(group);
+            int width = table.columnNames().size() - 1; // Everything but the id.
+            for ( EntryImpl<?> entry : toInsert ) {
+                List<Object> values = _insertedValues(entry, columns);
+                List<Object> row = new ArrayList<>(Collections.nCopies(width, null));
+                for ( int i = 0; i < columns.size(); i++ )
+                    row.set(table.positionOf(columns.get(i).getName()) - 1, values.get(i));
+                entry.id = _insert(table, row);
+                // New children have to be added to the lists of their parents:
+                if ( lists != null )
+                    _insert(lists, Arrays.asList(entry.parent.id, entry.id));
+            }
+        }
+
+        // Then we update the existing rows in place:
+        toUpdate.forEach( (columns, entries) -> {
+            for ( EntryImpl<?> entry : entries ) {
+                int row = table.rowOf(entry.id);
+                int i = 0;
+                for ( Object value : entry.values.values() )
+                    _set(table, row, table.positionOf(columns.get(i++).getName()), value);
+            }
+        });
+
+        // Finally we do the same thing for the children, now that all parents have an id:
+        for ( Group<?> children : group.children.values() )
+            _write(children);
+    }
+
+    private int _insert( ColumnTable table, List<Object> valuesWithoutId ) {
+        int id = table.insert(valuesWithoutId);
+        _undoLog.push(() -> table.delete(id));
+        _changedTables.add(table.name());
+        return id;
+    }
+
+    private void _set( ColumnTable table, int row, int position, Object value ) {
+        int id = table.idOf(row);
+        Object previous = table.get(row, position);
+        table.set(row, position, value);
+        // Rows move when deleted rows are compacted, so the undo has to find the row by its id again:
+        _undoLog.push(() -> {
+            int current = table.rowOf(id);
+            if ( current >= 0 ) table.set(current, position, previous);
+        });
+        _changedTables.add(table.name());
+    }
+}
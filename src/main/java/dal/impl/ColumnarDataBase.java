@@ -0,0 +1,611 @@
+package dal.impl;
+
+import dal.api.*;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import sprouts.Val;
+import sprouts.Vars;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ *  A database which keeps all tables in memory, without SQLite and without SQL.
+ *  Every table is a {@link ColumnTable}, which stores the values of a column in a primitive array
+ *  (strings are stored as codes of a dictionary), so that scanning a column touches
+ *  contiguous memory instead of rows of boxed objects.
+ *  The ids, foreign keys and the columns of intermediate tables are indexed by hash maps,
+ *  so looking up a model or the entries of a list does not scan anything.
+ *  <p>
+ *      Models, queries, lists and transactions ({@link Model#commit(java.util.function.Consumer)})
+ *      behave like they do in the {@link SQLiteDataBase}, but everything based on SQL
+ *      (like executing raw SQL, the SQL code of tables, attached database files and the statement metrics)
+ *      is not supported. The content can be saved to and loaded from files in the NDJSON format
+ *      of {@link #dumpTo(Writer)}.
+ *  <p>
+ *      Like the game state it is meant for, the database is not synchronized,
+ *      so it must only be accessed by a single thread (or under an external lock).
+ */
+public final class ColumnarDataBase implements DataBase
+{
+    private final static Logger log = org.slf4j.LoggerFactory.getLogger(ColumnarDataBase.class);
+
+    private static final String TABLE_KEY = "table";
+    private static final String ROW_KEY = "row";
+
+    private final ModelRegistry _modelRegistry = new ModelRegistry();
+    private final Map<String, ColumnTable> _tables = new LinkedHashMap<>(); // The created tables, in the order of their creation.
+    private final IdentityMap<ColumnarModelProxy<?>> _modelProxies = new IdentityMap<>();
+    private final Map<String, String> _metadata = new LinkedHashMap<>();
+    private final List<LiveList<?>> _liveLists = new ArrayList<>();
+    private boolean _isClosed = false;
+
+    public ColumnarDataBase() {}
+
+    @Override
+    public void createTablesFor( Class<? extends Model<?>>... models ) {
+        _requireOpen();
+        _modelRegistry.addTables(Arrays.asList(models));
+        for ( ModelTable modelTable : _modelRegistry.getTables() )
+            if ( !_tables.containsKey(modelTable.getTableName()) )
+                _tables.put(modelTable.getTableName(), _newColumnTableFor(modelTable));
+    }
+
+    /**
+     *  Creates an empty table for a model or for the list property of a model,
+     *  where foreign keys are indexed like in the SQLite database.
+     */
+    private static ColumnTable _newColumnTableFor( ModelTable modelTable ) {
+        List<Column> columns = new ArrayList<>();
+        List<String> indexed = new ArrayList<>();
+        if ( modelTable.getModelInterface().isPresent() ) {
+            for ( TableField field : modelTable.getFields() ) {
+                if ( field.requiresIntermediateTable() ) continue;
+                columns.add(Column.of(field.getName(), field.getType()));
+                if ( field.isForeignKey() ) indexed.add(field.getName());
+            }
+        } else {
+            // An intermediate table, which has an id and a foreign key to each side:
+            List<Class<? extends Model<?>>> referenced = modelTable.getReferencedModels();
+            String left  = ModelTable.INTER_LEFT_FK_PREFIX + AbstractDataBase._tableNameFromClass(referenced.get(0)) + ModelTable.INTER_FK_POSTFIX;
+            String right = ModelTable.INTER_RIGHT_FK_PREFIX + AbstractDataBase._tableNameFromClass(referenced.get(1)) + ModelTable.INTER_FK_POSTFIX;
+            columns.add(Column.of(ColumnTable.ID, Integer.class));
+            columns.add(Column.of(left, Integer.class));
+            columns.add(Column.of(right, Integer.class));
+            indexed.add(left);
+            indexed.add(right);
+        }
+        return new ColumnTable(modelTable.getTableName(), columns, indexed);
+    }
+
+    @Override
+    public void attach( String schema, Path file, Class<? extends Model<?>>... models ) {
+        throw new UnsupportedOperationException("A columnar database cannot have other database files attached!");
+    }
+
+    @Override
+    public void detach( String schema ) {
+        throw new UnsupportedOperationException("A columnar database cannot have other database files attached!");
+    }
+
+    @Override
+    public void dropTablesFor( Class<? extends Model<?>>... models ) {
+        for ( Class<? extends Model<?>> model : models )
+            if ( _tables.containsKey(AbstractDataBase._tableNameFromClass(model)) )
+                dropTable(model);
+    }
+
+    @Override
+    public List<String> listOfAllTableNames() { return new ArrayList<>(_tables.keySet()); }
+
+    @Override
+    public void execute( String sql ) {
+        throw new UnsupportedOperationException("A columnar database does not understand SQL!");
+    }
+
+    @Override
+    public void dropAllTables() {
+        _tables.clear();
+        _modelProxies.clear();
+        _metadata.clear();
+        _refreshLiveLists(null);
+    }
+
+    @Override
+    public void dropTable( Class<? extends Model<?>> model ) {
+        String tableName = AbstractDataBase._tableNameFromClass(model);
+        _tables.remove(tableName);
+        _modelProxies.removeTable(tableName);
+        _refreshLiveLists(tableName);
+    }
+
+    @Override
+    public String sqlCodeOfTable( Class<? extends Model<?>> model ) {
+        throw new UnsupportedOperationException("The tables of a columnar database are not defined by SQL code!");
+    }
+
+    @Override
+    public Optional<String> readMetadata( String key ) {
+        Objects.requireNonNull(key);
+        return Optional.ofNullable(_metadata.get(key));
+    }
+
+    @Override
+    public void writeMetadata( String key, String value ) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        _metadata.put(key, value);
+    }
+
+    @Override
+    public void enableQueryCache( int capacity ) {
+        // There is nothing to gain from caching results which are computed from memory anyway.
+    }
+
+    @Override
+    public CacheStats queryCacheStats() { return new CacheStats(0, 0, 0, 0, 0); }
+
+    @Override
+    public void enableRowCache( int capacity ) {
+        if ( capacity < 0 )
+            throw new IllegalArgumentException("The capacity of the row cache must not be negative!");
+        // The columns already are the rows in memory.
+    }
+
+    @Override
+    public CacheStats rowCacheStats() { return new CacheStats(0, 0, 0, 0, 0); }
+
+    @Override
+    public DataBaseMetrics metrics() { return new DataBaseMetrics(List.of(), queryCacheStats(), 0, 0); }
+
+    @Override
+    public void resetMetrics() {}
+
+    @Override
+    public void logSlowStatements( Duration threshold ) {
+        Objects.requireNonNull(threshold);
+    }
+
+    @Override
+    public List<SlowStatement> slowStatements() { return List.of(); }
+
+    @Override
+    public void clearSlowStatements() {}
+
+    @Override
+    public <M extends Model<M>> M create( Class<M> model ) {
+        ModelTable modelTable = _getTableFor(model);
+        ColumnTable table = _columnTableOf(modelTable.getTableName());
+        List<TableField> fields = modelTable.getFields();
+        List<Object> defaultValues = modelTable.getDefaultValues();
+        List<Object> values = new ArrayList<>();
+        for ( int i = 0; i < fields.size(); i++ ) {
+            TableField field = fields.get(i);
+            if ( field.requiresIntermediateTable() || field.getKind() == FieldKind.ID ) continue;
+            values.add(defaultValues.get(i));
+        }
+        int id = _insert(table, values);
+        return _proxyFor(model, modelTable, id);
+    }
+
+    @Override
+    public <T extends Model<T>> T select( Class<T> model, int id ) {
+        if ( id < 0 )
+            throw new IllegalArgumentException("The id must be a positive integer!");
+        return _proxyFor(model, _getTableFor(model), id);
+    }
+
+    @Override
+    public <M extends Model<M>> List<M> selectAll( Class<M> models ) {
+        ModelTable modelTable = _getTableFor(models);
+        ColumnTable table = _columnTableOf(modelTable.getTableName());
+        List<M> all = new ArrayList<>(table.size());
+        for ( int row = 0; row < table.rowCount(); row++ )
+            if ( table.isRow(row) )
+                all.add(_proxyFor(models, modelTable, table.idOf(row)));
+        return all;
+    }
+
+    @Override
+    public <M extends Model<M>> void delete( M modelToBeRemoved ) {
+        Objects.requireNonNull(modelToBeRemoved, "The provided model is null!");
+        Class<? extends Model<?>> modelInterface =
+                (Class<? extends Model<?>>) Arrays.stream(modelToBeRemoved.getClass().getInterfaces())
+                                                    .filter(Model.class::isAssignableFrom)
+                                                    .findFirst()
+                                                    .orElseThrow();
+        int id = modelToBeRemoved.id().get();
+        String tableName = AbstractDataBase._tableNameFromClass(modelInterface);
+        ColumnTable table = _columnTableOf(tableName);
+        Set<String> changedTables = new LinkedHashSet<>();
+        /*
+            The model is removed from all lists containing it, and its own lists are removed as well.
+            Both sides of an intermediate table are indexed, so this does not scan anything.
+        */
+        for ( ModelTable intermediate : _modelRegistry.getIntermediateTableInvolving(modelInterface) ) {
+            ColumnTable entries = _tables.get(intermediate.getTableName());
+            if ( entries == null ) continue;
+            List<Class<? extends Model<?>>> referenced = intermediate.getReferencedModels();
+            List<Integer> entryIds = new ArrayList<>();
+            if ( referenced.get(1).equals(modelInterface) )
+                _collectIds(entries, entries.rowsWith(ColumnarProperties.RIGHT, id), entryIds);
+            if ( referenced.get(0).equals(modelInterface) )
+                _collectIds(entries, entries.rowsWith(ColumnarProperties.LEFT, id), entryIds);
+            for ( int entryId : entryIds )
+                if ( entries.delete(entryId) )
+                    changedTables.add(entries.name());
+        }
+        _modelProxies.remove(tableName, id);
+        if ( table.delete(id) )
+            changedTables.add(tableName);
+        changedTables.forEach(this::_refreshLiveLists);
+    }
+
+    private static void _collectIds( ColumnTable table, IntArrayList rows, List<Integer> ids ) {
+        for ( int i = 0; i < rows.size(); i++ )
+            ids.add(table.idOf(rows.get(i)));
+    }
+
+    @Override
+    public <M extends Model<M>> Where<M> select( Class<M> model ) {
+        return new ColumnarQuery<>(this, model);
+    }
+
+    @Override
+    public <M extends Model<M>, K> BulkImport<M> bulkImport( Class<M> model, Function<M, Val<K>> key ) {
+        _requireOpen();
+        return new ColumnarBulkImporter<>(this, model, _selectTableField(key, model));
+    }
+
+    @Override
+    public void dumpTo( Writer out ) {
+        Objects.requireNonNull(out);
+        int count = 0;
+        try {
+            for ( ColumnTable table : _tables.values() ) {
+                List<String> columns = table.columnNames();
+                for ( int row = 0; row < table.rowCount(); row++ ) {
+                    if ( !table.isRow(row) ) continue;
+                    JSONObject jsonRow = new JSONObject();
+                    for ( int position = 0; position < columns.size(); position++ ) {
+                        Object value = table.get(row, position);
+                        jsonRow.put(columns.get(position), value == null ? JSONObject.NULL : value);
+                    }
+                    JSONObject line = new JSONObject();
+                    line.put(TABLE_KEY, table.name());
+                    line.put(ROW_KEY, jsonRow);
+                    line.write(out);
+                    out.write('\n');
+                    count++;
+                }
+            }
+            out.flush();
+        } catch ( IOException e ) {
+            throw new UncheckedIOException("Failed to dump the database!", e);
+        }
+        log.info("Dumped {} rows of {} tables.", count, _tables.size());
+    }
+
+    /**
+     *  Replaces the content of all tables with the rows of a dump.
+     *  The rows are first read into new tables, so if a line is invalid, nothing is changed.
+     */
+    @Override
+    public void restoreFrom( Reader in ) {
+        Objects.requireNonNull(in);
+        Map<String, List<JSONObject>> rowsByTable = new LinkedHashMap<>();
+        BufferedReader reader = in instanceof BufferedReader b ? b : new BufferedReader(in);
+        try {
+            String line;
+            int lineNumber = 0;
+            while ( (line = reader.readLine()) != null ) {
+                lineNumber++;
+                if ( line.isBlank() ) continue;
+                JSONObject json = new JSONObject(line);
+                String tableName = json.getString(TABLE_KEY);
+                ColumnTable table = _tables.get(tableName);
+                if ( table == null )
+                    throw new IllegalArgumentException("Line " + lineNumber + " references the unknown table '" + tableName + "'!");
+                JSONObject row = json.getJSONObject(ROW_KEY);
+                for ( String column : row.keySet() )
+                    if ( table.positionOf(column) < 0 )
+                        throw new IllegalArgumentException(
+                                "Line " + lineNumber + " contains the unknown column '" + column + "' of table '" + tableName + "'!"
+                            );
+                rowsByTable.computeIfAbsent(tableName, t -> new ArrayList<>()).add(row);
+            }
+        } catch ( IOException e ) {
+            throw new UncheckedIOException("Failed to restore the database!", e);
+        }
+        Map<String, ColumnTable> restored = new LinkedHashMap<>();
+        int count = 0;
+        for ( ColumnTable table : _tables.values() ) {
+            ColumnTable copy = _newColumnTableFor(_modelRegistry.getTable(table.name()));
+            List<JSONObject> rows = new ArrayList<>(rowsByTable.getOrDefault(table.name(), List.of()));
+            rows.sort(Comparator.comparingLong( row -> row.optLong(ColumnTable.ID) ));
+            List<String> columns = copy.columnNames();
+            for ( JSONObject row : rows ) {
+                List<Object> values = new ArrayList<>(columns.size());
+                for ( String column : columns )
+                    values.add(_fromJson(row.opt(column)));
+                copy.insertWithId(values);
+                count++;
+            }
+            restored.put(table.name(), copy);
+        }
+        // Everything is valid, so we can now replace the rows of the tables used by the living models:
+        for ( ColumnTable table : _tables.values() ) {
+            ColumnTable copy = restored.get(table.name());
+            table.clear();
+            int width = copy.columnNames().size();
+            for ( int row = 0; row < copy.rowCount(); row++ ) {
+                List<Object> values = new ArrayList<>(width);
+                for ( int position = 0; position < width; position++ )
+                    values.add(copy.get(row, position));
+                table.insertWithId(values);
+            }
+        }
+        _refreshLiveLists(null);
+        log.info("Restored {} rows of {} tables.", count, _tables.size());
+    }
+
+    private static Object _fromJson( Object value ) {
+        if ( value == null || value == JSONObject.NULL )
+            return null;
+        else if ( value instanceof BigDecimal decimal )
+            return decimal.doubleValue();
+        else if ( value instanceof BigInteger integer )
+            return integer.longValue();
+        else
+            return value;
+    }
+
+    /**
+     *  Writes a dump of the database to the file in the background,
+     *  where the dump itself is taken right away, so that the database may be changed in the meantime.
+     *  The progress is reported in bytes.
+     */
+    @Override
+    public CompletableFuture<Path> backupTo( Path file, BackupProgress progress ) {
+        Objects.requireNonNull(file, "The file to back up the database to is null!");
+        Objects.requireNonNull(progress, "The backup progress listener is null!");
+        Path target  = file.toAbsolutePath();
+        Path partial = target.resolveSibling(target.getFileName() + ".partial"); // So that a failed backup never replaces a good one.
+        StringWriter snapshot = new StringWriter();
+        dumpTo(snapshot);
+        byte[] bytes = snapshot.toString().getBytes(StandardCharsets.UTF_8);
+        CompletableFuture<Path> done = new CompletableFuture<>();
+        Thread backup = new Thread(() -> {
+            try {
+                Files.createDirectories(target.getParent());
+                try ( OutputStream out = Files.newOutputStream(partial) ) {
+                    int chunk = 64 * 1024;
+                    for ( int offset = 0; offset < bytes.length; offset += chunk ) {
+                        out.write(bytes, offset, Math.min(chunk, bytes.length - offset));
+                        progress.update(Math.min(offset + chunk, bytes.length), bytes.length);
+                    }
+                    if ( bytes.length == 0 ) progress.update(0, 0);
+                }
+                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                done.complete(target);
+            } catch ( Exception e ) {
+                log.error("Failed to back up the columnar database to '{}'!", target, e);
+                try {
+                    Files.deleteIfExists(partial);
+                } catch ( IOException ignored ) {}
+                done.completeExceptionally(e);
+            }
+        }, "Database-Backup");
+        backup.setDaemon(true);
+        backup.start();
+        return done;
+    }
+
+    @Override
+    public void enableMaintenance() {} // There is no file to maintain.
+
+    @Override
+    public List<MaintenanceActivity> maintenanceActivity() { return List.of(); }
+
+    @Override
+    public List<MaintenanceActivity> runMaintenance() { return List.of(); }
+
+    @Override
+    public boolean isInMemory() { return true; }
+
+    @Override
+    public void saveTo( Path file ) {
+        Objects.requireNonNull(file, "The file to save the database to is null!");
+        try {
+            File directory = file.toAbsolutePath().getParent().toFile();
+            if ( !directory.exists() ) directory.mkdirs();
+            try ( Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8) ) {
+                dumpTo(out);
+            }
+        } catch ( IOException e ) {
+            throw new UncheckedIOException("Failed to save the database to '" + file + "'!", e);
+        }
+    }
+
+    @Override
+    public void loadFrom( Path file ) {
+        Objects.requireNonNull(file, "The file to load the database from is null!");
+        if ( !Files.isRegularFile(file) )
+            throw new IllegalArgumentException("There is no database file at '" + file + "' to load from!");
+        try ( Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8) ) {
+            restoreFrom(in);
+        } catch ( IOException e ) {
+            throw new UncheckedIOException("Failed to load the database from '" + file + "'!", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        _isClosed = true;
+        _tables.clear();
+        _modelProxies.clear();
+        _liveLists.clear();
+    }
+
+    private void _requireOpen() {
+        if ( _isClosed )
+            throw new IllegalStateException("The database is closed!");
+    }
+
+    ModelTable _getTableFor( Class<? extends Model<?>> model ) {
+        if ( !Model.class.isAssignableFrom(model) )
+            throw new IllegalArgumentException("The provided class is not a model!");
+        String tableName = AbstractDataBase._tableNameFromClass(model);
+        if ( !_tables.containsKey(tableName) )
+            throw new IllegalArgumentException("The table for the model '" + model.getName() + "' does not exist!");
+        return _modelRegistry.getTable(model).orElseThrow();
+    }
+
+    ColumnTable _columnTableOf( String tableName ) {
+        ColumnTable table = _tables.get(tableName);
+        if ( table == null )
+            throw new IllegalArgumentException("The table '" + tableName + "' does not exist!");
+        return table;
+    }
+
+    /**
+     *  Returns the model with the id, where all models of the same row share the same implementation.
+     *  The id 0 stands for a missing reference, for which we return a model without a row.
+     */
+    <T extends Model<T>> T _modelOf( Class<T> model, int id ) { return _proxyFor(model, _getTableFor(model), id); }
+
+    <T extends Model<T>> T _proxyFor( Class<T> model, ModelTable modelTable, int id ) {
+        ColumnTable table = _columnTableOf(modelTable.getTableName());
+        var proxy = _modelProxies.computeIfAbsent(
+                                    modelTable.getTableName(), id,
+                                    () -> new ColumnarModelProxy<T>(this, modelTable, table, id, true)
+                                );
+        return (T) Proxy.newProxyInstance(model.getClassLoader(), new Class[]{model}, proxy);
+    }
+
+    <T extends Model<T>> TableField _selectTableField( Function<T, ?> selector, Class<T> model ) {
+        var propSelector = new PropertySelectionProxy(_getTableFor(model));
+        selector.apply((T) Proxy.newProxyInstance(
+                                model.getClassLoader(),
+                                new Class<?>[]{model},
+                                propSelector
+                            ));
+        return propSelector.getSelection().orElseThrow();
+    }
+
+    int _insert( ColumnTable table, List<Object> valuesWithoutId ) {
+        int id = table.insert(valuesWithoutId);
+        _refreshLiveLists(table.name());
+        return id;
+    }
+
+    void _write( ColumnTable table, int id, int position, Object value ) {
+        _writeAll(table, id, List.of(position), Collections.singletonList(value));
+    }
+
+    /**
+     *  Writes the values of a couple of columns of a row at once, which updates the live lists only once.
+     *  Like an "UPDATE" statement, writing to a row that does not exist (anymore) does nothing.
+     */
+    void _writeAll( ColumnTable table, int id, List<Integer> positions, List<Object> values ) {
+        int row = table.rowOf(id);
+        if ( row < 0 || positions.isEmpty() ) return;
+        for ( int i = 0; i < positions.size(); i++ )
+            table.set(row, positions.get(i), values.get(i));
+        _refreshLiveLists(table.name());
+    }
+
+    void _delete( ColumnTable table, int id ) {
+        if ( table.delete(id) )
+            _refreshLiveLists(table.name());
+    }
+
+    <M extends Model<M>> Vars<M> _live( ColumnarQuery<M> query ) {
+        LiveList<M> liveList = new LiveList<>(query);
+        _liveLists.add(liveList);
+        return liveList.start();
+    }
+
+    /**
+     *  Brings the live lists reading from the changed table up-to-date.
+     *
+     * @param tableName The name of the changed table, or null if any table may have changed.
+     */
+    void _refreshLiveLists( String tableName ) {
+        _liveLists.removeIf(LiveList::isDiscarded);
+        for ( LiveList<?> liveList : List.copyOf(_liveLists) )
+            if ( tableName == null || liveList.readsFrom(tableName) )
+                liveList.refresh();
+    }
+
+    /**
+     *  Keeps the result of a query in a {@link Vars} list up-to-date, like the {@link LiveQuery}
+     *  of the SQLite database, except that evaluating the query again is cheap enough
+     *  to simply do it after every write to one of the tables it reads from.
+     *  Only the difference to the current list is applied, so observers only see the actual changes.
+     */
+    private final class LiveList<M extends Model<M>>
+    {
+        private final ColumnarQuery<M> _query;
+        private WeakReference<Vars<M>> _models = new WeakReference<>(null);
+        private final List<Integer> _ids = new ArrayList<>();
+
+        LiveList( ColumnarQuery<M> query ) { _query = query; }
+
+        Vars<M> start() {
+            Vars<M> models = Vars.of(_query._model());
+            for ( int id : _query._ids() ) {
+                models.add(_modelOf(_query._model(), id));
+                _ids.add(id);
+            }
+            _models = new WeakReference<>(models);
+            return models;
+        }
+
+        boolean isDiscarded() { return _models.get() == null; }
+
+        boolean readsFrom( String tableName ) { return _query._readTables().contains(tableName); }
+
+        void refresh() {
+            Vars<M> models = _models.get();
+            if ( models == null ) return;
+            List<Integer> ids;
+            try {
+                ids = _query._ids();
+            } catch ( Exception e ) {
+                log.warn("Failed to refresh a live query.", e);
+                return;
+            }
+            Set<Integer> wanted = new HashSet<>(ids);
+            for ( int i = _ids.size() - 1; i >= 0; i-- )
+                if ( !wanted.contains(_ids.get(i)) ) {
+                    _ids.remove(i);
+                    models.removeAt(i);
+                }
+            for ( int i = 0; i < ids.size(); i++ ) {
+                int id = ids.get(i);
+                if ( i < _ids.size() && _ids.get(i) == id )
+                    continue;
+                int current = _ids.indexOf(id);
+                M model = current >= 0 ? models.at(current).get() : _modelOf(_query._model(), id);
+                if ( current >= 0 ) {
+                    _ids.remove(current);
+                    models.removeAt(current);
+                }
+                _ids.add(i, id);
+                models.addAt(i, model);
+            }
+        }
+    }
+}
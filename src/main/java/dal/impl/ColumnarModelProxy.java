@@ -0,0 +1,187 @@
+package dal.impl;
+
+import dal.api.Model;
+import sprouts.Val;
+import sprouts.Vals;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ *  The implementation of a model stored in a {@link ColumnarDataBase},
+ *  which is the counterpart of the {@link ModelProxy} of the SQLite database.
+ *  It only knows the id of its row, the properties read the columns of the row when they are used.
+ */
+final class ColumnarModelProxy<T extends Model<T>> implements InvocationHandler
+{
+    private final ColumnarDataBase _dataBase;
+    private final ModelTable _modelTable;
+    private final ColumnTable _table;
+    private final int _id;
+    private final boolean _isEager;
+    private final Map<String, ProxyRef<Object>> _cachedPropertyProxies = new HashMap<>();
+
+    ColumnarModelProxy(
+        ColumnarDataBase dataBase,
+        ModelTable modelTable,
+        ColumnTable table,
+        int id,
+        boolean isEager
+    ) {
+        _dataBase = dataBase;
+        _modelTable = modelTable;
+        _table = table;
+        _id = id;
+        _isEager = isEager;
+    }
+
+    int getId() { return _id; }
+
+    String getTableName() { return _modelTable.getTableName(); }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+        String methodName = method.getName();
+
+        if ( methodName.equals("equals") && args != null && args.length == 1 ) {
+            if ( !(args[0] instanceof Model<?> other) )
+                return false;
+            return Integer.valueOf(_id).equals(other.id().orElseNull()) && _sameModelType(other);
+        }
+        if ( methodName.equals("hashCode") && args == null )
+            return _id;
+        if ( methodName.equals("toString") && args == null )
+            return _toString();
+        if ( methodName.equals("commit") && args != null && args.length == 1 ) {
+            if ( !(args[0] instanceof Consumer<?> consumer) )
+                throw new IllegalArgumentException("The commit method must have a Consumer as its first argument!");
+            _commit((Consumer<T>) consumer);
+            return null;
+        }
+        if ( methodName.equals("clone") && args == null )
+            return _clone();
+
+        if ( !_modelTable.hasField(methodName) ) {
+            // A method that is not a property, so it has to be a default method of the model:
+            Class<?> modelInterface = _modelTable.getModelInterface().orElseThrow();
+            Method modelInterfaceMethod = modelInterface.getMethod(methodName, method.getParameterTypes());
+            if ( !modelInterfaceMethod.isDefault() )
+                throw new IllegalArgumentException("Method " + methodName + " is not a property and not a default method!");
+
+            return MethodHandles.lookup()
+                    .findSpecial(
+                        modelInterfaceMethod.getDeclaringClass(),
+                        methodName,
+                        MethodType.methodType(method.getReturnType(), method.getParameterTypes()),
+                        modelInterfaceMethod.getDeclaringClass()
+                    )
+                    .bindTo(proxy)
+                    .invokeWithArguments(args);
+        }
+        if ( args != null && args.length != 0 )
+            throw new IllegalArgumentException(
+                    "The model '" + _modelTable.getModelInterface().get().getName() + "' does not have a setter for the property named '" + methodName + "'!"
+                );
+
+        return _propertyOf(_modelTable.getField(methodName)).proxy();
+    }
+
+    private boolean _sameModelType( Model<?> other ) {
+        Class<?> modelInterface = _modelTable.getModelInterface().orElseThrow();
+        return modelInterface.isInstance(other);
+    }
+
+    private ProxyRef<Object> _propertyOf( TableField field ) {
+        return _cachedPropertyProxies.computeIfAbsent(field.getMethodName(), n -> {
+            if ( field.requiresIntermediateTable() ) {
+                ColumnTable intermediateTable = _dataBase._columnTableOf(field.getIntermediateTable().orElseThrow().getTableName());
+                return (ProxyRef) field.asProxyOf(new ColumnarProperties(_dataBase, intermediateTable, field.getType(), _id, _isEager));
+            }
+            int position = _table.positionOf(field.getName());
+            return (ProxyRef) field.asProxyOf(
+                        new ColumnarProperty(_dataBase, _table, position, _id, field.getType(), field.allowsNull(), _isEager)
+                    );
+        });
+    }
+
+    /**
+     *  Passes a non-eager (transactional) version of the model to the transaction,
+     *  and then writes all the properties it changed at once.
+     */
+    private void _commit( Consumer<T> transaction ) {
+        Class<T> modelInterface = (Class<T>) _modelTable.getModelInterface().orElseThrow();
+        var nonEager = new ColumnarModelProxy<T>(_dataBase, _modelTable, _table, _id, false);
+        T transactionProxy = (T) java.lang.reflect.Proxy.newProxyInstance(
+                                    modelInterface.getClassLoader(),
+                                    new Class[]{modelInterface},
+                                    nonEager
+                                );
+        transaction.accept(transactionProxy);
+        nonEager._executeCommit();
+    }
+
+    private void _executeCommit() {
+        if ( _isEager )
+            throw new IllegalStateException("Cannot transact an eager model!");
+        List<Integer> positions = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for ( ProxyRef<Object> ref : _cachedPropertyProxies.values() )
+            if ( ref.impl() instanceof ColumnarProperty property && property.wasSet() ) {
+                positions.add(property.getPosition());
+                values.add(property.getSetVal());
+            }
+        _dataBase._writeAll(_table, _id, positions, values);
+    }
+
+    private Object _clone() {
+        Class<T> modelInterface = (Class<T>) _modelTable.getModelInterface().orElseThrow();
+        T clone = _dataBase.create(modelInterface);
+        int from = _table.rowOf(_id);
+        if ( from < 0 )
+            throw new IllegalStateException("The model '" + modelInterface.getName() + "' with id " + _id + " does not exist (anymore)!");
+        List<Integer> positions = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for ( TableField field : _modelTable.getFields() )
+            if ( !field.requiresIntermediateTable() && !field.getName().equals(ColumnTable.ID) ) {
+                int position = _table.positionOf(field.getName());
+                positions.add(position);
+                values.add(_table.get(from, position));
+            }
+        _dataBase._writeAll(_table, clone.id().get(), positions, values);
+        return clone;
+    }
+
+    private String _toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(_modelTable.getModelInterface().map(Class::getSimpleName).orElse(_modelTable.getTableName()));
+        sb.append("[");
+        List<String> properties = new ArrayList<>();
+        for ( TableField field : _modelTable.getFields() ) {
+            Object impl = _propertyOf(field).impl();
+            if ( !field.requiresIntermediateTable() )
+                properties.add(field.getMethodName() + "=" + _asString(((Val<Object>) impl).orElseNull()));
+            else {
+                List<String> items = new ArrayList<>();
+                for ( Object o : (Vals<Object>) impl )
+                    items.add(_asString(o));
+                properties.add(field.getMethodName() + "=[" + String.join(", ", items) + "]");
+            }
+        }
+        sb.append(String.join(", ", properties));
+        sb.append("]");
+        return sb.toString();
+    }
+
+    private static String _asString( Object o ) {
+        if ( o == null ) return "null";
+        if ( o instanceof String ) return "\"" + o + "\"";
+        return o.toString();
+    }
+}
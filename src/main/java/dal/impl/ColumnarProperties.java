@@ -0,0 +1,212 @@
+package dal.impl;
+
+import dal.api.Model;
+import sprouts.*;
+
+import java.util.*;
+
+/**
+ *  A list property of a model stored in a {@link ColumnarDataBase},
+ *  whose entries are the rows of an intermediate {@link ColumnTable} referencing the owner of the list.
+ *  The rows of the owner are found through the index of the intermediate table,
+ *  so the list is never cached and always reflects the current state of the table.
+ *  Like in the SQLite database, new entries are always appended to the list.
+ */
+final class ColumnarProperties implements Vars<Object>
+{
+    static final int LEFT = 1;  // The position of the column referencing the owner of the list.
+    static final int RIGHT = 2; // The position of the column referencing the listed model.
+
+    private final ColumnarDataBase _dataBase;
+    private final ColumnTable _intermediateTable;
+    private final Class<?> _propertyValueType;
+    private final int _id; // The id of the model to which the list belongs
+    private final boolean _isEager;
+
+    ColumnarProperties(
+        ColumnarDataBase dataBase,
+        ColumnTable intermediateTable,
+        Class<?> propertyValueType,
+        int id,
+        boolean isEager
+    ) {
+        _dataBase = dataBase;
+        _intermediateTable = intermediateTable;
+        _propertyValueType = propertyValueType;
+        _id = id;
+        _isEager = isEager;
+    }
+
+    /**
+     * @return The ids of the rows of the intermediate table which belong to this list, in the order of the list.
+     */
+    private int[] _entryIds() {
+        IntArrayList rows = _intermediateTable.rowsWith(LEFT, _id);
+        int[] ids = new int[rows.size()];
+        for ( int i = 0; i < ids.length; i++ )
+            ids[i] = _intermediateTable.idOf(rows.get(i));
+        return ids;
+    }
+
+    private int _entryId( int index ) {
+        IntArrayList rows = _intermediateTable.rowsWith(LEFT, _id);
+        return _intermediateTable.idOf(rows.get(index));
+    }
+
+    private Model<?> _select( int id ) { return _dataBase._modelOf((Class) _propertyValueType, id); }
+
+    @Override
+    public Iterator<Object> iterator() {
+        IntArrayList rows = _intermediateTable.rowsWith(LEFT, _id);
+        List<Object> models = new ArrayList<>(rows.size());
+        for ( int i = 0; i < rows.size(); i++ )
+            models.add(_select((Integer) _intermediateTable.get(rows.get(i), RIGHT)));
+        return models.iterator();
+    }
+
+    @Override public Class<Object> type() { return (Class<Object>) _propertyValueType; }
+
+    @Override public int size() { return _intermediateTable.rowsWith(LEFT, _id).size(); }
+
+    /**
+     *  Reads the ids of the listed models from the intermediate table, without loading the models.
+     */
+    @Override
+    public int indexOf( Object value ) {
+        if ( !(value instanceof Model<?> model) || !_propertyValueType.isInstance(value) )
+            return -1;
+        Integer modelId = model.id().orElseNull();
+        if ( modelId == null ) return -1;
+        IntArrayList rows = _intermediateTable.rowsWith(LEFT, _id);
+        Column.IntColumn listed = (Column.IntColumn) _intermediateTable.column(RIGHT);
+        for ( int i = 0; i < rows.size(); i++ )
+            if ( listed.getInt(rows.get(i)) == modelId ) return i;
+        return -1;
+    }
+
+    @Override
+    public boolean contains( Object value ) { return indexOf(value) >= 0; }
+
+    @Override
+    public Var<Object> at( int index ) {
+        return new ColumnarProperty(_dataBase, _intermediateTable, RIGHT, _entryId(index), _propertyValueType, false, _isEager);
+    }
+
+    @Override
+    public Vals<Object> onChange(Action<ValsDelegate<Object>> action) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Vals<Object> fireChange() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    private void _requireEager() {
+        if ( !_isEager )
+            throw new UnsupportedOperationException("Transactional modification of lists (intermediate tables) is not supported yet.");
+    }
+
+    @Override
+    public Vars<Object> removeAt( int index ) {
+        _requireEager();
+        _dataBase._delete(_intermediateTable, _entryId(index));
+        return this;
+    }
+
+    @Override
+    public Vars<Object> addAt( int index, Var<Object> var ) {
+        _requireEager();
+        Objects.requireNonNull(var);
+        if ( !_propertyValueType.isAssignableFrom(var.type()) )
+            throw new IllegalArgumentException("The type of the var is not the same as the type of the property");
+        if ( index < 0 || index > size() )
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for a list of size " + size() + "!");
+        _dataBase._insert(_intermediateTable, Arrays.asList(_id, ((Model<?>) var.get()).id().get()));
+        return this;
+    }
+
+    @Override
+    public Vars<Object> setAt( int index, Var<Object> var ) {
+        _requireEager();
+        Objects.requireNonNull(var);
+        _dataBase._write(_intermediateTable, _entryId(index), RIGHT, var.get());
+        return this;
+    }
+
+    @Override
+    public Vars<Object> retainAll( Vars<Object> vars ) {
+        Vars<Object> toRemove = Vars.of(this.type());
+        for ( Object o : this ) {
+            if ( !vars.contains(o) )
+                toRemove.add(o);
+        }
+        this.removeAll(toRemove);
+        return this;
+    }
+
+    @Override
+    public Vars<Object> removeLast( int count ) {
+        popLast(count);
+        return this;
+    }
+
+    @Override
+    public Vars<Object> popLast( int count ) {
+        Vars<Object> removed = Vars.of(this.type());
+        for ( int i = 0; i < count && size() > 0; i++ ) {
+            removed.addAt(0, at(size() - 1).get());
+            removeAt(size() - 1);
+        }
+        return removed;
+    }
+
+    @Override
+    public Vars<Object> removeFirst( int count ) {
+        popFirst(count);
+        return this;
+    }
+
+    @Override
+    public Vars<Object> popFirst( int count ) {
+        Vars<Object> removed = Vars.of(this.type());
+        for ( int i = 0; i < count && size() > 0; i++ ) {
+            removed.add(at(0).get());
+            removeAt(0);
+        }
+        return removed;
+    }
+
+    @Override
+    public Vars<Object> removeAll( Vars<Object> vars ) {
+        for ( Object o : vars ) {
+            int index = indexOf(o);
+            if ( index >= 0 ) removeAt(index);
+        }
+        return this;
+    }
+
+    @Override
+    public Vars<Object> clear() {
+        _requireEager();
+        for ( int entryId : _entryIds() )
+            _dataBase._delete(_intermediateTable, entryId);
+        return this;
+    }
+
+    @Override
+    public void sort(Comparator<Object> comparator) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public void makeDistinct() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Vars<Object> revert() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+}
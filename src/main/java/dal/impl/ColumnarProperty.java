@@ -0,0 +1,167 @@
+package dal.impl;
+
+import dal.api.Model;
+import sprouts.Action;
+import sprouts.Val;
+import sprouts.Var;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ *  A property of a model stored in a {@link ColumnarDataBase}, which reads and writes
+ *  a single cell of a {@link ColumnTable} (the column of the property in the row of the model).
+ *  Like the {@link ModelProperty} of the SQLite database, a non-eager property
+ *  (of a model passed to {@link Model#commit(Consumer)}) only remembers the values set to it,
+ *  until they are written all at once by the model.
+ */
+final class ColumnarProperty implements Var<Object>
+{
+    private final ColumnarDataBase _dataBase;
+    private final ColumnTable _table;
+    private final int _position;
+    private final int _id;
+    private final Class<?> _propertyValueType;
+    private final boolean _allowNull;
+    private final boolean _isEager;
+    private Object _value;
+    private boolean _wasSet = false;
+
+    // Observers:
+
+    private final List<Action<Val<Object>>> _showActions = new ArrayList<>();
+    private final List<Action<Val<Object>>> _actActions = new ArrayList<>();
+    private final List<Consumer<Object>> _viewers = new ArrayList<>(0);
+
+
+    ColumnarProperty(
+        ColumnarDataBase dataBase,
+        ColumnTable table,
+        int position,
+        int id,
+        Class<?> propertyValueType,
+        boolean allowNull,
+        boolean isEager
+    ) {
+        _dataBase = dataBase;
+        _table = table;
+        _position = position;
+        _id = id;
+        _propertyValueType = propertyValueType;
+        _allowNull = allowNull;
+        _isEager = isEager;
+    }
+
+    @Override
+    public Object orElseNull()
+    {
+        if ( _wasSet && !_isEager ) return _value;
+
+        int row = _table.rowOf(_id);
+        Object value = row < 0 ? null : _table.get(row, _position);
+        if ( !Model.class.isAssignableFrom(_propertyValueType) )
+            return value;
+        /*
+            A foreign key to another model!
+            Just like the SQLite database, which reads a missing reference as the id 0,
+            we return a model without a row in that case (whose properties are all null).
+        */
+        int foreignKeyId = value == null ? 0 : (Integer) value;
+        return _dataBase._modelOf((Class) _propertyValueType, foreignKeyId);
+    }
+
+    @Override
+    public Var<Object> set( Object newItem ) {
+        if ( _setValue(newItem) )
+            fireSet();
+        return this;
+    }
+
+    @Override
+    public Var<Object> act( Object newItem ) {
+        if ( _setValue(newItem) )
+            fireAct();
+        return this;
+    }
+
+    /**
+     * @return True if the value changed.
+     */
+    private boolean _setValue( Object newItem ) {
+        Object oldValue;
+        if ( _isEager ) {
+            oldValue = orElseNull();
+            _dataBase._write(_table, _id, _position, newItem);
+        } else {
+            if ( _wasSet ) oldValue = _value;
+            else oldValue = orElseNull();
+            _value = newItem;
+        }
+        _wasSet = true;
+        return !Val.equals( oldValue, newItem );
+    }
+
+    @Override public Var<Object> withId(String id) { throw new UnsupportedOperationException(); }
+
+    @Override
+    public Var<Object> onAct( Action<Val<Object>> action ) {
+        _actActions.add(action);
+        return this;
+    }
+
+    @Override
+    public Var<Object> fireAct() {
+        _triggerActions(_actActions);
+        _viewers.forEach( v -> v.accept(orElseNull()) );
+        return this;
+    }
+
+    @Override
+    public <U> Val<U> viewAs(Class<U> type, Function<Object, U> mapper) {
+        Var<U> var = mapTo(type, mapper);
+        // Now we register a live update listener to this property
+        this.onSet( v -> var.set( mapper.apply( v.orElseNull() ) ));
+        _viewers.add( v -> var.act( mapper.apply( v ) ) );
+        return var;
+    }
+
+    @Override public String id() { return Val.NO_ID; }
+
+    @Override public Class<Object> type() { return (Class<Object>) _propertyValueType; }
+
+    @Override
+    public Val<Object> onSet(Action<Val<Object>> displayAction) {
+        _showActions.add(displayAction);
+        return this;
+    }
+
+    @Override
+    public Val<Object> fireSet() {
+        _triggerActions(_showActions);
+        return this;
+    }
+
+    @Override public boolean allowsNull() { return _allowNull; }
+
+    private void _triggerActions( List<Action<Val<Object>>> actions ) {
+        List<Action<Val<Object>>> removableActions = new ArrayList<>();
+        for ( Action<Val<Object>> action : new ArrayList<>(actions) ) // We copy the list to avoid concurrent modification
+            try {
+                if ( action.canBeRemoved() )
+                    removableActions.add(action);
+                else
+                    action.accept(this);
+            } catch ( Exception e ) {
+                e.printStackTrace();
+            }
+        actions.removeAll(removableActions);
+    }
+
+    boolean wasSet() { return _wasSet; }
+
+    Object getSetVal() { return _value; }
+
+    int getPosition() { return _position; }
+}
@@ -0,0 +1,811 @@
+package dal.impl;
+
+import dal.api.*;
+import sprouts.Val;
+import sprouts.Vars;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ *  The implementation of the fluent query builder API of the {@link ColumnarDataBase},
+ *  which is a {@link Where}, {@link Junction} and {@link Ordered} step at the same time,
+ *  just like the {@link ModelQuery} of the SQLite database.
+ *  Instead of building a statement, it collects the predicates as tests of table rows,
+ *  which are evaluated by scanning the columns of the queried table.
+ *  If the query is a conjunction which compares an indexed column (like the id or a foreign key)
+ *  with a value, only the rows found through the index of the column are tested.
+ *  <p>
+ *      Predicates are combined like in SQL, where "AND" binds stronger than "OR",
+ *      and comparisons with null (or with a reference to no model) are never true.
+ *
+ * @param <M> The type of the model to query.
+ */
+final class ColumnarQuery<M extends Model<M>> implements Where<M>, Junction<M>, Ordered<M>
+{
+    private final ColumnarDataBase _dataBase;
+    private final Class<M> _model;
+    private final ModelTable _modelTable;
+    private final ColumnTable _table;
+
+    private final List<List<Condition>> _alternatives = new ArrayList<>(); // Conditions joined by "OR" of conditions joined by "AND".
+    private final Compare<M, Object> _compare = new ConditionCollector();
+    private final Set<String> _readTables = new HashSet<>(); // All tables the query reads from, for live lists.
+
+    /*
+        The subject of the next comparison, which is a column of the queried table
+        or a column of a table reached by following foreign keys (like "world.name"):
+    */
+    private final List<Step> _subjectPath = new ArrayList<>();
+    private ModelTable _subjectModelTable;
+    private ColumnTable _subjectTable;
+    private TableField _subjectField;
+
+    private final List<Integer> _orderPositions = new ArrayList<>();
+    private final List<Boolean> _orderDescending = new ArrayList<>();
+    private Object[] _after = null; // The values of the sort keys (and the id) of the last seen model.
+    private Integer _limit = null;
+
+    /**
+     *  Following a foreign key column of a table to the row of the referenced table.
+     */
+    private record Step( ColumnTable table, int position, ColumnTable target ) {}
+
+    /**
+     *  A predicate on the rows of the queried table, which may name an indexed column
+     *  of the queried table and the value it has to have, so that it can be answered by the index.
+     */
+    private record Condition( RowTest test, int indexedPosition, Object indexedValue ) {
+        Condition( RowTest test ) { this(test, -1, null); }
+    }
+
+    @FunctionalInterface
+    private interface RowTest { boolean test( int row ); }
+
+
+    ColumnarQuery( ColumnarDataBase dataBase, Class<M> model ) {
+        _dataBase = dataBase;
+        _model = model;
+        _modelTable = dataBase._getTableFor(model);
+        _table = dataBase._columnTableOf(_modelTable.getTableName());
+        _readTables.add(_table.name());
+    }
+
+    @Override
+    public <T> Compare<M, T> where( Function<M, Val<T>> selector ) {
+        return _compare(false, _dataBase._selectTableField(selector, _model));
+    }
+
+    @Override
+    public <T> Compare<M, T> where( Class<? extends Val<T>> field ) { return _compare(false, _modelTable.getField(field)); }
+
+    @Override
+    public <T> Compare<M, T> and( Function<M, Val<T>> selector ) {
+        return _compare(false, _dataBase._selectTableField(selector, _model));
+    }
+
+    @Override
+    public <T> Compare<M, T> or( Function<M, Val<T>> selector ) {
+        return _compare(true, _dataBase._selectTableField(selector, _model));
+    }
+
+    @Override
+    public <T> Compare<M, T> and( Class<? extends Val<T>> field ) { return _compare(false, _modelTable.getField(field)); }
+
+    @Override
+    public <T> Compare<M, T> or( Class<? extends Val<T>> field ) { return _compare(true, _modelTable.getField(field)); }
+
+    private <T> Compare<M, T> _compare( boolean or, TableField field ) {
+        if ( or || _alternatives.isEmpty() )
+            _alternatives.add(new ArrayList<>());
+        _subjectPath.clear();
+        _subjectModelTable = _modelTable;
+        _subjectTable = _table;
+        _subjectField = field;
+        return (Compare<M, T>) _compare;
+    }
+
+    @Override
+    public <T> Ordered<M> orderBy( Function<M, Val<T>> selector ) { return orderAscendingBy(selector); }
+
+    @Override
+    public <T> Ordered<M> orderAscendingBy( Function<M, Val<T>> selector ) {
+        return _orderBy(_dataBase._selectTableField(selector, _model), false);
+    }
+
+    @Override
+    public <T> Ordered<M> orderDescendingBy( Function<M, Val<T>> selector ) {
+        return _orderBy(_dataBase._selectTableField(selector, _model), true);
+    }
+
+    @Override
+    public Ordered<M> orderAscendingBy( Class<? extends Val<?>> field ) { return _orderBy(_modelTable.getField(field), false); }
+
+    @Override
+    public Ordered<M> orderDescendingBy( Class<? extends Val<?>> field ) { return _orderBy(_modelTable.getField(field), true); }
+
+    @Override
+    public <T> Ordered<M> thenBy( Function<M, Val<T>> selector ) { return orderAscendingBy(selector); }
+
+    @Override
+    public <T> Ordered<M> thenDescendingBy( Function<M, Val<T>> selector ) { return orderDescendingBy(selector); }
+
+    private Ordered<M> _orderBy( TableField field, boolean descending ) {
+        if ( field.requiresIntermediateTable() )
+            throw new IllegalArgumentException(
+                    "Cannot order by the list property '" + field.getMethodName() + "' of model '" + _model.getName() + "'!"
+                );
+        if ( _after != null )
+            throw new IllegalStateException("The sort keys must be defined before the last seen model is specified!");
+        _orderPositions.add(_table.positionOf(field.getName()));
+        _orderDescending.add(descending);
+        return this;
+    }
+
+    @Override
+    public Ordered<M> after( M lastSeen ) {
+        Objects.requireNonNull(lastSeen, "The last seen model may not be null!");
+        int id = lastSeen.id().get();
+        int row = _table.rowOf(id);
+        if ( row < 0 )
+            throw new IllegalArgumentException("The last seen model with id " + id + " does not exist (anymore)!");
+        List<Integer> keys = _keyPositions();
+        _after = new Object[keys.size()];
+        for ( int i = 0; i < keys.size(); i++ )
+            _after[i] = Column.normalized(_table.get(row, keys.get(i)));
+        return this;
+    }
+
+    @Override
+    public List<M> page( int size ) {
+        if ( size < 0 )
+            throw new IllegalArgumentException("The page size must not be negative!");
+        _limit = size;
+        return asList();
+    }
+
+    @Override
+    public List<M> asList() {
+        List<M> models = new ArrayList<>();
+        for ( int id : _ids() )
+            models.add(_dataBase._proxyFor(_model, _modelTable, id));
+        return Collections.unmodifiableList(models);
+    }
+
+    @Override
+    public Vars<M> asLiveVars() { return _dataBase._live(this); }
+
+    @Override
+    public int count() { return _filteredRows().size(); }
+
+    Class<M> _model() { return _model; }
+
+    Set<String> _readTables() { return _readTables; }
+
+    /**
+     * @return The ids of all models matching the query, in the order of the query.
+     */
+    List<Integer> _ids() {
+        IntArrayList rows = _orderedRows();
+        List<Integer> ids = new ArrayList<>(rows.size());
+        for ( int i = 0; i < rows.size(); i++ )
+            ids.add(_table.idOf(rows.get(i)));
+        return ids;
+    }
+
+    /**
+     * @return The rows matching the predicates (and coming after the last seen model), in table order.
+     */
+    private IntArrayList _filteredRows() {
+        IntArrayList rows = new IntArrayList();
+        Condition indexed = _indexedCondition();
+        if ( indexed != null ) {
+            IntArrayList candidates = _table.rowsWith(indexed.indexedPosition(), indexed.indexedValue());
+            for ( int i = 0; i < candidates.size(); i++ )
+                if ( _matches(candidates.get(i)) ) rows.add(candidates.get(i));
+        } else
+            for ( int row = 0; row < _table.rowCount(); row++ )
+                if ( _table.isRow(row) && _matches(row) ) rows.add(row);
+        return rows;
+    }
+
+    /**
+     * @return A condition which every matching row has to fulfill and which can be answered by an index, or null.
+     */
+    private Condition _indexedCondition() {
+        if ( _alternatives.size() != 1 ) return null;
+        for ( Condition condition : _alternatives.get(0) )
+            if ( condition.indexedPosition() >= 0 ) return condition;
+        return null;
+    }
+
+    private boolean _matches( int row ) {
+        if ( _after != null && _compareWithLastSeen(row) <= 0 )
+            return false;
+        if ( _alternatives.isEmpty() )
+            return true;
+        for ( List<Condition> conditions : _alternatives ) {
+            boolean all = true;
+            for ( Condition condition : conditions )
+                if ( !condition.test().test(row) ) {
+                    all = false;
+                    break;
+                }
+            if ( all ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The matching rows in the order of the query, limited to the size of the requested page.
+     */
+    private IntArrayList _orderedRows() {
+        IntArrayList rows = _filteredRows();
+        if ( !_orderPositions.isEmpty() ) {
+            Integer[] sorted = new Integer[rows.size()];
+            for ( int i = 0; i < sorted.length; i++ ) sorted[i] = rows.get(i);
+            List<Integer> keys = _keyPositions();
+            List<Boolean> descending = _keyDirections();
+            Arrays.sort(sorted, (a, b) -> {
+                for ( int i = 0; i < keys.size(); i++ ) {
+                    int comparison = _compareRows(_table.column(keys.get(i)), a, b);
+                    if ( comparison != 0 ) return descending.get(i) ? -comparison : comparison;
+                }
+                return 0;
+            });
+            rows.clear();
+            for ( Integer row : sorted ) rows.add(row);
+        } else if ( _keyDirections().get(0) ) {
+            // Only the id is a sort key, but if it is descending we have to turn the table order around:
+            IntArrayList reversed = new IntArrayList(rows.size());
+            for ( int i = rows.size() - 1; i >= 0; i-- ) reversed.add(rows.get(i));
+            rows = reversed;
+        }
+        if ( _limit != null && rows.size() > _limit ) {
+            IntArrayList page = new IntArrayList(_limit);
+            for ( int i = 0; i < _limit; i++ ) page.add(rows.get(i));
+            rows = page;
+        }
+        return rows;
+    }
+
+    /**
+     *  Compares two rows like SQLite does, where null comes before everything else.
+     */
+    private static int _compareRows( Column column, int row, int otherRow ) {
+        boolean isNull = column.isNull(row), otherIsNull = column.isNull(otherRow);
+        if ( isNull || otherIsNull ) return isNull == otherIsNull ? 0 : ( isNull ? -1 : 1 );
+        return column.compareRows(row, otherRow);
+    }
+
+    /**
+     * @return A positive number if the row comes after the last seen model in the order of the query.
+     */
+    private int _compareWithLastSeen( int row ) {
+        List<Integer> keys = _keyPositions();
+        List<Boolean> descending = _keyDirections();
+        for ( int i = 0; i < keys.size(); i++ ) {
+            Column column = _table.column(keys.get(i));
+            boolean isNull = column.isNull(row), otherIsNull = _after[i] == null;
+            int comparison;
+            if ( isNull || otherIsNull ) comparison = isNull == otherIsNull ? 0 : ( isNull ? -1 : 1 );
+            else comparison = column.compare(row, _after[i]);
+            if ( comparison != 0 ) return descending.get(i) ? -comparison : comparison;
+        }
+        return 0;
+    }
+
+    /**
+     *  The sort keys always end with the id, so that the order is unique.
+     */
+    private List<Integer> _keyPositions() {
+        List<Integer> positions = new ArrayList<>(_orderPositions);
+        if ( !positions.contains(0) )
+            positions.add(0);
+        return positions;
+    }
+
+    private List<Boolean> _keyDirections() {
+        List<Boolean> descending = new ArrayList<>(_orderDescending);
+        if ( descending.size() < _keyPositions().size() ) // The id was added as tie breaker!
+            descending.add(!descending.isEmpty() && descending.stream().allMatch( d -> d ));
+        return descending;
+    }
+
+    @Override
+    public <T> Projection<T> project( Function<M, Val<T>> selector ) {
+        TableField field = _columnOf(_dataBase._selectTableField(selector, _model));
+        return new ColumnProjection<>(List.of(field), row -> (T) row[0]);
+    }
+
+    @Override
+    public <A, B, R> Projection<R> project(
+        Function<M, Val<A>> first, Function<M, Val<B>> second, BiFunction<A, B, R> combiner
+    ) {
+        Objects.requireNonNull(combiner);
+        List<TableField> fields = List.of(
+                                    _columnOf(_dataBase._selectTableField(first, _model)),
+                                    _columnOf(_dataBase._selectTableField(second, _model))
+                                );
+        return new ColumnProjection<>(fields, row -> combiner.apply((A) row[0], (B) row[1]));
+    }
+
+    @Override
+    public <R extends Record> Projection<R> project( Class<R> recordType ) {
+        Objects.requireNonNull(recordType);
+        RecordComponent[] components = recordType.getRecordComponents();
+        if ( components == null || components.length == 0 )
+            throw new IllegalArgumentException("The type '" + recordType.getName() + "' is not a record with components!");
+
+        List<TableField> fields = new ArrayList<>();
+        Class<?>[] types = new Class<?>[components.length];
+        for ( int i = 0; i < components.length; i++ ) {
+            RecordComponent component = components[i];
+            if ( !_modelTable.hasField(component.getName()) )
+                throw new IllegalArgumentException(
+                        "The record component '" + component.getName() + "' of record '" + recordType.getName() + "' " +
+                        "does not match any property of model '" + _model.getName() + "'!"
+                    );
+            TableField field = _columnOf(_modelTable.getField(component.getName()));
+            if ( !_boxed(component.getType()).isAssignableFrom(_boxed(field.getType())) )
+                throw new IllegalArgumentException(
+                        "The record component '" + component.getName() + "' of record '" + recordType.getName() + "' " +
+                        "is of type '" + component.getType().getName() + "', but the property of model " +
+                        "'" + _model.getName() + "' is of type '" + field.getType().getName() + "'!"
+                    );
+            fields.add(field);
+            types[i] = component.getType();
+        }
+        Constructor<R> constructor;
+        try {
+            constructor = recordType.getDeclaredConstructor(types);
+            constructor.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot access the canonical constructor of record '" + recordType.getName() + "'!", e);
+        }
+        return new ColumnProjection<>(fields, row -> {
+            try {
+                return constructor.newInstance(row);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to create record '" + recordType.getName() + "'!", e);
+            }
+        });
+    }
+
+    private TableField _columnOf( TableField field ) {
+        if ( field.requiresIntermediateTable() )
+            throw new IllegalArgumentException(
+                    "The list property '" + field.getMethodName() + "' of model '" + _model.getName() + "' " +
+                    "is not a column and can therefore not be projected or aggregated!"
+                );
+        return field;
+    }
+
+    private static Class<?> _boxed( Class<?> type ) {
+        if ( !type.isPrimitive() ) return type;
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    /**
+     *  Reads the value of a column of a row as the value type of the property,
+     *  where foreign keys are turned into the (lazy) models they reference.
+     */
+    private Object _valueOf( TableField field, int row ) {
+        Object value = _table.get(row, _table.positionOf(field.getName()));
+        if ( value != null && field.isForeignKey() )
+            return _dataBase._modelOf((Class) field.getType(), (Integer) value);
+        return value;
+    }
+
+    @Override
+    public <K> Grouped<M, K> groupBy( Function<M, Val<K>> selector ) {
+        return new GroupedQuery<>(_columnOf(_dataBase._selectTableField(selector, _model)));
+    }
+
+    @Override
+    public <N extends Number> double sum( Function<M, Val<N>> selector ) {
+        Double sum = _sum(_columnOf(_dataBase._selectTableField(selector, _model)), _filteredRows());
+        return sum == null ? 0 : sum;
+    }
+
+    @Override
+    public <N extends Number> OptionalDouble avg( Function<M, Val<N>> selector ) {
+        Double average = _average(_columnOf(_dataBase._selectTableField(selector, _model)), _filteredRows());
+        return average == null ? OptionalDouble.empty() : OptionalDouble.of(average);
+    }
+
+    @Override
+    public <T> Optional<T> min( Function<M, Val<T>> selector ) {
+        return Optional.ofNullable((T) _extreme(_columnOf(_dataBase._selectTableField(selector, _model)), _filteredRows(), false));
+    }
+
+    @Override
+    public <T> Optional<T> max( Function<M, Val<T>> selector ) {
+        return Optional.ofNullable((T) _extreme(_columnOf(_dataBase._selectTableField(selector, _model)), _filteredRows(), true));
+    }
+
+    /**
+     * @return The sum of the non-null values of the rows, or null if there are none.
+     */
+    private Double _sum( TableField field, IntArrayList rows ) {
+        Column column = _table.column(_table.positionOf(field.getName()));
+        double sum = 0;
+        int count = 0;
+        for ( int i = 0; i < rows.size(); i++ ) {
+            int row = rows.get(i);
+            if ( column.isNull(row) ) continue;
+            sum += _numberOf(column, row);
+            count++;
+        }
+        return count == 0 ? null : sum;
+    }
+
+    private Double _average( TableField field, IntArrayList rows ) {
+        Column column = _table.column(_table.positionOf(field.getName()));
+        double sum = 0;
+        int count = 0;
+        for ( int i = 0; i < rows.size(); i++ ) {
+            int row = rows.get(i);
+            if ( column.isNull(row) ) continue;
+            sum += _numberOf(column, row);
+            count++;
+        }
+        return count == 0 ? null : sum / count;
+    }
+
+    private static double _numberOf( Column column, int row ) {
+        if ( column instanceof Column.DoubleColumn doubles ) return doubles.getDouble(row);
+        if ( column instanceof Column.IntColumn ints ) return ints.getInt(row);
+        Object value = column.get(row);
+        if ( value instanceof Number number ) return number.doubleValue();
+        try {
+            return Double.parseDouble(String.valueOf(value));
+        } catch ( NumberFormatException e ) {
+            return 0; // Like SQLite, which treats text which is not a number as 0 in sums.
+        }
+    }
+
+    /**
+     * @return The smallest or largest non-null value of the rows, or null if there is none.
+     */
+    private Object _extreme( TableField field, IntArrayList rows, boolean largest ) {
+        Column column = _table.column(_table.positionOf(field.getName()));
+        int found = -1;
+        for ( int i = 0; i < rows.size(); i++ ) {
+            int row = rows.get(i);
+            if ( column.isNull(row) ) continue;
+            if ( found < 0 ) found = row;
+            else {
+                int comparison = column.compareRows(row, found);
+                if ( largest ? comparison > 0 : comparison < 0 ) found = row;
+            }
+        }
+        return found < 0 ? null : _valueOf(field, found);
+    }
+
+    /**
+     *  Computes aggregates for the groups of rows sharing the same value in a column,
+     *  where the groups are ordered by their keys.
+     */
+    private final class GroupedQuery<K> implements Grouped<M, K>
+    {
+        private final TableField _key;
+
+        GroupedQuery( TableField key ) { _key = key; }
+
+        @Override
+        public Map<K, Integer> count() {
+            Map<K, Integer> result = new LinkedHashMap<>();
+            _groups().forEach( (key, rows) -> result.put(key, rows.size()) );
+            return Collections.unmodifiableMap(result);
+        }
+
+        @Override
+        public <N extends Number> Map<K, Double> sum( Function<M, Val<N>> selector ) {
+            TableField field = _columnOf(_dataBase._selectTableField(selector, _model));
+            Map<K, Double> result = new LinkedHashMap<>();
+            _groups().forEach( (key, rows) -> result.put(key, _sum(field, rows)) );
+            return Collections.unmodifiableMap(result);
+        }
+
+        @Override
+        public <N extends Number> Map<K, Double> avg( Function<M, Val<N>> selector ) {
+            TableField field = _columnOf(_dataBase._selectTableField(selector, _model));
+            Map<K, Double> result = new LinkedHashMap<>();
+            _groups().forEach( (key, rows) -> result.put(key, _average(field, rows)) );
+            return Collections.unmodifiableMap(result);
+        }
+
+        @Override
+        public <T> Map<K, T> min( Function<M, Val<T>> selector ) { return _extremes(selector, false); }
+
+        @Override
+        public <T> Map<K, T> max( Function<M, Val<T>> selector ) { return _extremes(selector, true); }
+
+        private <T> Map<K, T> _extremes( Function<M, Val<T>> selector, boolean largest ) {
+            TableField field = _columnOf(_dataBase._selectTableField(selector, _model));
+            Map<K, T> result = new LinkedHashMap<>();
+            _groups().forEach( (key, rows) -> result.put(key, (T) _extreme(field, rows, largest)) );
+            return Collections.unmodifiableMap(result);
+        }
+
+        /**
+         * @return The rows of every group, ordered by the keys of the groups (null first).
+         */
+        private Map<K, IntArrayList> _groups() {
+            Column column = _table.column(_table.positionOf(_key.getName()));
+            IntArrayList rows = _filteredRows();
+            Map<Object, IntArrayList> groups = new HashMap<>();
+            List<Integer> firstRows = new ArrayList<>(); // A row of every group, by which the groups are sorted.
+            for ( int i = 0; i < rows.size(); i++ ) {
+                int row = rows.get(i);
+                Object key = column.isNull(row) ? groups : column.get(row); // The map itself stands for the null key.
+                IntArrayList group = groups.get(key);
+                if ( group == null ) {
+                    group = new IntArrayList();
+                    groups.put(key, group);
+                    firstRows.add(row);
+                }
+                group.add(row);
+            }
+            firstRows.sort( (a, b) -> _compareRows(column, a, b) );
+            Map<K, IntArrayList> sorted = new LinkedHashMap<>();
+            for ( int row : firstRows )
+                sorted.put(
+                    (K) ( column.isNull(row) ? null : _valueOf(_key, row) ),
+                    groups.get(column.isNull(row) ? groups : column.get(row))
+                );
+            return sorted;
+        }
+    }
+
+    /**
+     *  Reads a couple of columns of the rows matching this query into plain values,
+     *  which are detached from the database.
+     */
+    private final class ColumnProjection<T> implements Projection<T>
+    {
+        private final List<TableField> _fields;
+        private final Function<Object[], T> _mapper;
+
+        ColumnProjection( List<TableField> fields, Function<Object[], T> mapper ) {
+            _fields = fields;
+            _mapper = mapper;
+        }
+
+        @Override
+        public List<T> asList() {
+            IntArrayList rows = _orderedRows();
+            List<T> items = new ArrayList<>(rows.size());
+            for ( int r = 0; r < rows.size(); r++ ) {
+                Object[] row = new Object[_fields.size()];
+                for ( int i = 0; i < row.length; i++ )
+                    row[i] = _valueOf(_fields.get(i), rows.get(r));
+                items.add(_mapper.apply(row));
+            }
+            return Collections.unmodifiableList(items);
+        }
+    }
+
+    /**
+     * @return The row of the current subject which is reached from the row of the queried table,
+     *         or -1 if a foreign key on the way does not reference a row.
+     */
+    private static int _resolve( List<Step> path, int row ) {
+        for ( Step step : path ) {
+            Column foreignKey = step.table().column(step.position());
+            if ( foreignKey.isNull(row) ) return -1;
+            row = step.target().rowOf(((Column.IntColumn) foreignKey).getInt(row));
+            if ( row < 0 ) return -1;
+        }
+        return row;
+    }
+
+    /**
+     *  Turns plain search text into the lower case words which have to be
+     *  the start of a word of a matching text.
+     */
+    private static List<String> _searchWordsOf( String text ) {
+        List<String> words = new ArrayList<>();
+        for ( String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+") )
+            if ( !word.isEmpty() )
+                words.add(word);
+        return words;
+    }
+
+    /**
+     *  Turns a pattern of the LIKE operator into a regular expression,
+     *  which is case-insensitive like in SQLite.
+     */
+    private static Pattern _likePatternOf( String like ) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for ( char c : like.toCharArray() ) {
+            if ( c == '%' || c == '_' ) {
+                if ( !literal.isEmpty() ) regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+                regex.append(c == '%' ? ".*" : ".");
+            }
+            else literal.append(c);
+        }
+        if ( !literal.isEmpty() ) regex.append(Pattern.quote(literal.toString()));
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+    }
+
+    private final class ConditionCollector implements Compare<M, Object>
+    {
+        @Override
+        public <U> Compare<M, U> then( Function<Object, Val<U>> selector ) {
+            if ( !_subjectField.isForeignKey() )
+                throw new IllegalArgumentException(
+                        "The property '" + _subjectField.getMethodName() + "' is not a reference to another model, " +
+                        "so there is no property to compare after it!"
+                    );
+            Class<M> referencedModel = (Class<M>) _subjectField.getType();
+            ModelTable referencedTable = _dataBase._getTableFor(referencedModel);
+            ColumnTable target = _dataBase._columnTableOf(referencedTable.getTableName());
+            _subjectPath.add(new Step(_subjectTable, _subjectTable.positionOf(_subjectField.getName()), target));
+            _readTables.add(target.name());
+            _subjectModelTable = referencedTable;
+            _subjectTable = target;
+            _subjectField = _dataBase._selectTableField((Function) selector, referencedModel);
+            return (Compare<M, U>) this;
+        }
+
+        /**
+         *  Adds a condition testing the value of the current subject,
+         *  which is only called for rows whose subject is not null.
+         */
+        private Junction<M> _add( RowTest valueTest ) {
+            return _add(valueTest, -1, null);
+        }
+
+        private Junction<M> _add( RowTest valueTest, int indexedPosition, Object indexedValue ) {
+            List<Step> path = List.copyOf(_subjectPath);
+            Column column = _subject();
+            RowTest test = row -> {
+                int subjectRow = _resolve(path, row);
+                return subjectRow >= 0 && !column.isNull(subjectRow) && valueTest.test(subjectRow);
+            };
+            _alternatives.get(_alternatives.size() - 1).add(new Condition(test, indexedPosition, indexedValue));
+            return ColumnarQuery.this;
+        }
+
+        private Junction<M> _never() {
+            _alternatives.get(_alternatives.size() - 1).add(new Condition( row -> false ));
+            return ColumnarQuery.this;
+        }
+
+        private Column _subject() {
+            if ( _subjectField.requiresIntermediateTable() )
+                throw new IllegalArgumentException(
+                        "The list property '" + _subjectField.getMethodName() + "' cannot be compared with a value!"
+                    );
+            return _subjectTable.column(_subjectTable.positionOf(_subjectField.getName()));
+        }
+
+        @Override
+        public Junction<M> is( Object value ) {
+            Object normalized = Column.normalized(value);
+            if ( normalized == null ) return _never(); // Nothing is equal to null in SQL.
+            Column column = _subject();
+            int position = _subjectTable.positionOf(_subjectField.getName());
+            boolean isIndexed = _subjectPath.isEmpty() && _table.isIndexed(position);
+            return _add( row -> column.equalTo(row, normalized), isIndexed ? position : -1, normalized );
+        }
+
+        @Override
+        public Junction<M> isNot( Object value ) {
+            Object normalized = Column.normalized(value);
+            if ( normalized == null ) return _never();
+            Column column = _subject();
+            return _add( row -> !column.equalTo(row, normalized) );
+        }
+
+        @Override
+        public Junction<M> like( Object value ) {
+            Object normalized = Column.normalized(value);
+            if ( normalized == null ) return _never();
+            Column column = _subject();
+            Pattern pattern = _likePatternOf(String.valueOf(normalized));
+            return _add( row -> pattern.matcher(String.valueOf(column.get(row))).matches() );
+        }
+
+        @Override
+        public Junction<M> notLike( Object value ) {
+            Object normalized = Column.normalized(value);
+            if ( normalized == null ) return _never();
+            Column column = _subject();
+            Pattern pattern = _likePatternOf(String.valueOf(normalized));
+            return _add( row -> !pattern.matcher(String.valueOf(column.get(row))).matches() );
+        }
+
+        @Override
+        public Junction<M> matches( String searchText ) {
+            if ( !_subjectField.isSearchable() )
+                throw new IllegalArgumentException(
+                        "The property '" + _subjectField.getMethodName() + "' cannot be searched, " +
+                        "because it is not annotated with @" + Searchable.class.getSimpleName() + "!"
+                    );
+            List<String> searchWords = _searchWordsOf(Objects.requireNonNull(searchText));
+            if ( searchWords.isEmpty() ) {
+                _alternatives.get(_alternatives.size() - 1).add(new Condition( row -> true )); // Nothing to search for, so everything matches.
+                return ColumnarQuery.this;
+            }
+            Column column = _subject();
+            return _add( row -> {
+                List<String> words = _searchWordsOf(String.valueOf(column.get(row)));
+                for ( String searchWord : searchWords )
+                    if ( words.stream().noneMatch( word -> word.startsWith(searchWord) ) )
+                        return false;
+                return true;
+            });
+        }
+
+        @Override
+        public Junction<M> in( Object... values ) {
+            List<Object> normalized = new ArrayList<>();
+            for ( Object value : values )
+                if ( Column.normalized(value) != null )
+                    normalized.add(Column.normalized(value));
+            Column column = _subject();
+            return _add( row -> {
+                for ( Object value : normalized )
+                    if ( column.equalTo(row, value) ) return true;
+                return false;
+            });
+        }
+
+        @Override
+        public Junction<M> notIn( Object... values ) {
+            List<Object> normalized = new ArrayList<>();
+            for ( Object value : values ) {
+                if ( Column.normalized(value) == null )
+                    return _never(); // A comparison with null is never false in SQL, so nothing is "not in" such a list.
+                normalized.add(Column.normalized(value));
+            }
+            Column column = _subject();
+            return _add( row -> {
+                for ( Object value : normalized )
+                    if ( column.equalTo(row, value) ) return false;
+                return true;
+            });
+        }
+
+        @Override
+        public Junction<M> isNull() {
+            List<Step> path = List.copyOf(_subjectPath);
+            Column column = _subject();
+            _alternatives.get(_alternatives.size() - 1).add(new Condition( row -> {
+                int subjectRow = _resolve(path, row);
+                return subjectRow < 0 || column.isNull(subjectRow);
+            }));
+            return ColumnarQuery.this;
+        }
+
+        @Override
+        public Junction<M> isNotNull() {
+            return _add( row -> true );
+        }
+
+        private Junction<M> _compareWith( Object value, java.util.function.IntPredicate accepts ) {
+            Object normalized = Column.normalized(value);
+            if ( normalized == null ) return _never();
+            Column column = _subject();
+            return _add( row -> accepts.test(column.compare(row, normalized)) );
+        }
+
+        @Override public Junction<M> greaterThan( Object value ) { return _compareWith(value, c -> c > 0); }
+
+        @Override public Junction<M> greaterThanOrEqual( Object value ) { return _compareWith(value, c -> c >= 0); }
+
+        @Override public Junction<M> lessThan( Object value ) { return _compareWith(value, c -> c < 0); }
+
+        @Override public Junction<M> lessThanOrEqual( Object value ) { return _compareWith(value, c -> c <= 0); }
+    }
+}
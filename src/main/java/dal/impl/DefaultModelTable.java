@@ -166,6 +166,40 @@ class DefaultModelTable implements ModelTable
         return sb.toString();
     }
 
+    @Override
+    public List<String> createSearchStatements() {
+        List<String> columns = new ArrayList<>();
+        for ( TableField field : fields )
+            if ( field.isSearchable() )
+                columns.add(field.getName());
+
+        if ( columns.isEmpty() )
+            return Collections.emptyList();
+
+        /*
+            The full-text index is an "external content" FTS5 table, which means that it does not store
+            a copy of the text, it only indexes the text stored in our table.
+            This is why we have to tell it about every change through triggers,
+            where an update is a deletion of the old text followed by an insertion of the new one.
+            Only updates of the searchable columns have to touch the index, other properties are none of its business.
+            The prefix indexes make searching for the first few characters of words (while typing) fast.
+        */
+        String search   = getSearchTableName();
+        String newValues = "new.id, new." + String.join(", new.", columns);
+        String oldValues = "old.id, old." + String.join(", old.", columns);
+        String targets   = "rowid, " + String.join(", ", columns);
+        String insert = "INSERT INTO " + search + " (" + targets + ") VALUES (" + newValues + ");";
+        String delete = "INSERT INTO " + search + " (" + search + ", " + targets + ") VALUES ('delete', " + oldValues + ");";
+        return Arrays.asList(
+                "CREATE VIRTUAL TABLE IF NOT EXISTS " + search + " USING fts5(" +
+                    String.join(", ", columns) + ", content='" + getTableName() + "', content_rowid='id', prefix='2 3'" +
+                ");",
+                "CREATE TRIGGER IF NOT EXISTS " + search + "_insert AFTER INSERT ON " + getTableName() + " BEGIN " + insert + " END;",
+                "CREATE TRIGGER IF NOT EXISTS " + search + "_delete AFTER DELETE ON " + getTableName() + " BEGIN " + delete + " END;",
+                "CREATE TRIGGER IF NOT EXISTS " + search + "_update AFTER UPDATE OF " + String.join(", ", columns) + " ON " + getTableName() + " BEGIN " + delete + " " + insert + " END;"
+            );
+    }
+
     @Override
     public List<Object> getDefaultValues() {
         List<Object> defaultValues = new ArrayList<>();
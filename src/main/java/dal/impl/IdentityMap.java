@@ -0,0 +1,192 @@
+package dal.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ *  A thread-safe map from the rows of tables (a table name and an id) to the objects representing them,
+ *  so that every row is represented by a single object (like a model proxy) at any time.
+ *  The objects are only referenced weakly, so they are garbage collected once nobody uses them anymore.
+ *  The references of collected objects are enqueued into a {@link ReferenceQueue},
+ *  which is drained by every write, so the entries of collected objects do not pile up.
+ *  <p>
+ *      The ids of a table are spread over a fixed number of stripes, each of which is
+ *      a primitive {@link IntObjectMap} guarded by its own lock, so threads looking up
+ *      different rows rarely wait for each other.
+ *
+ * @param <P> The type of the objects representing the rows.
+ */
+final class IdentityMap<P>
+{
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+
+    private final Map<String, Stripe<P>[]> _tables = new ConcurrentHashMap<>();
+    private final ReferenceQueue<P> _collected = new ReferenceQueue<>();
+
+    /**
+     *  The weak reference to an object, which remembers its row,
+     *  so that it can be removed from the map once it is enqueued.
+     */
+    private static final class Entry<P> extends WeakReference<P>
+    {
+        final String table;
+        final int id;
+
+        Entry( P referent, ReferenceQueue<P> queue, String table, int id ) {
+            super(referent, queue);
+            this.table = table;
+            this.id = id;
+        }
+    }
+
+    private static final class Stripe<P>
+    {
+        final IntObjectMap<Entry<P>> entries = new IntObjectMap<>(); // Guarded by the stripe itself.
+    }
+
+    /**
+     * @return The object representing the row, if it is still alive.
+     */
+    Optional<P> find( String table, int id ) {
+        Stripe<P> stripe = _stripeOf(table, id, false);
+        if ( stripe == null ) return Optional.empty();
+        Entry<P> entry;
+        synchronized ( stripe ) {
+            entry = stripe.entries.get(id);
+        }
+        return entry == null ? Optional.empty() : Optional.ofNullable(entry.get());
+    }
+
+    /**
+     *  Returns the object representing the row, or atomically registers the one created by the factory,
+     *  so that concurrent threads asking for the same row always receive the same object.
+     */
+    P computeIfAbsent( String table, int id, Supplier<P> factory ) {
+        _expungeCollected();
+        Stripe<P> stripe = _stripeOf(table, id, true);
+        synchronized ( stripe ) {
+            Entry<P> entry = stripe.entries.get(id);
+            P found = entry == null ? null : entry.get();
+            if ( found != null ) return found;
+            P created = factory.get();
+            stripe.entries.put(id, new Entry<>(created, _collected, table, id));
+            return created;
+        }
+    }
+
+    void put( String table, int id, P object ) {
+        _expungeCollected();
+        Stripe<P> stripe = _stripeOf(table, id, true);
+        synchronized ( stripe ) {
+            stripe.entries.put(id, new Entry<>(object, _collected, table, id));
+        }
+    }
+
+    void remove( String table, int id ) {
+        _expungeCollected();
+        Stripe<P> stripe = _stripeOf(table, id, false);
+        if ( stripe == null ) return;
+        synchronized ( stripe ) {
+            stripe.entries.remove(id);
+        }
+    }
+
+    void removeTable( String table ) {
+        _expungeCollected();
+        _tables.remove(table);
+    }
+
+    void clear() {
+        _expungeCollected();
+        _tables.clear();
+    }
+
+    /**
+     *  Passes every living object to the action, where the action is called outside the locks of the map.
+     */
+    void forEach( Consumer<P> action ) {
+        List<Entry<P>> entries = new ArrayList<>();
+        for ( Stripe<P>[] stripes : _tables.values() )
+            for ( Stripe<P> stripe : stripes )
+                synchronized ( stripe ) {
+                    entries.addAll(stripe.entries.values());
+                }
+        for ( Entry<P> entry : entries ) {
+            P object = entry.get();
+            if ( object != null ) action.accept(object);
+        }
+    }
+
+    /**
+     * @return The number of entries, including those of collected objects which were not removed yet.
+     */
+    int size() {
+        int size = 0;
+        for ( Stripe<P>[] stripes : _tables.values() )
+            for ( Stripe<P> stripe : stripes )
+                synchronized ( stripe ) {
+                    size += stripe.entries.size();
+                }
+        return size;
+    }
+
+    /**
+     *  Returns the weak reference which holds the object of the row, or null if the row has no entry.
+     *  Enqueuing it has the same effect as the garbage collection of the object,
+     *  which is how the removal of collected entries can be observed without waiting for the collector.
+     */
+    Reference<P> _referenceTo( String table, int id ) {
+        Stripe<P> stripe = _stripeOf(table, id, false);
+        if ( stripe == null ) return null;
+        synchronized ( stripe ) {
+            return stripe.entries.get(id);
+        }
+    }
+
+    /**
+     *  Removes the entries of all objects which were garbage collected since the last call.
+     *  An entry is only removed if it was not replaced by the entry of a new object for the same row.
+     *  This is done by every write to the map, but may also be called explicitly.
+     *
+     * @return The number of entries which were removed.
+     */
+    int _expungeCollected() {
+        int removed = 0;
+        Reference<? extends P> reference;
+        while ( (reference = _collected.poll()) != null ) {
+            Entry<P> collected = (Entry<P>) reference;
+            Stripe<P> stripe = _stripeOf(collected.table, collected.id, false);
+            if ( stripe == null ) continue;
+            synchronized ( stripe ) {
+                if ( stripe.entries.get(collected.id) == collected ) {
+                    stripe.entries.remove(collected.id);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private Stripe<P> _stripeOf( String table, int id, boolean create ) {
+        Stripe<P>[] stripes = create ? _tables.computeIfAbsent(table, t -> _newStripes()) : _tables.get(table);
+        if ( stripes == null ) return null;
+        // The maps of the stripes use the low bits of the hash, so we pick the stripe by the high bits:
+        return stripes[IntIntMap._hash(id) >>> (Integer.SIZE - STRIPE_BITS)];
+    }
+
+    private static <P> Stripe<P>[] _newStripes() {
+        Stripe<P>[] stripes = new Stripe[STRIPES];
+        for ( int i = 0; i < STRIPES; i++ )
+            stripes[i] = new Stripe<>();
+        return stripes;
+    }
+}
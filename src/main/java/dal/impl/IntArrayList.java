@@ -0,0 +1,84 @@
+package dal.impl;
+
+import java.util.Arrays;
+
+/**
+ *  A growable list of primitive ints, which spares us the boxing of an {@code ArrayList<Integer>}
+ *  for the ids and row numbers the database implementations shuffle around.
+ */
+final class IntArrayList
+{
+    private int[] _items;
+    private int _size;
+
+    IntArrayList() { this(8); }
+
+    IntArrayList( int capacity ) { _items = new int[Math.max(capacity, 1)]; }
+
+    int size() { return _size; }
+
+    boolean isEmpty() { return _size == 0; }
+
+    int get( int index ) {
+        _check(index, _size);
+        return _items[index];
+    }
+
+    void set( int index, int value ) {
+        _check(index, _size);
+        _items[index] = value;
+    }
+
+    void add( int value ) {
+        if ( _size == _items.length ) _grow();
+        _items[_size++] = value;
+    }
+
+    void add( int index, int value ) {
+        _check(index, _size + 1);
+        if ( _size == _items.length ) _grow();
+        System.arraycopy(_items, index, _items, index + 1, _size - index);
+        _items[index] = value;
+        _size++;
+    }
+
+    int removeAt( int index ) {
+        _check(index, _size);
+        int removed = _items[index];
+        System.arraycopy(_items, index + 1, _items, index, _size - index - 1);
+        _size--;
+        return removed;
+    }
+
+    /**
+     * @return True if the value was found and removed (only its first occurrence).
+     */
+    boolean removeValue( int value ) {
+        int index = indexOf(value);
+        if ( index < 0 ) return false;
+        removeAt(index);
+        return true;
+    }
+
+    int indexOf( int value ) {
+        for ( int i = 0; i < _size; i++ )
+            if ( _items[i] == value ) return i;
+        return -1;
+    }
+
+    boolean contains( int value ) { return indexOf(value) >= 0; }
+
+    void clear() { _size = 0; }
+
+    int[] toArray() { return Arrays.copyOf(_items, _size); }
+
+    private void _grow() { _items = Arrays.copyOf(_items, _items.length * 2); }
+
+    private static void _check( int index, int bound ) {
+        if ( index < 0 || index >= bound )
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for length " + bound + "!");
+    }
+
+    @Override
+    public String toString() { return Arrays.toString(toArray()); }
+}
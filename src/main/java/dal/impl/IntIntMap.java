@@ -0,0 +1,111 @@
+package dal.impl;
+
+import java.util.Arrays;
+
+/**
+ *  A hash map from int keys to int values using open addressing with linear probing,
+ *  so that neither the keys nor the values are boxed and no entry objects are allocated.
+ *  It is used to find the rows of ids, where lookups are by far the most frequent operation.
+ *  Removed entries do not leave tombstones behind, instead the following entries of the
+ *  probe sequence are shifted back into the freed slot.
+ */
+final class IntIntMap
+{
+    private static final int FREE = Integer.MIN_VALUE; // Marks unused slots, so it cannot be used as a key.
+
+    private int[] _keys;
+    private int[] _values;
+    private int _size;
+
+    IntIntMap() { this(16); }
+
+    IntIntMap( int expectedSize ) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 2, 4) - 1) << 1;
+        _keys = new int[capacity];
+        _values = new int[capacity];
+        Arrays.fill(_keys, FREE);
+    }
+
+    int size() { return _size; }
+
+    /**
+     * @return The value of the key, or the provided default value if the key is not in the map.
+     */
+    int get( int key, int defaultValue ) {
+        int slot = _slotOf(key);
+        return _keys[slot] == FREE ? defaultValue : _values[slot];
+    }
+
+    boolean containsKey( int key ) { return _keys[_slotOf(key)] != FREE; }
+
+    void put( int key, int value ) {
+        if ( key == FREE )
+            throw new IllegalArgumentException("The key " + key + " is reserved!");
+        int slot = _slotOf(key);
+        if ( _keys[slot] == FREE ) {
+            _keys[slot] = key;
+            _size++;
+        }
+        _values[slot] = value;
+        if ( _size * 2 > _keys.length ) _resize(_keys.length * 2);
+    }
+
+    /**
+     * @return True if the key was in the map.
+     */
+    boolean remove( int key ) {
+        int slot = _slotOf(key);
+        if ( _keys[slot] == FREE ) return false;
+        int mask = _keys.length - 1;
+        int free = slot;
+        int next = (free + 1) & mask;
+        while ( _keys[next] != FREE ) {
+            int home = _hash(_keys[next]) & mask;
+            // The entry may only move back if the free slot lies between its home slot and its current slot:
+            boolean movable = free <= next ? ( home <= free || home > next ) : ( home <= free && home > next );
+            if ( movable ) {
+                _keys[free] = _keys[next];
+                _values[free] = _values[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        _keys[free] = FREE;
+        _size--;
+        return true;
+    }
+
+    void clear() {
+        Arrays.fill(_keys, FREE);
+        _size = 0;
+    }
+
+    /**
+     * @return The slot of the key, or the free slot where it would have to be inserted.
+     */
+    private int _slotOf( int key ) {
+        int mask = _keys.length - 1;
+        int slot = _hash(key) & mask;
+        while ( _keys[slot] != FREE && _keys[slot] != key )
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void _resize( int capacity ) {
+        int[] keys = _keys, values = _values;
+        _keys = new int[capacity];
+        _values = new int[capacity];
+        Arrays.fill(_keys, FREE);
+        _size = 0;
+        for ( int i = 0; i < keys.length; i++ )
+            if ( keys[i] != FREE ) put(keys[i], values[i]);
+    }
+
+    /**
+     *  Ids are mostly consecutive, so we scramble them to spread them over the table.
+     */
+    static int _hash( int key ) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,113 @@
+package dal.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ *  A hash map from int keys to objects using open addressing with linear probing,
+ *  which does not box its keys and does not allocate an entry object per mapping.
+ *  Like the {@link IntIntMap}, it shifts entries back when removing instead of leaving tombstones.
+ *
+ * @param <V> The type of the values.
+ */
+final class IntObjectMap<V>
+{
+    private int[] _keys;
+    private Object[] _values; // A null value marks a free slot, so null values cannot be stored.
+    private int _size;
+
+    IntObjectMap() { this(16); }
+
+    IntObjectMap( int expectedSize ) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 2, 4) - 1) << 1;
+        _keys = new int[capacity];
+        _values = new Object[capacity];
+    }
+
+    int size() { return _size; }
+
+    boolean isEmpty() { return _size == 0; }
+
+    V get( int key ) { return (V) _values[_slotOf(key)]; }
+
+    void put( int key, V value ) {
+        if ( value == null )
+            throw new IllegalArgumentException("Null values cannot be stored!");
+        int slot = _slotOf(key);
+        if ( _values[slot] == null ) {
+            _keys[slot] = key;
+            _size++;
+        }
+        _values[slot] = value;
+        if ( _size * 2 > _keys.length ) _resize(_keys.length * 2);
+    }
+
+    V computeIfAbsent( int key, IntFunction<V> factory ) {
+        V value = get(key);
+        if ( value == null ) {
+            value = factory.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return The removed value, or null if the key was not in the map.
+     */
+    V remove( int key ) {
+        int slot = _slotOf(key);
+        V removed = (V) _values[slot];
+        if ( removed == null ) return null;
+        int mask = _keys.length - 1;
+        int free = slot;
+        int next = (free + 1) & mask;
+        while ( _values[next] != null ) {
+            int home = IntIntMap._hash(_keys[next]) & mask;
+            boolean movable = free <= next ? ( home <= free || home > next ) : ( home <= free && home > next );
+            if ( movable ) {
+                _keys[free] = _keys[next];
+                _values[free] = _values[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        _values[free] = null;
+        _size--;
+        return removed;
+    }
+
+    void clear() {
+        Arrays.fill(_values, null);
+        _size = 0;
+    }
+
+    /**
+     * @return A snapshot of the values, in no particular order.
+     */
+    List<V> values() {
+        List<V> values = new ArrayList<>(_size);
+        for ( Object value : _values )
+            if ( value != null ) values.add((V) value);
+        return values;
+    }
+
+    private int _slotOf( int key ) {
+        int mask = _keys.length - 1;
+        int slot = IntIntMap._hash(key) & mask;
+        while ( _values[slot] != null && _keys[slot] != key )
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void _resize( int capacity ) {
+        int[] keys = _keys;
+        Object[] values = _values;
+        _keys = new int[capacity];
+        _values = new Object[capacity];
+        _size = 0;
+        for ( int i = 0; i < keys.length; i++ )
+            if ( values[i] != null ) put(keys[i], (V) values[i]);
+    }
+}
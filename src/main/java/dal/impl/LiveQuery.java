@@ -0,0 +1,149 @@
+package dal.impl;
+
+import dal.api.Model;
+import org.slf4j.Logger;
+import sprouts.Vars;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ *  Keeps the result of a {@link ModelQuery} in a {@link Vars} list up-to-date
+ *  while the rows of the tables read by the query are inserted, updated and deleted.
+ *  <p>
+ *      If only rows of the queried table changed and the result is ordered by id,
+ *      only the changed rows are checked against the predicates of the query,
+ *      and the models of the rows are inserted into or removed from the list accordingly.
+ *      Otherwise (like if a joined table changed or the result is explicitly ordered),
+ *      the query is executed again and only the difference to the current list is applied.
+ *  <p>
+ *      The list is only referenced weakly, so that live queries nobody observes anymore
+ *      are discarded by the database.
+ *
+ * @param <M> The type of the model to query.
+ */
+final class LiveQuery<M extends Model<M>>
+{
+    private final static Logger log = org.slf4j.LoggerFactory.getLogger(LiveQuery.class);
+
+    /*
+        Checking more rows than this one by one is no cheaper than executing the query again,
+        and their ids may exceed the maximum number of variables SQLite allows in a single statement.
+    */
+    private static final int MAX_CHECKED_ROWS = 500;
+
+    private final ModelQuery<M> _query;
+    private final SQLiteDataBase _dataBase;
+    private WeakReference<Vars<M>> _models = new WeakReference<>(null);
+    private final List<Integer> _ids = new ArrayList<>(); // The ids of the listed models, because deleted models do not know them anymore.
+
+
+    LiveQuery( ModelQuery<M> query, SQLiteDataBase dataBase ) {
+        _query    = query;
+        _dataBase = dataBase;
+    }
+
+    /**
+     *  Creates the list of models matching the query, which is kept up-to-date from now on.
+     */
+    Vars<M> start() {
+        Vars<M> models = Vars.of(_query._model());
+        _query._ids().forEach( id -> {
+            models.add(_modelOf(id));
+            _ids.add(id);
+        });
+        _models = new WeakReference<>(models);
+        return models;
+    }
+
+    boolean isDiscarded() { return _models.get() == null; }
+
+    boolean readsFrom( String tableName ) { return _query._readTables().contains(tableName); }
+
+    /**
+     * @param changedRows The ids of the changed rows for every changed table.
+     */
+    void rowsChanged( Map<String, Set<Integer>> changedRows ) {
+        Set<Integer> changedIds = Collections.emptySet();
+        for ( var changes : changedRows.entrySet() ) {
+            if ( !readsFrom(changes.getKey()) ) continue;
+            boolean isQueriedTable = changes.getKey().equals(_query._table().getTableName());
+            if ( !isQueriedTable || !_query._isOrderedById() ) {
+                refresh(); // We cannot tell which models are affected (or where they belong) without the entire result.
+                return;
+            }
+            changedIds = changes.getValue();
+        }
+        if ( !changedIds.isEmpty() )
+            _check(changedIds);
+    }
+
+    private void _check( Set<Integer> changedIds ) {
+        Vars<M> models = _models.get();
+        if ( models == null ) return;
+        if ( changedIds.size() > MAX_CHECKED_ROWS ) {
+            refresh();
+            return;
+        }
+        Set<Integer> matching;
+        try {
+            matching = _query._matchingIds(changedIds);
+        } catch ( Exception e ) {
+            // Maybe there were too many changed rows for a single statement, the entire result will do:
+            log.warn("Failed to check the rows " + changedIds + " against a live query, refreshing it entirely instead.", e);
+            refresh();
+            return;
+        }
+        for ( int id : changedIds ) {
+            int index = _ids.indexOf(id);
+            if ( matching.contains(id) && index < 0 ) {
+                int position = 0;
+                while ( position < _ids.size() && _ids.get(position) < id ) position++;
+                _add(models, position, id, _modelOf(id));
+            }
+            else if ( !matching.contains(id) && index >= 0 )
+                _remove(models, index);
+        }
+    }
+
+    /**
+     *  Executes the query again and applies the difference between the new and the current result.
+     */
+    void refresh() {
+        Vars<M> models = _models.get();
+        if ( models == null ) return;
+        List<Integer> ids;
+        try {
+            ids = _query._ids();
+        } catch ( Exception e ) {
+            log.warn("Failed to refresh a live query.", e);
+            return;
+        }
+        Set<Integer> wanted = new HashSet<>(ids);
+        for ( int i = _ids.size() - 1; i >= 0; i-- )
+            if ( !wanted.contains(_ids.get(i)) )
+                _remove(models, i);
+
+        for ( int i = 0; i < ids.size(); i++ ) {
+            int id = ids.get(i);
+            if ( i < _ids.size() && _ids.get(i) == id )
+                continue;
+            int current = _ids.indexOf(id);
+            M model = current >= 0 ? models.at(current).get() : _modelOf(id);
+            if ( current >= 0 ) _remove(models, current);
+            _add(models, i, id, model);
+        }
+    }
+
+    private void _add( Vars<M> models, int index, int id, M model ) {
+        _ids.add(index, id);
+        models.addAt(index, model);
+    }
+
+    private void _remove( Vars<M> models, int index ) {
+        _ids.remove(index);
+        models.removeAt(index);
+    }
+
+    private M _modelOf( int id ) { return _dataBase._proxyFor(_query._model(), _query._table(), id); }
+}
@@ -5,10 +5,16 @@ import sprouts.*;
 
 import java.util.*;
 
+/**
+ *  A list property of a model, which is stored in an intermediate table.
+ *  The ids of the listed models are read once and then kept in a primitive {@link IntArrayList},
+ *  so that the size of the list, lookups by index and membership checks
+ *  ({@link #indexOf(Object)} and {@link #contains(Object)}) never touch the database.
+ */
 public class ModelProperties implements Vars<Object>
 {
     private final SQLiteDataBase db;
-    private final List<Integer> ids;
+    private final IntArrayList ids;
     private final int id; // The id of the model to which the properties belong
     private final ModelTable intermediateTable;
     private final String otherTable;
@@ -36,7 +42,7 @@ public class ModelProperties implements Vars<Object>
         this.otherTable = AbstractDataBase._tableNameFromClass(propertyValueType);
         this.otherTableIdColumn = ModelTable.INTER_RIGHT_FK_PREFIX + otherTable + ModelTable.INTER_FK_POSTFIX;
         this.thisTableIdColumn = ModelTable.INTER_LEFT_FK_PREFIX + AbstractDataBase._tableNameFromClass(ownerModelClass) + ModelTable.INTER_FK_POSTFIX;
-        String query = "SELECT " + otherTableIdColumn + " FROM " + intermediateTable.getTableName() + " WHERE " + thisTableIdColumn + " = ?";
+        String query = "SELECT " + otherTableIdColumn + " FROM " + intermediateTable.getTableName() + " WHERE " + thisTableIdColumn + " = ? ORDER BY id";
 
         List<Object> param = Collections.singletonList(id);
         Map<String, List<Object>> result = db._query(query, param);
@@ -49,7 +55,9 @@ public class ModelProperties implements Vars<Object>
             throw new IllegalStateException("The column should be named after the id column of the other table");
         // The column should contain a list of ids:
         List<Object> found = result.get(otherTableIdColumn);
-        this.ids = new ArrayList<>(found.stream().map(o -> (Integer) o).toList());
+        this.ids = new IntArrayList(found.size());
+        for ( Object foundId : found )
+            this.ids.add((Integer) foundId);
     }
 
     private Model<?> _select( int id ) {
@@ -62,16 +70,35 @@ public class ModelProperties implements Vars<Object>
     @Override
     public Iterator<Object> iterator() {
         // We need to map the ids to the actual models:
-        return ids.stream().map(id -> {
-            // We need to get the model from the database:
-            return (Object) _select(id);
-        }).iterator();
+        int[] snapshot = ids.toArray();
+        return new Iterator<>() {
+            private int _index = 0;
+            @Override public boolean hasNext() { return _index < snapshot.length; }
+            @Override public Object next() {
+                if ( !hasNext() ) throw new NoSuchElementException();
+                return _select(snapshot[_index++]); // We need to get the model from the database
+            }
+        };
     }
 
     @Override public Class<Object> type() { return (Class<Object>) propertyValueType; }
 
     @Override public int size() { return ids.size(); }
 
+    /**
+     *  Models are listed by their ids, so we can find a model without loading the listed ones.
+     */
+    @Override
+    public int indexOf( Object value ) {
+        if ( !(value instanceof Model<?> model) || !propertyValueType.isInstance(value) )
+            return -1;
+        Integer modelId = ModelProxy.idOf(model);
+        return modelId == null ? -1 : ids.indexOf(modelId);
+    }
+
+    @Override
+    public boolean contains( Object value ) { return indexOf(value) >= 0; }
+
     @Override
     public Var<Object> at(int index) {
         return new ModelProperty(
@@ -116,7 +143,7 @@ public class ModelProperties implements Vars<Object>
                 "WHERE " + thisTableIdColumn + " = ? AND " + otherTableIdColumn + " = ?";
         List<Object> params = List.of(leftId, rightId);
         db._update(query, params);
-        ids.remove(index);
+        ids.removeAt(index);
     }
 
     @Override
@@ -225,7 +252,10 @@ public class ModelProperties implements Vars<Object>
 
     @Override
     public Vars<Object> removeAll( Vars<Object> vars ) {
-        for ( Object o : vars ) _removeAt(indexOf(o));
+        for ( Object o : vars ) {
+            int index = indexOf(o);
+            if ( index >= 0 ) _removeAt(index);
+        }
         return this;
     }
 
@@ -53,22 +53,30 @@ class ModelProperty implements Var<Object>
         if ( _wasSet && !_isEager ) return _value;
 
         Object value;
-        StringBuilder select = new StringBuilder();
-        select.append("SELECT ").append(_fieldName)
-                .append(" FROM ").append(_tableName)
-                .append(" WHERE id = ?");
-
-        Map<String, List<Object>> result = _dataBase._query(select.toString(), Collections.singletonList(_id));
-        if (result.isEmpty())
-            return null;
-        else {
-            List<Object> values = result.get(_fieldName);
-            if (values.isEmpty())
-                throw new IllegalStateException("Failed to find table entry for id " + _id);
-            else if (values.size() > 1)
-                throw new IllegalStateException("Found more than one table entry for id " + _id);
-            else
-                value = values.get(0);
+        if ( _dataBase._isCachingRows() ) {
+            // The whole row is shared with all other properties of the row through the row cache:
+            Map<String, Object> row = _dataBase._cachedRow(_tableName, _id);
+            if ( row == null )
+                return null;
+            value = row.get(_fieldName);
+        } else {
+            StringBuilder select = new StringBuilder();
+            select.append("SELECT ").append(_fieldName)
+                    .append(" FROM ").append(_tableName)
+                    .append(" WHERE id = ?");
+
+            Map<String, List<Object>> result = _dataBase._query(select.toString(), Collections.singletonList(_id));
+            if (result.isEmpty())
+                return null;
+            else {
+                List<Object> values = result.get(_fieldName);
+                if (values.isEmpty())
+                    throw new IllegalStateException("Failed to find table entry for id " + _id);
+                else if (values.size() > 1)
+                    throw new IllegalStateException("Found more than one table entry for id " + _id);
+                else
+                    value = values.get(0);
+            }
         }
 
         if (!Model.class.isAssignableFrom(_propertyValueType))
@@ -9,6 +9,7 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -222,6 +223,33 @@ class ModelProxy<T extends Model<T>> implements InvocationHandler {
         return _id;
     }
 
+    /**
+     *  Reading the id property of a model reads it from its row,
+     *  but the proxy of a model of this database knows its id already.
+     *
+     * @return The id of the model, or null if it has none.
+     */
+    static Integer idOf( Model<?> model ) {
+        if ( Proxy.isProxyClass(model.getClass()) && Proxy.getInvocationHandler(model) instanceof ModelProxy<?> proxy )
+            return proxy._id;
+        return model.id().orElseNull();
+    }
+
+    /**
+     *  Drops the cached property with the provided name, so that it is read from
+     *  the database again the next time it is accessed.
+     *  This is needed when rows are written to the database without going through this proxy.
+     *
+     * @param methodName The name of the method returning the property.
+     */
+    void forgetProperty( String methodName ) { cachedPropertyProxies.remove(methodName); }
+
+    /**
+     *  Drops all cached list properties, which hold the ids of the listed models in memory.
+     *  Single value properties do not need to be dropped, because they are read from the database anyway.
+     */
+    void forgetListProperties() { cachedPropertyProxies.values().removeIf( ref -> ref.impl() instanceof ModelProperties ); }
+
     public String getTableName() {
         return _modelTable.getTableName();
     }
@@ -0,0 +1,801 @@
+package dal.impl;
+
+import dal.api.*;
+import sprouts.Val;
+import sprouts.Vars;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ *  The implementation of the fluent query builder API of the {@link SQLiteDataBase},
+ *  which is a {@link Where}, {@link Junction} and {@link Ordered} step at the same time.
+ *  It collects the where clause, the sort keys, the keyset condition and the limit of a query
+ *  and turns them into a single SQL statement once the result is requested.
+ *
+ * @param <M> The type of the model to query.
+ */
+final class ModelQuery<M extends Model<M>> implements Where<M>, Junction<M>, Ordered<M>
+{
+    private final SQLiteDataBase _dataBase;
+    private final Class<M> _model;
+    private final ModelTable _table;
+
+    private final StringBuilder _where = new StringBuilder();
+    private final List<Object> _values = new ArrayList<>();
+    private final Compare<M, Object> _compare = new ValueCollector();
+
+    /*
+        Predicates on the properties of referenced models (like "world.name") require joins
+        on the foreign key columns, which we only add once per path.
+        The column of the next comparison is defined by the table alias and the field:
+    */
+    private final List<String> _joins = new ArrayList<>();
+    private final List<Object> _joinValues = new ArrayList<>(); // The values of the placeholders in the joins
+    private final Map<String, String> _joinAliases = new HashMap<>(); // Foreign key column -> alias of the joined table
+    private final List<String> _searchRanks = new ArrayList<>(); // The ranks of the full-text searches of this query
+    private String _subjectAlias;
+    private ModelTable _subjectTable;
+    private TableField _subjectField;
+
+    private final List<TableField> _orderFields = new ArrayList<>();
+    private final List<Boolean> _orderDescending = new ArrayList<>();
+    private List<Object> _after = null; // The values of the sort keys (and the id) of the last seen model.
+    private Integer _limit = null;
+
+    private final Map<Class<?>, ModelTable> _foreignTables = new HashMap<>(); // The tables of referenced models
+    private final Set<String> _readTables = new HashSet<>(); // All tables the query reads from, for the query cache
+
+    ModelQuery( SQLiteDataBase dataBase, Class<M> model ) {
+        _dataBase = dataBase;
+        _model = model;
+        _table = dataBase._getTableFor(model);
+        _readTables.add(_table.getTableName());
+    }
+
+    @Override
+    public <T> Compare<M, T> where( Function<M, Val<T>> selector ) {
+        return _compare("", _dataBase._selectTableField(selector, _model));
+    }
+
+    @Override
+    public <T> Compare<M, T> where( Class<? extends Val<T>> field ) {
+        return _compare("", _table.getField(field));
+    }
+
+    @Override
+    public <T> Compare<M, T> and( Function<M, Val<T>> selector ) {
+        return _compare(" AND ", _dataBase._selectTableField(selector, _model));
+    }
+
+    @Override
+    public <T> Compare<M, T> or( Function<M, Val<T>> selector ) {
+        return _compare(" OR ", _dataBase._selectTableField(selector, _model));
+    }
+
+    @Override
+    public <T> Compare<M, T> and( Class<? extends Val<T>> field ) {
+        return _compare(" AND ", _table.getField(field));
+    }
+
+    @Override
+    public <T> Compare<M, T> or( Class<? extends Val<T>> field ) {
+        return _compare(" OR ", _table.getField(field));
+    }
+
+    private <T> Compare<M, T> _compare( String junction, TableField field ) {
+        _where.append(junction);
+        _subjectAlias = _table.getTableName();
+        _subjectTable = _table;
+        _subjectField = field;
+        return (Compare<M, T>) _compare;
+    }
+
+    /**
+     *  Qualifies a column of the queried table with the table name,
+     *  so that it cannot be confused with the columns of joined tables.
+     */
+    private String _column( String name ) { return _table.getTableName() + "." + name; }
+
+    private ModelTable _tableOf( Class<?> referencedModel ) {
+        return _foreignTables.computeIfAbsent(referencedModel, m -> _dataBase._getTableFor((Class) m));
+    }
+
+    /**
+     *  Joins the full-text search results for the searchable field of the current subject
+     *  and returns the alias of the search results, which have the columns "id" and "rank".
+     *  The search is evaluated once for the entire query, instead of once per row.
+     */
+    private String _joinedSearchOf( String alias, ModelTable table, TableField field, String searchQuery ) {
+        String searchAlias = "search_" + (_joins.size() + 1);
+        String searchTable = table.getSearchTableName();
+        _readTables.add(searchTable);
+        _joins.add(
+            "LEFT JOIN (" +
+                "SELECT rowid AS id, rank FROM " + searchTable + " WHERE " + searchTable + " MATCH ?" +
+            ") AS " + searchAlias + " ON " + searchAlias + ".id = " + alias + ".id"
+        );
+        _joinValues.add("{" + field.getName() + "} : (" + searchQuery + ")");
+        _searchRanks.add(searchAlias + ".rank");
+        return searchAlias;
+    }
+
+    /**
+     *  Turns plain search text into an FTS5 query, where every word
+     *  is quoted (so that it cannot be mistaken for query syntax) and treated as a prefix.
+     *
+     * @return The query, or null if the text does not contain any words.
+     */
+    private static String _searchQueryOf( String searchText ) {
+        List<String> words = new ArrayList<>();
+        for ( String word : searchText.split("[^\\p{L}\\p{N}]+") )
+            if ( !word.isEmpty() )
+                words.add("\"" + word + "\"*");
+        return words.isEmpty() ? null : String.join(" AND ", words);
+    }
+
+    /**
+     *  Joins the table of the model referenced by the foreign key of the current subject,
+     *  unless it was already joined for a previous predicate, and returns its alias.
+     *  We use a left join, so that models without a reference are still found
+     *  through the other predicates of an "OR" clause.
+     */
+    private String _joinedTableOf( String alias, TableField foreignKey ) {
+        String foreignKeyColumn = alias + "." + foreignKey.getName();
+        return _joinAliases.computeIfAbsent(foreignKeyColumn, k -> {
+            String joinAlias = "join_" + (_joins.size() + 1);
+            String joinedTable = _tableOf(foreignKey.getType()).getTableName();
+            _readTables.add(joinedTable);
+            _joins.add("LEFT JOIN " + joinedTable + " AS " + joinAlias + " ON " + joinAlias + ".id = " + foreignKeyColumn);
+            return joinAlias;
+        });
+    }
+
+    @Override
+    public <T> Ordered<M> orderBy( Function<M, Val<T>> selector ) { return orderAscendingBy(selector); }
+
+    @Override
+    public <T> Ordered<M> orderAscendingBy( Function<M, Val<T>> selector ) {
+        return _orderBy(_dataBase._selectTableField(selector, _model), false);
+    }
+
+    @Override
+    public <T> Ordered<M> orderDescendingBy( Function<M, Val<T>> selector ) {
+        return _orderBy(_dataBase._selectTableField(selector, _model), true);
+    }
+
+    @Override
+    public Ordered<M> orderAscendingBy( Class<? extends Val<?>> field ) { return _orderBy(_table.getField(field), false); }
+
+    @Override
+    public Ordered<M> orderDescendingBy( Class<? extends Val<?>> field ) { return _orderBy(_table.getField(field), true); }
+
+    @Override
+    public <T> Ordered<M> thenBy( Function<M, Val<T>> selector ) { return orderAscendingBy(selector); }
+
+    @Override
+    public <T> Ordered<M> thenDescendingBy( Function<M, Val<T>> selector ) { return orderDescendingBy(selector); }
+
+    private Ordered<M> _orderBy( TableField field, boolean descending ) {
+        if ( field.requiresIntermediateTable() )
+            throw new IllegalArgumentException(
+                    "Cannot order by the list property '" + field.getMethodName() + "' of model '" + _model.getName() + "'!"
+                );
+        if ( _after != null )
+            throw new IllegalStateException("The sort keys must be defined before the last seen model is specified!");
+        _orderFields.add(field);
+        _orderDescending.add(descending);
+        return this;
+    }
+
+    @Override
+    public Ordered<M> after( M lastSeen ) {
+        Objects.requireNonNull(lastSeen, "The last seen model may not be null!");
+        /*
+            We read the current values of the sort keys of the last seen model in a single query.
+            Because numeric columns are read as primitives (where NULL becomes 0),
+            we also ask the database explicitly which of them are NULL.
+        */
+        List<String> columns = _keyColumns();
+        List<String> selection = new ArrayList<>();
+        for ( int i = 0; i < columns.size(); i++ ) {
+            selection.add(columns.get(i) + " AS key_" + i);
+            selection.add("(" + columns.get(i) + " IS NULL) AS key_" + i + "_is_null");
+        }
+        int id = lastSeen.id().get();
+        var result = _dataBase._query(
+                        "SELECT " + String.join(", ", selection) + " FROM " + _table.getTableName() + " WHERE id = ?",
+                        List.of(id)
+                    );
+        if ( result.getOrDefault("key_0", Collections.emptyList()).isEmpty() )
+            throw new IllegalArgumentException("The last seen model with id " + id + " does not exist (anymore)!");
+
+        _after = new ArrayList<>();
+        for ( int i = 0; i < columns.size(); i++ ) {
+            boolean isNull = Objects.equals(result.get("key_" + i + "_is_null").get(0), 1);
+            _after.add( isNull ? null : result.get("key_" + i).get(0) );
+        }
+        return this;
+    }
+
+    @Override
+    public List<M> page( int size ) {
+        if ( size < 0 )
+            throw new IllegalArgumentException("The page size must not be negative!");
+        _limit = size;
+        return asList();
+    }
+
+    @Override
+    public List<M> asList() {
+        List<Object> values = new ArrayList<>();
+        Map<String, List<Object>> result = _dataBase._cachedQuery(_sql(values), values, _readTables);
+        return result.getOrDefault("id", Collections.emptyList())
+                        .stream()
+                        .map( id -> _dataBase._proxyFor(_model, _table, (int) id) )
+                        .toList();
+    }
+
+    @Override
+    public Vars<M> asLiveVars() { return _dataBase._live(new LiveQuery<>(this, _dataBase)); }
+
+    Class<M> _model() { return _model; }
+
+    ModelTable _table() { return _table; }
+
+    Set<String> _readTables() { return _readTables; }
+
+    /**
+     *  Whether the result is simply ordered by id, in which case a changed row can be
+     *  inserted into (or removed from) the result without knowing the rest of the result.
+     */
+    boolean _isOrderedById() {
+        return _orderFields.isEmpty() && _after == null && _limit == null && _searchRanks.isEmpty();
+    }
+
+    /**
+     * @return The ids of all models matching the query, in the order of the query, or by id if it has none.
+     */
+    List<Integer> _ids() {
+        List<Object> values = new ArrayList<>();
+        String sql = _isOrderedById() ? _filteredSelect(_column("id") + " AS id", values, "") + " ORDER BY " + _column("id") + " ASC" : _sql(values);
+        return _dataBase._query(sql, values).getOrDefault("id", Collections.emptyList()).stream().map( id -> (Integer) id ).toList();
+    }
+
+    /**
+     * @param ids The ids of the models to check.
+     * @return Those of the provided ids whose models match the predicates of the query.
+     */
+    Set<Integer> _matchingIds( Collection<Integer> ids ) {
+        List<Object> values = new ArrayList<>();
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        String sql = _filteredSelect(_column("id") + " AS id", values, _column("id") + " IN (" + placeholders + ")");
+        values.addAll(ids);
+        return _dataBase._query(sql, values).getOrDefault("id", Collections.emptyList()).stream().map( id -> (Integer) id ).collect(Collectors.toSet());
+    }
+
+    @Override
+    public Stream<M> stream() {
+        List<Object> values = new ArrayList<>();
+        // We only read the ids through the cursor, the models themselves are proxies anyway:
+        return _dataBase._cursor(_sql(values), values)
+                        .map( row -> _dataBase._proxyFor(_model, _table, (int) row.get("id")) );
+    }
+
+    @Override
+    public <T> Projection<T> project( Function<M, Val<T>> selector ) {
+        TableField field = _columnOf(_dataBase._selectTableField(selector, _model));
+        return new ColumnProjection<>(List.of(field), row -> (T) row[0]);
+    }
+
+    @Override
+    public <A, B, R> Projection<R> project(
+        Function<M, Val<A>> first, Function<M, Val<B>> second, BiFunction<A, B, R> combiner
+    ) {
+        Objects.requireNonNull(combiner);
+        List<TableField> fields = List.of(
+                                    _columnOf(_dataBase._selectTableField(first, _model)),
+                                    _columnOf(_dataBase._selectTableField(second, _model))
+                                );
+        return new ColumnProjection<>(fields, row -> combiner.apply((A) row[0], (B) row[1]));
+    }
+
+    @Override
+    public <R extends Record> Projection<R> project( Class<R> recordType ) {
+        Objects.requireNonNull(recordType);
+        RecordComponent[] components = recordType.getRecordComponents();
+        if ( components == null || components.length == 0 )
+            throw new IllegalArgumentException("The type '" + recordType.getName() + "' is not a record with components!");
+
+        List<TableField> fields = new ArrayList<>();
+        Class<?>[] types = new Class<?>[components.length];
+        for ( int i = 0; i < components.length; i++ ) {
+            RecordComponent component = components[i];
+            if ( !_table.hasField(component.getName()) )
+                throw new IllegalArgumentException(
+                        "The record component '" + component.getName() + "' of record '" + recordType.getName() + "' " +
+                        "does not match any property of model '" + _model.getName() + "'!"
+                    );
+            TableField field = _columnOf(_table.getField(component.getName()));
+            if ( !_boxed(component.getType()).isAssignableFrom(_boxed(field.getType())) )
+                throw new IllegalArgumentException(
+                        "The record component '" + component.getName() + "' of record '" + recordType.getName() + "' " +
+                        "is of type '" + component.getType().getName() + "', but the property of model " +
+                        "'" + _model.getName() + "' is of type '" + field.getType().getName() + "'!"
+                    );
+            fields.add(field);
+            types[i] = component.getType();
+        }
+        Constructor<R> constructor;
+        try {
+            constructor = recordType.getDeclaredConstructor(types);
+            constructor.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot access the canonical constructor of record '" + recordType.getName() + "'!", e);
+        }
+        return new ColumnProjection<>(fields, row -> {
+            try {
+                return constructor.newInstance(row);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to create record '" + recordType.getName() + "'!", e);
+            }
+        });
+    }
+
+    private TableField _columnOf( TableField field ) {
+        if ( field.requiresIntermediateTable() )
+            throw new IllegalArgumentException(
+                    "The list property '" + field.getMethodName() + "' of model '" + _model.getName() + "' " +
+                    "is not a column and can therefore not be projected or aggregated!"
+                );
+        return field;
+    }
+
+    @Override
+    public int count() {
+        List<Object> values = new ArrayList<>();
+        var result = _dataBase._cachedQuery(_filteredSelect("COUNT(" + _column("id") + ") AS aggregate", values), values, _readTables);
+        return ((Number) result.get("aggregate").get(0)).intValue();
+    }
+
+    @Override
+    public <K> Grouped<M, K> groupBy( Function<M, Val<K>> selector ) {
+        return new GroupedQuery<>(_columnOf(_dataBase._selectTableField(selector, _model)));
+    }
+
+    @Override
+    public <N extends Number> double sum( Function<M, Val<N>> selector ) {
+        Object sum = _aggregate("TOTAL", _columnOf(_dataBase._selectTableField(selector, _model)));
+        return sum == null ? 0 : ((Number) sum).doubleValue();
+    }
+
+    @Override
+    public <N extends Number> OptionalDouble avg( Function<M, Val<N>> selector ) {
+        Object average = _aggregate("AVG", _columnOf(_dataBase._selectTableField(selector, _model)));
+        return average == null ? OptionalDouble.empty() : OptionalDouble.of(((Number) average).doubleValue());
+    }
+
+    @Override
+    public <T> Optional<T> min( Function<M, Val<T>> selector ) {
+        TableField field = _columnOf(_dataBase._selectTableField(selector, _model));
+        return Optional.ofNullable((T) _valueOf(field, _aggregate("MIN", field)));
+    }
+
+    @Override
+    public <T> Optional<T> max( Function<M, Val<T>> selector ) {
+        TableField field = _columnOf(_dataBase._selectTableField(selector, _model));
+        return Optional.ofNullable((T) _valueOf(field, _aggregate("MAX", field)));
+    }
+
+    /**
+     *  Computes an aggregate function over a column of all matching rows,
+     *  or returns null if the column has no (non-null) values to aggregate.
+     *  We count the values alongside the aggregate, because a NULL result
+     *  of a numeric expression may be read as 0.
+     */
+    private Object _aggregate( String function, TableField field ) {
+        List<Object> values = new ArrayList<>();
+        String column = _column(field.getName());
+        String selection = function + "(" + column + ") AS aggregate, COUNT(" + column + ") AS value_count";
+        var result = _dataBase._cachedQuery(_filteredSelect(selection, values), values, _readTables);
+        if ( ((Number) result.get("value_count").get(0)).intValue() == 0 )
+            return null;
+        return result.get("aggregate").get(0);
+    }
+
+    /**
+     *  Converts a value read from a column (or an aggregate of it) to the value type of the property,
+     *  because SQLite only knows a couple of storage classes, which do not always
+     *  match the Java type of the property.
+     */
+    private Object _valueOf( TableField field, Object value ) {
+        if ( value == null )
+            return null;
+        Class<?> type = _boxed(field.getType());
+        if ( field.isForeignKey() ) {
+            int foreignId = ((Number) value).intValue();
+            if ( foreignId == 0 )
+                return null; // The model does not reference another one.
+            return _dataBase._proxyFor((Class) type, _tableOf(type), foreignId);
+        }
+        if ( value instanceof Number number && !type.isInstance(value) ) {
+            if ( type == Integer.class ) return number.intValue();
+            if ( type == Long.class    ) return number.longValue();
+            if ( type == Double.class  ) return number.doubleValue();
+            if ( type == Float.class   ) return number.floatValue();
+            if ( type == Short.class   ) return number.shortValue();
+            if ( type == Byte.class    ) return number.byteValue();
+            if ( type == Boolean.class ) return number.intValue() != 0;
+        }
+        return value;
+    }
+
+    private static Class<?> _boxed( Class<?> type ) {
+        if ( !type.isPrimitive() ) return type;
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    /**
+     *  The sort keys of a paginated query always end with the id, so that the order is unique.
+     */
+    private List<String> _keyColumns() {
+        List<String> columns = new ArrayList<>();
+        for ( TableField field : _orderFields )
+            columns.add(_column(field.getName()));
+        if ( !columns.contains(_column("id")) )
+            columns.add(_column("id"));
+        return columns;
+    }
+
+    private List<Boolean> _keyDirections() {
+        List<Boolean> descending = new ArrayList<>(_orderDescending);
+        if ( descending.size() < _keyColumns().size() ) // The id was added as tie breaker!
+            descending.add(!descending.isEmpty() && descending.stream().allMatch( d -> d ));
+        return descending;
+    }
+
+    /**
+     *  Builds the SQL statement of this query and collects the values for its placeholders.
+     */
+    private String _sql( List<Object> values ) { return _sql(_column("id") + " AS id", values); }
+
+    private String _sql( String selection, List<Object> values ) {
+        StringBuilder sql = new StringBuilder(_filteredSelect(selection, values));
+        if ( _orderFields.isEmpty() && _after == null && !_searchRanks.isEmpty() ) {
+            // The result is not ordered explicitly, so the best matches of the full-text searches come first:
+            List<String> ranks = new ArrayList<>(_searchRanks);
+            ranks.add("0");
+            sql.append(" ORDER BY COALESCE(").append(String.join(", ", ranks)).append(") ASC, ").append(_column("id")).append(" ASC");
+        }
+        else if ( !_orderFields.isEmpty() || _after != null || _limit != null ) {
+            List<String> columns = _keyColumns();
+            List<Boolean> descending = _keyDirections();
+            List<String> orderings = new ArrayList<>();
+            for ( int i = 0; i < columns.size(); i++ )
+                orderings.add(columns.get(i) + (descending.get(i) ? " DESC" : " ASC"));
+            sql.append(" ORDER BY ").append(String.join(", ", orderings));
+        }
+        if ( _limit != null ) {
+            sql.append(" LIMIT ?");
+            values.add(_limit);
+        }
+        return sql.toString();
+    }
+
+    /**
+     *  Builds the part of the SQL statement which selects the matching rows, but without any ordering or limit.
+     */
+    private String _filteredSelect( String selection, List<Object> values ) { return _filteredSelect(selection, values, ""); }
+
+    /**
+     *  Builds the select statement of the query without ordering and limit, where the provided
+     *  condition (whose placeholder values have to be added by the caller afterwards) may narrow it down further.
+     */
+    private String _filteredSelect( String selection, List<Object> values, String condition ) {
+        StringBuilder sql = new StringBuilder("SELECT " + selection + " FROM " + _table.getTableName());
+        for ( String join : _joins )
+            sql.append(" ").append(join);
+        values.addAll(_joinValues);
+        values.addAll(_values);
+        List<String> conditions = new ArrayList<>();
+        if ( !_where.isEmpty() )
+            conditions.add("(" + _where + ")");
+        if ( _after != null )
+            conditions.add(_keysetCondition(values));
+        if ( !condition.isEmpty() )
+            conditions.add(condition);
+        if ( !conditions.isEmpty() )
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        return sql.toString();
+    }
+
+    /**
+     *  Creates the condition which selects all rows coming after the last seen row.
+     *  If all sort keys have the same direction and none of them can be null,
+     *  this is a simple row value comparison like "(surname, id) > (?, ?)",
+     *  which SQLite can answer by seeking into an index on the sort keys.
+     *  Otherwise, we need to expand the comparison key by key, where NULL values
+     *  are treated the way SQLite sorts them (before everything else in ascending order),
+     *  because a row value comparison is never true for rows with a NULL key,
+     *  although they come after the last seen row in descending order.
+     */
+    private String _keysetCondition( List<Object> values ) {
+        List<String> columns = _keyColumns();
+        List<Boolean> descending = _keyDirections();
+        boolean sameDirection = descending.stream().distinct().count() == 1;
+        boolean nullable = _orderFields.stream().anyMatch( field -> field.allowsNull() || field.getKind() == FieldKind.FOREIGN_KEY );
+        if ( sameDirection && !nullable && _after.stream().noneMatch(Objects::isNull) ) {
+            values.addAll(_after);
+            return "(" + String.join(", ", columns) + ") " + (descending.get(0) ? "<" : ">") + " " +
+                   "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        }
+        List<String> alternatives = new ArrayList<>();
+        for ( int i = 0; i < columns.size(); i++ ) {
+            List<String> parts = new ArrayList<>();
+            for ( int j = 0; j < i; j++ ) {
+                parts.add(columns.get(j) + " IS ?");
+                values.add(_after.get(j));
+            }
+            String column = columns.get(i);
+            Object value = _after.get(i);
+            if ( !descending.get(i) ) {
+                if ( value == null )
+                    parts.add(column + " IS NOT NULL");
+                else {
+                    parts.add(column + " > ?");
+                    values.add(value);
+                }
+            } else {
+                if ( value == null )
+                    parts.add("0"); // Nothing comes after NULL in descending order.
+                else {
+                    parts.add("(" + column + " < ? OR " + column + " IS NULL)");
+                    values.add(value);
+                }
+            }
+            alternatives.add("(" + String.join(" AND ", parts) + ")");
+        }
+        return "(" + String.join(" OR ", alternatives) + ")";
+    }
+
+    /**
+     *  Computes aggregates for the groups of rows sharing the same value in a column,
+     *  each with a single GROUP BY statement.
+     */
+    private final class GroupedQuery<K> implements Grouped<M, K>
+    {
+        private final TableField _key;
+
+        GroupedQuery( TableField key ) { _key = key; }
+
+        @Override
+        public Map<K, Integer> count() {
+            Map<K, Object> counts = _groups("COUNT", _column("id"));
+            Map<K, Integer> result = new LinkedHashMap<>();
+            counts.forEach( (key, count) -> result.put(key, ((Number) count).intValue()) );
+            return Collections.unmodifiableMap(result);
+        }
+
+        @Override
+        public <N extends Number> Map<K, Double> sum( Function<M, Val<N>> selector ) {
+            return _doubles(_groups("TOTAL", _column(_columnOf(_dataBase._selectTableField(selector, _model)).getName())));
+        }
+
+        @Override
+        public <N extends Number> Map<K, Double> avg( Function<M, Val<N>> selector ) {
+            return _doubles(_groups("AVG", _column(_columnOf(_dataBase._selectTableField(selector, _model)).getName())));
+        }
+
+        @Override
+        public <T> Map<K, T> min( Function<M, Val<T>> selector ) { return _extreme("MIN", selector); }
+
+        @Override
+        public <T> Map<K, T> max( Function<M, Val<T>> selector ) { return _extreme("MAX", selector); }
+
+        private <T> Map<K, T> _extreme( String function, Function<M, Val<T>> selector ) {
+            TableField field = _columnOf(_dataBase._selectTableField(selector, _model));
+            Map<K, T> result = new LinkedHashMap<>();
+            _groups(function, _column(field.getName())).forEach( (key, value) -> result.put(key, (T) _valueOf(field, value)) );
+            return Collections.unmodifiableMap(result);
+        }
+
+        private Map<K, Double> _doubles( Map<K, Object> groups ) {
+            Map<K, Double> result = new LinkedHashMap<>();
+            groups.forEach( (key, value) -> result.put(key, value == null ? null : ((Number) value).doubleValue()) );
+            return Collections.unmodifiableMap(result);
+        }
+
+        /**
+         *  Computes the aggregate function for every group, where groups without any (non-null)
+         *  values to aggregate are mapped to null.
+         */
+        private Map<K, Object> _groups( String function, String column ) {
+            List<Object> values = new ArrayList<>();
+            String key = _column(_key.getName());
+            String sql = _filteredSelect(
+                                key + " AS group_key, (" + key + " IS NULL) AS group_key_is_null, " +
+                                function + "(" + column + ") AS aggregate, COUNT(" + column + ") AS value_count",
+                                values
+                            ) +
+                            " GROUP BY " + key + " ORDER BY " + key + " ASC";
+
+            var result = _dataBase._cachedQuery(sql, values, _readTables);
+            List<Object> keys = result.getOrDefault("group_key", Collections.emptyList());
+            Map<K, Object> groups = new LinkedHashMap<>();
+            for ( int i = 0; i < keys.size(); i++ ) {
+                boolean keyIsNull = Objects.equals(result.get("group_key_is_null").get(i), 1);
+                boolean hasValues = ((Number) result.get("value_count").get(i)).intValue() > 0;
+                groups.put(
+                    (K) ( keyIsNull ? null : _valueOf(_key, keys.get(i)) ),
+                    hasValues ? result.get("aggregate").get(i) : null
+                );
+            }
+            return groups;
+        }
+    }
+
+    /**
+     *  Reads a couple of columns of the rows matching this query into plain values.
+     *  Values are converted to the value types of the properties,
+     *  and foreign keys are turned into the (lazy) models they reference.
+     *  The projected rows themselves are never turned into models.
+     */
+    private final class ColumnProjection<T> implements Projection<T>
+    {
+        private final List<TableField> _fields;
+        private final Function<Object[], T> _mapper;
+
+        ColumnProjection( List<TableField> fields, Function<Object[], T> mapper ) {
+            _fields = fields;
+            _mapper = mapper;
+        }
+
+        private String _selection() {
+            List<String> columns = new ArrayList<>();
+            for ( int i = 0; i < _fields.size(); i++ )
+                columns.add(_column(_fields.get(i).getName()) + " AS " + _alias(i));
+            return String.join(", ", columns);
+        }
+
+        private String _alias( int i ) { return "projection_" + i; }
+
+        private T _map( Object[] row ) {
+            for ( int i = 0; i < row.length; i++ )
+                row[i] = _valueOf(_fields.get(i), row[i]);
+            return _mapper.apply(row);
+        }
+
+        @Override
+        public List<T> asList() {
+            List<Object> values = new ArrayList<>();
+            Map<String, List<Object>> result = _dataBase._cachedQuery(_sql(_selection(), values), values, _readTables);
+            int size = result.getOrDefault(_alias(0), Collections.emptyList()).size();
+            List<T> items = new ArrayList<>(size);
+            for ( int r = 0; r < size; r++ ) {
+                Object[] row = new Object[_fields.size()];
+                for ( int i = 0; i < row.length; i++ )
+                    row[i] = result.get(_alias(i)).get(r);
+                items.add(_map(row));
+            }
+            return Collections.unmodifiableList(items);
+        }
+
+        @Override
+        public Stream<T> stream() {
+            List<Object> values = new ArrayList<>();
+            return _dataBase._cursor(_sql(_selection(), values), values)
+                            .map( found -> {
+                                Object[] row = new Object[_fields.size()];
+                                for ( int i = 0; i < row.length; i++ )
+                                    row[i] = found.get(_alias(i));
+                                return _map(row);
+                            });
+        }
+    }
+
+    /**
+     *  Models are stored as foreign keys, so they are compared by their ids.
+     */
+    private static Object _valueOf( Object value ) {
+        if ( value instanceof Model<?> model )
+            return model.id().get();
+        return value;
+    }
+
+    private final class ValueCollector implements Compare<M, Object>
+    {
+        private String _subject() { return _subjectAlias + "." + _subjectField.getName(); }
+
+        @Override
+        public <U> Compare<M, U> then( Function<Object, Val<U>> selector ) {
+            if ( !_subjectField.isForeignKey() )
+                throw new IllegalArgumentException(
+                        "The property '" + _subjectField.getMethodName() + "' is not a reference to another model, " +
+                        "so there is no property to compare after it!"
+                    );
+            Class<? extends Model<?>> referencedModel = (Class<? extends Model<?>>) _subjectField.getType();
+            _subjectAlias = _joinedTableOf(_subjectAlias, _subjectField);
+            _subjectTable = _tableOf(referencedModel);
+            _subjectField = _dataBase._selectTableField((Function) selector, (Class) referencedModel);
+            return (Compare<M, U>) this;
+        }
+
+        @Override
+        public Junction<M> matches( String searchText ) {
+            if ( !_subjectField.isSearchable() )
+                throw new IllegalArgumentException(
+                        "The property '" + _subjectField.getMethodName() + "' cannot be searched, " +
+                        "because it is not annotated with @" + Searchable.class.getSimpleName() + "!"
+                    );
+            String searchQuery = _searchQueryOf(Objects.requireNonNull(searchText));
+            if ( searchQuery == null ) {
+                _where.append("1"); // Nothing to search for, so everything matches.
+                return ModelQuery.this;
+            }
+            String searchAlias = _joinedSearchOf(_subjectAlias, _subjectTable, _subjectField, searchQuery);
+            _where.append(searchAlias).append(".id IS NOT NULL");
+            return ModelQuery.this;
+        }
+
+        private Junction<M> _compareWith( String operator, Object value ) {
+            // First sql:
+            _where.append(_subject()).append(" ").append(operator).append(" ?");
+            // Then values:
+            _values.add(_valueOf(value));
+            return ModelQuery.this;
+        }
+
+        private Junction<M> _compareWithAll( String operator, Object... objects ) {
+            // First sql:
+            _where.append(_subject()).append(" ").append(operator).append(" (");
+            for ( int i = 0; i < objects.length; i++ ) {
+                _where.append("?");
+                if ( i < objects.length - 1 )
+                    _where.append(", ");
+            }
+            _where.append(")");
+            // Then values:
+            for ( Object object : objects )
+                _values.add(_valueOf(object));
+            return ModelQuery.this;
+        }
+
+        @Override public Junction<M> is( Object value ) { return _compareWith("=", value); }
+
+        @Override public Junction<M> isNot( Object value ) { return _compareWith("!=", value); }
+
+        @Override public Junction<M> like( Object value ) { return _compareWith("LIKE", value); }
+
+        @Override public Junction<M> notLike( Object value ) { return _compareWith("NOT LIKE", value); }
+
+        @Override public Junction<M> in( Object... objects ) { return _compareWithAll("IN", objects); }
+
+        @Override public Junction<M> notIn( Object... objects ) { return _compareWithAll("NOT IN", objects); }
+
+        @Override
+        public Junction<M> isNull() {
+            _where.append(_subject()).append(" IS NULL");
+            return ModelQuery.this;
+        }
+
+        @Override
+        public Junction<M> isNotNull() {
+            _where.append(_subject()).append(" IS NOT NULL");
+            return ModelQuery.this;
+        }
+
+        @Override public Junction<M> greaterThan( Object value ) { return _compareWith(">", value); }
+
+        @Override public Junction<M> greaterThanOrEqual( Object value ) { return _compareWith(">=", value); }
+
+        @Override public Junction<M> lessThan( Object value ) { return _compareWith("<", value); }
+
+        @Override public Junction<M> lessThanOrEqual( Object value ) { return _compareWith("<=", value); }
+    }
+}
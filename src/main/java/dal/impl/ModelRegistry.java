@@ -2,7 +2,6 @@ package dal.impl;
 
 import dal.api.Model;
 
-import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -10,7 +9,7 @@ class ModelRegistry
 {
     private final Map<String, ModelTable> modelTables = new LinkedHashMap<>();
 
-    private final Map<String, Map<Integer, WeakReference<ModelProxy<?>>>> modelProxies = new LinkedHashMap<>();
+    private final IdentityMap<ModelProxy<?>> modelProxies = new IdentityMap<>(); // Thread-safe, and forgets the proxies nobody uses anymore.
 
     public ModelRegistry() {}
 
@@ -173,42 +172,31 @@ class ModelRegistry
     }
 
     public Optional<ModelProxy<?>> findModelProxy(String tableName, int id) {
-        var proxies = this.modelProxies.get(tableName);
-        if (proxies == null) {
-            return Optional.empty();
-        }
-        var found = proxies.get(id);
-        if (found == null) {
-            return Optional.empty();
-        }
-        return Optional.ofNullable(found.get());
+        return this.modelProxies.find(tableName, id);
+    }
+
+    /**
+     *  Returns the proxy of a row, or registers the one created by the factory if there is none,
+     *  which is atomic, so threads selecting the same row concurrently share the same proxy.
+     */
+    public ModelProxy<?> modelProxyFor(String tableName, int id, java.util.function.Supplier<ModelProxy<?>> factory) {
+        return this.modelProxies.computeIfAbsent(tableName, id, factory);
+    }
+
+    public void forEachModelProxy( java.util.function.Consumer<ModelProxy<?>> action ) {
+        this.modelProxies.forEach(action);
     }
 
     public void addModelProxy(ModelProxy<?> modelProxy) {
-        var proxies = this.modelProxies.computeIfAbsent(modelProxy.getTableName(), k -> new HashMap<>());
-        proxies.put(modelProxy.getId(), new WeakReference<>(modelProxy));
+        this.modelProxies.put(modelProxy.getTableName(), modelProxy.getId(), modelProxy);
     }
 
     public void removeModelProxy(ModelProxy<?> modelProxy) {
-        var proxies = this.modelProxies.get(modelProxy.getTableName());
-        if (proxies == null) {
-            return;
-        }
-        proxies.remove(modelProxy.getId());
-        if (proxies.isEmpty()) {
-            this.modelProxies.remove(modelProxy.getTableName());
-        }
+        this.modelProxies.remove(modelProxy.getTableName(), modelProxy.getId());
     }
 
     public void removeModelProxy(String tableName, int id ) {
-        var proxies = this.modelProxies.get(tableName);
-        if (proxies == null) {
-            return;
-        }
-        proxies.remove(id);
-        if (proxies.isEmpty()) {
-            this.modelProxies.remove(tableName);
-        }
+        this.modelProxies.remove(tableName, id);
     }
 
 }
@@ -2,6 +2,7 @@ package dal.impl;
 
 import dal.api.Model;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,6 +14,8 @@ interface ModelTable
     String INTER_FK_POSTFIX = "_id";
     String FK_POSTFIX = "_id";
     String FK_PREFIX = "fk_";
+    String INDEX_POSTFIX = "_idx";
+    String SEARCH_POSTFIX = "__search";
 
 
     String getTableName();
@@ -51,6 +54,30 @@ interface ModelTable
 
     String createTableStatement();
 
+    /**
+     *  Index statements are executed every time the tables of a model are registered,
+     *  which is why they are expected to be idempotent (using "CREATE INDEX IF NOT EXISTS").
+     *  This way indexes introduced by newer versions of the ORM will also be added to existing save files.
+     *
+     * @return The SQL statements creating the indexes of this table.
+     */
+    default List<String> createIndexStatements() { return Collections.emptyList(); }
+
+    /**
+     * @return The name of the full-text index table of the searchable fields of this table.
+     */
+    default String getSearchTableName() { return getTableName() + SEARCH_POSTFIX; }
+
+    /**
+     *  The statements creating the full-text index of the searchable fields of this table
+     *  and the triggers keeping it in sync with this table.
+     *  Unlike the index statements, these are only executed when the index does not exist
+     *  or the searchable fields have changed, because the index has to be rebuilt afterwards.
+     *
+     * @return The SQL statements creating the full-text index, or an empty list if no field is searchable.
+     */
+    default List<String> createSearchStatements() { return Collections.emptyList(); }
+
     List<Object> getDefaultValues();
 
 }
@@ -22,7 +22,7 @@ public class PropertySelectionProxy implements InvocationHandler
     ) throws Throwable {
         List<TableField> fields = _modelTable.getFields();
         for (TableField field : fields) {
-            if (field.getName().equals(method.getName())) {
+            if (field.isField(method.getName())) { // Foreign key columns are named differently than their methods!
                 _selection = field;
                 Class<?> propType = field.getPropType();
                 // We return a proxy that will return the value of the property
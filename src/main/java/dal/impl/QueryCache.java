@@ -0,0 +1,117 @@
+package dal.impl;
+
+import dal.api.CacheStats;
+
+import java.util.*;
+
+/**
+ *  Caches the results of queries by their SQL code and the values of their placeholders.
+ *  <p>
+ *      Every write to a table moves the version of the table forward, and every cached result
+ *      remembers the tables it was read from and when it was read.
+ *      A result which was read from a table that has been written to since then is dropped
+ *      when it is looked up, so writes never have to search the cache.
+ *      The least recently used results are evicted once the capacity of the cache is reached.
+ *  <p>
+ *      The versions of the tables are tracked even while the cache is disabled,
+ *      so that enabling it never exposes results which are older than the last write.
+ */
+final class QueryCache
+{
+    private record Key( String sql, List<Object> values ) {}
+
+    private record Entry( Map<String, List<Object>> result, Set<String> tables, long version ) {}
+
+    private final Map<Key, Entry> _entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> _tableVersions = new HashMap<>();
+    private long _clock = 0; // Increases with every write.
+    private long _allTablesVersion = 0; // The version of the last write to an unknown set of tables.
+    private int _capacity = 0;
+
+    private long _hits = 0;
+    private long _misses = 0;
+    private long _invalidations = 0;
+    private long _evictions = 0;
+
+    /**
+     * @param capacity The maximum number of results to cache, where 0 disables the cache.
+     */
+    synchronized void setCapacity( int capacity ) {
+        if ( capacity < 0 )
+            throw new IllegalArgumentException("The capacity of the query cache must not be negative!");
+        _capacity = capacity;
+        _evictOverflow();
+    }
+
+    synchronized boolean isEnabled() { return _capacity > 0; }
+
+    /**
+     * @return The cached result of the query, or null if there is none which is still up-to-date.
+     */
+    synchronized Map<String, List<Object>> get( String sql, List<Object> values ) {
+        if ( _capacity == 0 ) return null;
+        Key key = new Key(sql, values);
+        Entry entry = _entries.get(key);
+        if ( entry != null && !_isCurrent(entry) ) {
+            _entries.remove(key);
+            _invalidations++;
+            entry = null;
+        }
+        if ( entry == null ) {
+            _misses++;
+            return null;
+        }
+        _hits++;
+        return entry.result();
+    }
+
+    /**
+     *  Caches the result of a query which was just read from the given tables.
+     */
+    synchronized void put( String sql, List<Object> values, Set<String> tables, Map<String, List<Object>> result ) {
+        if ( _capacity == 0 ) return;
+        Map<String, List<Object>> frozen = new LinkedHashMap<>();
+        result.forEach( (column, columnValues) -> frozen.put(column, Collections.unmodifiableList(new ArrayList<>(columnValues))) );
+        _entries.put(
+            new Key(sql, Collections.unmodifiableList(new ArrayList<>(values))),
+            new Entry(Collections.unmodifiableMap(frozen), Set.copyOf(tables), _clock)
+        );
+        _evictOverflow();
+    }
+
+    /**
+     *  Moves the version of the given table forward,
+     *  which outdates all results read from it.
+     */
+    synchronized void tableChanged( String tableName ) {
+        _tableVersions.put(tableName, ++_clock);
+    }
+
+    /**
+     *  Outdates all cached results, which is used if it is not known which tables were changed.
+     */
+    synchronized void allTablesChanged() {
+        _allTablesVersion = ++_clock;
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(_hits, _misses, _invalidations, _evictions, _entries.size());
+    }
+
+    private boolean _isCurrent( Entry entry ) {
+        if ( _allTablesVersion > entry.version() ) return false;
+        for ( String table : entry.tables() )
+            if ( _tableVersions.getOrDefault(table, 0L) > entry.version() )
+                return false;
+        return true;
+    }
+
+    private void _evictOverflow() {
+        var oldestFirst = _entries.values().iterator();
+        while ( _entries.size() > _capacity && oldestFirst.hasNext() ) {
+            oldestFirst.next();
+            oldestFirst.remove();
+            _evictions++;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package dal.impl;
+
+import dal.api.CacheStats;
+
+import java.util.*;
+
+/**
+ *  Caches the values of entire rows by their table and id, so that the properties
+ *  of all models of a row (no matter which proxy or which user reads them) are served from memory.
+ *  <p>
+ *      The cache uses the W-TinyLFU policy: New rows enter a small window (1% of the capacity)
+ *      which is evicted in least recently used order. A row leaving the window only enters
+ *      the main area of the cache if it was requested more frequently than the row the main area
+ *      would have to evict for it, where the frequencies are estimated by a compact count-min sketch.
+ *      The main area is segmented into a probation part for rows which were not requested again yet
+ *      and a protected part (80% of the main area) for rows which were.
+ *      This way rows which are requested over and over again (like the rows of catalogs)
+ *      are not pushed out by a burst of rows which are only requested once (like a scan).
+ *  <p>
+ *      The cache does not know when rows change, the database has to invalidate them on every write.
+ */
+final class RowCache
+{
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    private record Key( String table, int id ) {}
+
+    private static final class Node
+    {
+        final Key key;
+        Map<String, Object> row;
+        int area;
+        Node previous, next;
+
+        Node( Key key, Map<String, Object> row ) {
+            this.key = key;
+            this.row = row;
+        }
+    }
+
+    /**
+     *  A doubly linked list of nodes in least recently used order, starting at the least recently used one.
+     */
+    private static final class Area
+    {
+        private final Node _head = new Node(null, null); // A sentinel, so that the list is never empty.
+        private int _size = 0;
+
+        Area() { _head.previous = _head.next = _head; }
+
+        int size() { return _size; }
+
+        Node leastRecentlyUsed() { return _size == 0 ? null : _head.next; }
+
+        void addMostRecentlyUsed( Node node ) {
+            node.previous = _head.previous;
+            node.next = _head;
+            _head.previous.next = node;
+            _head.previous = node;
+            _size++;
+        }
+
+        void remove( Node node ) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = node.next = null;
+            _size--;
+        }
+
+        void clear() {
+            _head.previous = _head.next = _head;
+            _size = 0;
+        }
+    }
+
+    private final Map<Key, Node> _nodes = new HashMap<>();
+    private final Area[] _areas = { new Area(), new Area(), new Area() };
+    private final FrequencySketch _sketch = new FrequencySketch();
+    private int _capacity = 0;
+    private int _windowCapacity = 0;
+    private int _protectedCapacity = 0;
+
+    private long _hits = 0;
+    private long _misses = 0;
+    private long _invalidations = 0;
+    private long _evictions = 0;
+
+    /**
+     * @param capacity The maximum number of rows to cache, where 0 disables the cache.
+     */
+    synchronized void setCapacity( int capacity ) {
+        if ( capacity < 0 )
+            throw new IllegalArgumentException("The capacity of the row cache must not be negative!");
+        _capacity = capacity;
+        _windowCapacity = capacity == 0 ? 0 : Math.max(1, capacity / 100);
+        _protectedCapacity = (capacity - _windowCapacity) * 80 / 100;
+        _sketch.resize(capacity);
+        while ( _nodes.size() > _capacity )
+            _evict(_victim());
+        while ( _areas[PROTECTED].size() > _protectedCapacity )
+            _demoteProtected();
+    }
+
+    synchronized boolean isEnabled() { return _capacity > 0; }
+
+    /**
+     * @return The cached values of the row by their column names, or null if the row is not cached.
+     */
+    synchronized Map<String, Object> get( String table, int id ) {
+        if ( _capacity == 0 ) return null;
+        Key key = new Key(table, id);
+        _sketch.increment(key.hashCode());
+        Node node = _nodes.get(key);
+        if ( node == null ) {
+            _misses++;
+            return null;
+        }
+        _hits++;
+        _onHit(node);
+        return node.row;
+    }
+
+    /**
+     *  Caches the values of a row which was just read from the database.
+     */
+    synchronized void put( String table, int id, Map<String, Object> row ) {
+        if ( _capacity == 0 ) return;
+        Key key = new Key(table, id);
+        Map<String, Object> frozen = new TreeMap<>(String.CASE_INSENSITIVE_ORDER); // Like the column names of SQL.
+        frozen.putAll(row);
+        frozen = Collections.unmodifiableMap(frozen);
+        Node node = _nodes.get(key);
+        if ( node != null ) {
+            node.row = frozen;
+            return;
+        }
+        node = new Node(key, frozen);
+        node.area = WINDOW;
+        _nodes.put(key, node);
+        _areas[WINDOW].addMostRecentlyUsed(node);
+        if ( _areas[WINDOW].size() > _windowCapacity )
+            _admit(_areas[WINDOW].leastRecentlyUsed());
+    }
+
+    synchronized void invalidate( String table, int id ) {
+        Node node = _nodes.remove(new Key(table, id));
+        if ( node == null ) return;
+        _areas[node.area].remove(node);
+        _invalidations++;
+    }
+
+    synchronized void invalidateTable( String table ) {
+        for ( var nodes = _nodes.values().iterator(); nodes.hasNext(); ) {
+            Node node = nodes.next();
+            if ( !node.key.table().equalsIgnoreCase(table) ) continue;
+            nodes.remove();
+            _areas[node.area].remove(node);
+            _invalidations++;
+        }
+    }
+
+    synchronized void invalidateAll() {
+        _invalidations += _nodes.size();
+        _nodes.clear();
+        for ( Area area : _areas ) area.clear();
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(_hits, _misses, _invalidations, _evictions, _nodes.size());
+    }
+
+    private void _onHit( Node node ) {
+        _areas[node.area].remove(node);
+        if ( node.area == PROBATION ) {
+            // Requested again, so the row deserves protection:
+            node.area = PROTECTED;
+            _areas[PROTECTED].addMostRecentlyUsed(node);
+            if ( _areas[PROTECTED].size() > _protectedCapacity )
+                _demoteProtected();
+        }
+        else _areas[node.area].addMostRecentlyUsed(node);
+    }
+
+    /**
+     *  Moves the least recently used row of the window into the main area,
+     *  if the main area has space for it or if it is requested more frequently than the row it would replace.
+     */
+    private void _admit( Node candidate ) {
+        _areas[WINDOW].remove(candidate);
+        int mainSize = _areas[PROBATION].size() + _areas[PROTECTED].size();
+        if ( mainSize >= _capacity - _windowCapacity ) {
+            Node victim = _areas[PROBATION].size() > 0 ? _areas[PROBATION].leastRecentlyUsed() : _areas[PROTECTED].leastRecentlyUsed();
+            /*
+                Without a victim the main area has no space at all (a cache of a single row is only a window),
+                so the candidate has to go, otherwise the cache would hold more rows than its capacity.
+            */
+            if ( victim == null || _sketch.frequency(candidate.key.hashCode()) <= _sketch.frequency(victim.key.hashCode()) ) {
+                _nodes.remove(candidate.key);
+                _evictions++;
+                return;
+            }
+            _evict(victim);
+        }
+        candidate.area = PROBATION;
+        _areas[PROBATION].addMostRecentlyUsed(candidate);
+    }
+
+    private void _demoteProtected() {
+        Node demoted = _areas[PROTECTED].leastRecentlyUsed();
+        _areas[PROTECTED].remove(demoted);
+        demoted.area = PROBATION;
+        _areas[PROBATION].addMostRecentlyUsed(demoted);
+    }
+
+    /**
+     * @return The row to evict if the cache shrinks, which is the least valuable row of the largest area.
+     */
+    private Node _victim() {
+        if ( _areas[PROBATION].size() > 0 ) return _areas[PROBATION].leastRecentlyUsed();
+        if ( _areas[WINDOW].size() > 0 ) return _areas[WINDOW].leastRecentlyUsed();
+        return _areas[PROTECTED].leastRecentlyUsed();
+    }
+
+    private void _evict( Node node ) {
+        _areas[node.area].remove(node);
+        _nodes.remove(node.key);
+        _evictions++;
+    }
+
+    /**
+     *  Estimates how often rows were requested recently, using 4 bit counters in 4 rows of a count-min sketch.
+     *  Once the number of increments reaches 10 times the capacity of the cache, all counters are halved,
+     *  so that rows which were popular a long time ago do not stay in the cache forever.
+     */
+    private static final class FrequencySketch
+    {
+        private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final long HALVING_MASK = 0x7777777777777777L;
+
+        private long[][] _counters = new long[SEEDS.length][1];
+        private int _mask = 15; // The number of counters per row minus 1.
+        private int _sampleSize = 10;
+        private int _increments = 0;
+
+        void resize( int capacity ) {
+            int counters = Math.max(16, Integer.highestOneBit(Math.max(capacity, 1) - 1) << 1);
+            _counters = new long[SEEDS.length][counters / 16];
+            _mask = counters - 1;
+            _sampleSize = 10 * Math.max(capacity, 1);
+            _increments = 0;
+        }
+
+        int frequency( int hash ) {
+            int frequency = Integer.MAX_VALUE;
+            for ( int i = 0; i < SEEDS.length; i++ ) {
+                int index = _indexOf(hash, i);
+                frequency = Math.min(frequency, (int) ((_counters[i][index >>> 4] >>> ((index & 15) << 2)) & 15));
+            }
+            return frequency;
+        }
+
+        void increment( int hash ) {
+            boolean incremented = false;
+            for ( int i = 0; i < SEEDS.length; i++ ) {
+                int index = _indexOf(hash, i);
+                int shift = (index & 15) << 2;
+                if ( ((_counters[i][index >>> 4] >>> shift) & 15) < 15 ) {
+                    _counters[i][index >>> 4] += 1L << shift;
+                    incremented = true;
+                }
+            }
+            if ( incremented && ++_increments >= _sampleSize )
+                _halve();
+        }
+
+        private int _indexOf( int hash, int row ) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & _mask;
+        }
+
+        private void _halve() {
+            for ( long[] row : _counters )
+                for ( int i = 0; i < row.length; i++ )
+                    row[i] = (row[i] >>> 1) & HALVING_MASK;
+            _increments /= 2;
+        }
+    }
+}
@@ -2,16 +2,35 @@ package dal.impl;
 
 import dal.api.*;
 import org.slf4j.Logger;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.Codes;
 import sprouts.Val;
 import sprouts.Vars;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static dal.impl.ModelTable.INTER_TABLE_POSTFIX;
 
@@ -23,17 +42,319 @@ public class SQLiteDataBase extends AbstractDataBase
 {
     private final static Logger log = org.slf4j.LoggerFactory.getLogger(SQLiteDataBase.class);
 
+    private static final AtomicInteger IN_MEMORY_DATABASES = new AtomicInteger(0); // Makes the names of in-memory databases unique.
+
+    /*
+        The open databases of this process by their files, so that a database attaching the file of another one
+        can tell the other one about its writes to the tables of the file, see _onAttachedTableWrite.
+    */
+    private static final Map<Path, Set<SQLiteDataBase>> OPEN_FILES = new ConcurrentHashMap<>();
+
+
+    private static final String TABLE_FINGERPRINT_PREFIX = "table-fingerprint:";
+    private static final String SEARCH_FINGERPRINT_PREFIX = "search-fingerprint:";
+
+    /*
+        The statements which change the rows of exactly one table, which is captured by the group "table".
+        Other statements (like "ALTER TABLE ... RENAME") may change any table as far as the query cache is concerned.
+    */
+    private static final Pattern TABLE_WRITE = Pattern.compile(
+            "^\\s*(?:INSERT(?:\\s+OR\\s+\\w+)?\\s+INTO|REPLACE\\s+INTO|UPDATE(?:\\s+OR\\s+\\w+)?|DELETE\\s+FROM" +
+            "|DROP\\s+TABLE(?:\\s+IF\\s+EXISTS)?|CREATE(?:\\s+TEMP(?:ORARY)?)?(?:\\s+VIRTUAL)?\\s+TABLE(?:\\s+IF\\s+NOT\\s+EXISTS)?)" +
+            "\\s+(?:temp\\.|main\\.)?(?<table>\\w+)",
+            Pattern.CASE_INSENSITIVE
+        );
+    /*
+        Statements which do not change any rows at all:
+    */
+    private static final Pattern NO_TABLE_WRITE = Pattern.compile(
+            "^\\s*(?:CREATE\\s+(?:UNIQUE\\s+)?INDEX|CREATE\\s+TRIGGER|DROP\\s+INDEX|DROP\\s+TRIGGER|SELECT|PRAGMA|ANALYZE)\\b",
+            Pattern.CASE_INSENSITIVE
+        );
+
     private final ModelRegistry _modelRegistry = new ModelRegistry();
 
+    private final SchemaMigrationPlanner _migrationPlanner = new SchemaMigrationPlanner(this);
+
+    private final QueryCache _queryCache = new QueryCache();
+
+    private final RowCache _rowCache = new RowCache();
+
+    /*
+        Every thread writes through its own connection, and SQLite reports the changed rows of a connection
+        on the thread executing the statement, so the rows changed since the last write are confined to that thread.
+        The live queries on the other hand are registered and updated by all threads.
+    */
+    private final List<LiveQuery<?>> _liveQueries = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Map<String, Set<Integer>>> _changedRows = ThreadLocal.withInitial(LinkedHashMap::new);
+    private volatile boolean _isListeningToRowChanges; // Not initialized here, because connections are opened by the super constructor.
+
+    private volatile StorageMaintenance _maintenance; // Null unless enabled, see enableMaintenance().
+
+    private final Map<Class<?>, String> _attachedModels = new HashMap<>(); // The schemas of the attached databases owning the tables of models.
+    private volatile Map<String, String> _attachedTables = Map.of(); // The schemas owning the tables of the attached models (and their lists).
+    private final Set<String> _uncommittedAttachedWrites = new LinkedHashSet<>(); // Published once the transaction is committed.
+
     public SQLiteDataBase(String location, DataBaseProcessor processor) {
         super(location, "", "", processor);
+        if ( !isInMemory() )
+            OPEN_FILES.computeIfAbsent(_normalized(_fileOf(getURL())), f -> new CopyOnWriteArraySet<>()).add(this);
+    }
+
+    private static Path _normalized( Path file ) { return file.toAbsolutePath().normalize(); }
+
+    private static Path _fileOf( String url ) {
+        String path = url.replace("jdbc:sqlite:", "").replaceFirst("^file:", "");
+        int parameters = path.indexOf('?');
+        return Path.of(parameters < 0 ? path : path.substring(0, parameters));
+    }
+
+    /**
+     *  Creates a new and empty database which only lives in memory until it is closed.
+     *  The connections of all threads of the processor share the same database through the shared cache of SQLite,
+     *  while every call creates a database of its own.
+     *
+     * @param processor The processor which determines the threads accessing the database.
+     * @return A new in-memory database.
+     */
+    public static SQLiteDataBase inMemory( DataBaseProcessor processor ) {
+        return new SQLiteDataBase("jdbc:sqlite:file:in-memory-" + IN_MEMORY_DATABASES.incrementAndGet() + "?mode=memory&cache=shared", processor);
     }
 
     @Override
     public void execute(String sql) {
+        // Raw schema changes invalidate what we know about the tables:
+        String statement = sql.trim().toUpperCase();
+        if ( statement.startsWith("CREATE") || statement.startsWith("ALTER") || statement.startsWith("DROP") ) {
+            _deleteMetadata(TABLE_FINGERPRINT_PREFIX + "%");
+            _deleteMetadata(SEARCH_FINGERPRINT_PREFIX + "%");
+        }
         _execute(sql);
     }
 
+    @Override
+    public Optional<String> readMetadata( String key ) { return _readMetadata(key); }
+
+    @Override
+    public void enableQueryCache( int capacity ) { _queryCache.setCapacity(capacity); }
+
+    @Override
+    public CacheStats queryCacheStats() { return _queryCache.stats(); }
+
+    @Override
+    public void enableRowCache( int capacity ) {
+        _rowCache.setCapacity(capacity);
+        if ( capacity > 0 )
+            _isListeningToRowChanges = true;
+    }
+
+    @Override
+    public CacheStats rowCacheStats() { return _rowCache.stats(); }
+
+    @Override
+    public void close() {
+        if ( _maintenance != null )
+            _maintenance.stop();
+        if ( !isInMemory() ) {
+            OPEN_FILES.computeIfPresent(_normalized(_fileOf(getURL())), (file, open) -> {
+                open.remove(this);
+                return open.isEmpty() ? null : open;
+            });
+        }
+        super.close();
+    }
+
+    @Override
+    public synchronized void enableMaintenance() {
+        if ( isInMemory() || _maintenance != null ) return;
+        _processNowAndGet(() -> {
+            try ( var statement = _getConnection().createStatement() ) {
+                // Lets the maintenance give free pages back in small steps:
+                statement.execute("PRAGMA auto_vacuum=INCREMENTAL");
+                // This only takes effect for a database without tables, unless it is rebuilt, which is cheap while it is empty:
+                var tables = statement.executeQuery(
+                                "SELECT count(*) FROM sqlite_master WHERE type = 'table' AND name <> '" + METADATA_TABLE + "'"
+                            );
+                boolean isEmpty = tables.next() && tables.getInt(1) == 0;
+                tables.close();
+                if ( isEmpty ) statement.execute("VACUUM");
+                // Readers do not block the writer in write-ahead logging mode, and vice versa:
+                statement.execute("PRAGMA journal_mode=WAL");
+            } catch ( SQLException e ) {
+                throw new IllegalStateException("Failed to prepare the database at '" + getURL() + "' for its maintenance!", e);
+            }
+            return null;
+        });
+        _maintenance = new StorageMaintenance(this, _fileOf(getURL()));
+        _maintenance.start();
+    }
+
+    @Override
+    public List<MaintenanceActivity> maintenanceActivity() {
+        return _maintenance == null ? List.of() : _maintenance.activity();
+    }
+
+    @Override
+    public List<MaintenanceActivity> runMaintenance() {
+        return _maintenance == null ? List.of() : _maintenance.run(true);
+    }
+
+    @Override
+    protected void _onWrite( String sql ) {
+        if ( _maintenance != null )
+            _maintenance.noteWrite();
+        boolean changesNoRows = sql != null && NO_TABLE_WRITE.matcher(sql).lookingAt();
+        Matcher write = sql == null ? null : TABLE_WRITE.matcher(sql);
+        String table = write != null && write.lookingAt() ? write.group("table") : null;
+        if ( !changesNoRows && table != null )
+            _queryCache.tableChanged(table);
+        else if ( !changesNoRows )
+            _queryCache.allTablesChanged();
+
+        Map<String, Set<Integer>> changedRows = new LinkedHashMap<>(_changedRows.get());
+        _changedRows.get().clear();
+        _invalidateCachedRows(changesNoRows, table, changedRows);
+        _updateLiveQueries(changesNoRows, table, changedRows);
+
+        if ( sql == null )
+            _uncommittedAttachedWrites.clear(); // A rollback, so the attached tables did not change after all.
+        else if ( !changesNoRows && table != null && _attachedTables.containsKey(table) ) {
+            _uncommittedAttachedWrites.add(table);
+            if ( _isAutoCommitting() ) _onCommit();
+        }
+    }
+
+    @Override
+    protected void _onCommit() {
+        for ( String table : _uncommittedAttachedWrites )
+            _onAttachedTableWrite(_attachedTables.get(table), table);
+        _uncommittedAttachedWrites.clear();
+    }
+
+    private boolean _isAutoCommitting() {
+        try {
+            return _getConnection().getAutoCommit();
+        } catch ( SQLException e ) {
+            return true;
+        }
+    }
+
+    /**
+     *  Tells the databases of this process which are stored in the file attached as the provided schema
+     *  that a table of theirs was written to through this database,
+     *  because otherwise their caches and live queries would not notice.
+     */
+    private void _onAttachedTableWrite( String schema, String table ) {
+        String file = schema == null ? null : _attachedFile(schema);
+        if ( file == null ) return;
+        for ( SQLiteDataBase owner : OPEN_FILES.getOrDefault(_normalized(Path.of(file)), Set.of()) )
+            if ( owner != this )
+                owner._processLater(() -> owner._tableChangedElsewhere(table));
+    }
+
+    /**
+     *  Forgets everything remembered about a table of this database, which was written to by another database
+     *  attaching the file of this database, see {@link #attach(String, Path, Class[])}.
+     */
+    void _tableChangedElsewhere( String table ) {
+        _queryCache.tableChanged(table);
+        _invalidateCachedRows(false, table, Map.of());
+        _updateLiveQueries(false, table, Map.of());
+        if ( table.endsWith(INTER_TABLE_POSTFIX) )
+            _modelRegistry.forEachModelProxy(ModelProxy::forgetListProperties);
+    }
+
+    /**
+     *  Drops the rows changed by the last write from the row cache.
+     *  If it is not known which rows were changed, all rows of the written table (or of all tables) are dropped.
+     */
+    private void _invalidateCachedRows( boolean changesNoRows, String table, Map<String, Set<Integer>> changedRows ) {
+        if ( changesNoRows || !_rowCache.isEnabled() ) return;
+        if ( table == null )
+            _rowCache.invalidateAll(); // An unknown statement or a rollback, anything may have changed!
+        else if ( !changedRows.containsKey(table) )
+            _rowCache.invalidateTable(table); // Some statements (like deleting all rows) bypass the change reports of SQLite.
+        for ( var changed : changedRows.entrySet() )
+            for ( int id : changed.getValue() )
+                _rowCache.invalidate(changed.getKey(), id);
+    }
+
+    /**
+     *  Returns the values of a row by their column names, which are cached if the row cache is enabled.
+     *
+     * @return The values of the row, or null if there is no row with the id.
+     */
+    Map<String, Object> _cachedRow( String table, int id ) {
+        return _processNowAndGet(() -> {
+            var cached = _rowCache.get(table, id);
+            if ( cached != null ) return cached;
+            var result = _query("SELECT * FROM " + table + " WHERE id = ?", Collections.singletonList(id));
+            if ( result.isEmpty() || result.values().iterator().next().isEmpty() ) return null;
+            Map<String, Object> row = new LinkedHashMap<>();
+            result.forEach( (column, values) -> row.put(column, values.get(0)) );
+            _rowCache.put(table, id, row);
+            return row;
+        });
+    }
+
+    boolean _isCachingRows() { return _rowCache.isEnabled(); }
+
+    /**
+     *  Registers a live query, so that it is updated after every write from now on,
+     *  and returns the list of models it keeps up-to-date.
+     */
+    <M extends Model<M>> Vars<M> _live( LiveQuery<M> liveQuery ) {
+        return _processNowAndGet(() -> {
+            _isListeningToRowChanges = true;
+            _liveQueries.add(liveQuery);
+            return liveQuery.start();
+        });
+    }
+
+    @Override
+    protected void _onConnect( Connection connection ) throws SQLException {
+        // SQLite tells us the ids of all inserted, updated and deleted rows, even those changed by raw SQL,
+        // but we only keep them once the row cache or a live query needs them:
+        connection.unwrap(SQLiteConnection.class).addUpdateListener( (type, database, table, rowId) -> {
+            if ( _isListeningToRowChanges )
+                _changedRows.get().computeIfAbsent(table, t -> new LinkedHashSet<>()).add((int) rowId);
+        });
+    }
+
+    /**
+     *  Passes the rows changed by the last write to the live queries.
+     *  If it is not known which rows were changed, the live queries are refreshed entirely.
+     */
+    private void _updateLiveQueries( boolean changesNoRows, String table, Map<String, Set<Integer>> changedRows ) {
+        _liveQueries.removeIf(LiveQuery::isDiscarded);
+        for ( LiveQuery<?> liveQuery : _liveQueries ) {
+            if ( !changesNoRows && table == null )
+                liveQuery.refresh(); // An unknown statement or a rollback, anything may have changed!
+            else if ( table != null && !changedRows.containsKey(table) && liveQuery.readsFrom(table) )
+                liveQuery.refresh(); // Some statements (like deleting all rows) bypass the change reports of SQLite.
+            else
+                liveQuery.rowsChanged(changedRows);
+        }
+    }
+
+    /**
+     *  Executes a query which only reads from the given tables,
+     *  or returns its cached result if the query cache is enabled and none of the tables changed since.
+     */
+    Map<String, List<Object>> _cachedQuery( String sql, List<Object> values, Set<String> tables ) {
+        if ( !_queryCache.isEnabled() ) return _query(sql, values);
+        return _processNowAndGet(() -> {
+            var cached = _queryCache.get(sql, values);
+            if ( cached != null ) return cached;
+            var result = _query(sql, values);
+            _queryCache.put(sql, values, tables, result);
+            return result;
+        });
+    }
+
+    @Override
+    public void writeMetadata( String key, String value ) { _writeMetadata(key, value); }
+
 
     @Override
     public void dropTablesFor(
@@ -55,7 +376,15 @@ public class SQLiteDataBase extends AbstractDataBase
 
     @Override
     public void dropTable(Class<? extends Model<?>> model) {
+        if ( _attachedModels.containsKey(model) )
+            throw new IllegalArgumentException(
+                    "The table of the model '" + model.getName() + "' is owned by the database " +
+                    "attached as '" + _attachedModels.get(model) + "' and cannot be dropped from here!"
+                );
         String tableName = _tableNameFromClass(model);
+        _deleteMetadata(TABLE_FINGERPRINT_PREFIX + tableName);
+        _deleteMetadata(SEARCH_FINGERPRINT_PREFIX + tableName);
+        _execute("DROP TABLE IF EXISTS " + tableName + ModelTable.SEARCH_POSTFIX);
         _execute("DROP TABLE IF EXISTS " + tableName);
 
     }
@@ -65,6 +394,10 @@ public class SQLiteDataBase extends AbstractDataBase
         for ( String tableName : tableNames ) {
             _execute("DROP TABLE IF EXISTS " + tableName);
         }
+        var searchTables = _query("SELECT name FROM sqlite_master WHERE type = 'table' AND name GLOB '*" + ModelTable.SEARCH_POSTFIX + "'");
+        for ( Object searchTable : searchTables.getOrDefault("name", Collections.emptyList()) )
+            _execute("DROP TABLE IF EXISTS " + searchTable);
+        _execute("DELETE FROM " + METADATA_TABLE); // The table itself exists as long as the connections do.
     }
 
     @Override
@@ -72,55 +405,157 @@ public class SQLiteDataBase extends AbstractDataBase
             Class<? extends Model<?>>... models
     ) {
         _modelRegistry.addTables(Arrays.asList(models));
+        _attachedTables = _findAttachedTables();
         for ( String statement : getCreateTableStatements() ) {
             _execute(statement);
         }
+        // Index statements are idempotent, so existing save files receive missing indexes as well:
+        for ( ModelTable modelTable : _ownTables() )
+            for ( String statement : modelTable.createIndexStatements() )
+                _execute(statement);
+
+        for ( ModelTable modelTable : _ownTables() )
+            _createSearchIndexFor(modelTable);
+    }
+
+    @Override
+    public void attach( String schema, Path file, Class<? extends Model<?>>... models ) {
+        Objects.requireNonNull(file, "The file of the database to attach is null!");
+        if ( isInMemory() )
+            throw new IllegalStateException("An in-memory database cannot have other databases attached!");
+        _processNowAndGet(() -> {
+            _attach(schema, file);
+            for ( var model : models )
+                _attachedModels.put(model, schema);
+            _attachedTables = _findAttachedTables();
+            _onWrite(null); // The attached tables may shadow nothing, but cached results may be affected anyway.
+            return null;
+        });
+    }
+
+    @Override
+    public void detach( String schema ) {
+        _processNowAndGet(() -> {
+            _detach(schema);
+            _attachedModels.values().removeIf(schema::equals);
+            _attachedTables = _findAttachedTables();
+            _onWrite(null);
+            return null;
+        });
+    }
+
+    /**
+     * @return The tables of the registered models which are stored in this database
+     *         instead of an attached database, see {@link #attach(String, Path, Class[])}.
+     */
+    private List<ModelTable> _ownTables() {
+        Map<String, String> attachedTables = _findAttachedTables();
+        return _modelRegistry.getTables()
+                .stream()
+                .filter( t -> !attachedTables.containsKey(t.getTableName()) )
+                .toList();
+    }
+
+    /**
+     * @return The schemas of the attached databases owning the tables of the registered models, by table name.
+     */
+    private Map<String, String> _findAttachedTables() {
+        Map<String, String> attachedTables = new HashMap<>();
+        for ( ModelTable modelTable : _modelRegistry.getTables() ) {
+            String schema = modelTable.getModelInterface().map(_attachedModels::get).orElse(null);
+            if ( schema != null ) {
+                attachedTables.put(modelTable.getTableName(), schema);
+                // The lists of a model belong to it as well, unless they hold models of this database,
+                // in which case the lists are stored in this database, next to the models they hold:
+                for ( TableField field : modelTable.getFields() )
+                    field.getIntermediateTable()
+                         .filter( t -> schema.equals(_attachedModels.get(t.getReferencedModels().get(1))) )
+                         .ifPresent( t -> attachedTables.put(t.getTableName(), schema) );
+            }
+        }
+        return attachedTables;
+    }
+
+    /**
+     *  Creates the full-text index of the searchable fields of a table (if it has any)
+     *  and fills it with the text already stored in the table.
+     *  Because rebuilding the index reads the entire table, we only do it if the index
+     *  is missing or if its definition changed, which we know from its fingerprint.
+     */
+    private void _createSearchIndexFor( ModelTable modelTable ) {
+        String searchTable = modelTable.getSearchTableName();
+        String fingerprintKey = SEARCH_FINGERPRINT_PREFIX + modelTable.getTableName();
+        List<String> statements = modelTable.createSearchStatements();
+        if ( statements.isEmpty() ) {
+            // No field is searchable (anymore), so there is nothing to keep in sync:
+            if ( doesTableExist(searchTable) ) {
+                log.info("Dropping full-text index " + searchTable + " because the model has no searchable fields.");
+                _dropSearchIndex(searchTable);
+            }
+            _deleteMetadata(fingerprintKey);
+            return;
+        }
+        String fingerprint = DataBase.fingerprintOf(String.join("\n", statements));
+        if ( doesTableExist(searchTable) && _readMetadata(fingerprintKey).map(fingerprint::equals).orElse(false) )
+            return;
+
+        log.info("Building full-text index " + searchTable + " for table " + modelTable.getTableName() + ".");
+        _dropSearchIndex(searchTable);
+        for ( String statement : statements )
+            _execute(statement);
+        _execute("INSERT INTO " + searchTable + " (" + searchTable + ") VALUES ('rebuild');");
+        _writeMetadata(fingerprintKey, fingerprint);
+    }
+
+    private void _dropSearchIndex( String searchTable ) {
+        for ( String trigger : List.of("_insert", "_delete", "_update") )
+            _execute("DROP TRIGGER IF EXISTS " + searchTable + trigger);
+        _execute("DROP TABLE IF EXISTS " + searchTable);
     }
 
 
     private List<String> getCreateTableStatements() {
         List<String> allExistingTables = listOfAllTableNames();
         List<String> statements = new ArrayList<>();
-        for ( ModelTable modelTable : _modelRegistry.getTables() ) {
-            if ( !allExistingTables.contains(modelTable.getTableName()) )
+        for ( ModelTable modelTable : _ownTables() ) {
+            String fingerprintKey = TABLE_FINGERPRINT_PREFIX + modelTable.getTableName();
+            String fingerprint = DataBase.fingerprintOf(modelTable.createTableStatement());
+            if ( !allExistingTables.contains(modelTable.getTableName()) ) {
                 statements.add(modelTable.createTableStatement());
+                _writeMetadata(fingerprintKey, fingerprint);
+                // A new table needs new triggers for its full-text index:
+                _deleteMetadata(SEARCH_FINGERPRINT_PREFIX + modelTable.getTableName());
+            }
+            else if ( _readMetadata(fingerprintKey).map(fingerprint::equals).orElse(false) )
+                log.debug("Table " + modelTable.getTableName() + " already exists and its fingerprint matches the model.");
             else {
                 log.info("Table " + modelTable.getTableName() + " already exists!");
-                var collision = modelTable.getTableName();
-                var statement = modelTable.createTableStatement();
                 /*
                     Before we return the statements we need to carefully look at the table name collisions.
-                    For every single table name collision we need to check if the sql code of the table
-                    is the same as the sql code of the table we are trying to create!
-                    If it is not the same we need to throw an exception because
-                    it means that the database is in an inconsistent state with the model (source code).
+                    For every single table name collision we need to check if the schema of the existing table
+                    is compatible with the table we are trying to create!
+                    If it is not, we do not give up, instead we migrate the existing table
+                    by either adding the missing columns or by rebuilding only this specific table.
                 */
-                var tableSQL = sqlCodeOfTable(modelTable.getTableName());
-                // Before checking for equality we strip both strings of all executive whitespace and
-                // other characters that are not part of the sql code like newlines and tabs.
-                tableSQL = tableSQL.replaceAll("\\s+", " ").trim();
-                statement = statement.replaceAll("\\s+", " ").trim();
-                // Next we remove SQL syntax that is not part of the table definition
-                tableSQL = tableSQL.replace("CREATE TABLE IF NOT EXISTS ", "CREATE TABLE ");
-                statement = statement.replace("CREATE TABLE IF NOT EXISTS ", "CREATE TABLE ");
-                // We trim semicolons from the end of the sql code
-                if ( tableSQL.endsWith(";") )
-                    tableSQL = tableSQL.substring(0, tableSQL.length()-1);
-                if ( statement.endsWith(";") )
-                    statement = statement.substring(0, statement.length()-1);
-                // We check for equality
-                if ( !tableSQL.equals(statement) ) {
-                    throw new IllegalStateException(
-                            "The database at '" + getURL() + "' is not compatible with the provided source code model" +
-                            modelTable.getModelInterface().map( m -> " '" + m.getName() + "'" ).orElse("") + "! \n" +
-                            "The sql code of table '" + collision + "' encountered inside the database, \n" +
-                            "does not match the table statement generated from " +
-                            "the model source code. \nThis means that the database is not compatible with the source code " +
-                            "of the model" + modelTable.getModelInterface().map( m -> " '" + m.getName() + "'" ).orElse("") +
-                            ". \nThe sql code of the table is: \n'" + tableSQL + "', \nwhereas the table " +
-                            "statement necessary for representing the current model interface is: \n'" + statement + "'."
-                        );
+                var migration = _migrationPlanner.planFor(modelTable).orElse(null);
+                if ( migration != null ) {
+                    // A rebuilt table loses its triggers, so the full-text index has to be rebuilt as well:
+                    _deleteMetadata(SEARCH_FINGERPRINT_PREFIX + modelTable.getTableName());
+                    try {
+                        _migrationPlanner.execute(migration);
+                    } catch ( Exception e ) {
+                        throw new IllegalStateException(
+                                "The database at '" + getURL() + "' is not compatible with the provided source code model" +
+                                modelTable.getModelInterface().map( m -> " '" + m.getName() + "'" ).orElse("") + "! \n" +
+                                "The table '" + modelTable.getTableName() + "' encountered inside the database " +
+                                "could not be migrated to the table statement generated from the model source code: \n'" +
+                                modelTable.createTableStatement() + "'.",
+                                e
+                            );
+                    }
                 }
+                // The table is now known to be compatible, so we can skip the comparison next time:
+                _writeMetadata(fingerprintKey, fingerprint);
             }
         }
         return statements;
@@ -162,7 +597,7 @@ public class SQLiteDataBase extends AbstractDataBase
         return (String) result.get("sql").get(0);
     }
 
-    private ModelTable _getTableFor( Class<? extends Model<?>> model ) {
+    ModelTable _getTableFor( Class<? extends Model<?>> model ) {
         // First let's verify that the model is indeed a model
         if ( !Model.class.isAssignableFrom(model) )
             throw new IllegalArgumentException("The provided class is not a model!");
@@ -197,14 +632,20 @@ public class SQLiteDataBase extends AbstractDataBase
             Let's do that now:
         */
         // Let's find the table for the model
-        var modelTable = _getTableFor(model);
+        return _proxyFor(model, _getTableFor(model), id);
+    }
 
-        // Let's first see if the registry already contains a proxy
-        var proxy = _modelRegistry.findModelProxy(_tableNameFromClass(model), id).orElse(null);
-        if ( proxy == null ) {
-            proxy = new ModelProxy<>(this, modelTable, id, true);
-            _modelRegistry.addModelProxy(proxy);
-        }
+    /**
+     *  Creates the model instance for a row whose table is already known,
+     *  which spares us the verification of the table (a query) in bulk operations.
+     */
+    <T extends Model<T>> T _proxyFor( Class<T> model, ModelTable modelTable, int id )
+    {
+        // The registry already contains a proxy, or it atomically registers a new one:
+        var proxy = _modelRegistry.modelProxyFor(
+                                        _tableNameFromClass(model), id,
+                                        () -> new ModelProxy<>(this, modelTable, id, true)
+                                    );
         return  (T) Proxy.newProxyInstance(
                         model.getClassLoader(),
                         new Class[]{model},
@@ -217,7 +658,7 @@ public class SQLiteDataBase extends AbstractDataBase
         // First we need to query the database for all the ids of the models
         String tableName = _tableNameFromClass(models);
         String sql = "SELECT id FROM " + tableName;
-        Map<String, List<Object>> result = _query(sql);
+        Map<String, List<Object>> result = _cachedQuery(sql, Collections.emptyList(), Set.of(tableName));
         if ( result.isEmpty() )
             throw new IllegalArgumentException("The model '" + models.getName() + "' does not have a table in the database!");
         if ( result.size() > 1 )
@@ -369,241 +810,172 @@ public class SQLiteDataBase extends AbstractDataBase
     }
 
     @Override
-    public <M extends Model<M>> Where<M> select(Class<M> model) {
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM ").append(_tableNameFromClass(model)).append(" WHERE ");
-        ModelTable table = _getTableFor(model);
-        List<Object> values = new ArrayList<>();
-        Junction[] junc = {null};
-        Compare<M, Object> valueCollector = new Compare<>() {
-            @Override
-            public Junction<M> is(Object value) {
-                // First sql:
-                sql.append(" = ?");
-                // Then values:
-                values.add(value);
-                return junc[0];
-            }
+    public void dumpTo( Writer out ) {
+        new TableDump(this, _modelRegistry.getTables()).dump(out);
+    }
 
-            @Override
-            public Junction<M> isNot(Object value) {
-                // First sql:
-                sql.append(" != ?");
-                // Then values:
-                values.add(value);
-                return junc[0];
-            }
+    @Override
+    public void restoreFrom( Reader in ) {
+        new TableDump(this, _modelRegistry.getTables()).restore(in);
+        // The lists of living models are now outdated:
+        _modelRegistry.forEachModelProxy(ModelProxy::forgetListProperties);
+    }
 
-            @Override
-            public Junction<M> like(Object value) {
-                // First sql:
-                sql.append(" LIKE ?");
-                // Then values:
-                values.add(value);
-                return junc[0];
-            }
+    @Override
+    public void saveTo( Path file ) {
+        Objects.requireNonNull(file, "The file to save the database to is null!");
+        _processNowAndGet(() -> {
+            File directory = file.toAbsolutePath().getParent().toFile();
+            if ( !directory.exists() ) directory.mkdirs();
+            _withNativeDataBase("save the database to '" + file + "'", db -> db.backup("main", file.toAbsolutePath().toString(), null));
+            return null;
+        });
+    }
 
-            @Override
-            public Junction<M> notLike(Object value) {
-                // First sql:
-                sql.append(" NOT LIKE ?");
-                // Then values:
-                values.add(value);
-                return junc[0];
+    @Override
+    public void loadFrom( Path file ) {
+        Objects.requireNonNull(file, "The file to load the database from is null!");
+        if ( !Files.isRegularFile(file) )
+            throw new IllegalArgumentException("There is no database file at '" + file + "' to load from!");
+        _processNowAndGet(() -> {
+            _withNativeDataBase("load the database from '" + file + "'", db -> db.restore("main", file.toAbsolutePath().toString(), null));
+            try {
+                _createMetadataTableOn(_getConnection()); // The loaded database may be older than the metadata.
+            } catch ( SQLException e ) {
+                throw new IllegalStateException("Failed to create the metadata table of the database at '" + getURL() + "'!", e);
             }
+            // Everything may have changed, so the lists of living models, cached queries and live queries are outdated:
+            _modelRegistry.forEachModelProxy(ModelProxy::forgetListProperties);
+            _onWrite(null);
+            return null;
+        });
+    }
 
-            @Override
-            public Junction<M> in(Object... objects) {
-                // First sql:
-                sql.append(" IN (");
-                for (int i = 0; i < objects.length; i++) {
-                    sql.append("?");
-                    if (i < objects.length - 1)
-                        sql.append(", ");
+    @Override
+    public CompletableFuture<Path> backupTo( Path file, BackupProgress progress ) {
+        Objects.requireNonNull(file, "The file to back up the database to is null!");
+        Objects.requireNonNull(progress, "The backup progress listener is null!");
+        Path target  = file.toAbsolutePath();
+        Path partial = target.resolveSibling(target.getFileName() + ".partial"); // So that a failed backup never replaces a good one.
+        CompletableFuture<Path> done = new CompletableFuture<>();
+        if ( isInMemory() ) {
+            /*
+                The connections of an in-memory database share the cache of SQLite, in which a second connection
+                reading while the database thread writes fails with SQLITE_LOCKED instead of waiting.
+                So the copy is made on the database thread through its own connection, like saveTo(Path) does,
+                which is fast, because the pages are copied from memory.
+            */
+            _processLater(() -> _backUp(partial, target, done, () -> {
+                _withNativeDataBase("back up the database to '" + target + "'", db -> db.backup("main", partial.toString(), null));
+                try ( var statement = _getConnection().createStatement(); var pages = statement.executeQuery("PRAGMA page_count") ) {
+                    int totalPages = pages.next() ? pages.getInt(1) : 0;
+                    progress.update(totalPages, totalPages);
                 }
-                sql.append(")");
-                // Then values:
-                values.addAll(Arrays.asList(objects));
-                return junc[0];
-            }
-
-            @Override
-            public Junction<M> notIn(Object... objects) {
-                // First sql:
-                sql.append(" NOT IN (");
-                for (int i = 0; i < objects.length; i++) {
-                    sql.append("?");
-                    if (i < objects.length - 1)
-                        sql.append(", ");
+            }));
+            return done;
+        }
+        Thread backup = new Thread(() -> _backUp(partial, target, done, () -> {
+            _onBackgroundConnection( connection -> {
+                /*
+                    The driver neither exposes the steps of the backup API of SQLite nor lets us choose their size,
+                    it copies all pages in a single step, which reads the database in a single read transaction.
+                    So the backup does not let writers in while it runs, it only runs off the database threads.
+                    The backup API does not wait for a writer which holds the lock, so we open the read transaction
+                    ourselves, which waits for the writer like any other reader, and the backup then reads in it.
+                */
+                connection.setAutoCommit(false);
+                try {
+                    int totalPages;
+                    try ( var statement = connection.createStatement() ) {
+                        statement.executeQuery("SELECT count(*) FROM sqlite_master").close();
+                        try ( var pages = statement.executeQuery("PRAGMA page_count") ) {
+                            totalPages = pages.next() ? pages.getInt(1) : 0;
+                        }
+                    }
+                    int resultCode = connection.unwrap(SQLiteConnection.class).getDatabase().backup(
+                                        "main", partial.toString(),
+                                        (remainingPages, pages) -> progress.update(pages - remainingPages, pages)
+                                    );
+                    if ( resultCode != Codes.SQLITE_OK )
+                        throw new SQLException("SQLite returned the result code " + resultCode + "!");
+                    // The driver does not necessarily report the single step, so we report the end ourselves:
+                    progress.update(totalPages, totalPages);
+                } finally {
+                    connection.rollback(); // Ends the read transaction.
                 }
-                sql.append(")");
-                // Then values:
-                values.addAll(Arrays.asList(objects));
-                return junc[0];
-            }
-
-            @Override
-            public Junction<M> isNull() {
-                // First sql:
-                sql.append(" IS NULL");
-                // Then values:
-                return junc[0];
-            }
-
-            @Override
-            public Junction<M> isNotNull() {
-                // First sql:
-                sql.append(" IS NOT NULL");
-                // Then values:
-                return junc[0];
-            }
-
-            @Override
-            public Junction<M> greaterThan(Object value) {
-                // First sql:
-                sql.append(" > ?");
-                // Then values:
-                values.add(value);
-                return junc[0];
-            }
-
-            @Override
-            public Junction<M> greaterThanOrEqual(Object value) {
-                // First sql:
-                sql.append(" >= ?");
-                // Then values:
-                values.add(value);
-                return junc[0];
-            }
-
-            @Override
-            public Junction<M> lessThan(Object value) {
-                // First sql:
-                sql.append(" < ?");
-                // Then values:
-                values.add(value);
-                return junc[0];
-            }
-
-            @Override
-            public Junction<M> lessThanOrEqual(Object value) {
-                // First sql:
-                sql.append(" <= ?");
-                // Then values:
-                values.add(value);
-                return junc[0];
-            }
-
-        };
-
-        junc[0] = new Junction<M>() {
-
-            @Override
-            public <T> Compare<M, T> and(Function<M, Val<T>> selector) {
-                var field = _selectTableField(selector, model);
-                sql.append(" AND ").append(field.getName()).append(" ");
-                return (Compare<M, T>) valueCollector;
-            }
-
-            @Override
-            public <T> Compare<M, T> or( Function<M, Val<T>> selector ) {
-                var field = _selectTableField(selector, model);
-                sql.append(" OR ").append(field.getName()).append(" ");
-                return (Compare<M, T>) valueCollector;
-            }
+            });
+        }), "Database-Backup");
+        backup.setDaemon(true);
+        backup.start();
+        return done;
+    }
 
-            @Override
-            public <T> Compare<M, T> and( Class<? extends Val<T>> field ) {
-                sql.append(" AND ").append(table.getField(field).getName());
-                return (Compare<M, T>) valueCollector;
-            }
+    private interface BackupCopy { void copyTo() throws Exception; }
 
-            @Override
-            public <T> Compare<M, T> or( Class<? extends Val<T>> field ) {
-                sql.append(" OR ");
-                sql.append(table.getField(field).getName());
-                return (Compare<M, T>) valueCollector;
-            }
+    /**
+     *  Makes a copy into the partial file of a backup, which then replaces the target file,
+     *  and completes the future of the backup either way.
+     */
+    private void _backUp( Path partial, Path target, CompletableFuture<Path> done, BackupCopy copy ) {
+        try {
+            Files.createDirectories(target.getParent());
+            copy.copyTo();
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            done.complete(target);
+        } catch ( Exception e ) {
+            log.error("Failed to back up the database at '{}' to '{}'!", getURL(), target, e);
+            try {
+                Files.deleteIfExists(partial);
+            } catch ( IOException ignored ) {}
+            done.completeExceptionally(e);
+        }
+    }
 
-            @Override
-            public <N extends Number> Query<M> orderAscendingBy( Function<M, Val<N>> selector ) {
-                var field = _selectTableField(selector, model);
-                sql.append(" ORDER BY ");
-                sql.append(field.getName());
-                sql.append(" ASC");
-                return this;
-            }
+    /**
+     *  Pauses background work (like a backup which found the database locked or the steps of the maintenance),
+     *  so that the threads of the database can go first.
+     */
+    static void _pause( long millis ) {
+        try {
+            Thread.sleep(millis);
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            @Override
-            public <N extends Number> Query<M> orderDescendingBy( Function<M, Val<N>> selector ) {
-                var field = _selectTableField(selector, model);
-                sql.append(" ORDER BY ");
-                sql.append(field.getName());
-                sql.append(" DESC");
-                return this;
-            }
+    private interface NativeOperation { int runOn( org.sqlite.core.DB db ) throws SQLException; }
 
-            @Override
-            public Query<M> orderAscendingBy( Class<? extends Val<?>> field ) {
-                sql.append(" ORDER BY ");
-                sql.append(table.getField(field).getName());
-                sql.append(" ASC");
-                return this;
-            }
+    /**
+     *  Runs an operation of the SQLite library on the connection of the current thread,
+     *  which returns a result code of SQLite.
+     */
+    private void _withNativeDataBase( String description, NativeOperation operation ) {
+        int resultCode;
+        try {
+            resultCode = operation.runOn(_getConnection().unwrap(SQLiteConnection.class).getDatabase());
+        } catch ( SQLException e ) {
+            throw new IllegalStateException("Failed to " + description + "!", e);
+        }
+        if ( resultCode != Codes.SQLITE_OK )
+            throw new IllegalStateException("Failed to " + description + ", SQLite returned the result code " + resultCode + "!");
+    }
 
-            @Override
-            public Query<M> orderDescendingBy( Class<? extends Val<?>> field ) {
-                sql.append(" ORDER BY ");
-                sql.append(table.getField(field).getName());
-                sql.append(" DESC");
-                return this;
-            }
+    @Override
+    public <M extends Model<M>, K> BulkImport<M> bulkImport( Class<M> model, Function<M, Val<K>> key ) {
+        return new BulkImporter<>(this, model, _selectTableField(key, model));
+    }
 
-            @Override
-            public List<M> asList() {
-                String sqlString = sql.toString();
-                if ( sqlString.endsWith(" WHERE ") )
-                    sqlString = sqlString.substring(0, sqlString.length()-7);
-
-                Map<String, List<Object>> result = _query(sqlString, values);
-                List<Integer> ids = result.getOrDefault("id", Collections.emptyList())
-                                            .stream()
-                                            .map( o -> (int) o )
-                                            .toList();
-
-                // Now let's select them:
-                return ids.stream()
-                            .map( id -> select(model, id) )
-                            .toList();
-            }
-        };
-
-        return new Where<M>()
-        {
-            @Override public List<M> asList() { return junc[0].asList(); }
-
-            @Override
-            public <T> Compare<M, T> where( Class<? extends Val<T>> field ) {
-                // First sql:
-                sql.append(table.getField(field).getName()).append(" ");
-                // Then values:
-                return (Compare<M, T>) valueCollector;
-            }
+    @Override
+    public <M extends Model<M>> Where<M> select(Class<M> model) {
+        return new ModelQuery<>(this, model);
+    }
 
-            @Override
-            public <T> Compare<M, T> where( Function<M, Val<T>> selector )
-            {
-                var field = _selectTableField(selector, model);
-                // First sql:
-                sql.append(field.getName()).append(" ");
-                // Then values:
-                return (Compare<M, T>) valueCollector;
-            }
-        };
+    void _forgetCachedProperty( String tableName, int id, String methodName ) {
+        _modelRegistry.findModelProxy(tableName, id).ifPresent( proxy -> proxy.forgetProperty(methodName) );
     }
 
-    private <T, M extends Model<M>> TableField _selectTableField(
-        Function<M, Val<T>> selector,
+    <M extends Model<M>> TableField _selectTableField(
+        Function<M, ?> selector,
         Class<M> model
     ) {
         var propSelector = new PropertySelectionProxy(_getTableFor(model));
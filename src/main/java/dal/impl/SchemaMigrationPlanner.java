@@ -0,0 +1,227 @@
+package dal.impl;
+
+import org.slf4j.Logger;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ *  Compares the schema of an existing table inside the database with the table
+ *  statement generated from the model source code and plans the cheapest migration
+ *  which makes the table compatible with the model again.
+ *  <p>
+ *  There are 2 kinds of migrations:
+ *  <ul>
+ *      <li>
+ *          <b>Adding columns:</b> If the model only introduced new properties,
+ *          then the missing columns are simply added through "ALTER TABLE ... ADD COLUMN ..."
+ *          using the default value of the property type for existing rows.
+ *      </li>
+ *      <li>
+ *          <b>Rebuilding the table:</b> If a column was removed or changed its type or constraints,
+ *          then a new table is created from the model statement, the data of all shared columns
+ *          is copied over, and the new table replaces the old one.
+ *      </li>
+ *  </ul>
+ *  Only the affected tables are migrated, and every migration is executed in a single transaction.
+ */
+final class SchemaMigrationPlanner
+{
+    private final static Logger log = org.slf4j.LoggerFactory.getLogger(SchemaMigrationPlanner.class);
+
+    private static final String EXPECTED_POSTFIX = "_expected";
+    private static final String MIGRATION_POSTFIX = "_migration";
+
+    /**
+     *  The normalized definition of a single column, as reported by SQLite itself.
+     */
+    record Column( String name, String type, boolean notNull, boolean primaryKey, String references ) {}
+
+    /**
+     *  A planned migration for a single table.
+     *
+     * @param tableName The name of the table which needs to be migrated.
+     * @param requiresRebuild True if the table needs to be copied into a new table, false if columns can simply be added.
+     * @param statements The SQL statements which perform the migration (expected to be executed in a single transaction).
+     */
+    record TableMigration( String tableName, boolean requiresRebuild, List<String> statements ) {}
+
+    private final SQLiteDataBase _dataBase;
+
+    SchemaMigrationPlanner( SQLiteDataBase dataBase ) { _dataBase = dataBase; }
+
+    /**
+     *  Diffs the stored schema of the provided table against the table statement of the model.
+     *
+     * @param modelTable The model table whose counterpart exists inside the database already.
+     * @return The migration needed to make the table compatible with the model,
+     *         or an empty optional if the table is already compatible.
+     */
+    Optional<TableMigration> planFor( ModelTable modelTable ) {
+        String tableName = modelTable.getTableName();
+        List<Column> stored   = _storedColumns(tableName);
+        List<Column> expected = _expectedColumns(modelTable);
+
+        Map<String, Column> storedByName = stored.stream().collect(Collectors.toMap(Column::name, c -> c));
+        Set<String> expectedNames = expected.stream().map(Column::name).collect(Collectors.toSet());
+
+        List<Column> missing = new ArrayList<>();
+        boolean requiresRebuild = false;
+        for ( Column column : expected ) {
+            Column found = storedByName.get(column.name());
+            if ( found == null ) {
+                missing.add(column);
+                // SQLite does not allow adding primary keys to an existing table:
+                if ( column.primaryKey() ) requiresRebuild = true;
+            }
+            else if ( !found.equals(column) )
+                requiresRebuild = true; // The type or constraints of the column changed!
+        }
+        // Columns which no longer have a property in the model are removed by a rebuild:
+        for ( Column column : stored )
+            if ( !expectedNames.contains(column.name()) )
+                requiresRebuild = true;
+
+        if ( !requiresRebuild && missing.isEmpty() )
+            return Optional.empty();
+
+        if ( !requiresRebuild ) {
+            List<String> statements = new ArrayList<>();
+            for ( Column column : missing ) {
+                String definition = column.name() + " " + column.type();
+                if ( column.notNull() )
+                    definition += " NOT NULL DEFAULT " + _defaultLiteralFor(column);
+                if ( column.references() != null )
+                    definition += " REFERENCES " + column.references() + "(id)";
+                statements.add("ALTER TABLE " + tableName + " ADD COLUMN " + definition);
+            }
+            return Optional.of(new TableMigration(tableName, false, statements));
+        }
+
+        /*
+            We need to rebuild the table, which we do by creating a new table
+            based on the model, copying all the data of the shared columns,
+            dropping the old table and then renaming the new table to the old name.
+            Columns which are new and not nullable receive the default value of their type.
+        */
+        String tempName = tableName + MIGRATION_POSTFIX;
+        List<String> targetColumns = new ArrayList<>();
+        List<String> sourceExpressions = new ArrayList<>();
+        for ( Column column : expected ) {
+            targetColumns.add(column.name());
+            if ( storedByName.containsKey(column.name()) )
+                sourceExpressions.add(
+                        column.notNull()
+                            ? "COALESCE(" + column.name() + ", " + _defaultLiteralFor(column) + ")"
+                            : column.name()
+                    );
+            else
+                sourceExpressions.add(column.notNull() ? _defaultLiteralFor(column) : "NULL");
+        }
+        List<String> statements = new ArrayList<>();
+        statements.add("DROP TABLE IF EXISTS " + tempName);
+        statements.add("CREATE TABLE " + tempName + " " + _columnDefinitionsOf(modelTable));
+        statements.add(
+                "INSERT INTO " + tempName + " (" + String.join(", ", targetColumns) + ") " +
+                "SELECT " + String.join(", ", sourceExpressions) + " FROM " + tableName
+            );
+        statements.add("DROP TABLE " + tableName);
+        statements.add("ALTER TABLE " + tempName + " RENAME TO " + tableName);
+        return Optional.of(new TableMigration(tableName, true, statements));
+    }
+
+    /**
+     *  Executes the provided migration inside a single transaction.
+     *  If any of the statements fails, the whole migration is rolled back.
+     *
+     * @param migration The migration to execute.
+     */
+    void execute( TableMigration migration ) {
+        log.info(
+            "Migrating table '{}' by {}.",
+            migration.tableName(), migration.requiresRebuild() ? "rebuilding it" : "adding columns"
+        );
+        _dataBase._transaction(() -> {
+            for ( String statement : migration.statements() )
+                if ( !_dataBase._update(statement, null) )
+                    throw new IllegalStateException(
+                            "Failed to migrate table '" + migration.tableName() + "' " +
+                            "using SQL code '" + statement + "'!"
+                        );
+        });
+    }
+
+    private List<Column> _storedColumns( String tableName ) {
+        return _columnsOf("main", tableName);
+    }
+
+    /**
+     *  We let SQLite itself tell us how the table of the model looks like,
+     *  by creating a temporary table from the model statement and reading its schema.
+     *  This way both sides of the comparison are normalized in exactly the same way.
+     */
+    private List<Column> _expectedColumns( ModelTable modelTable ) {
+        String probeName = modelTable.getTableName() + EXPECTED_POSTFIX;
+        _dataBase._update("DROP TABLE IF EXISTS temp." + probeName, null);
+        if ( !_dataBase._update("CREATE TEMP TABLE " + probeName + " " + _columnDefinitionsOf(modelTable), null) )
+            throw new IllegalStateException(
+                    "Failed to read the expected schema of table '" + modelTable.getTableName() + "'!"
+                );
+        try {
+            return _columnsOf("temp", probeName);
+        } finally {
+            _dataBase._update("DROP TABLE IF EXISTS temp." + probeName, null);
+        }
+    }
+
+    private List<Column> _columnsOf( String schema, String tableName ) {
+        Map<String, String> references = new HashMap<>();
+        var foreignKeys = _dataBase._query("PRAGMA " + schema + ".foreign_key_list(" + tableName + ")");
+        List<Object> fromColumns = foreignKeys.getOrDefault("from", Collections.emptyList());
+        List<Object> toTables    = foreignKeys.getOrDefault("table", Collections.emptyList());
+        for ( int i = 0; i < fromColumns.size(); i++ )
+            references.put(String.valueOf(fromColumns.get(i)), String.valueOf(toTables.get(i)));
+
+        var info = _dataBase._query("PRAGMA " + schema + ".table_info(" + tableName + ")");
+        List<Object> names = info.getOrDefault("name", Collections.emptyList());
+        List<Column> columns = new ArrayList<>();
+        for ( int i = 0; i < names.size(); i++ ) {
+            String name = String.valueOf(names.get(i));
+            columns.add(new Column(
+                    name,
+                    String.valueOf(info.get("type").get(i)).toUpperCase(),
+                    !String.valueOf(info.get("notnull").get(i)).equals("0"),
+                    !String.valueOf(info.get("pk").get(i)).equals("0"),
+                    references.get(name)
+                ));
+        }
+        return columns;
+    }
+
+    /**
+     *  Extracts the part of the table statement which defines the columns, so that
+     *  it can be reused for creating a table with a different name.
+     */
+    private static String _columnDefinitionsOf( ModelTable modelTable ) {
+        String statement = modelTable.createTableStatement().trim();
+        if ( statement.endsWith(";") )
+            statement = statement.substring(0, statement.length() - 1);
+        return statement.substring(statement.indexOf('('));
+    }
+
+    private static String _defaultLiteralFor( Column column ) {
+        Class<?> type;
+        try {
+            type = AbstractDataBase._fromDBTypeToJavaType(column.type());
+        } catch ( IllegalArgumentException e ) {
+            return "NULL";
+        }
+        if ( type == String.class )
+            return "''";
+        else if ( type == Double.class || type == Float.class )
+            return "0.0";
+        else
+            return "0"; // Integers, longs, shorts, bytes and booleans
+    }
+
+}
@@ -0,0 +1,50 @@
+package dal.impl;
+
+import dal.api.SlowStatement;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ *  A bounded ring buffer of the most recent {@link SlowStatement}s,
+ *  where the oldest entry is dropped once the buffer is full.
+ *  This is thread-safe.
+ */
+final class SlowStatementLog
+{
+    private static final int CAPACITY = 100;
+
+    private final Deque<SlowStatement> _entries = new ArrayDeque<>(CAPACITY);
+    private volatile long _thresholdNanos = Long.MAX_VALUE; // Nothing is slow until a threshold is set.
+
+    /**
+     * @param threshold The duration above which a statement is considered slow, or null to disable the log.
+     */
+    void setThreshold( Duration threshold ) {
+        if ( threshold != null && threshold.isNegative() )
+            throw new IllegalArgumentException("The threshold for slow statements must not be negative!");
+        _thresholdNanos = threshold == null ? Long.MAX_VALUE : threshold.toNanos();
+    }
+
+    boolean isSlow( long nanos ) { return nanos > _thresholdNanos; }
+
+    synchronized void add( SlowStatement statement ) {
+        if ( _entries.size() == CAPACITY ) _entries.removeFirst();
+        _entries.addLast(statement);
+    }
+
+    /**
+     * @return The logged statements, the most recent first.
+     */
+    synchronized List<SlowStatement> entries() {
+        List<SlowStatement> mostRecentFirst = new ArrayList<>(_entries.size());
+        _entries.descendingIterator().forEachRemaining(mostRecentFirst::add);
+        return Collections.unmodifiableList(mostRecentFirst);
+    }
+
+    synchronized void clear() { _entries.clear(); }
+}
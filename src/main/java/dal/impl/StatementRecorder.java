@@ -0,0 +1,107 @@
+package dal.impl;
+
+import dal.api.StatementStats;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ *  Records the number of executions, rows and latencies of SQL statements per statement template,
+ *  which is the SQL code of a statement where all values are replaced by placeholders.
+ *  So a query which is executed for many different ids is only recorded once.
+ *  <p>
+ *  This is thread-safe and cheap enough to record every statement.
+ */
+final class StatementRecorder
+{
+    /*
+        The repetitions are possessive, because backtracking into them recurses once per repetition,
+        which overflows the stack for long strings or lists of thousands of placeholders.
+    */
+    private static final Pattern STRING_LITERAL   = Pattern.compile("'(?:[^']++|'')*+'");
+    private static final Pattern NUMBER_LITERAL   = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*+,\\s*+\\?)++\\s*\\)");
+    private static final Pattern WHITESPACE       = Pattern.compile("\\s+");
+
+    private static final int MAX_TEMPLATES = 1000; // Raw SQL may produce endless templates...
+    private static final String OTHER_TEMPLATE = "(other statements)";
+
+    private final Map<String, String> _templates = new ConcurrentHashMap<>(); // SQL code -> template
+    private final Map<String, Recording> _recordings = new ConcurrentHashMap<>();
+
+    private static final class Recording
+    {
+        private long _calls = 0;
+        private long _rows = 0;
+        private long _totalNanos = 0;
+        private long _maxNanos = 0;
+        private final long[] _histogram = new long[StatementStats.LATENCY_BUCKETS.size() + 1];
+
+        synchronized void add( long nanos, long rows ) {
+            _calls++;
+            _rows += Math.max(rows, 0);
+            _totalNanos += nanos;
+            _maxNanos = Math.max(_maxNanos, nanos);
+            int bucket = 0;
+            while ( bucket < StatementStats.LATENCY_BUCKETS.size() && nanos > StatementStats.LATENCY_BUCKETS.get(bucket).toNanos() )
+                bucket++;
+            _histogram[bucket]++;
+        }
+
+        synchronized StatementStats toStats( String template ) {
+            List<Long> histogram = new ArrayList<>(_histogram.length);
+            for ( long count : _histogram ) histogram.add(count);
+            return new StatementStats(
+                        template, _calls, _rows,
+                        Duration.ofNanos(_totalNanos), Duration.ofNanos(_maxNanos),
+                        Collections.unmodifiableList(histogram)
+                    );
+        }
+    }
+
+    /**
+     * @param sql The executed SQL code.
+     * @param nanos The time the execution took.
+     * @param rows The number of rows returned or changed, or a negative number if unknown.
+     */
+    void record( String sql, long nanos, long rows ) {
+        String template = templateOf(sql);
+        Recording recording = _recordings.get(template);
+        if ( recording == null ) {
+            if ( _recordings.size() >= MAX_TEMPLATES ) template = OTHER_TEMPLATE;
+            recording = _recordings.computeIfAbsent(template, t -> new Recording());
+        }
+        recording.add(nanos, rows);
+    }
+
+    /**
+     * @return The statistics of all recorded statement templates, the most time consuming first.
+     */
+    List<StatementStats> stats() {
+        List<StatementStats> stats = new ArrayList<>();
+        _recordings.forEach( (template, recording) -> stats.add(recording.toStats(template)) );
+        stats.sort(Comparator.comparing(StatementStats::totalTime).reversed());
+        return stats;
+    }
+
+    void reset() { _recordings.clear(); }
+
+    /**
+     *  Replaces all values in the provided SQL code (string and number literals)
+     *  with placeholders, and lists of placeholders with a single one,
+     *  so that statements which only differ in their values have the same template.
+     */
+    String templateOf( String sql ) {
+        String template = _templates.get(sql);
+        if ( template != null ) return template;
+        template = STRING_LITERAL.matcher(sql).replaceAll("?");
+        template = NUMBER_LITERAL.matcher(template).replaceAll("?");
+        template = PLACEHOLDER_LIST.matcher(template).replaceAll("(?, ...)");
+        template = WHITESPACE.matcher(template).replaceAll(" ").trim();
+        if ( _templates.size() >= MAX_TEMPLATES * 10 ) _templates.clear();
+        _templates.put(sql, template);
+        return template;
+    }
+}
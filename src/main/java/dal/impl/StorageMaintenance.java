@@ -0,0 +1,242 @@
+package dal.impl;
+
+import dal.api.MaintenanceActivity;
+import org.slf4j.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Keeps the file of a {@link SQLiteDataBase} in shape while it is in use,
+ *  by running the following tasks periodically on a background connection:
+ *  <ul>
+ *      <li>
+ *          A checkpoint, which moves the pages of the write-ahead log into the database file.
+ *          While the database is busy, the checkpoint is passive (so it never waits for a reader or the writer),
+ *          and once it is idle, the log is truncated, so that it does not keep the size of its busiest moment.
+ *      </li>
+ *      <li>
+ *          An (approximate) analysis of the tables and indexes for the query planner,
+ *          which only runs while the database is idle and at most once per {@link #ANALYZE_INTERVAL}.
+ *      </li>
+ *      <li>
+ *          An incremental vacuum, which gives the free pages of the file back to the file system
+ *          in small steps, as long as the database stays idle.
+ *      </li>
+ *  </ul>
+ *  The database counts as idle if nothing was written to it for {@link #IDLE_AFTER}.
+ *  What the tasks did is kept in a bounded log, see {@link #activity()}.
+ *  This is thread-safe.
+ */
+final class StorageMaintenance
+{
+    private final static Logger log = org.slf4j.LoggerFactory.getLogger(StorageMaintenance.class);
+
+    private static final Duration INTERVAL         = Duration.ofSeconds(30);
+    private static final Duration IDLE_AFTER       = Duration.ofSeconds(10);
+    private static final Duration ANALYZE_INTERVAL = Duration.ofHours(1);
+
+    private static final int ANALYSIS_LIMIT        = 400; // Rows per index looked at by "ANALYZE", which keeps it fast for large tables.
+    private static final int VACUUM_PAGES_PER_STEP = 64;
+    private static final int VACUUM_STEPS_PER_RUN  = 32;
+    private static final long VACUUM_STEP_PAUSE_MS = 5;
+    private static final int CAPACITY = 100;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor( task -> {
+                                                                    Thread thread = new Thread(task, "Database-Maintenance");
+                                                                    thread.setDaemon(true);
+                                                                    return thread;
+                                                                });
+
+    private final SQLiteDataBase _dataBase;
+    private final Path _file;
+    private final Deque<MaintenanceActivity> _activity = new ArrayDeque<>(CAPACITY);
+
+    private volatile long _lastWriteNanos = System.nanoTime();
+    private long _lastAnalyzeNanos = System.nanoTime() - ANALYZE_INTERVAL.toNanos(); // So that the first idle window analyzes.
+    private int _lastCheckpointedFrames = 0;
+    private ScheduledFuture<?> _scheduled = null;
+
+
+    StorageMaintenance( SQLiteDataBase dataBase, Path file ) {
+        _dataBase = dataBase;
+        _file     = file;
+    }
+
+    synchronized void start() {
+        if ( _scheduled != null ) return;
+        _scheduled = SCHEDULER.scheduleWithFixedDelay(
+                            () -> run(false),
+                            INTERVAL.toMillis(), INTERVAL.toMillis(), TimeUnit.MILLISECONDS
+                        );
+    }
+
+    /**
+     *  Stops the periodic maintenance and waits for a run which is in progress.
+     */
+    void stop() {
+        ScheduledFuture<?> scheduled;
+        synchronized ( this ) {
+            scheduled = _scheduled;
+            _scheduled = null;
+        }
+        if ( scheduled != null ) scheduled.cancel(false);
+        synchronized ( _activity ) {} // A run holds this lock while it is in progress.
+    }
+
+    /**
+     *  Tells the maintenance that the database was written to, so that it is not idle.
+     */
+    void noteWrite() { _lastWriteNanos = System.nanoTime(); }
+
+    boolean isIdle() { return System.nanoTime() - _lastWriteNanos >= IDLE_AFTER.toNanos(); }
+
+    /**
+     * @return What the maintenance did recently, the most recent first.
+     */
+    List<MaintenanceActivity> activity() {
+        synchronized ( _activity ) {
+            List<MaintenanceActivity> mostRecentFirst = new ArrayList<>(_activity.size());
+            _activity.descendingIterator().forEachRemaining(mostRecentFirst::add);
+            return Collections.unmodifiableList(mostRecentFirst);
+        }
+    }
+
+    /**
+     *  Runs the maintenance tasks once.
+     *
+     * @param asIfIdle Whether to run all tasks as if the database was idle, even if it is not.
+     * @return The activity of this run.
+     */
+    List<MaintenanceActivity> run( boolean asIfIdle ) {
+        synchronized ( _activity ) {
+            if ( !Files.exists(_file) ) return List.of(); // The database was deleted, we must not create it again.
+            List<MaintenanceActivity> done = new ArrayList<>();
+            try {
+                _dataBase._onBackgroundConnection( connection -> {
+                    boolean idle = asIfIdle || isIdle();
+                    if ( idle && (asIfIdle || System.nanoTime() - _lastAnalyzeNanos >= ANALYZE_INTERVAL.toNanos()) )
+                        _run("analyze", done, () -> _analyze(connection));
+                    if ( idle )
+                        _run("incremental vacuum", done, () -> _vacuum(connection, asIfIdle));
+                    _run("checkpoint", done, () -> _checkpoint(connection, idle));
+                });
+            } catch ( SQLException e ) {
+                log.warn("Failed to connect to the database at '{}' for its maintenance.", _file, e);
+            }
+            for ( MaintenanceActivity activity : done ) {
+                if ( _activity.size() == CAPACITY ) _activity.removeFirst();
+                _activity.addLast(activity);
+            }
+            return Collections.unmodifiableList(done);
+        }
+    }
+
+    private interface Task { String run() throws SQLException; }
+
+    /**
+     *  Runs a task and adds what it did to the provided list,
+     *  unless it returns null, which means that there was nothing to do.
+     */
+    private void _run( String name, List<MaintenanceActivity> done, Task task ) {
+        long start = System.nanoTime();
+        String outcome;
+        try {
+            outcome = task.run();
+        } catch ( SQLException e ) {
+            log.warn("The maintenance task '{}' failed for the database at '{}'.", name, _file, e);
+            outcome = "failed: " + e.getMessage();
+        }
+        if ( outcome != null )
+            done.add(new MaintenanceActivity(Instant.now(), name, Duration.ofNanos(System.nanoTime() - start), outcome));
+    }
+
+    private String _analyze( Connection connection ) throws SQLException {
+        try ( var statement = connection.createStatement() ) {
+            statement.execute("PRAGMA analysis_limit=" + ANALYSIS_LIMIT);
+            statement.execute("ANALYZE");
+            statement.execute("PRAGMA optimize");
+        }
+        _lastAnalyzeNanos = System.nanoTime();
+        return "updated the statistics of the query planner";
+    }
+
+    private String _vacuum( Connection connection, boolean evenIfBusy ) throws SQLException {
+        if ( _pragma(connection, "auto_vacuum") != 2 ) // Only databases created with incremental auto vacuum support it.
+            return null;
+        int freeBefore = _pragma(connection, "freelist_count");
+        int free = freeBefore;
+        for ( int step = 0; step < VACUUM_STEPS_PER_RUN && free > 0 && (evenIfBusy || isIdle()); step++ ) {
+            // The driver only steps through the first row of the pragma, which frees a single page,
+            // so a step frees one page after the other in a single transaction:
+            connection.setAutoCommit(false);
+            try {
+                for ( int page = 0; page < VACUUM_PAGES_PER_STEP && page < free; page++ )
+                    try ( var statement = connection.createStatement() ) { // Closing it finishes the pragma.
+                        statement.execute("PRAGMA incremental_vacuum(1)");
+                    }
+                connection.commit();
+            } catch ( SQLException e ) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            free = _pragma(connection, "freelist_count");
+            SQLiteDataBase._pause(VACUUM_STEP_PAUSE_MS); // So that the writer can go first.
+        }
+        if ( freeBefore == 0 ) return null;
+        return "freed " + (freeBefore - free) + " of " + freeBefore + " free pages";
+    }
+
+    private String _checkpoint( Connection connection, boolean idle ) throws SQLException {
+        Path wal = _file.resolveSibling(_file.getFileName() + "-wal");
+        long walBytes = _sizeOf(wal);
+        if ( walBytes == 0 ) return null; // Nothing was written since the last truncation.
+        String mode = idle ? "TRUNCATE" : "PASSIVE";
+        try (
+            var statement = connection.createStatement();
+            var result = statement.executeQuery("PRAGMA wal_checkpoint(" + mode + ")")
+        ) {
+            boolean blocked = result.next() && result.getInt(1) != 0;
+            if ( blocked )
+                return mode.toLowerCase() + ": blocked by other connections, the log has " + walBytes / 1024 + " KB";
+            if ( idle )
+                return "truncate: the log was " + walBytes / 1024 + " KB and is now " + _sizeOf(wal) / 1024 + " KB";
+            int logged = result.getInt(2), checkpointed = result.getInt(3);
+            if ( logged <= 0 || logged == _lastCheckpointedFrames ) return null; // Nothing was written since the last checkpoint.
+            _lastCheckpointedFrames = checkpointed;
+            return "passive: " + checkpointed + " of " + logged + " frames written back";
+        }
+    }
+
+    private static long _sizeOf( Path file ) {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch ( java.io.IOException e ) {
+            return 0;
+        }
+    }
+
+    private static int _pragma( Connection connection, String name ) throws SQLException {
+        try (
+            var statement = connection.createStatement();
+            var result = statement.executeQuery("PRAGMA " + name)
+        ) {
+            return result.next() ? result.getInt(1) : 0;
+        }
+    }
+}
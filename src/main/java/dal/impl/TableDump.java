@@ -0,0 +1,148 @@
+package dal.impl;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ *  Dumps the rows of all registered tables into NDJSON (newline delimited JSON)
+ *  and restores them again, where every line is a single row looking like this:
+ *  <pre>{@code
+ *      {"table":"app_models_Role_table","row":{"id":1,"name":"Plumber","description":"..."}}
+ *  }</pre>
+ *  Both directions are streaming, the dump reads the rows through a database cursor
+ *  and the restore reads the lines one by one and writes them in batches of limited size,
+ *  so the memory usage does not depend on the size of the database.
+ */
+final class TableDump
+{
+    private final static Logger log = org.slf4j.LoggerFactory.getLogger(TableDump.class);
+
+    private static final String TABLE_KEY = "table";
+    private static final String ROW_KEY = "row";
+    private static final int BATCH_SIZE = 512;
+
+    private final SQLiteDataBase _dataBase;
+    private final List<ModelTable> _tables;
+
+    TableDump( SQLiteDataBase dataBase, List<ModelTable> tables ) {
+        _dataBase = dataBase;
+        _tables = tables;
+    }
+
+    /**
+     *  Writes every row of every table as a single line to the provided writer.
+     *
+     * @param out The writer to which the NDJSON lines are written.
+     */
+    void dump( Writer out ) {
+        int[] count = {0};
+        // Reading everything in a single transaction gives us a consistent snapshot of all tables:
+        _dataBase._transaction(() -> {
+            try {
+                _dump(out, count);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to dump the database!", e);
+            }
+        });
+        log.info("Dumped {} rows of {} tables.", count[0], _tables.size());
+    }
+
+    private void _dump( Writer out, int[] count ) throws IOException {
+        for ( ModelTable table : _tables ) {
+            try ( Stream<Map<String, Object>> rows = _dataBase._cursor("SELECT * FROM " + table.getTableName(), null) ) {
+                for ( Map<String, Object> row : (Iterable<Map<String, Object>>) rows::iterator ) {
+                    JSONObject jsonRow = new JSONObject();
+                    row.forEach( (column, value) -> jsonRow.put(column, value == null ? JSONObject.NULL : value) );
+                    JSONObject line = new JSONObject();
+                    line.put(TABLE_KEY, table.getTableName());
+                    line.put(ROW_KEY, jsonRow);
+                    line.write(out);
+                    out.write('\n');
+                    count[0]++;
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     *  Replaces the content of all tables with the rows read from the provided reader.
+     *  Everything happens in a single transaction, so if a line is invalid, nothing is changed.
+     *
+     * @param in The reader providing the NDJSON lines produced by {@link #dump(Writer)}.
+     */
+    void restore( Reader in ) {
+        Map<String, ModelTable> tablesByName = new HashMap<>();
+        for ( ModelTable table : _tables )
+            tablesByName.put(table.getTableName(), table);
+
+        int[] count = {0};
+        _dataBase._transaction(() -> {
+            for ( ModelTable table : _tables )
+                if ( !_dataBase._update("DELETE FROM " + table.getTableName(), null) )
+                    throw new IllegalStateException("Failed to clear table '" + table.getTableName() + "'!");
+            /*
+                Rows of the same table with the same columns share an insert statement,
+                which is why we buffer them by their statement and flush them in batches.
+            */
+            Map<String, List<List<Object>>> buffers = new LinkedHashMap<>();
+            BufferedReader reader = in instanceof BufferedReader b ? b : new BufferedReader(in);
+            try {
+                String line;
+                int lineNumber = 0;
+                while ( (line = reader.readLine()) != null ) {
+                    lineNumber++;
+                    if ( line.isBlank() ) continue;
+                    JSONObject json = new JSONObject(line);
+                    String tableName = json.getString(TABLE_KEY);
+                    if ( !tablesByName.containsKey(tableName) )
+                        throw new IllegalArgumentException(
+                                "Line " + lineNumber + " references the unknown table '" + tableName + "'!"
+                            );
+                    JSONObject row = json.getJSONObject(ROW_KEY);
+                    List<String> columns = new ArrayList<>(row.keySet());
+                    Collections.sort(columns);
+                    for ( String column : columns )
+                        if ( !column.matches("[a-zA-Z_][a-zA-Z0-9_]*") )
+                            throw new IllegalArgumentException(
+                                    "Line " + lineNumber + " contains the invalid column name '" + column + "'!"
+                                );
+                    List<Object> values = new ArrayList<>(columns.size());
+                    for ( String column : columns )
+                        values.add(_fromJson(row.get(column)));
+
+                    String sql = "INSERT INTO " + tableName + " (" + String.join(", ", columns) + ") " +
+                                 "VALUES (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+                    List<List<Object>> buffer = buffers.computeIfAbsent(sql, k -> new ArrayList<>());
+                    buffer.add(values);
+                    if ( buffer.size() >= BATCH_SIZE ) {
+                        _dataBase._batch(sql, buffer);
+                        buffer.clear();
+                    }
+                    count[0]++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to restore the database!", e);
+            }
+            buffers.forEach(_dataBase::_batch);
+        });
+        log.info("Restored {} rows of {} tables.", count[0], _tables.size());
+    }
+
+    private static Object _fromJson( Object value ) {
+        if ( value == JSONObject.NULL )
+            return null;
+        else if ( value instanceof BigDecimal decimal )
+            return decimal.doubleValue();
+        else if ( value instanceof BigInteger integer )
+            return integer.longValue();
+        else
+            return value;
+    }
+}
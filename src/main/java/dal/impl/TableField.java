@@ -1,6 +1,7 @@
 package dal.impl;
 
 import dal.api.Model;
+import dal.api.Searchable;
 import sprouts.Val;
 import sprouts.Vals;
 import sprouts.Var;
@@ -12,7 +13,9 @@ import java.lang.reflect.*;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 final class TableField {
 
@@ -23,6 +26,14 @@ final class TableField {
     private final FieldKind _kind;
     private final boolean _allowNull = false;
 
+    /*
+        The methods handed to the proxies of the properties belong to the property types,
+        so together with the class of the implementation they decide where a call goes.
+    */
+    private static final ClassValue<Map<Method, Boolean>> _CALLS_DEFAULT = new ClassValue<>() {
+        @Override protected Map<Method, Boolean> computeValue( Class<?> implType ) { return new ConcurrentHashMap<>(); }
+    };
+
 
     TableField(
         Method method,
@@ -194,7 +205,13 @@ final class TableField {
                             "of " + Val.class.getName() + " or " + Vals.class.getName() + " with one type parameter"
             );
 
-
+        // Finally, only text columns can be indexed for full-text search:
+        if ( isSearchable() && ( _kind != FieldKind.VALUE || _propertyValueType != String.class ) )
+            throw new IllegalArgumentException(
+                    "The property '" + method.getName() + "()' of model '" + _ownerModelClass.getName() + "' " +
+                    "is annotated with @" + Searchable.class.getSimpleName() + ", but only properties " +
+                    "holding a " + String.class.getSimpleName() + " can be searchable!"
+                );
     }
 
     public String getName() {
@@ -219,6 +236,10 @@ final class TableField {
         return _propertyType;
     }
 
+    public boolean allowsNull() {
+        return _allowNull;
+    }
+
     public boolean isList() {
         return Vals.class.isAssignableFrom(_propertyType);
     }
@@ -235,6 +256,13 @@ final class TableField {
         return _kind == FieldKind.FOREIGN_KEY;
     }
 
+    /**
+     * @return True if the property is part of the full-text index of its table, see {@link Searchable}.
+     */
+    public boolean isSearchable() {
+        return _method.isAnnotationPresent(Searchable.class);
+    }
+
     public String toTableFieldStatement() {
         return getName() + " " + AbstractDataBase._fromJavaTypeToDBType(_propertyValueType);
     }
@@ -280,6 +308,28 @@ final class TableField {
                             ");";
                 }
 
+                @Override
+                public List<String> createIndexStatements() {
+                    /*
+                        An intermediate table is accessed from both sides:
+                        - The list property of the owner selects all "fk_<other>_id" values for an "fk_self_<owner>_id".
+                        - Deleting a referenced model selects all "fk_self_<owner>_id" values for an "fk_<other>_id".
+                        So we create a covering index for each direction.
+                        Note that the owner side also includes the id (the row id),
+                        so that the list is read in insertion order without sorting.
+                     */
+                    Class<?> thisTableClass = TableField.this._method.getDeclaringClass();
+                    Class<?> otherTableClass = TableField.this._propertyValueType;
+                    String leftColumn  = ModelTable.INTER_LEFT_FK_PREFIX + AbstractDataBase._tableNameFromClass(thisTableClass) + ModelTable.INTER_FK_POSTFIX;
+                    String rightColumn = ModelTable.INTER_RIGHT_FK_PREFIX + AbstractDataBase._tableNameFromClass(otherTableClass) + ModelTable.INTER_FK_POSTFIX;
+                    return Arrays.asList(
+                            "CREATE INDEX IF NOT EXISTS " + getTableName() + "__" + leftColumn + ModelTable.INDEX_POSTFIX + " " +
+                            "ON " + getTableName() + " (" + leftColumn + ", id, " + rightColumn + ");",
+                            "CREATE INDEX IF NOT EXISTS " + getTableName() + "__" + rightColumn + ModelTable.INDEX_POSTFIX + " " +
+                            "ON " + getTableName() + " (" + rightColumn + ", " + leftColumn + ");"
+                        );
+                }
+
                 @Override
                 public List<Object> getDefaultValues() {
                     throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -299,10 +349,22 @@ final class TableField {
                         eager
                     );
 
+        return asProxyOf((Val<Object>) prop);
+    }
+
+    /**
+     *  Creates the proxy of the property type of this field (like {@code Person.FirstName}),
+     *  which delegates to the provided property, except for the default methods of the property type.
+     *  This is how the database implementations turn their properties into the types declared by the model.
+     *
+     * @param impl The property implementing a single value (a {@link Val}) or a list of values (a {@link Vals}).
+     * @return The proxy together with the implementation.
+     */
+    <P> ProxyRef<P> asProxyOf( P impl ) {
         Class<?> propertyType = _propertyType;
 
         // Let's check if the property is a Val
-        boolean isVal = Val.class.isAssignableFrom(propertyType);
+        boolean isVal = Val.class.isAssignableFrom(propertyType) || Vals.class.isAssignableFrom(propertyType);
         if (!isVal)
             throw new IllegalArgumentException(
                     "The return type of the method " + _method.getName() + " is not a subclass " +
@@ -310,17 +372,41 @@ final class TableField {
             );
 
         // Let's create the proxy:
-        return new ProxyRef<>((Val<Object>) Proxy.newProxyInstance(
+        return new ProxyRef<>((P) Proxy.newProxyInstance(
                         propertyType.getClassLoader(),
                         new Class[]{propertyType},
                         (proxy, method, args) -> {
-                            return _handleInvocation(proxy, method, args, prop, propertyType);
+                            return _handleInvocation(proxy, method, args, impl, propertyType);
                         }
                     ),
-                    prop
+                    impl
                 );
     }
 
+    /**
+     *  Whether the proxy of a property calls the default method of the property type
+     *  instead of delegating to the implementation of the property.
+     *  This is looked up reflectively once per implementation class and method,
+     *  because every single call to a property goes through here.
+     */
+    private static boolean _callsDefaultMethod( Class<?> implType, Class<?> propertyType, Method method ) {
+        return _CALLS_DEFAULT.get(implType).computeIfAbsent(method, m -> {
+            Method proxyTypeMethod;
+            try {
+                proxyTypeMethod = propertyType.getMethod(m.getName(), m.getParameterTypes());
+            } catch (NoSuchMethodException e) {
+                return false; // Not a method of the property type (like the methods of Object), so we delegate.
+            }
+            if ( !proxyTypeMethod.isDefault() ) return false;
+            // Unless the property overrides it (like a list finding models by their ids), we call the default method:
+            try {
+                return implType.getMethod(m.getName(), m.getParameterTypes()).getDeclaringClass().isInterface();
+            } catch (NoSuchMethodException e) {
+                return true; // Only the property type has it (like the comparisons of ids).
+            }
+        });
+    }
+
     private Object _handleInvocation(
         Object proxy,
         Method method,
@@ -330,9 +416,7 @@ final class TableField {
     ) throws InvocationTargetException, IllegalAccessException {
         String methodName = method.getName();
         try {
-            Method proxyTypeMethod = propertyType.getMethod(methodName, method.getParameterTypes());
-            // Then we expect the method to be a default method
-            if (proxyTypeMethod.isDefault()) {
+            if ( _callsDefaultMethod(prop.getClass(), propertyType, method) ) {
                 // A default method is a method that is defined in an interface, we can just call it
                 return MethodHandles.lookup()
                         .findSpecial(
@@ -408,18 +492,10 @@ final class TableField {
             throw new IllegalStateException("The intermediate table does not exist");
 
 
-        Vars<Object> vars = new ModelProperties(db, _ownerModelClass, _propertyValueType, intermediateTable, id, eager);
+        Vals<Object> vars = new ModelProperties(db, _ownerModelClass, _propertyValueType, intermediateTable, id, eager);
 
         // Let's create the proxy:
-        return new ProxyRef<>((Vals<Object>) Proxy.newProxyInstance(
-                        _propertyType.getClassLoader(),
-                        new Class[]{_propertyType},
-                        (proxy, method, args) -> {
-                            return _handleInvocation(proxy, method, args, vars, _propertyType);
-                        }
-                    ),
-                    vars
-                );
+        return asProxyOf(vars);
     }
 
 }
@@ -0,0 +1,29 @@
+package net;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ *  The instances of a single view model type of a web user, indexed by their int ids.
+ *  The ids are handed out by the {@link WebUserContext} in ascending order,
+ *  so a growing array is all it takes to find them without boxing the ids.
+ */
+final class ViewModelRefs
+{
+    private WeakReference<Object>[] _refs = new WeakReference[8];
+
+
+    Object get( int id ) {
+        if ( id < 0 || id >= _refs.length ) return null;
+        var ref = _refs[id];
+        return ref == null ? null : ref.get();
+    }
+
+    void put( int id, Object viewModel ) {
+        if ( id < 0 )
+            throw new IllegalArgumentException("The id of a view model must not be negative!");
+        if ( id >= _refs.length )
+            _refs = Arrays.copyOf(_refs, Math.max(id + 1, _refs.length * 2));
+        _refs[id] = new WeakReference<>(viewModel);
+    }
+}
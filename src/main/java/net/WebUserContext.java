@@ -1,6 +1,5 @@
 package net;
 
-import java.lang.ref.WeakReference;
 import java.util.*;
 
 /**
@@ -8,10 +7,12 @@ import java.util.*;
  *  The user is not necessarily a database user, but it is a user of the web portal
  *  uniquely identified by a http session id.
  *  The view model instances are stored in a WeakHashMap, so they can be garbage collected.
+ *  The instances of a view model type are found by their int ids through a small array per type (see {@link ViewModelRefs}),
+ *  so that looking them up for every message of the user does not box the ids.
  */
 public class WebUserContext
 {
-    private final Map<Class, Map<Integer, WeakReference<Object>>> _viewModels = new HashMap<>();
+    private final Map<Class, ViewModelRefs> _viewModels = new HashMap<>();
     private final Map<Object, VMID<?>> _vmids = new WeakHashMap<>();
     private final List<String> _pendingMessages = new ArrayList<>();
 
@@ -31,7 +32,8 @@ public class WebUserContext
     }
 
     public <T> T get( VMID<T> id ) {
-        return (T)_viewModels.get(id.type()).get(id.id());
+        var instances = _viewModels.get(id.type());
+        return instances == null ? null : (T) instances.get(id.id());
     }
 
     public <T> T get( String id ) {
@@ -43,7 +45,10 @@ public class WebUserContext
         // Now we try to find the class :
         try {
             var clazz = Class.forName(type);
-            return (T)_viewModels.get(clazz).get(instanceId).get();
+            var instances = _viewModels.get(clazz);
+            var viewModel = instances == null ? null : instances.get(instanceId);
+            if ( viewModel != null )
+                return (T) viewModel;
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
         }
@@ -59,7 +64,7 @@ public class WebUserContext
     }
 
     private <T> void _put(VMID<T> id, T viewModel ) {
-        _viewModels.computeIfAbsent(id.type(), k -> new HashMap<>()).put(id.id(), new WeakReference<>(viewModel));
+        _viewModels.computeIfAbsent(id.type(), k -> new ViewModelRefs()).put(id.id(), viewModel);
         _vmids.put(viewModel, id);
     }
 
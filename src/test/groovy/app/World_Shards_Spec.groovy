@@ -0,0 +1,157 @@
+package app
+
+import app.models.Ability
+import app.models.AbilityType
+import app.models.Character
+import app.models.CharacterModel
+import app.models.GameMaster
+import app.models.Player
+import app.models.Role
+import app.models.Skill
+import app.models.SkillType
+import app.models.User
+import app.models.World
+import dal.api.DataBase
+import dal.api.DataBaseProcessor
+import groovy.transform.CompileDynamic
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Title
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+
+@Title("Storing every World in a Shard of its own")
+@Narrative('''
+
+    The characters and players of every world are stored in a database file
+    of their own, the shard of the world, whereas the save file is the catalog
+    which keeps everything shared by all worlds.
+    The lists of a world live in its shard next to the characters they hold,
+    and characters which were stored in the catalog before the worlds were sharded
+    are moved into the shard of their world when it is opened.
+
+''')
+@CompileDynamic
+class World_Shards_Spec extends Specification
+{
+    def TEST_DB_LOCATION = "test_data/"
+    def CATALOG_FILE = Paths.get(TEST_DB_LOCATION, "catalog.db")
+    def SHARD_DIRECTORY = Paths.get(TEST_DB_LOCATION, "worlds")
+
+    DataBase catalog
+    WorldShards shards
+
+    def setup() {
+        _deleteFiles()
+        var thread = Thread.currentThread()
+        var process = { Runnable task -> task.run() }
+        var processors = { ->
+                            [
+                                process    : process,
+                                processNow : process,
+                                getThreads : { [thread] }
+                            ] as DataBaseProcessor
+                        }
+        catalog = DataBase.at(CATALOG_FILE.toString())
+        catalog.createTablesFor(
+                    Character, User, GameMaster, World, Player, CharacterModel,
+                    Ability, AbilityType, Skill, SkillType, Role
+                )
+        shards = new WorldShards(catalog, CATALOG_FILE, SHARD_DIRECTORY, 1, processors)
+    }
+
+    def cleanup() {
+        shards.close()
+        catalog.close()
+        _deleteFiles()
+    }
+
+    def 'Characters stored in the catalog are moved into the shard of their world when it is opened.'()
+    {
+        given : 'A user, a world and a player of the user in the world, all stored in the catalog.'
+            var user = catalog.create(User)
+            user.username().set("anna")
+            var world = catalog.create(World)
+            world.name().set("Eldor")
+            var player = catalog.create(Player)
+            player.identity().set(user)
+            player.world().set(world)
+            var model = catalog.create(CharacterModel)
+            model.forename().set("Template")
+            player.characters().add(model)
+        and : 'A non player character of the world, also stored in the catalog like before the worlds were sharded.'
+            var npc = catalog.create(Character)
+            npc.forename().set("Old")
+            npc.surname().set("Timer")
+            npc.world().set(world)
+            npc.player().set(player)
+            npc.model().set(model)
+            world.npcs().add(npc)
+
+        when : 'We open the shard of the world...'
+            var shard = shards.of(world)
+        then : 'The characters, players and character models are no longer stored in the catalog.'
+            catalog.select(Character).count() == 0
+            catalog.select(Player).count() == 0
+            catalog.select(CharacterModel).count() == 0
+        and : 'They are stored in the shard instead.'
+            shard.select(Character).count() == 1
+            shard.select(Player).count() == 1
+
+        when : 'We read the moved character from the non player characters of the world in its shard...'
+            var moved = shards.worldIn(world).npcs().at(0).get()
+        then : 'It kept its traits, its world, its player and its model.'
+            moved.forename().get() == "Old"
+            moved.surname().get() == "Timer"
+            moved.world().get().name().get() == "Eldor"
+            moved.model().get().forename().get() == "Template"
+        and : 'Its player still belongs to the user of the catalog.'
+            moved.player().get().identity().get().username().get() == "anna"
+            moved.player().get().characters().size() == 1
+    }
+
+    def 'Characters are created, selected and listed through the shard of their world.'()
+    {
+        given : 'Two worlds stored in the catalog.'
+            var eldor = catalog.create(World)
+            eldor.name().set("Eldor")
+            var other = catalog.create(World)
+            other.name().set("Other")
+
+        when : 'We create a character in the shard of the first world and add it to the characters of the world...'
+            var shard = shards.of(eldor)
+            var hero = shard.create(Character)
+            hero.forename().set("Hero")
+            hero.world().set(shards.worldIn(eldor))
+            shards.worldIn(eldor).characters().add(hero)
+        then : 'We can select it from the shard and find it in the list of the world.'
+            shard.select(Character).where(Character::forename).is("Hero").exists()
+            shards.worldIn(eldor).characters().collect { it.forename().get() } == ["Hero"]
+        and : 'The world as it is stored in the catalog does not know about it.'
+            eldor.characters().size() == 0
+            catalog.select(Character).count() == 0
+
+        when : 'We add a character to the second world, which closes the shard of the first one...'
+            var otto = shards.of(other).create(Character)
+            otto.forename().set("Otto")
+            shards.worldIn(other).characters().add(otto)
+        then : 'The second world is stored in a file of its own.'
+            shards.openShards() == 1
+            Files.exists(SHARD_DIRECTORY.resolve("world-" + eldor.id().get() + ".db"))
+            Files.exists(SHARD_DIRECTORY.resolve("world-" + other.id().get() + ".db"))
+            shards.worldIn(other).characters().collect { it.forename().get() } == ["Otto"]
+        and : 'The first world still lists its own character when its shard is opened again.'
+            shards.worldIn(eldor).characters().collect { it.forename().get() } == ["Hero"]
+    }
+
+    private void _deleteFiles() {
+        var files = [CATALOG_FILE]
+        if ( Files.isDirectory(SHARD_DIRECTORY) )
+            Files.list(SHARD_DIRECTORY).withCloseable { files.addAll(it.toList()) }
+        files.each { Path file ->
+            ["", "-journal", "-wal", "-shm"].each { Files.deleteIfExists(Paths.get(file.toString() + it)) }
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package dal
 
 import dal.api.DataBase
+import dal.api.DataBaseProcessor
 import dal.models.Address
 import dal.models.Animal
 import dal.models.Atom
+import dal.models.Book
 import dal.models.Food
 import dal.models.Furniture
 import dal.models.Ingredient
@@ -18,6 +20,14 @@ import spock.lang.Narrative
 import spock.lang.Specification
 import spock.lang.Title
 
+import java.lang.reflect.Proxy
+import java.nio.file.Files
+import java.nio.file.Paths
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
 @Title("Using Topsoil")
 @Narrative('''
        
@@ -318,6 +328,46 @@ class DataBase_Spec extends Specification
             db.close()
     }
 
+    def 'Existing tables are migrated when the model source code changes.'()
+    {
+        reportInfo """
+            When a model interface receives new properties, or when properties are removed or changed,
+            the table inside an existing save file no longer matches the model.
+            Instead of failing, the database migrates the affected tables.
+            New properties are simply added as columns, whereas all other changes
+            cause only the affected table to be rebuilt, preserving the data of all shared columns.
+        """
+        given : 'A database instance, opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'Tables and data which were created by an older version of the "Address" and "Person" models.'
+            db.execute("CREATE TABLE dal_models_Address_table (id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, city TEXT NOT NULL)")
+            db.execute("INSERT INTO dal_models_Address_table (city) VALUES ('Berlin')")
+            db.execute("CREATE TABLE dal_models_Person_table (id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, firstName TEXT NOT NULL, nickname TEXT)")
+            db.execute("INSERT INTO dal_models_Person_table (firstName, nickname) VALUES ('John', 'Jo')")
+
+        when : 'We register the current models...'
+            db.createTablesFor(Person, Address)
+        then : 'No exception is thrown, because the tables were migrated.'
+            noExceptionThrown()
+        and : 'The existing data is still there and new columns have default values.'
+            db.select(Address, 1).city().get() == "Berlin"
+            db.select(Address, 1).street().get() == ""
+            db.select(Person, 1).firstName().get() == "John"
+            db.select(Person, 1).lastName().get() == ""
+        and : 'The removed column "nickname" is gone.'
+            !db.sqlCodeOfTable(Person).contains("nickname")
+
+        when : 'We register the models again...'
+            db.createTablesFor(Person, Address)
+        then : 'Nothing needs to be migrated anymore.'
+            noExceptionThrown()
+            db.select(Person).asList().size() == 1
+
+        cleanup:
+            db.close()
+    }
+
     def 'We can create a "Workplace" referencing multiple people.'()
     {
         reportInfo """
@@ -395,6 +445,36 @@ class DataBase_Spec extends Specification
             db.close()
     }
 
+    def 'The intermediate tables of list properties are indexed in both directions.'()
+    {
+        reportInfo """
+            A list property like `Vars<Person> employees()` is stored in an intermediate table.
+            This table is read by the owner of the list (to load the list)
+            and by the referenced models (when they are deleted).
+            So the database creates a covering index for each of these two directions.
+        """
+        given : 'A database instance, opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        when : 'We request the necessary table creations for the model types in the database...'
+            db.createTablesFor(Workplace, Person, Address)
+        and : 'We read the names of all indexes in the database.'
+            var indexes = db.query("SELECT name FROM sqlite_master WHERE type = 'index' AND name NOT LIKE 'sqlite_%'")["name"] as Set
+        then : 'There is an index for each direction of the intermediate table.'
+            indexes == [
+                    "dal_models_Workplace__employees_list_table__fk_self_dal_models_Workplace_table_id_idx",
+                    "dal_models_Workplace__employees_list_table__fk_dal_models_Person_table_id_idx"
+                ] as Set
+
+        when : 'We register the same models again (like when an existing save file is opened)...'
+            db.createTablesFor(Workplace, Person, Address)
+        then : 'Nothing changes, because the indexes are only created if they do not exist.'
+            db.query("SELECT name FROM sqlite_master WHERE type = 'index' AND name NOT LIKE 'sqlite_%'")["name"].size() == 2
+
+        cleanup:
+            db.close()
+    }
+
 
     def 'We can use the fluent query API of the database to select "Atoms"!'()
     {
@@ -610,4 +690,1199 @@ class DataBase_Spec extends Specification
             clone.country().get() == address.country().get()
     }
 
+    def 'The database remembers metadata and the fingerprints of the tables it has already verified.'()
+    {
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        expect : 'There is no metadata yet.'
+            !db.readMetadata("my-key").isPresent()
+        when : 'We write some metadata...'
+            db.writeMetadata("my-key", "my-value")
+        then : 'We can read it again.'
+            db.readMetadata("my-key").get() == "my-value"
+        and : 'The metadata table is not listed as a regular table.'
+            db.listOfAllTableNames() == []
+        and : 'The metadata table is not created again by every read and write.'
+            db.metrics().statements().every { !it.template().startsWith("CREATE") }
+
+        when : 'We create the tables for a model...'
+            db.createTablesFor(Address)
+        then : 'The fingerprint of the table statement is stored.'
+            db.readMetadata("table-fingerprint:" + db.listOfAllTableNames()[0]).isPresent()
+
+        when : 'We reopen the database and register the model again...'
+            db.close()
+            db = DataBase.at(TEST_DB_FILE)
+            db.createTablesFor(Address)
+        then : 'The table is still usable.'
+            db.create(Address).street().set("Main Street")
+            db.selectAll(Address).size() == 1
+
+        when : 'We drop all tables...'
+            db.dropAllTables()
+        then : 'The metadata is gone as well.'
+            !db.readMetadata("my-key").isPresent()
+        cleanup:
+            db.close()
+    }
+
+    def 'A bulk import inserts missing models and updates existing ones, including the models in their lists.'()
+    {
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the tables for a workplace with employees.'
+            db.createTablesFor(Workplace, Person, Address)
+        and : 'A workplace which already exists in the database.'
+            var bakery = db.create(Workplace)
+            bakery.name().set("Bakery")
+            var anna = db.create(Person)
+            anna.firstName().set("Anna")
+            bakery.employees().add(anna)
+
+        when : 'We import 2 workplaces with their employees in bulk...'
+            var workplaces = db.bulkImport(Workplace, Workplace::name)
+            var bakeryEntry = workplaces.entry("Bakery")
+            bakeryEntry.child(Workplace::employees, Person, Person::firstName, "Anna").set(Person::lastName, "Smith")
+            bakeryEntry.child(Workplace::employees, Person, Person::firstName, "Bob").set(Person::lastName, "Baker")
+            workplaces.entry("Forge").child(Workplace::employees, Person, Person::firstName, "Anna").set(Person::lastName, "Iron")
+            var imported = workplaces.execute()
+        then : 'The imported models are returned in the order of their entries.'
+            imported.size() == 2
+            imported[0] == bakery
+            imported[1].name().get() == "Forge"
+        and : 'The existing employee was updated and the new one was added to the list.'
+            bakery.employees().size() == 2
+            bakery.employees().at(0).get() == anna
+            anna.lastName().get() == "Smith"
+            bakery.employees().at(1).get().firstName().get() == "Bob"
+        and : 'Children are only identified within the list of their parent.'
+            imported[1].employees().size() == 1
+            imported[1].employees().at(0).get() != anna
+            imported[1].employees().at(0).get().lastName().get() == "Iron"
+            db.selectAll(Person).size() == 3
+
+        when : 'We import the same workplace again...'
+            var again = db.bulkImport(Workplace, Workplace::name)
+            again.entry("Bakery").child(Workplace::employees, Person, Person::firstName, "Bob").set(Person::lastName, "Miller")
+            again.execute()
+        then : 'Nothing is duplicated, the existing rows are simply updated.'
+            db.selectAll(Workplace).size() == 2
+            db.selectAll(Person).size() == 3
+            bakery.employees().at(1).get().lastName().get() == "Miller"
+        cleanup:
+            db.close()
+    }
+
+    def 'Query results can be streamed, and all tables can be dumped to and restored from NDJSON.'()
+    {
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the tables for a workplace with employees.'
+            db.createTablesFor(Workplace, Person, Address)
+        and : 'A workplace with 2 employees.'
+            var workplace = db.create(Workplace)
+            workplace.name().set("Bakery")
+            ["Anna", "Bob"].each { name ->
+                var person = db.create(Person)
+                person.firstName().set(name)
+                workplace.employees().add(person)
+            }
+
+        expect : 'A query can be consumed as a lazy stream of models.'
+            db.select(Person).stream().withCloseable { it.map({ it.firstName().get() }).toList() } == ["Anna", "Bob"]
+            db.select(Person).where(Person::firstName).is("Bob").stream().withCloseable { it.count() } == 1
+
+        when : 'We dump the entire database into NDJSON...'
+            var out = new StringWriter()
+            db.dumpTo(out)
+            var lines = out.toString().readLines()
+        then : 'There is one line for every row of every table, including the list table.'
+            lines.size() == 5
+            lines.every { it.startsWith("{") && it.contains('"table"') && it.contains('"row"') }
+
+        when : 'We change the database and then restore the dump...'
+            workplace.name().set("Forge")
+            db.create(Person).firstName().set("Carl")
+            db.restoreFrom(new StringReader(out.toString()))
+        then : 'The database is exactly like it was when it was dumped.'
+            workplace.name().get() == "Bakery"
+            db.selectAll(Person).size() == 2
+            workplace.employees().size() == 2
+            workplace.employees().at(1).get().firstName().get() == "Bob"
+
+        when : 'We try to restore an invalid dump...'
+            db.restoreFrom(new StringReader('{"table":"unknown_table","row":{"id":1}}'))
+        then : 'An exception is thrown and nothing changed.'
+            thrown(IllegalArgumentException)
+            db.selectAll(Person).size() == 2
+        cleanup:
+            db.close()
+    }
+
+    def 'Query results can be sorted by multiple properties and paged through using the last seen model.'()
+    {
+        reportInfo """
+            Instead of skipping a number of rows (which gets slower the further you page),
+            the next page is defined as everything coming after the last model of the previous page.
+            The id is always used as the last sort key, so that no model is returned twice or skipped.
+        """
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the tables for persons and their addresses.'
+            db.createTablesFor(Person, Address)
+        and : 'A few persons, some of which share the same last name.'
+            [["Smith", "Dan"], ["Baker", "Bob"], ["Smith", "Anna"], ["Adams", "Fay"], ["Baker", "Ava"]].each { names ->
+                var person = db.create(Person)
+                person.lastName().set(names[0])
+                person.firstName().set(names[1])
+            }
+
+        when : 'We sort them by their last name and then by their first name...'
+            var sorted = db.select(Person).orderBy(Person::lastName).thenBy(Person::firstName).asList()
+        then :
+            sorted.collect({ it.firstName().get() }) == ["Fay", "Ava", "Bob", "Anna", "Dan"]
+
+        when : 'We page through them in pages of 2...'
+            var pages = []
+            var page = db.select(Person).orderBy(Person::lastName).thenBy(Person::firstName).page(2)
+            while ( !page.isEmpty() ) {
+                pages << page.collect({ it.firstName().get() })
+                page = db.select(Person).orderBy(Person::lastName).thenBy(Person::firstName).after(page.last()).page(2)
+            }
+        then : 'Every person is returned exactly once and in the correct order.'
+            pages == [["Fay", "Ava"], ["Bob", "Anna"], ["Dan"]]
+
+        when : 'We page through them with mixed sort directions and a where clause...'
+            var first = db.select(Person)
+                            .where(Person::lastName).isNot("Adams")
+                            .orderDescendingBy(Person::lastName)
+                            .thenBy(Person::firstName)
+                            .page(3)
+            var second = db.select(Person)
+                            .where(Person::lastName).isNot("Adams")
+                            .orderDescendingBy(Person::lastName)
+                            .thenBy(Person::firstName)
+                            .after(first.last())
+                            .page(3)
+        then :
+            first.collect({ it.firstName().get() }) == ["Anna", "Dan", "Ava"]
+            second.collect({ it.firstName().get() }) == ["Bob"]
+
+        when : 'We page through them by a property which is null for some of them...'
+            var address = db.create(Address)
+            sorted[1].address().set(address)
+            sorted[3].address().set(address)
+            var ids = []
+            page = db.select(Person).orderDescendingBy(Person::address).page(2)
+            while ( !page.isEmpty() ) {
+                ids.addAll(page.collect({ it.id().get() }))
+                page = db.select(Person).orderDescendingBy(Person::address).after(page.last()).page(2)
+            }
+        then : 'The persons without an address come last, but none of them is lost.'
+            ids.size() == 5
+            ids.take(2).toSet() == [sorted[1].id().get(), sorted[3].id().get()].toSet()
+        cleanup:
+            db.close()
+    }
+
+    def 'Paging in descending order by a property which may be null returns every model exactly once, with pages of #size.'(
+        int size
+    ) {
+        reportInfo """
+            Foreign keys are null as long as they are not set, and null comes last in descending order.
+            The models without a value have to be found on the pages after the last model with a value.
+        """
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the tables for persons and their addresses.'
+            db.createTablesFor(Person, Address)
+        and : 'Six persons, of which only two have an address.'
+            var persons = (1..6).collect { db.create(Person) }
+            var rome = db.create(Address)
+            var paris = db.create(Address)
+            persons[2].address().set(rome)
+            persons[4].address().set(paris)
+
+        when : 'We page through them by their address in descending order...'
+            var ids = []
+            var page = db.select(Person).orderDescendingBy(Person::address).page(size)
+            while ( !page.isEmpty() ) {
+                ids.addAll(page.collect({ it.id().get() }))
+                page = db.select(Person).orderDescendingBy(Person::address).after(page.last()).page(size)
+            }
+        then : 'The persons with an address come first, followed by all persons without one (also in descending order).'
+            ids == [persons[4], persons[2], persons[5], persons[3], persons[1], persons[0]].collect({ it.id().get() })
+        cleanup:
+            db.close()
+        where :
+            size << [1, 2, 4]
+    }
+
+    def 'A query can project the properties of models into plain values instead of returning models.'()
+    {
+        reportInfo """
+            If you only need the values of one or two properties, a projection reads them
+            in a single query, instead of creating a model and querying every property separately.
+            The projected values are detached, so they do not change when the database changes.
+        """
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the tables for persons and their addresses.'
+            db.createTablesFor(Person, Address)
+        and : 'A few persons, one of which has an address.'
+            var address = db.create(Address)
+            address.city().set("Rome")
+            [["Smith", "Dan"], ["Baker", "Bob"], ["Smith", "Anna"]].each { names ->
+                var person = db.create(Person)
+                person.lastName().set(names[0])
+                person.firstName().set(names[1])
+            }
+            db.select(Person).where(Person::firstName).is("Bob").expectOne().address().set(address)
+
+        expect : 'We can project a single property of all or only some persons.'
+            db.select(Person).project(Person::firstName).asList() == ["Dan", "Bob", "Anna"]
+            db.select(Person).where(Person::lastName).is("Smith").orderBy(Person::firstName).project(Person::firstName).asList() == ["Anna", "Dan"]
+            db.select(Person).project(Person::lastName).asSet() == ["Smith", "Baker"] as Set
+        and : 'Two properties can be combined into a single value.'
+            db.select(Person).project(Person::firstName, Person::lastName, { first, last -> first + " " + last }).asList() == ["Dan Smith", "Bob Baker", "Anna Smith"]
+        and : 'Foreign keys are projected as the models they reference.'
+            db.select(Person).project(Person::address).asList() == [null, address, null]
+        and : 'A set of projected values may contain null for unset foreign keys.'
+            db.select(Person).project(Person::address).asSet() == [null, address] as Set
+
+        when : 'We change a person after the projection was read...'
+            var names = db.select(Person).project(Person::firstName).asList()
+            db.select(Person).where(Person::firstName).is("Dan").expectOne().firstName().set("Daniel")
+        then : 'The projected values stay the same, because they are detached from the database.'
+            names == ["Dan", "Bob", "Anna"]
+            db.select(Person).project(Person::firstName).first().get() == "Daniel"
+        cleanup:
+            db.close()
+    }
+
+    def 'Aggregates like sums, averages and grouped counts are computed by the database.'()
+    {
+        reportInfo """
+            Aggregates are computed in a single statement, so no model has to be loaded
+            to compute statistics over large tables.
+            Grouped aggregates are returned as maps ordered by the group keys.
+        """
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the table for atoms.'
+            db.createTablesFor(Atom)
+
+        expect : 'Aggregates over an empty table are empty.'
+            db.select(Atom).count() == 0
+            db.select(Atom).sum(Atom::mass) == 0
+            !db.select(Atom).avg(Atom::mass).isPresent()
+            !db.select(Atom).max(Atom::atomicNumber).isPresent()
+            db.select(Atom).groupBy(Atom::name).count().isEmpty()
+
+        when : 'We add a couple of atoms, including two isotopes of hydrogen...'
+            [["H", 1.0d, 1], ["He", 4.0d, 2], ["Li", 7.0d, 3], ["H", 2.0d, 1]].each { values ->
+                var atom = db.create(Atom)
+                atom.name().set(values[0])
+                atom.mass().set(values[1])
+                atom.atomicNumber().set(values[2])
+            }
+        then : 'We can compute aggregates over all or only some of the atoms.'
+            db.select(Atom).count() == 4
+            db.select(Atom).sum(Atom::mass) == 14.0d
+            db.select(Atom).avg(Atom::atomicNumber).getAsDouble() == 1.75d
+            db.select(Atom).min(Atom::atomicNumber).get() == 1
+            db.select(Atom).max(Atom::name).get() == "Li"
+            db.select(Atom).where(Atom::atomicNumber).greaterThan(1).sum(Atom::mass) == 11.0d
+            db.select(Atom).where(Atom::atomicNumber).greaterThan(1).count() == 2
+        and : 'Grouped aggregates return a value for every group.'
+            db.select(Atom).groupBy(Atom::name).count() == ["H": 2, "He": 1, "Li": 1]
+            db.select(Atom).groupBy(Atom::name).avg(Atom::mass) == ["H": 1.5d, "He": 4.0d, "Li": 7.0d]
+            db.select(Atom).groupBy(Atom::atomicNumber).max(Atom::mass) == [1: 2.0d, 2: 4.0d, 3: 7.0d]
+            db.select(Atom).where(Atom::name).isNot("Li").groupBy(Atom::atomicNumber).sum(Atom::mass) == [1: 3.0d, 2: 4.0d]
+        cleanup:
+            db.close()
+    }
+
+    def 'Models can be filtered by the properties of the models they reference.'()
+    {
+        reportInfo """
+            A predicate like `where(Person::address).then(Address::city).is("Rome")`
+            is compiled to a join on the foreign key column,
+            so the persons are filtered by the city of their address in a single query.
+        """
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the tables for persons and their addresses.'
+            db.createTablesFor(Person, Address)
+        and : 'Two addresses and a few persons living there, as well as a homeless person.'
+            var rome = db.create(Address)
+            rome.city().set("Rome")
+            var oslo = db.create(Address)
+            oslo.city().set("Oslo")
+            [["Dan", rome], ["Bob", oslo], ["Anna", rome], ["Eve", null]].each { values ->
+                var person = db.create(Person)
+                person.firstName().set(values[0])
+                if ( values[1] != null )
+                    person.address().set(values[1])
+            }
+
+        expect : 'We can find the persons by the city they live in.'
+            db.select(Person).where(Person::address).then(Address::city).is("Rome").project(Person::firstName).asList() == ["Dan", "Anna"]
+            db.select(Person).where(Person::address).then(Address::city).isNot("Rome").project(Person::firstName).asList() == ["Bob"]
+        and : 'Persons without an address are still found through the other predicates.'
+            db.select(Person)
+                .where(Person::address).then(Address::city).is("Oslo")
+                .or(Person::firstName).is("Eve")
+                .project(Person::firstName)
+                .asList() == ["Bob", "Eve"]
+        and : 'Path predicates can be combined with ordering and aggregates.'
+            db.select(Person).where(Person::address).then(Address::city).like("%o%").orderBy(Person::firstName).asList()*.firstName()*.get() == ["Anna", "Bob", "Dan"]
+            db.select(Person).where(Person::address).then(Address::city).is("Rome").count() == 2
+
+        when : 'We try to select a property after a property which does not reference another model...'
+            db.select(Person).where(Person::firstName).then({ it })
+        then : 'An exception is thrown.'
+            thrown(IllegalArgumentException)
+        cleanup:
+            db.close()
+    }
+
+    def 'Searchable text properties can be found through a full-text index.'()
+    {
+        reportInfo """
+            Text properties annotated with `@Searchable` are indexed in a full-text (FTS5) table,
+            which is kept in sync with the model table by triggers.
+            The `matches` operator uses this index to find all models containing words
+            which start with the words of the search text, with the best matches first.
+            Here the model used for this:
+            ```
+                public interface Book extends Model<Book>
+                {
+                    @Searchable Var<String> title();
+                    @Searchable Var<String> summary();
+                    Var<Integer> pages();
+                }
+            ```
+        """
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the table for books.'
+            db.createTablesFor(Book)
+        and : 'A few books.'
+            [["Fireball Basics", "How to throw fire"], ["Backfire", "Engines"], ["Swordsmanship", "Fighting with a fire sword"]].each { values ->
+                var book = db.create(Book)
+                book.title().set(values[0])
+                book.summary().set(values[1])
+            }
+
+        expect : 'The full-text index is not listed as a model table.'
+            db.listOfAllTableNames() == ["dal_models_Book_table"]
+        and : 'We can search for the start of words.'
+            db.select(Book).where(Book::title).matches("fire").project(Book::title).asList() == ["Fireball Basics"]
+            db.select(Book).where(Book::title).matches("fi ba").project(Book::title).asList() == ["Fireball Basics"]
+            db.select(Book).where(Book::summary).matches("fire").or(Book::title).matches("fire").count() == 2
+        and : 'A blank search text matches every book, and search syntax is treated as plain text.'
+            db.select(Book).where(Book::title).matches(" ").count() == 3
+            db.select(Book).where(Book::title).matches('fire" OR (').count() == 0
+
+        when : 'We change and delete books...'
+            var fireball = db.select(Book).where(Book::title).matches("fireball").expectOne()
+            fireball.title().set("Waterball Basics")
+            db.delete(db.select(Book).where(Book::title).is("Swordsmanship").expectOne())
+        then : 'The index is updated accordingly.'
+            db.select(Book).where(Book::title).matches("fire").count() == 0
+            db.select(Book).where(Book::title).matches("water").expectOne() == fireball
+            db.select(Book).where(Book::summary).matches("sword").count() == 0
+
+        when : 'We change a property which is not searchable, which does not touch the index...'
+            fireball.pages().set(42)
+        then : 'The book is still found by its text.'
+            db.select(Book).where(Book::title).matches("water").expectOne() == fireball
+            db.select(Book).where(Book::title).matches("water").and(Book::pages).is(42).count() == 1
+
+        when : 'We try to search a property which is not searchable...'
+            db.select(Book).where(Book::pages).matches("42")
+        then :
+            thrown(IllegalArgumentException)
+        cleanup:
+            db.close()
+    }
+
+    def 'The results of repeated queries can be cached until the tables they read from change.'()
+    {
+        reportInfo """
+            Read-mostly lookups are often repeated with exactly the same parameters.
+            If the query cache is enabled, the results of such queries are remembered,
+            until one of the tables they were read from is written to.
+        """
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the tables for people and their addresses and enable the query cache.'
+            db.createTablesFor(Person, Address, Workplace)
+            db.enableQueryCache(16)
+        and : 'A person living in Rome.'
+            var rome = db.create(Address)
+            rome.city().set("Rome")
+            var dan = db.create(Person)
+            dan.firstName().set("Dan")
+            dan.address().set(rome)
+        and : 'A query for the people living in Rome.'
+            var romans = { db.select(Person).where(Person::address).then(Address::city).is("Rome").project(Person::firstName).asList() }
+
+        expect : 'The second execution of the query is answered by the cache.'
+            romans() == ["Dan"]
+            romans() == ["Dan"]
+            db.queryCacheStats().hits() == 1
+            db.queryCacheStats().misses() == 1
+
+        when : 'We change a table the query reads from, which in this case is the joined address table...'
+            rome.city().set("Roma")
+        then : 'The cached result is outdated and the query is executed again.'
+            romans() == []
+            db.queryCacheStats().invalidations() == 1
+
+        when : 'We add another person living in Rome...'
+            rome.city().set("Rome")
+            var eve = db.create(Person)
+            eve.firstName().set("Eve")
+            eve.address().set(rome)
+        then :
+            romans() == ["Dan", "Eve"]
+            romans() == ["Dan", "Eve"]
+
+        when : 'We disable the cache again...'
+            db.enableQueryCache(0)
+        then : 'It is empty, but the results are still the same.'
+            romans() == ["Dan", "Eve"]
+            db.queryCacheStats().size() == 0
+        cleanup:
+            db.close()
+    }
+
+    def 'The rows behind the properties of models can be cached, keeping the frequently read ones.'()
+    {
+        reportInfo """
+            Reading the properties of a model means reading its row from the database.
+            If the row cache is enabled, the row is read once and shared by all of its properties,
+            until the row is written to, no matter if through a model or through raw SQL.
+            Once the cache is full, it keeps the rows which are read most frequently.
+        """
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the tables for people and their addresses and enable the row cache.'
+            db.createTablesFor(Person, Address, Workplace)
+            db.enableRowCache(10)
+        and : 'A person called Dan Brown.'
+            var dan = db.create(Person)
+            dan.firstName().set("Dan")
+            dan.lastName().set("Brown")
+
+        when : 'We read his name twice...'
+            var before = db.rowCacheStats()
+            var names = [dan.firstName().get(), dan.lastName().get(), dan.firstName().get()]
+        then : 'His row is read only once.'
+            names == ["Dan", "Brown", "Dan"]
+            db.rowCacheStats().misses() - before.misses() == 1
+            db.rowCacheStats().hits() - before.hits() == 2
+
+        when : 'We change his name, once through the model and once through raw SQL...'
+            dan.firstName().set("Daniel")
+            var first = dan.firstName().get()
+            db.execute("UPDATE dal_models_Person_table SET lastName = 'Green' WHERE id = " + dan.id().get())
+        then : 'The cached row is dropped and read again.'
+            first == "Daniel"
+            dan.lastName().get() == "Green"
+
+        when : 'We read Dan over and over again, while reading many other people once...'
+            var others = (1..50).collect { db.create(Person) }
+            10.times { dan.firstName().get() }
+            others.each { it.firstName().get() }
+            before = db.rowCacheStats()
+        then : 'Only the capacity of the cache is kept, but Dan is among them.'
+            before.size() == 10
+            before.evictions() > 0
+            dan.firstName().get() == "Daniel"
+            db.rowCacheStats().hits() == before.hits() + 1
+
+        when : 'We shrink the cache to a single row and read many people again...'
+            db.enableRowCache(1)
+            others.each { it.firstName().get() }
+            dan.firstName().get()
+        then : 'It never holds more than that one row.'
+            db.rowCacheStats().size() == 1
+
+        when : 'We try to give the cache a negative capacity...'
+            db.enableRowCache(-1)
+        then :
+            thrown(IllegalArgumentException)
+        cleanup:
+            db.close()
+    }
+
+    def 'The result of a query can be a live list, which the database keeps up-to-date.'()
+    {
+        reportInfo """
+            Instead of querying the database over and over again, you can ask a query
+            for a live list of its result, which is updated by the database whenever
+            models are created, changed or deleted.
+            Only the models affected by a change are checked against the query,
+            so observing a live list is cheap.
+        """
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the tables for people and their addresses.'
+            db.createTablesFor(Person, Address, Workplace)
+        and : 'A person called Dan.'
+            var dan = db.create(Person)
+            dan.firstName().set("Dan")
+        and : 'A live list of all people whose name contains an "a", and a live list ordered by name.'
+            var withA = db.select(Person).where(Person::firstName).like("%a%").asLiveVars()
+            var byName = db.select(Person).orderBy(Person::firstName).asLiveVars()
+
+        expect :
+            withA.toList() == [dan]
+            byName.toList() == [dan]
+
+        when : 'We create a person called Anna...'
+            var anna = db.create(Person)
+            anna.firstName().set("Anna")
+        then : 'Both lists contain her.'
+            withA.toList() == [dan, anna]
+            byName.toList() == [anna, dan]
+
+        when : 'We rename Anna, so that she no longer matches the first query, but moves in the second...'
+            anna.firstName().set("Zoe")
+        then :
+            withA.toList() == [dan]
+            byName.toList() == [dan, anna]
+
+        when : 'We delete Zoe...'
+            db.delete(anna)
+        then :
+            withA.toList() == [dan]
+            byName.toList() == [dan]
+
+        when : 'We change the table through raw SQL...'
+            db.execute("UPDATE " + db.listOfAllTableNames().find { it.contains("Person") } + " SET firstName = 'Bob'")
+        then : 'The lists are updated nonetheless.'
+            withA.toList() == []
+            byName.toList() == [dan]
+
+        when : 'We insert thousands of people at once, which are too many to be checked one by one...'
+            db.execute(
+                "INSERT INTO " + db.listOfAllTableNames().find { it.contains("Person") } + " (firstName, lastName) " +
+                "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < 3000) SELECT 'Anna', '' FROM n"
+            )
+        then : 'The lists are refreshed entirely instead.'
+            withA.size() == 3000
+            byName.size() == 3001
+        cleanup:
+            db.close()
+    }
+
+    def 'The database records the executions of every kind of SQL statement.'()
+    {
+        reportInfo """
+            The metrics of the database tell you how often which kind of statement was executed,
+            how many rows it returned and how long it took,
+            where statements which only differ in their values are of the same kind.
+            This is useful to find out which parts of your application cause
+            many or slow database operations.
+        """
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the tables for people and reset the metrics.'
+            db.createTablesFor(Person, Address, Workplace)
+            db.resetMetrics()
+
+        when : 'We create a few people and query them by name...'
+            (1..3).each { db.create(Person).firstName().set("Person " + it) }
+            db.select(Person).where(Person::firstName).is("Person 1").asList()
+            db.select(Person).where(Person::firstName).is("Person 2").asList()
+        then : 'Both queries are recorded as executions of the same statement template.'
+            var queries = db.metrics().statements().findAll { it.template().contains("WHERE (") }
+            queries.size() == 1
+            queries[0].calls() == 2
+            queries[0].rows() == 2
+            queries[0].template().endsWith("firstName = ?)")
+            queries[0].latencyHistogram().sum() == 2
+        and : 'The updates of the names are recorded as well.'
+            db.metrics().statements().find { it.template().startsWith("UPDATE") }.calls() == 3
+            db.metrics().openConnections() == 1
+
+        when : 'We reset the metrics...'
+            db.resetMetrics()
+        then : 'There are no statements recorded anymore.'
+            db.metrics().statements().isEmpty()
+        cleanup:
+            db.close()
+    }
+
+    def 'Statements slower than a threshold are logged together with their query plan.'()
+    {
+        reportInfo """
+            If you tell the database to log slow statements, every statement which takes longer
+            than the given threshold is logged with its values, the code which executed it
+            and the plan of the database for executing it.
+            The plan tells you for example if the database has to scan an entire table
+            because there is no index it could use instead.
+        """
+        given : 'We create a database instance for testing, the database will be opened in a test folder.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+        and : 'We create the tables for people and a person.'
+            db.createTablesFor(Person, Address, Workplace)
+            db.create(Person).firstName().set("Anna")
+        expect : 'Nothing is logged by default.'
+            db.slowStatements().isEmpty()
+
+        when : 'We log every statement and query people by name...'
+            db.logSlowStatements(Duration.ZERO)
+            db.select(Person).where(Person::firstName).is("Anna").asList()
+        then : 'The query is logged with its value and its plan, which is a scan of the table.'
+            var slow = db.slowStatements().find { it.sql().contains("firstName = ?") }
+            slow.values() == ["Anna"]
+            slow.queryPlan().any { it.startsWith("SCAN") }
+        and : 'The query was executed by this specification.'
+            slow.calledFrom().any { it.contains("DataBase_Spec") }
+
+        when : 'We stop logging and clear the log...'
+            db.logSlowStatements(null)
+            db.clearSlowStatements()
+            db.select(Person).where(Person::firstName).is("Anna").asList()
+        then : 'Nothing is logged anymore.'
+            db.slowStatements().isEmpty()
+        cleanup:
+            db.close()
+    }
+
+    def 'An in-memory database can be saved to and loaded from a file.'()
+    {
+        reportInfo """
+            A database which only lives in memory is fast and disappears when it is closed,
+            which is great for tests and for sessions which are only saved from time to time.
+            Saving copies the entire database into a file while it is in use,
+            and loading replaces the content of a database with the content of a file.
+        """
+        given : 'We create an in-memory database and a file to save it to.'
+            def db = DataBase.inMemory()
+            def other = DataBase.inMemory()
+            def file = Paths.get(TEST_DB_LOCATION, "in-memory-save.db")
+        and : 'We create the tables for people and a person.'
+            db.createTablesFor(Person, Address, Workplace)
+            db.create(Person).firstName().set("Anna")
+        expect : 'The database is in memory and other in-memory databases do not share its tables.'
+            db.isInMemory()
+            other.listOfAllTableNames().isEmpty()
+
+        when : 'We save the database and create another person...'
+            db.saveTo(file)
+            db.create(Person).firstName().set("Bob")
+        then : 'The file is a regular database containing the first person only.'
+            def saved = DataBase.at(TEST_DB_LOCATION + "in-memory-save.db")
+            saved.createTablesFor(Person, Address, Workplace)
+            saved.selectAll(Person).collect { it.firstName().get() } == ["Anna"]
+
+        when : 'We load the file back into the in-memory database...'
+            db.loadFrom(file)
+        then : 'The second person is gone.'
+            db.selectAll(Person).collect { it.firstName().get() } == ["Anna"]
+
+        cleanup:
+            saved?.close()
+            other.close()
+            db.close()
+            Files.deleteIfExists(file)
+    }
+
+    def 'A database can be backed up to a file while it is in use.'()
+    {
+        reportInfo """
+            Copying the file of a database which is in use may produce a broken copy,
+            so the database can back itself up into another file in the background instead.
+            The backup is a single consistent copy, which completes a future once it is done,
+            and the file is only replaced once the backup is complete.
+        """
+        given : 'We create a database with a few people and a file to back it up to.'
+            def db = DataBase.at(TEST_DB_LOCATION + "backup-source.db")
+            db.createTablesFor(Person, Address, Workplace)
+            (1..100).each { db.create(Person).firstName().set("Person " + it) }
+            def file = Paths.get(TEST_DB_LOCATION, "backups", "backup.db")
+            def progress = []
+
+        when : 'We back up the database and keep on writing to it...'
+            def future = db.backupTo(file, (copied, total) -> progress.add(copied + "/" + total))
+            db.create(Person).firstName().set("Written during the backup")
+        and : 'We wait for the backup to complete.'
+            def backup = future.get(30, TimeUnit.SECONDS)
+
+        then : 'The backup is a regular database file containing the people.'
+            backup == file.toAbsolutePath()
+            Files.exists(backup)
+            !Files.exists(Paths.get(backup.toString() + ".partial"))
+        and : 'The progress was reported, ending with all pages copied.'
+            !progress.isEmpty()
+            progress.last().split("/")[0] == progress.last().split("/")[1]
+        and : 'The backup can be opened like any other database.'
+            def restored = DataBase.at(TEST_DB_LOCATION + "backups/backup.db")
+            restored.createTablesFor(Person, Address, Workplace)
+            restored.selectAll(Person).size() >= 100
+
+        cleanup:
+            restored?.close()
+            db.close()
+            Files.deleteIfExists(file)
+    }
+
+    def 'An in-memory database can be backed up from another thread while it is written to.'()
+    {
+        reportInfo """
+            The application keeps its game in an in-memory database, which is saved
+            to a file by an autosave thread from time to time.
+            The connections of an in-memory database share a cache, in which a second
+            connection reading while the database thread writes would fail,
+            so the backup hands the copy over to the database thread, which keeps on writing
+            before and after it.
+        """
+        given : 'A database thread which runs the work handed to it by other threads between its own writes.'
+            var databaseThread = Thread.currentThread()
+            var handedOver = new LinkedBlockingQueue<Runnable>()
+            var process = { Runnable task -> Thread.currentThread() == databaseThread ? task.run() : handedOver.put(task) }
+            var db = DataBase.inMemory([
+                        process    : process,
+                        processNow : process,
+                        getThreads : { [databaseThread] }
+                    ] as DataBaseProcessor)
+            db.createTablesFor(Person, Address, Workplace)
+            (1..100).each { db.create(Person).firstName().set("Person " + it) }
+            var file = Paths.get(TEST_DB_LOCATION, "backups", "autosave.db")
+
+        when : 'An autosave thread starts a backup...'
+            var backup = null
+            var autosave = new Thread({ backup = db.backupTo(file) }, "Autosave")
+            autosave.start()
+            autosave.join()
+        and : 'The database thread writes before and after running the work handed to it, until the backup is done.'
+            int written = 0
+            while ( !backup.isDone() ) {
+                db.create(Person).firstName().set("Written during the backup " + written++)
+                handedOver.poll(10, TimeUnit.MILLISECONDS)?.run()
+                db.create(Person).firstName().set("Written during the backup " + written++)
+            }
+
+        then : 'The backup succeeded and all writes made it into the database.'
+            backup.get() == file.toAbsolutePath()
+            db.select(Person).count() == 100 + written
+        and : 'The backup contains everything written before it was made.'
+            var saved = DataBase.at(file.toString())
+            saved.createTablesFor(Person, Address, Workplace)
+            saved.select(Person).count() >= 101
+            saved.select(Person).count() <= 100 + written
+
+        cleanup:
+            saved?.close()
+            db?.close()
+            Files.deleteIfExists(file)
+    }
+
+    def 'The storage of a database is maintained in the background.'()
+    {
+        reportInfo """
+            A database file which is used for a long time gets a large write-ahead log,
+            free pages left behind by deleted rows and outdated statistics for the query planner.
+            So the database checkpoints its log regularly, and while nothing is written to it,
+            it also analyzes its tables and gives free pages back to the file system in small steps.
+            You can also run the maintenance right away and see what it did recently.
+        """
+        given : 'We create a new database with many people, which is maintained from the start.'
+            ["", "-wal", "-shm"].each { Files.deleteIfExists(Paths.get(TEST_DB_LOCATION, "maintenance.db" + it)) }
+            def db = DataBase.at(TEST_DB_LOCATION + "maintenance.db")
+            db.enableMaintenance()
+            db.createTablesFor(Person, Address, Workplace)
+            (1..2000).each { db.create(Person).firstName().set("Person with a rather long name " + it) }
+        and : 'We delete most of them again, which leaves free pages in the file.'
+            db.execute("DELETE FROM dal_models_Person_table WHERE id > 10")
+        and : 'An in-memory database and a file database without maintenance for comparison.'
+            def inMemory = DataBase.inMemory()
+            def unmaintained = DataBase.at(TEST_DB_LOCATION + "unmaintained.db")
+
+        when : 'We run the maintenance right away.'
+            def done = db.runMaintenance()
+        then : 'The statistics were updated, the free pages given back and the log checkpointed.'
+            done.collect { it.task() }.containsAll(["analyze", "incremental vacuum", "checkpoint"])
+            done.every { !it.outcome().startsWith("failed") }
+        and : 'What it did is also part of the recent maintenance activity.'
+            db.maintenanceActivity().containsAll(done)
+        and : 'The remaining people are still there.'
+            db.select(Person).count() == 10
+        and : 'An in-memory database has no file to maintain, and the maintenance of other files is opt-in.'
+            inMemory.runMaintenance().isEmpty()
+            unmaintained.runMaintenance().isEmpty()
+            unmaintained.maintenanceActivity().isEmpty()
+
+        cleanup:
+            inMemory.close()
+            unmaintained?.close()
+            db.close()
+    }
+
+    def 'The tables of some models can be owned by an attached database.'()
+    {
+        reportInfo """
+            A database may attach another database file, which owns the tables of some models.
+            This way the models can be split across several files,
+            like a catalog shared by many databases which hold the data of a single world each.
+            The other models reference the models of the attached database like any other model,
+            and reading or writing them transparently reads from or writes to the attached file.
+        """
+        given : 'A catalog database with an address.'
+            def catalog = DataBase.at(TEST_DB_LOCATION + "catalog.db")
+            catalog.createTablesFor(Person, Address, Workplace)
+            def berlin = catalog.create(Address)
+            berlin.city().set("Berlin")
+        and : 'A shard database to which the catalog is attached as the owner of the addresses.'
+            def shard = DataBase.at(TEST_DB_LOCATION + "shards/shard-1.db")
+            shard.attach("catalog", Paths.get(TEST_DB_LOCATION, "catalog.db"), Address)
+            shard.createTablesFor(Person, Address, Workplace)
+
+        expect : 'The shard does not have a table for the addresses of its own.'
+            !shard.listOfAllTableNames().contains("dal_models_Address_table")
+
+        when : 'We create a person living at the address of the catalog in the shard...'
+            def anna = shard.create(Person)
+            anna.firstName().set("Anna")
+            anna.address().set(shard.select(Address, berlin.id().get()))
+        and : 'We create another address through the shard.'
+            shard.create(Address).city().set("Hamburg")
+        then : 'The person is stored in the shard and references the address in the catalog.'
+            shard.select(Person).where(Person::firstName).is("Anna").asList().first().address().get().city().get() == "Berlin"
+            catalog.select(Person).count() == 0
+        and : 'The new address is stored in the catalog.'
+            catalog.select(Address).where(Address::city).is("Hamburg").exists()
+
+        when : 'The catalog caches its addresses and keeps a live list of the addresses in Berlin...'
+            catalog.enableQueryCache(16)
+            catalog.enableRowCache(16)
+            def berliners = catalog.select(Address).where(Address::city).is("Berlin").asLiveVars()
+            def cities = { catalog.select(Address).project(Address::city).asList() }
+            cities()
+            berlin.city().get()
+        and : 'We rename the address through the shard.'
+            shard.select(Address, berlin.id().get()).city().set("Bremen")
+        then : 'The catalog notices the write to its file, so that neither its caches nor its live list are outdated.'
+            berlin.city().get() == "Bremen"
+            cities() == ["Bremen", "Hamburg"]
+            berliners.toList() == []
+
+        when : 'We try to drop the table of the addresses through the shard...'
+            shard.dropTable(Address)
+        then : 'This is not allowed, because the table is owned by the catalog.'
+            thrown(IllegalArgumentException)
+
+        cleanup:
+            shard?.close()
+            catalog?.close()
+            ["catalog.db", "shards/shard-1.db"].each { name ->
+                ["", "-wal", "-shm"].each { Files.deleteIfExists(Paths.get(TEST_DB_LOCATION, name + it)) }
+            }
+            Files.deleteIfExists(Paths.get(TEST_DB_LOCATION, "shards"))
+    }
+
+    def 'Models are found in a list by their ids, without reading the listed models.'()
+    {
+        reportInfo """
+            A list property keeps the ids of the listed models,
+            so checking whether a model is listed, or where it is listed,
+            only compares ids and does not read anything from the database.
+        """
+        given : 'A database with a workplace employing two people.'
+            def db = DataBase.at(TEST_DB_FILE)
+            db.dropAllTables()
+            db.createTablesFor(Person, Address, Workplace)
+            var anna = db.create(Person)
+            var bob = db.create(Person)
+            var carl = db.create(Person)
+            var shop = db.create(Workplace)
+            shop.employees().add(anna)
+            shop.employees().add(bob)
+        and : 'Bob selected separately, and an address which cannot be employed at all.'
+            var selectedBob = db.select(Person, bob.id().get())
+            var address = db.create(Address)
+
+        when : 'We look for them in the list, counting the statements run by the database...'
+            db.resetMetrics()
+            var found = [
+                shop.employees().contains(selectedBob), shop.employees().indexOf(bob),
+                shop.employees().contains(carl), shop.employees().indexOf(carl),
+                shop.employees().contains(address)
+            ]
+        then : 'The listed models are found, but models which are not listed (or not even of the listed type) are not.'
+            found == [true, 1, false, -1, false]
+        and : 'Nothing was read from the database for that.'
+            db.metrics().calls() == 0
+
+        when : 'We remove Anna from the list...'
+            shop.employees().remove(anna)
+        then : 'Bob moves to the front.'
+            shop.employees().indexOf(bob) == 0
+            !shop.employees().contains(anna)
+
+        cleanup:
+            db.close()
+    }
+
+    def 'The columnar database behaves like the SQLite database without using SQL.'()
+    {
+        reportInfo """
+            Besides the SQLite database, there is a database which keeps its tables
+            in memory as columns of primitive arrays, which makes reading and querying
+            models much faster, because no SQL or JDBC is involved at all.
+            Models, lists, queries and transactions behave exactly the same in both databases.
+        """
+        given : 'A database with people working at a workplace.'
+            def db = factory()
+            db.createTablesFor(Person, Address, Workplace)
+            var berlin = db.create(Address)
+            berlin.city().set("Berlin")
+            var anna = db.create(Person)
+            anna.firstName().set("Anna")
+            anna.address().set(berlin)
+            var bob = db.create(Person)
+            bob.firstName().set("Bob")
+            var shop = db.create(Workplace)
+            shop.employees().add(anna)
+            shop.employees().add(bob)
+        and : 'A live list of all people without an address.'
+            var homeless = db.select(Person).where(Person::address).isNull().asLiveVars()
+
+        expect :
+            db.select(Person).where(Person::address).then(Address::city).is("Berlin").asList() == [anna]
+            db.select(Person).where(Person::firstName).like("b%").or(Person::address).is(berlin).count() == 2
+            db.select(Person).orderDescendingBy(Person::firstName).asList() == [bob, anna]
+            db.select(Person).project(Person::firstName).asList() == ["Anna", "Bob"]
+            homeless.toList() == [bob]
+            bob.address().get().toString() == 'Address[id=null, city=null, country=null, postalCode=null, street=null]'
+
+        when : 'We move Bob to Berlin in a transaction...'
+            bob.commit( p -> p.address().set(berlin) )
+        then :
+            db.select(Person).where(Person::address).is(berlin).asList() == [anna, bob]
+            homeless.toList() == []
+
+        when : 'We delete Anna...'
+            db.delete(anna)
+        then : 'She is no longer employed.'
+            shop.employees().toList() == [bob]
+            db.selectAll(Person) == [bob]
+
+        cleanup:
+            db.close()
+
+        where :
+            factory << [ { DataBase.at(TEST_DB_FILE) }, { DataBase.columnar() } ]
+    }
+
+    def 'Both database engines sort, page, project and aggregate models the same way.'()
+    {
+        reportInfo """
+            The columnar database evaluates orderings, keyset pages, projections
+            and aggregates itself, while the SQLite database leaves them to SQL.
+            Their results must not differ, including how null values are sorted and aggregated.
+        """
+        given : 'A database with a few persons, only two of which have an address.'
+            def db = factory()
+            db.createTablesFor(Person, Address, Atom)
+            var rome = db.create(Address)
+            rome.city().set("Rome")
+            var persons = [["Smith", "Dan"], ["Baker", "Bob"], ["Smith", "Anna"], ["Adams", "Fay"], ["Baker", "Ava"]].collect { names ->
+                var person = db.create(Person)
+                person.lastName().set(names[0])
+                person.firstName().set(names[1])
+                person
+            }
+            persons[1].address().set(rome)
+            persons[4].address().set(rome)
+        and : 'A couple of atoms, including two isotopes of hydrogen.'
+            [["H", 1.0d, 1], ["He", 4.0d, 2], ["Li", 7.0d, 3], ["H", 2.0d, 1]].each { values ->
+                var atom = db.create(Atom)
+                atom.name().set(values[0])
+                atom.mass().set(values[1])
+                atom.atomicNumber().set(values[2])
+            }
+
+        when : 'We page through the persons by their address in descending order and then by their first name...'
+            var names = []
+            var page = db.select(Person).orderDescendingBy(Person::address).thenBy(Person::firstName).page(2)
+            while ( !page.isEmpty() ) {
+                names.addAll(page.collect({ it.firstName().get() }))
+                page = db.select(Person).orderDescendingBy(Person::address).thenBy(Person::firstName).after(page.last()).page(2)
+            }
+        then : 'The persons with an address come first and nobody is returned twice.'
+            names == ["Ava", "Bob", "Anna", "Dan", "Fay"]
+
+        and : 'Projections return the same plain values.'
+            db.select(Person).orderBy(Person::lastName).thenBy(Person::firstName).project(Person::firstName).asList() == ["Fay", "Ava", "Bob", "Anna", "Dan"]
+            db.select(Person).project(Person::address).asSet() == [null, rome] as Set
+            db.select(Person).project(Person::firstName, Person::lastName, { first, last -> first + " " + last }).first().get() == "Dan Smith"
+
+        and : 'Aggregates and grouped aggregates are the same.'
+            db.select(Atom).count() == 4
+            db.select(Atom).sum(Atom::mass) == 14.0d
+            db.select(Atom).avg(Atom::atomicNumber).getAsDouble() == 1.75d
+            db.select(Atom).max(Atom::name).get() == "Li"
+            db.select(Atom).groupBy(Atom::name).count() == ["H": 2, "He": 1, "Li": 1]
+            db.select(Atom).where(Atom::name).isNot("Li").groupBy(Atom::atomicNumber).sum(Atom::mass) == [1: 3.0d, 2: 4.0d]
+            db.select(Person).groupBy(Person::lastName).count() == ["Adams": 1, "Baker": 2, "Smith": 2]
+
+        cleanup:
+            db.close()
+
+        where :
+            factory << [ { DataBase.at(TEST_DB_FILE) }, { DataBase.columnar() } ]
+    }
+
+    def 'Both database engines stream, dump, restore and clone models the same way.'()
+    {
+        given : 'A database with a workplace which employs 2 persons.'
+            def db = factory()
+            db.createTablesFor(Workplace, Person, Address)
+            var workplace = db.create(Workplace)
+            workplace.name().set("Bakery")
+            ["Anna", "Bob"].each { name ->
+                var person = db.create(Person)
+                person.firstName().set(name)
+                workplace.employees().add(person)
+            }
+
+        expect : 'A query can be consumed as a lazy stream of models.'
+            db.select(Person).stream().withCloseable { it.map({ it.firstName().get() }).toList() } == ["Anna", "Bob"]
+
+        when : 'We dump the entire database into NDJSON, change it and restore the dump...'
+            var out = new StringWriter()
+            db.dumpTo(out)
+            workplace.name().set("Forge")
+            db.create(Person).firstName().set("Carl")
+            db.restoreFrom(new StringReader(out.toString()))
+        then : 'There is one line for every row of every table and the database is like it was when it was dumped.'
+            out.toString().readLines().size() == 5
+            workplace.name().get() == "Bakery"
+            db.selectAll(Person).collect({ it.firstName().get() }) == ["Anna", "Bob"]
+            workplace.employees().at(1).get().firstName().get() == "Bob"
+
+        when : 'We clone an address...'
+            var address = db.create(Address)
+            address.city().set("Rome")
+            var clone = address.clone()
+        then : 'The clone has the same data but a new id.'
+            clone.id().get() != address.id().get()
+            clone.city().get() == "Rome"
+            db.selectAll(Address).size() == 2
+
+        cleanup:
+            db.close()
+
+        where :
+            factory << [ { DataBase.at(TEST_DB_FILE) }, { DataBase.columnar() } ]
+    }
+
+    def 'Both database engines import models in bulk the same way.'()
+    {
+        reportInfo """
+            The type catalogs of the app are loaded through bulk imports,
+            so both engines have to insert missing models, update existing ones
+            and identify the children of a list only within the list of their parent.
+        """
+        given : 'A database with a workplace which already employs Anna.'
+            def db = factory()
+            db.createTablesFor(Workplace, Person, Address)
+            var bakery = db.create(Workplace)
+            bakery.name().set("Bakery")
+            var anna = db.create(Person)
+            anna.firstName().set("Anna")
+            bakery.employees().add(anna)
+        and : 'A live list of the persons named Baker.'
+            var bakers = db.select(Person).where(Person::lastName).is("Baker").asLiveVars()
+
+        when : 'We import 2 workplaces with their employees in bulk...'
+            var workplaces = db.bulkImport(Workplace, Workplace::name)
+            var bakeryEntry = workplaces.entry("Bakery")
+            bakeryEntry.child(Workplace::employees, Person, Person::firstName, "Anna").set(Person::lastName, "Smith")
+            bakeryEntry.child(Workplace::employees, Person, Person::firstName, "Bob").setOnInsert(Person::lastName, "Baker")
+            workplaces.entry("Forge").child(Workplace::employees, Person, Person::firstName, "Anna").set(Person::lastName, "Iron")
+            var imported = workplaces.execute()
+        then : 'Existing models are updated, missing ones are inserted and added to the lists of their parents.'
+            imported == [bakery, db.select(Workplace).where(Workplace::name).is("Forge").expectOne()]
+            anna.lastName().get() == "Smith"
+            bakery.employees().toList().collect({ it.firstName().get() + " " + it.lastName().get() }) == ["Anna Smith", "Bob Baker"]
+            imported[1].employees().toList().collect({ it.firstName().get() + " " + it.lastName().get() }) == ["Anna Iron"]
+            db.selectAll(Person).size() == 3
+        and : 'The live list saw the new person.'
+            bakers.size() == 1
+
+        when : 'We import the same workplace again...'
+            var again = db.bulkImport(Workplace, Workplace::name)
+            again.entry("Bakery").child(Workplace::employees, Person, Person::firstName, "Bob").set(Person::lastName, "Miller")
+            again.execute()
+        then : 'Nothing is duplicated, the existing rows are simply updated.'
+            db.selectAll(Workplace).size() == 2
+            db.selectAll(Person).size() == 3
+            bakery.employees().at(1).get().lastName().get() == "Miller"
+            bakers.size() == 0
+
+        cleanup:
+            db.close()
+
+        where :
+            factory << [ { DataBase.at(TEST_DB_FILE) }, { DataBase.columnar() } ]
+    }
+
+    def 'Threads selecting the same row share a single model proxy.'()
+    {
+        reportInfo """
+            Every row is represented by a single model proxy at any time,
+            even if several threads select it at the same time,
+            each through its own connection.
+        """
+        given : 'Worker threads which all select the same person once they are started.'
+            var start = new CountDownLatch(1)
+            var selected = new Person[8]
+            DataBase db = null
+            int id = 0
+            var workers = (0..<selected.length).collect { i -> new Thread({ start.await(); selected[i] = db.select(Person, id) }) }
+        and : 'A database which may be used by the worker threads, each through its own connection.'
+            var allowed = workers + [Thread.currentThread()]
+            db = DataBase.at(TEST_DB_FILE, [
+                    process    : { Runnable task -> task.run() },
+                    processNow : { Runnable task -> task.run() },
+                    getThreads : { allowed }
+                ] as DataBaseProcessor)
+            db.dropAllTables()
+            db.createTablesFor(Person, Address, Workplace)
+            id = db.create(Person).id().get()
+
+        when : 'The workers select the person at the same time...'
+            workers.each { it.start() }
+            start.countDown()
+            workers.each { it.join() }
+        then : 'They all received the same proxy.'
+            selected.every { it != null }
+            selected.collect { Proxy.getInvocationHandler(it) }.unique(false) { System.identityHashCode(it) }.size() == 1
+
+        cleanup:
+            db?.close()
+    }
+
 }
@@ -0,0 +1,101 @@
+package dal.impl
+
+import groovy.transform.CompileDynamic
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Title
+
+import java.util.concurrent.CountDownLatch
+
+@Title("The Identity Map of Model Proxies")
+@Narrative('''
+
+    Every row of a table is represented by a single object at any time,
+    which the identity map only references weakly, so that objects
+    nobody uses anymore can be garbage collected.
+    The references of collected objects end up in a reference queue,
+    which the map drains to remove their entries.
+    This spec simulates the garbage collector by enqueuing these references
+    itself, so it does not depend on when the collector actually runs.
+
+''')
+@CompileDynamic
+class Identity_Map_Spec extends Specification
+{
+    def 'Concurrent threads asking for the same row receive the same object.'()
+    {
+        given : 'An empty map and worker threads which all ask for the same row once they are started.'
+            var map = new IdentityMap<Object>()
+            var start = new CountDownLatch(1)
+            var found = new Object[8]
+            var workers = (0..<found.length).collect { i ->
+                                new Thread({ start.await(); found[i] = map.computeIfAbsent("person", 1, { new Object() }) })
+                            }
+        when : 'The workers ask for the row at the same time...'
+            workers.each { it.start() }
+            start.countDown()
+            workers.each { it.join() }
+        then : 'They all received the same object, which is the only entry of the map.'
+            found.every { it.is(found[0]) }
+            map.find("person", 1).get().is(found[0])
+            map.size() == 1
+    }
+
+    def 'The entries of collected objects are removed when the reference queue is drained.'()
+    {
+        given : 'A map with the objects of three rows.'
+            var map = new IdentityMap<Object>()
+            var objects = (1..3).collect { new Object() }
+            objects.eachWithIndex { object, i -> map.put("person", i + 1, object) }
+        when : 'The object of the second row is collected and we drain the queue.'
+            map._referenceTo("person", 2).enqueue()
+            int removed = map._expungeCollected()
+        then : 'Only its entry was removed.'
+            removed == 1
+            map.size() == 2
+            !map.find("person", 2).isPresent()
+            map.find("person", 1).get().is(objects[0])
+            map.find("person", 3).get().is(objects[2])
+
+        when : 'We drain the queue again.'
+            removed = map._expungeCollected()
+        then : 'There is nothing left to remove.'
+            removed == 0
+            map.size() == 2
+    }
+
+    def 'Writing to the map drains the reference queue as well.'()
+    {
+        given : 'A map with the object of a row which is collected.'
+            var map = new IdentityMap<Object>()
+            var object = new Object()
+            map.put("person", 1, object)
+            map._referenceTo("person", 1).enqueue()
+        expect : 'The collected entry is still counted, because nobody drained the queue yet.'
+            map.size() == 1
+            !map.find("person", 1).isPresent()
+
+        when : 'We add the object of another row.'
+            map.put("person", 2, new Object())
+        then : 'The entry of the collected object was removed by the write.'
+            map.size() == 1
+            map._referenceTo("person", 1) == null
+    }
+
+    def 'An entry which was replaced by a new object is not removed when the old object is collected.'()
+    {
+        given : 'A map with the object of a row.'
+            var map = new IdentityMap<Object>()
+            map.put("person", 1, new Object())
+            var oldReference = map._referenceTo("person", 1)
+        and : 'A new object which replaces it, for example because the row was selected again.'
+            var newObject = new Object()
+            map.put("person", 1, newObject)
+        when : 'The old object is collected and we drain the queue.'
+            oldReference.enqueue()
+            int removed = map._expungeCollected()
+        then : 'The entry of the new object is still there.'
+            removed == 0
+            map.find("person", 1).get().is(newObject)
+    }
+}
@@ -0,0 +1,111 @@
+package dal.impl
+
+import groovy.transform.CompileDynamic
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Title
+
+@Title("Primitive Int Collections")
+@Narrative('''
+
+    The database implementations keep ids and row numbers in
+    collections of primitive ints instead of boxing them into
+    `Integer` objects, which matters once there are many of them.
+    This spec makes sure that these collections behave like their
+    boxed counterparts from `java.util`, even across resizes
+    and removals in the middle of a probe sequence.
+
+''')
+@CompileDynamic
+class Primitive_Collections_Spec extends Specification
+{
+    def 'An int array list grows, inserts and removes like an array list.'()
+    {
+        given : 'An empty list with room for a single int.'
+            var list = new IntArrayList(1)
+        when : 'We add more ints than it has room for and insert one in the middle.'
+            (1..5).each { list.add(it * 10) }
+            list.add(2, 25)
+        then : 'The list grew and keeps the ints in order.'
+            list.size() == 6
+            list.toArray() == [10, 20, 25, 30, 40, 50] as int[]
+            list.indexOf(25) == 2
+            list.contains(50)
+            !list.contains(60)
+
+        when : 'We remove an int by its index and another one by its value.'
+            var removed = list.removeAt(0)
+            var found = list.removeValue(40)
+        then : 'Both are gone and the remaining ints moved up.'
+            removed == 10
+            found
+            !list.removeValue(40)
+            list.toArray() == [20, 25, 30, 50] as int[]
+
+        when : 'We access an index which is out of bounds.'
+            list.get(4)
+        then : 'This fails like an array list does.'
+            thrown(IndexOutOfBoundsException)
+    }
+
+    def 'An int to int map behaves like a hash map across resizes and removals.'()
+    {
+        given : 'A map and a hash map as reference.'
+            var map = new IntIntMap(2)
+            var reference = new HashMap<Integer, Integer>()
+            var random = new Random(42)
+        when : 'We put and remove many random keys, which forces collisions and resizes.'
+            1000.times {
+                int key = random.nextInt(200) - 100
+                if ( random.nextBoolean() ) {
+                    map.put(key, it)
+                    reference.put(key, it)
+                } else
+                    assert map.remove(key) == ( reference.remove(key) != null )
+            }
+        then : 'Both maps contain the same entries.'
+            map.size() == reference.size()
+            (-100..100).every { map.get(it, -1) == reference.getOrDefault(it, -1) }
+            (-100..100).every { map.containsKey(it) == reference.containsKey(it) }
+
+        when : 'We use the reserved key.'
+            map.put(Integer.MIN_VALUE, 1)
+        then : 'The map refuses it.'
+            thrown(IllegalArgumentException)
+    }
+
+    def 'An int to object map behaves like a hash map across resizes and removals.'()
+    {
+        given : 'A map and a hash map as reference.'
+            var map = new IntObjectMap<String>(2)
+            var reference = new HashMap<Integer, String>()
+            var random = new Random(7)
+        when : 'We put and remove many random keys, which forces collisions and resizes.'
+            1000.times {
+                int key = random.nextInt(200) - 100
+                if ( random.nextBoolean() ) {
+                    map.put(key, "v$it".toString())
+                    reference.put(key, "v$it".toString())
+                } else
+                    assert map.remove(key) == reference.remove(key)
+            }
+        then : 'Both maps contain the same entries.'
+            map.size() == reference.size()
+            (-100..100).every { map.get(it) == reference.get(it) }
+            map.values().toSet() == reference.values().toSet()
+
+        when : 'We compute a value for a missing key and for a present one.'
+            map.clear()
+            var computed = map.computeIfAbsent(3, { "three" })
+            var kept = map.computeIfAbsent(3, { "other" })
+        then : 'Only the missing key gets a new value.'
+            computed == "three"
+            kept == "three"
+            map.size() == 1
+
+        when : 'We try to store null.'
+            map.put(4, null)
+        then : 'The map refuses it, because null marks its free slots.'
+            thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,12 @@
+package dal.models;
+
+import dal.api.Model;
+import dal.api.Searchable;
+import sprouts.Var;
+
+public interface Book extends Model<Book>
+{
+    @Searchable Var<String> title();
+    @Searchable Var<String> summary();
+    Var<Integer> pages();
+}